@@ -0,0 +1,104 @@
+package de.sven.bayer.speaking_llm.benchmark;
+
+import de.sven.bayer.speaking_llm.component.audio.PcmNormalizer;
+import de.sven.bayer.speaking_llm.component.audio.capture.AudioSegment;
+import de.sven.bayer.speaking_llm.component.audio.capture.PcmRingBuffer;
+import de.sven.bayer.speaking_llm.component.audio.capture.WavHeader;
+import de.sven.bayer.speaking_llm.component.audio.flac.FlacOutputStream;
+import de.sven.bayer.speaking_llm.component.audio.vad.EnergyVoiceActivityDetector;
+import de.sven.bayer.speaking_llm.component.audio.vad.VoiceActivity;
+import de.sven.bayer.speaking_llm.component.audio.vad.VoiceActivityDetector;
+import de.sven.bayer.speaking_llm.config.VadProperties;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-turn audio work on the capture side: voice activity detection over the microphone
+ * stream, wrapping a captured segment as WAV or encoding it as FLAC for the ASR upload, and peak
+ * normalization.
+ * Throughput is reported per recording of the fixture, about 20 seconds of audio.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AudioBenchmark {
+	private byte[] pcm;
+	private VoiceActivityDetector detector;
+	private PcmRingBuffer ring;
+	private final byte[] uploadBuffer = new byte[16 * 1024];
+
+	@Setup
+	public void setUp() {
+		pcm = Fixtures.speechPcm();
+		detector = new EnergyVoiceActivityDetector(Fixtures.FORMAT, new VadProperties());
+		int frameBytes = detector.frameBytes();
+		pcm = Arrays.copyOf(pcm, pcm.length - pcm.length % frameBytes);
+
+		// Leave the segment wrapping around the end of the ring, as it does during a long capture
+		ring = new PcmRingBuffer(pcm.length + pcm.length / 2, new WavHeader(Fixtures.FORMAT));
+		ring.commit(pcm.length);
+		int tail = ring.capacity() - ring.offsetOf(ring.position());
+		ring.anchor(ring.position());
+		System.arraycopy(pcm, 0, ring.array(), ring.offsetOf(ring.position()), tail);
+		System.arraycopy(pcm, tail, ring.array(), 0, pcm.length - tail);
+		ring.commit(pcm.length);
+	}
+
+	@Benchmark
+	public int voiceActivityDetection() {
+		detector.reset();
+		int speechFrames = 0;
+		for (int offset = 0, frameBytes = detector.frameBytes(); offset < pcm.length; offset += frameBytes) {
+			if (detector.process(pcm, offset).inUtterance()) {
+				speechFrames++;
+			}
+		}
+		return speechFrames;
+	}
+
+	@Benchmark
+	public long wavUpload(Blackhole blackhole) throws IOException {
+		long end = ring.position();
+		AudioSegment segment = ring.segment(end - pcm.length, end);
+		// Read in chunks the way the HTTP client's body publisher does
+		long total = 0;
+		try (InputStream wav = segment.openWavStream()) {
+			int read;
+			while ((read = wav.read(uploadBuffer)) > 0) {
+				blackhole.consume(uploadBuffer);
+				total += read;
+			}
+			return total;
+		} finally {
+			segment.release();
+		}
+	}
+
+	@Benchmark
+	public int flacUpload() throws IOException {
+		long end = ring.position();
+		AudioSegment segment = ring.segment(end - pcm.length, end);
+		ByteArrayOutputStream flac = new ByteArrayOutputStream(pcm.length / 2);
+		try (InputStream source = segment.openPcmStream();
+			 FlacOutputStream encoder = new FlacOutputStream(flac, Fixtures.FORMAT, pcm.length / 2)) {
+			source.transferTo(encoder);
+		} finally {
+			segment.release();
+		}
+		return flac.size();
+	}
+
+	@Benchmark
+	public void normalize(Blackhole blackhole) {
+		blackhole.consume(PcmNormalizer.normalize(pcm));
+	}
+}
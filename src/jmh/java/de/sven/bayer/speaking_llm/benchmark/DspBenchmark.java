@@ -0,0 +1,66 @@
+package de.sven.bayer.speaking_llm.benchmark;
+
+import de.sven.bayer.speaking_llm.component.audio.dsp.PcmDsp;
+import de.sven.bayer.speaking_llm.component.audio.dsp.Resampler;
+import de.sven.bayer.speaking_llm.component.audio.dsp.ScalarPcmDsp;
+import de.sven.bayer.speaking_llm.component.audio.dsp.VectorPcmDsp;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The sample-level operations on a 20 ms capture frame, scalar against the Vector API, and
+ * resampling one 80 ms capture chunk from the 48 kHz of a typical sound card.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DspBenchmark {
+	private static final int FRAME_SAMPLES = 320;
+	private static final int CHUNK_SAMPLES = 4 * FRAME_SAMPLES;
+
+	@Param({"scalar", "vector"})
+	public String implementation;
+
+	private PcmDsp dsp;
+	private byte[] pcm;
+	private byte[] frame;
+	private Resampler resampler;
+	private byte[] deviceChunk;
+	private byte[] chunk;
+
+	@Setup
+	public void setUp() {
+		dsp = implementation.equals("vector") ? new VectorPcmDsp() : new ScalarPcmDsp();
+		pcm = Fixtures.speechPcm();
+		frame = new byte[FRAME_SAMPLES * 2];
+		resampler = new Resampler(dsp, 48000, 16000);
+		// Upsample the fixture's first chunk by repeating samples, the content hardly matters for the cost
+		deviceChunk = new byte[CHUNK_SAMPLES * 3 * 2];
+		for (int i = 0; i < CHUNK_SAMPLES * 3; i++) {
+			deviceChunk[2 * i] = pcm[2 * (i / 3)];
+			deviceChunk[2 * i + 1] = pcm[2 * (i / 3) + 1];
+		}
+		chunk = new byte[CHUNK_SAMPLES * 2];
+	}
+
+	@Benchmark
+	public PcmDsp.Levels measureFrame() {
+		return dsp.measure(pcm, 2 * 16000, FRAME_SAMPLES);
+	}
+
+	@Benchmark
+	public byte[] removeDcAndGainFrame() {
+		System.arraycopy(pcm, 2 * 16000, frame, 0, frame.length);
+		dsp.adjust(frame, 0, FRAME_SAMPLES, 12, 1.5f);
+		return frame;
+	}
+
+	@Benchmark
+	public int resampleChunk() {
+		return resampler.process(deviceChunk, 0, CHUNK_SAMPLES * 3, chunk, 0, CHUNK_SAMPLES);
+	}
+}
@@ -0,0 +1,39 @@
+package de.sven.bayer.speaking_llm.benchmark;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Inputs shared by the benchmarks: microphone-like PCM from the VAD corpus and a typical LLM answer.
+ */
+final class Fixtures {
+	static final AudioFormat FORMAT = new AudioFormat(16000, 16, 1, true, false);
+
+	private Fixtures() {
+	}
+
+	/**
+	 * Speech over a quiet room background, 16 kHz mono 16-bit little-endian.
+	 */
+	static byte[] speechPcm() {
+		return resource("/vad/quiet_room.pcm");
+	}
+
+	static String llmAnswer() {
+		return new String(resource("/benchmark/llm-answer.txt"), StandardCharsets.UTF_8);
+	}
+
+	private static byte[] resource(String name) {
+		try (InputStream in = Fixtures.class.getResourceAsStream(name)) {
+			if (in == null) {
+				throw new IllegalStateException("Missing fixture " + name);
+			}
+			return in.readAllBytes();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
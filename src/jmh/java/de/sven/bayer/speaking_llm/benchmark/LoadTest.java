@@ -0,0 +1,217 @@
+package de.sven.bayer.speaking_llm.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.sven.bayer.speaking_llm.component.TextSplitter;
+import de.sven.bayer.speaking_llm.component.audio.capture.AudioSegment;
+import de.sven.bayer.speaking_llm.component.audio.capture.PcmRingBuffer;
+import de.sven.bayer.speaking_llm.component.audio.capture.WavHeader;
+import de.sven.bayer.speaking_llm.component.audio.source.ReplayAudioSource;
+import de.sven.bayer.speaking_llm.component.http.HttpTransport;
+import de.sven.bayer.speaking_llm.component.journal.TurnJournal;
+import de.sven.bayer.speaking_llm.component.limit.BackendLimiters;
+import de.sven.bayer.speaking_llm.component.metrics.TurnMetrics;
+import de.sven.bayer.speaking_llm.component.metrics.TurnStage;
+import de.sven.bayer.speaking_llm.component.metrics.TurnTrace;
+import de.sven.bayer.speaking_llm.component.tts.TtsAudioCache;
+import de.sven.bayer.speaking_llm.config.JournalProperties;
+import de.sven.bayer.speaking_llm.config.LimitProperties;
+import de.sven.bayer.speaking_llm.config.LlmProperties;
+import de.sven.bayer.speaking_llm.config.TranscriptionProperties;
+import de.sven.bayer.speaking_llm.config.TtsProperties;
+import de.sven.bayer.speaking_llm.model.conversation.TurnStatus;
+import de.sven.bayer.speaking_llm.service.AsrService;
+import de.sven.bayer.speaking_llm.service.AudioPlayerService;
+import de.sven.bayer.speaking_llm.service.ConversationEngine;
+import de.sven.bayer.speaking_llm.service.LlmChatService;
+import de.sven.bayer.speaking_llm.service.TtsService;
+import de.sven.bayer.speaking_llm.service.session.ConversationSession;
+import de.sven.bayer.speaking_llm.service.session.ConversationTurn;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Headless load test: runs a number of synthetic conversations at once against the stub backends
+ * and reports throughput and latency percentiles, for one concurrency level after the other, to
+ * find where the pipeline saturates. Every conversation replays the speech fixture through a
+ * {@link ReplayAudioSource}, transcribes it and runs the turn through the {@link ConversationEngine}
+ * with an audio sink that drops the clips. Latencies are measured from the end of the utterance.
+ * <p>
+ * Options as {@code key=value}: {@code conversations} (comma-separated levels, default 1,4,16,64),
+ * {@code turns} per conversation (10), {@code latency-ms} of every backend request (20),
+ * {@code speed} of the replay relative to real time (0, as fast as possible), the ASR
+ * {@code upload} format (wav or flac) and {@code batch} (true to send the segments of all
+ * conversations to whisper in batches, false).
+ */
+public final class LoadTest {
+	private static final int UTTERANCE_BYTES = 3 * 32000;
+
+	private record Result(int conversations, int turns, int failed, double seconds, long[] firstAudioMs, long[] turnMs,
+						  int asrLimit, int ttsLimit, double rejected, long asrBytes, long asrRequests) {
+	}
+
+	private LoadTest() {
+	}
+
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options = parse(args);
+		int[] levels = Arrays.stream(options.getOrDefault("conversations", "1,4,16,64").split(","))
+				.map(String::trim).mapToInt(Integer::parseInt).toArray();
+		int turns = Integer.parseInt(options.getOrDefault("turns", "10"));
+		int latencyMs = Integer.parseInt(options.getOrDefault("latency-ms", "20"));
+		double speed = Double.parseDouble(options.getOrDefault("speed", "0"));
+		TranscriptionProperties transcriptionProperties = new TranscriptionProperties();
+		transcriptionProperties.setUploadFormat(TranscriptionProperties.UploadFormat.valueOf(
+				options.getOrDefault("upload", "wav").toUpperCase(Locale.ROOT)));
+		transcriptionProperties.getBatch().setEnabled(Boolean.parseBoolean(options.getOrDefault("batch", "false")));
+
+		System.out.printf("%d turns per conversation, %d ms backend latency, replay speed %s, %s upload%s%n", turns, latencyMs, speed,
+				transcriptionProperties.getUploadFormat(), transcriptionProperties.getBatch().isEnabled() ? " in batches" : "");
+		System.out.printf("%13s %7s %7s %9s | %28s | %28s | %9s %9s %8s %9s %9s%n", "conversations", "turns", "failed", "turns/s",
+				"first audio p50/p90/p99 ms", "turn p50/p90/p99 ms", "asr limit", "tts limit", "rejected", "asr KB/s", "asr req/s");
+		try (StubBackends backends = new StubBackends(latencyMs, Fixtures.llmAnswer())) {
+			for (int level : levels) {
+				Result result = run(backends, transcriptionProperties, level, turns, speed);
+				System.out.printf("%13d %7d %7d %9.1f | %28s | %28s | %9d %9d %8.0f %9.0f %9.1f%n", result.conversations(), result.turns(), result.failed(),
+						result.turns() / result.seconds(), percentiles(result.firstAudioMs()), percentiles(result.turnMs()),
+						result.asrLimit(), result.ttsLimit(), result.rejected(), result.asrBytes() / 1024.0 / result.seconds(),
+						result.asrRequests() / result.seconds());
+			}
+		}
+	}
+
+	private static Result run(StubBackends backends, TranscriptionProperties transcriptionProperties, int conversations,
+							  int turns, double speed) throws Exception {
+		HttpTransport httpTransport = new HttpTransport(backends.httpProperties());
+		TtsProperties ttsProperties = new TtsProperties();
+		ttsProperties.getCache().setEnabled(false);
+		TextSplitter textSplitter = new TextSplitter(ttsProperties);
+		AudioPlayerService audioPlayerService = new AudioPlayerService();
+		TtsAudioCache ttsAudioCache = new TtsAudioCache(ttsProperties, new SimpleMeterRegistry());
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		TurnMetrics turnMetrics = new TurnMetrics(meterRegistry);
+		BackendLimiters backendLimiters = new BackendLimiters(new LimitProperties(), meterRegistry);
+		AsrService asrService = new AsrService(httpTransport, backendLimiters, transcriptionProperties, new ObjectMapper());
+		LlmChatService llmChatService = new LlmChatService(textSplitter, new ObjectMapper(), new LlmProperties(), httpTransport);
+		TtsService ttsService = new TtsService(audioPlayerService, textSplitter, ttsProperties, ttsAudioCache, httpTransport, backendLimiters, turnMetrics);
+		ConversationEngine engine = new ConversationEngine(llmChatService, ttsService, turnMetrics, new TurnJournal(new JournalProperties()));
+
+		ConcurrentLinkedQueue<Long> firstAudio = new ConcurrentLinkedQueue<>();
+		ConcurrentLinkedQueue<Long> turnDurations = new ConcurrentLinkedQueue<>();
+		AtomicInteger failed = new AtomicInteger();
+		byte[] speech = Fixtures.speechPcm();
+		long asrBytesBefore = backends.asrBytes();
+		long asrRequestsBefore = backends.asrRequests();
+		long start = System.nanoTime();
+		try (ExecutorService users = Executors.newVirtualThreadPerTaskExecutor()) {
+			List<Future<?>> running = new ArrayList<>();
+			for (int i = 0; i < conversations; i++) {
+				ConversationSession session = new ConversationSession("load-" + i, (clip, onStart) -> {
+					if (onStart != null) onStart.run();
+				}, turns);
+				running.add(users.submit(() -> {
+					converse(session, speech, speed, turns, asrService, engine, turnMetrics, firstAudio, turnDurations, failed);
+					return null;
+				}));
+			}
+			for (Future<?> conversation : running) {
+				conversation.get();
+			}
+		} finally {
+			engine.shutdown();
+			ttsService.shutdown();
+			ttsAudioCache.close();
+			audioPlayerService.shutdown();
+			httpTransport.close();
+		}
+		double seconds = (System.nanoTime() - start) / (double) TimeUnit.SECONDS.toNanos(1);
+		double rejected = meterRegistry.find("speaking.backend.rejected").counters().stream().mapToDouble(Counter::count).sum();
+		return new Result(conversations, conversations * turns, failed.get(), seconds,
+				sorted(firstAudio), sorted(turnDurations),
+				backendLimiters.asr().limit(), backendLimiters.tts().limit(), rejected, backends.asrBytes() - asrBytesBefore,
+				backends.asrRequests() - asrRequestsBefore);
+	}
+
+	// One user speaking the fixture again and again, waiting for each answer before the next utterance
+	private static void converse(ConversationSession session, byte[] speech, double speed, int turns,
+								 AsrService asrService, ConversationEngine engine, TurnMetrics turnMetrics,
+								 ConcurrentLinkedQueue<Long> firstAudio, ConcurrentLinkedQueue<Long> turnDurations,
+								 AtomicInteger failed) throws IOException {
+		ReplayAudioSource source = new ReplayAudioSource(() -> new ByteArrayInputStream(speech), speed, true, 0);
+		source.open(Fixtures.FORMAT);
+		source.start();
+		PcmRingBuffer ring = new PcmRingBuffer(UTTERANCE_BYTES, new WavHeader(Fixtures.FORMAT));
+		try {
+			for (int i = 0; i < turns; i++) {
+				ring.anchor(ring.position());
+				long utteranceStart = ring.position();
+				int read = source.read(ring.array(), ring.offsetOf(utteranceStart), UTTERANCE_BYTES);
+				ring.commit(read);
+
+				TurnTrace trace = turnMetrics.startTurn("load");
+				trace.speechEnded();
+				AudioSegment utterance = ring.segment(utteranceStart, utteranceStart + read);
+				String transcript;
+				try {
+					transcript = turnMetrics.time(trace, TurnStage.ASR_REQUEST, () -> asrService.transcribeAudio(utterance));
+				} catch (RuntimeException e) {
+					failed.incrementAndGet();
+					continue;
+				} finally {
+					utterance.release();
+				}
+
+				ConversationTurn turn = engine.submit(session, transcript, trace);
+				if (turn.completion().join().status() != TurnStatus.COMPLETED) {
+					failed.incrementAndGet();
+					continue;
+				}
+				TurnTrace.Timings timings = trace.timings();
+				if (timings.timeToFirstAudioMs() != null) firstAudio.add(timings.timeToFirstAudioMs());
+				if (timings.durationMs() != null) turnDurations.add(timings.durationMs());
+			}
+		} finally {
+			source.close();
+		}
+	}
+
+	private static String percentiles(long[] sorted) {
+		if (sorted.length == 0) return "-";
+		return percentile(sorted, 0.5) + " / " + percentile(sorted, 0.9) + " / " + percentile(sorted, 0.99);
+	}
+
+	private static long percentile(long[] sorted, double quantile) {
+		int index = (int) Math.ceil(quantile * sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+	}
+
+	private static long[] sorted(ConcurrentLinkedQueue<Long> values) {
+		return values.stream().mapToLong(Long::longValue).sorted().toArray();
+	}
+
+	private static Map<String, String> parse(String[] args) {
+		Map<String, String> options = new HashMap<>();
+		for (String arg : args) {
+			int separator = arg.indexOf('=');
+			if (separator < 0) {
+				throw new IllegalArgumentException("Expected key=value, got " + arg);
+			}
+			options.put(arg.substring(0, separator), arg.substring(separator + 1));
+		}
+		return options;
+	}
+}
@@ -0,0 +1,155 @@
+package de.sven.bayer.speaking_llm.benchmark;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Startup benchmark: starts the packaged application again and again and measures the time from
+ * launching the JVM until {@code /actuator/health} answers, i.e. until the service accepts work.
+ * Compares the fat jar, the extracted jar, the extracted jar with the AOT-processed context and
+ * with the class data sharing archive on top. Build the application with
+ * {@code mvn -Pfast-startup package} first.
+ * <p>
+ * Options as {@code key=value}: {@code runs} per mode (5), {@code jar} (the fat jar in target) and
+ * {@code app} (the extracted application, target/app).
+ */
+public final class StartupTest {
+	private static final Duration STARTUP_TIMEOUT = Duration.ofMinutes(2);
+	private static final long POLL_MS = 10;
+
+	private record Mode(String name, Path jar, List<String> jvmArgs) {
+	}
+
+	private StartupTest() {
+	}
+
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options = parse(args);
+		int runs = Integer.parseInt(options.getOrDefault("runs", "5"));
+		Path fatJar = Path.of(options.getOrDefault("jar", fatJar().toString()));
+		Path app = Path.of(options.getOrDefault("app", "target/app"));
+		Path extractedJar = app.resolve(fatJar.getFileName());
+		Path archive = app.resolve("app.jsa");
+		if (!Files.exists(extractedJar) || !Files.exists(archive)) {
+			throw new IllegalStateException("No extracted application with CDS archive in " + app + ", run mvn -Pfast-startup package first");
+		}
+
+		List<Mode> modes = List.of(
+				new Mode("fat jar", fatJar, List.of()),
+				new Mode("extracted", extractedJar, List.of()),
+				new Mode("extracted + AOT", extractedJar, List.of("-Dspring.aot.enabled=true")),
+				new Mode("extracted + AOT + CDS", extractedJar, List.of("-Dspring.aot.enabled=true", "-XX:SharedArchiveFile=" + archive)));
+
+		System.out.printf("%d runs per mode, time until the health endpoint answers%n", runs);
+		System.out.printf("%24s | %8s %8s %8s | %8s%n", "mode", "min ms", "p50 ms", "max ms", "vs jar");
+		long baseline = 0;
+		try (HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build()) {
+			for (Mode mode : modes) {
+				long[] millis = new long[runs];
+				for (int i = 0; i < runs; i++) {
+					millis[i] = startOnce(client, mode);
+				}
+				Arrays.sort(millis);
+				long median = millis[runs / 2];
+				if (baseline == 0) {
+					baseline = median;
+				}
+				System.out.printf("%24s | %8d %8d %8d | %7.2fx%n", mode.name(), millis[0], median, millis[runs - 1],
+						(double) baseline / median);
+			}
+		}
+	}
+
+	// Launches the application and returns the milliseconds until its health endpoint answered
+	private static long startOnce(HttpClient client, Mode mode) throws Exception {
+		int port = freePort();
+		List<String> command = new ArrayList<>();
+		command.add(ProcessHandle.current().info().command().orElse("java"));
+		if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+			command.addAll(List.of("--add-modules", "jdk.incubator.vector"));
+		}
+		command.addAll(mode.jvmArgs());
+		// No backends, sound card or disk cache are needed to accept requests
+		command.addAll(List.of("-Dserver.port=" + port, "-Dspeaking-llm.tts.cache.directory=",
+				"-Dspeaking-llm.audio-source.type=replay", "-Dspeaking-llm.audio-source.replay.file=" + silence(),
+				"-jar", mode.jar().toString()));
+		HttpRequest health = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/actuator/health"))
+				.timeout(Duration.ofSeconds(1)).build();
+
+		long start = System.nanoTime();
+		Process process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+		try {
+			long deadline = start + STARTUP_TIMEOUT.toNanos();
+			while (System.nanoTime() - deadline < 0) {
+				if (!process.isAlive()) {
+					throw new IllegalStateException(mode.name() + " exited with " + process.exitValue() + ": " + String.join(" ", command));
+				}
+				try {
+					client.send(health, HttpResponse.BodyHandlers.discarding());
+					return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+				} catch (ConnectException | HttpTimeoutException e) {
+					// Not listening yet, or listening before the first request can be served
+					Thread.sleep(POLL_MS);
+				}
+			}
+			throw new IllegalStateException(mode.name() + " did not answer within " + STARTUP_TIMEOUT);
+		} finally {
+			process.destroy();
+			if (!process.waitFor(30, TimeUnit.SECONDS)) {
+				process.destroyForcibly();
+			}
+		}
+	}
+
+	private static Path fatJar() throws IOException {
+		try (Stream<Path> files = Files.list(Path.of("target"))) {
+			return files.filter(file -> file.getFileName().toString().endsWith(".jar"))
+					.filter(file -> !file.getFileName().toString().endsWith("-plain.jar"))
+					.findFirst()
+					.orElseThrow(() -> new IllegalStateException("No jar in target, run mvn -Pfast-startup package first"));
+		}
+	}
+
+	// A second of silence, so the recorder has a source without a sound card
+	private static Path silence() throws IOException {
+		Path file = Path.of("target", "startup-silence.pcm");
+		if (!Files.exists(file)) {
+			Files.write(file, new byte[32000]);
+		}
+		return file.toAbsolutePath();
+	}
+
+	private static int freePort() throws IOException {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			return socket.getLocalPort();
+		}
+	}
+
+	private static Map<String, String> parse(String[] args) {
+		Map<String, String> options = new HashMap<>();
+		for (String arg : args) {
+			int separator = arg.indexOf('=');
+			if (separator < 0) {
+				throw new IllegalArgumentException("Expected key=value, got " + arg);
+			}
+			options.put(arg.substring(0, separator), arg.substring(separator + 1));
+		}
+		return options;
+	}
+}
@@ -0,0 +1,131 @@
+package de.sven.bayer.speaking_llm.benchmark;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import de.sven.bayer.speaking_llm.component.audio.capture.WavHeader;
+import de.sven.bayer.speaking_llm.config.HttpProperties;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process stand-ins for whisper, the chatbot and Zonos. Each request waits for the configured
+ * latency; the chatbot streams the answer fixture as server-sent events in token-sized deltas.
+ * Whisper also takes batches of files on {@code /asr/batch} and answers them with a JSON array.
+ */
+final class StubBackends implements AutoCloseable {
+	static final String TRANSCRIPT = "Tell me about your weekend at the lake.";
+	private static final int TOKEN_CHARS = 4;
+	// Half a second of silence as the synthesized clip
+	private static final int CLIP_PCM_BYTES = 16000;
+
+	private final HttpServer server;
+	private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+	private final int latencyMs;
+	private final byte[] answerEvents;
+	private final byte[] clip;
+	private final LongAdder asrBytes = new LongAdder();
+	private final LongAdder asrRequests = new LongAdder();
+
+	static {
+		// Without it Nagle's algorithm holds back the response body behind the headers for ~40 ms
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+	}
+
+	StubBackends(int latencyMs, String answer) throws IOException {
+		this.latencyMs = latencyMs;
+		this.answerEvents = toServerSentEvents(answer);
+		WavHeader header = new WavHeader(Fixtures.FORMAT);
+		this.clip = new byte[WavHeader.LENGTH + CLIP_PCM_BYTES];
+		System.arraycopy(header.forDataLength(CLIP_PCM_BYTES), 0, clip, 0, WavHeader.LENGTH);
+
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.setExecutor(executor);
+		server.createContext("/asr", exchange -> {
+			asrRequests.increment();
+			asrBytes.add(exchange.getRequestBody().transferTo(OutputStream.nullOutputStream()));
+			respond(exchange, "text/plain", TRANSCRIPT.getBytes(StandardCharsets.UTF_8));
+		});
+		server.createContext("/asr/batch", exchange -> {
+			asrRequests.increment();
+			byte[] body = exchange.getRequestBody().readAllBytes();
+			asrBytes.add(body.length);
+			int files = new String(body, StandardCharsets.ISO_8859_1).split("name=\"audio_file\"", -1).length - 1;
+			respond(exchange, "application/json", ("[" + String.join(",", Collections.nCopies(files, "\"" + TRANSCRIPT + "\"")) + "]")
+					.getBytes(StandardCharsets.UTF_8));
+		});
+		server.createContext("/talktoLLM/stream", exchange -> {
+			exchange.getRequestBody().transferTo(OutputStream.nullOutputStream());
+			respond(exchange, "text/event-stream", answerEvents);
+		});
+		server.createContext("/tts", exchange -> {
+			exchange.getRequestBody().transferTo(OutputStream.nullOutputStream());
+			respond(exchange, "audio/wav", clip);
+		});
+		server.start();
+	}
+
+	/**
+	 * Transport settings pointing all three backends at this stub.
+	 */
+	HttpProperties httpProperties() {
+		String baseUrl = "http://localhost:" + server.getAddress().getPort();
+		HttpProperties properties = new HttpProperties();
+		properties.getAsr().setBaseUrl(baseUrl);
+		properties.getLlm().setBaseUrl(baseUrl);
+		properties.getTts().setBaseUrl(baseUrl);
+		return properties;
+	}
+
+	/**
+	 * Bytes uploaded to the ASR stub so far.
+	 */
+	long asrBytes() {
+		return asrBytes.sum();
+	}
+
+	/**
+	 * Requests sent to the ASR stub so far, a batch counting once.
+	 */
+	long asrRequests() {
+		return asrRequests.sum();
+	}
+
+	private void respond(HttpExchange exchange, String contentType, byte[] body) throws IOException {
+		try {
+			if (latencyMs > 0) {
+				Thread.sleep(latencyMs);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		exchange.getResponseHeaders().set("Content-Type", contentType);
+		exchange.getResponseHeaders().set("X-Conversation-Id", "benchmark");
+		exchange.sendResponseHeaders(200, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	private static byte[] toServerSentEvents(String answer) {
+		StringBuilder events = new StringBuilder();
+		for (int i = 0; i < answer.length(); i += TOKEN_CHARS) {
+			String token = answer.substring(i, Math.min(answer.length(), i + TOKEN_CHARS));
+			events.append("data: ").append(token.replace("\n", "\ndata: ")).append("\n\n");
+		}
+		events.append("data: [DONE]\n\n");
+		return events.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+}
@@ -0,0 +1,60 @@
+package de.sven.bayer.speaking_llm.benchmark;
+
+import de.sven.bayer.speaking_llm.component.SentenceStream;
+import de.sven.bayer.speaking_llm.component.TextSplitter;
+import de.sven.bayer.speaking_llm.config.TtsProperties;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sentence splitting of a typical answer, once on the whole text as for blocking answers and once
+ * fed in token-sized chunks as it arrives from the streaming endpoint, sentence by sentence and in
+ * growing TTS chunks.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TextSplitterBenchmark {
+	// Roughly the size of the deltas the chatbot streams
+	private static final int TOKEN_CHARS = 4;
+
+	@Param({"sentences", "chunks"})
+	public String mode;
+
+	private TextSplitter textSplitter;
+	private String answer;
+	private List<String> tokens;
+
+	@Setup
+	public void setUp() {
+		TtsProperties ttsProperties = new TtsProperties();
+		ttsProperties.getChunking().setEnabled(mode.equals("chunks"));
+		textSplitter = new TextSplitter(ttsProperties);
+		answer = Fixtures.llmAnswer();
+		tokens = new ArrayList<>();
+		for (int i = 0; i < answer.length(); i += TOKEN_CHARS) {
+			tokens.add(answer.substring(i, Math.min(answer.length(), i + TOKEN_CHARS)));
+		}
+	}
+
+	@Benchmark
+	public List<String> splitIntoSentences() {
+		return textSplitter.splitIntoSentences(answer);
+	}
+
+	@Benchmark
+	public void sentenceStream(Blackhole blackhole) {
+		SentenceStream stream = textSplitter.sentenceStream(blackhole::consume);
+		for (String token : tokens) {
+			stream.append(token);
+		}
+		stream.flush();
+	}
+}
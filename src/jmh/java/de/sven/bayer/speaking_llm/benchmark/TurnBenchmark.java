@@ -0,0 +1,109 @@
+package de.sven.bayer.speaking_llm.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.sven.bayer.speaking_llm.component.TextSplitter;
+import de.sven.bayer.speaking_llm.component.audio.capture.AudioSegment;
+import de.sven.bayer.speaking_llm.component.audio.capture.PcmRingBuffer;
+import de.sven.bayer.speaking_llm.component.audio.capture.WavHeader;
+import de.sven.bayer.speaking_llm.component.http.HttpTransport;
+import de.sven.bayer.speaking_llm.component.limit.BackendLimiters;
+import de.sven.bayer.speaking_llm.component.metrics.TurnMetrics;
+import de.sven.bayer.speaking_llm.component.tts.TtsAudioCache;
+import de.sven.bayer.speaking_llm.config.LimitProperties;
+import de.sven.bayer.speaking_llm.config.LlmProperties;
+import de.sven.bayer.speaking_llm.config.TranscriptionProperties;
+import de.sven.bayer.speaking_llm.config.TtsProperties;
+import de.sven.bayer.speaking_llm.model.conversation.LlmAnswerWithThink;
+import de.sven.bayer.speaking_llm.model.conversation.MessageFromUser;
+import de.sven.bayer.speaking_llm.service.AsrService;
+import de.sven.bayer.speaking_llm.service.AudioPlayerService;
+import de.sven.bayer.speaking_llm.service.LlmChatService;
+import de.sven.bayer.speaking_llm.service.SynthesisPipeline;
+import de.sven.bayer.speaking_llm.service.TtsService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One full turn against local stub backends: upload the captured utterance to ASR, stream the
+ * answer from the chatbot and synthesize every sentence, until the last clip is ready for the
+ * speaker. Playback itself is left out. With a backend latency the result shows how much of it
+ * the pipeline hides by overlapping LLM streaming and synthesis.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TurnBenchmark {
+	private static final int UTTERANCE_BYTES = 3 * 32000;
+
+	@Param({"0", "20"})
+	public int backendLatencyMs;
+
+	private StubBackends backends;
+	private HttpTransport httpTransport;
+	private AudioPlayerService audioPlayerService;
+	private TtsAudioCache ttsAudioCache;
+	private AsrService asrService;
+	private LlmChatService llmChatService;
+	private TtsService ttsService;
+	private PcmRingBuffer ring;
+
+	@Setup
+	public void setUp() throws IOException {
+		backends = new StubBackends(backendLatencyMs, Fixtures.llmAnswer());
+		httpTransport = new HttpTransport(backends.httpProperties());
+		TtsProperties ttsProperties = new TtsProperties();
+		ttsProperties.getCache().setEnabled(false);
+		TextSplitter textSplitter = new TextSplitter(ttsProperties);
+		audioPlayerService = new AudioPlayerService();
+		ttsAudioCache = new TtsAudioCache(ttsProperties, new SimpleMeterRegistry());
+
+		BackendLimiters backendLimiters = new BackendLimiters(new LimitProperties(), new SimpleMeterRegistry());
+		asrService = new AsrService(httpTransport, backendLimiters, new TranscriptionProperties(), new ObjectMapper());
+		llmChatService = new LlmChatService(textSplitter, new ObjectMapper(), new LlmProperties(), httpTransport);
+		ttsService = new TtsService(audioPlayerService, textSplitter, ttsProperties, ttsAudioCache, httpTransport, backendLimiters,
+				new TurnMetrics(new SimpleMeterRegistry()));
+
+		byte[] pcm = Fixtures.speechPcm();
+		ring = new PcmRingBuffer(UTTERANCE_BYTES, new WavHeader(Fixtures.FORMAT));
+		System.arraycopy(pcm, 0, ring.array(), 0, Math.min(pcm.length, UTTERANCE_BYTES));
+		ring.commit(UTTERANCE_BYTES);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		ttsService.shutdown();
+		ttsAudioCache.close();
+		audioPlayerService.shutdown();
+		httpTransport.close();
+		backends.close();
+	}
+
+	@Benchmark
+	public int turn() {
+		AudioSegment utterance = ring.segment(0, UTTERANCE_BYTES);
+		String transcript;
+		try {
+			transcript = asrService.transcribeAudio(utterance);
+		} finally {
+			utterance.release();
+		}
+
+		MessageFromUser message = new MessageFromUser();
+		message.setMessage(transcript);
+		AtomicInteger clips = new AtomicInteger();
+		try (SynthesisPipeline pipeline = ttsService.startAnswer(clip -> clips.incrementAndGet())) {
+			LlmAnswerWithThink answer = llmChatService.streamResponseForMessage(message, pipeline::submit);
+			if (answer.answer().isEmpty()) {
+				throw new IllegalStateException("Empty answer from stub");
+			}
+		}
+		return clips.get();
+	}
+}
@@ -0,0 +1,177 @@
+package de.sven.bayer.speaking_llm.component;
+
+import de.sven.bayer.speaking_llm.config.TtsProperties;
+
+import java.text.BreakIterator;
+import java.util.function.Consumer;
+
+/**
+ * Collects text that arrives in pieces and hands it to the consumer in chunks for TTS. A sentence is
+ * only finished once the next one has started, and the last one only on {@link #flush()}, because a
+ * trailing period may still turn out to be an abbreviation or a decimal point.
+ * <p>
+ * Without chunk sizes every sentence is a chunk. With them, the first chunk goes out as soon as its
+ * sentence is finished, or is cut at the last clause boundary once it grows past the first chunk's
+ * size, to get the first audio out early. Later chunks join sentences up to a target size that grows
+ * from chunk to chunk, which saves TTS requests while earlier chunks are playing. Sentences longer
+ * than the largest chunk are cut at clause boundaries or, failing that, between words.
+ * <p>
+ * The break iterator is only run when the new text may end a sentence. One instance per stream, not
+ * thread-safe.
+ */
+public class SentenceStream {
+    // Text can only end a sentence after one of these, the break iterator confirms it
+    private static final String SENTENCE_ENDS = ".!?…。！？．\n\r\u0085\u2028\u2029";
+    private static final String CLAUSE_ENDS = ",;:–—";
+    // Full-width marks need no space after them
+    private static final String WIDE_CLAUSE_ENDS = "，、；：";
+
+    private final BreakIterator iterator;
+    private final TtsProperties.Chunking.Sizes sizes;
+    private final Consumer<String> chunkConsumer;
+    private final StringBuilder buffer = new StringBuilder();
+    private final StringBuilder chunk = new StringBuilder();
+    private boolean mayEndSentence;
+    private int emittedChunks;
+
+    /**
+     * @param sizes chunk sizes, or {@code null} to hand out sentence by sentence
+     */
+    SentenceStream(BreakIterator iterator, TtsProperties.Chunking.Sizes sizes, Consumer<String> chunkConsumer) {
+        this.iterator = iterator;
+        this.sizes = sizes;
+        this.chunkConsumer = chunkConsumer;
+    }
+
+    public void append(String text) {
+        if (text == null || text.isEmpty()) return;
+        buffer.append(text);
+        mayEndSentence |= containsAny(text, SENTENCE_ENDS);
+        if (mayEndSentence) {
+            takeSentences(false);
+        }
+        if (sizes != null) {
+            cutOverlong();
+        }
+    }
+
+    public void flush() {
+        takeSentences(true);
+        emitChunk();
+    }
+
+    public boolean hasEmitted() {
+        return emittedChunks > 0;
+    }
+
+    // Hands on the finished sentences, and on flush the last one too
+    private void takeSentences(boolean all) {
+        String current = buffer.toString();
+        iterator.setText(current);
+        int start = iterator.first();
+        int consumed = 0;
+        for (int end = iterator.next(); end != BreakIterator.DONE && (all || end < current.length()); start = end, end = iterator.next()) {
+            onSentence(current.substring(start, end));
+            consumed = end;
+        }
+        buffer.delete(0, consumed);
+        // An abbreviation keeps the sentence open, check again with the next text
+        mayEndSentence = containsAny(buffer, SENTENCE_ENDS);
+    }
+
+    private void onSentence(String sentence) {
+        if (sizes == null) {
+            emit(sentence);
+            return;
+        }
+        String rest = sentence;
+        int cut;
+        while (rest.length() > limit() && (cut = cutPoint(rest, rest.length() > sizes.getMaxChars())) > 0) {
+            emitChunk();
+            emit(rest.substring(0, cut));
+            rest = rest.substring(cut);
+        }
+        addToChunk(rest);
+    }
+
+    private void addToChunk(String sentence) {
+        if (emittedChunks == 0) {
+            emit(sentence);
+            return;
+        }
+        int target = targetChars();
+        if (!chunk.isEmpty() && chunk.length() + sentence.length() > target) {
+            emitChunk();
+            target = targetChars();
+        }
+        chunk.append(sentence);
+        if (chunk.length() >= target) {
+            emitChunk();
+        }
+    }
+
+    // The sentence in progress is too long to wait for its end
+    private void cutOverlong() {
+        int cut;
+        while (buffer.length() > limit() && (cut = cutPoint(buffer, buffer.length() > sizes.getMaxChars())) > 0) {
+            emitChunk();
+            emit(buffer.substring(0, cut));
+            buffer.delete(0, cut);
+            mayEndSentence = containsAny(buffer, SENTENCE_ENDS);
+        }
+    }
+
+    private int limit() {
+        return emittedChunks == 0 ? sizes.getFirstMaxChars() : sizes.getMaxChars();
+    }
+
+    private int targetChars() {
+        double target = sizes.getFirstMaxChars() * Math.pow(sizes.getGrowth(), emittedChunks);
+        return (int) Math.min(sizes.getMaxChars(), target);
+    }
+
+    // Position after the last clause boundary within the limit, or between words if a cut is forced; -1 if none
+    private int cutPoint(CharSequence text, boolean force) {
+        int limit = Math.min(limit(), text.length() - 1);
+        for (int i = limit - 1; i >= sizes.getMinChars(); i--) {
+            char c = text.charAt(i);
+            if (WIDE_CLAUSE_ENDS.indexOf(c) >= 0
+                    || (CLAUSE_ENDS.indexOf(c) >= 0 && Character.isWhitespace(text.charAt(i + 1)))) {
+                return i + 1;
+            }
+        }
+        if (!force) {
+            return -1;
+        }
+        for (int i = limit; i > sizes.getMinChars(); i--) {
+            if (Character.isWhitespace(text.charAt(i))) {
+                return i;
+            }
+        }
+        return limit;
+    }
+
+    private void emitChunk() {
+        if (!chunk.isEmpty()) {
+            emit(chunk.toString());
+            chunk.setLength(0);
+        }
+    }
+
+    private void emit(String text) {
+        String trimmed = text.trim();
+        if (!trimmed.isEmpty()) {
+            emittedChunks++;
+            chunkConsumer.accept(trimmed);
+        }
+    }
+
+    private static boolean containsAny(CharSequence text, String chars) {
+        for (int i = 0; i < text.length(); i++) {
+            if (chars.indexOf(text.charAt(i)) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
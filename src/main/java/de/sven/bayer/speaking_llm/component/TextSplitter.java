@@ -1,28 +1,43 @@
 package de.sven.bayer.speaking_llm.component;
 
+import de.sven.bayer.speaking_llm.config.TtsProperties;
 import org.springframework.stereotype.Component;
 
 import java.text.BreakIterator;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
+import java.util.function.Consumer;
 
-// In TextSplitter.java
+/**
+ * Splits answers into the chunks that are synthesized one by one, see {@link SentenceStream}. The
+ * sentence rules of the configured locale are loaded once; every stream works on its own copy of
+ * the break iterator, so streams on different threads share no state.
+ */
 @Component
 public class TextSplitter {
+    private final BreakIterator prototype;
+    private final TtsProperties.Chunking.Sizes sizes;
 
+    public TextSplitter(TtsProperties ttsProperties) {
+        TtsProperties.Chunking chunking = ttsProperties.getChunking();
+        Locale locale = chunking.resolveLocale();
+        this.prototype = BreakIterator.getSentenceInstance(locale);
+        this.sizes = chunking.isEnabled() ? chunking.sizesFor(locale) : null;
+    }
+
+    /**
+     * Splits a complete answer the same way its stream would be.
+     */
     public List<String> splitIntoSentences(String text) {
-        List<String> sentences = new ArrayList<>();
-        BreakIterator iterator = BreakIterator.getSentenceInstance(Locale.US);
-        iterator.setText(text);
-        int start = iterator.first();
-        for (int end = iterator.next(); end != BreakIterator.DONE; start = end, end = iterator.next()) {
-            String sentence = text.substring(start, end).trim();
-            if (!sentence.isEmpty()) {
-                //sentence = "╚╚╚╚" + sentence + "╚╚╚╚";
-                sentences.add(sentence);
-            }
-        }
-        return sentences;
+        List<String> chunks = new ArrayList<>();
+        SentenceStream stream = sentenceStream(chunks::add);
+        stream.append(text);
+        stream.flush();
+        return chunks;
+    }
+
+    public SentenceStream sentenceStream(Consumer<String> sentenceConsumer) {
+        return new SentenceStream((BreakIterator) prototype.clone(), sizes, sentenceConsumer);
     }
 }
@@ -0,0 +1,34 @@
+package de.sven.bayer.speaking_llm.component.audio;
+
+import de.sven.bayer.speaking_llm.component.audio.dsp.PcmDsp;
+
+public final class PcmNormalizer {
+    private static final double TARGET_PEAK = 0.9 * Short.MAX_VALUE;
+    private static final double MAX_GAIN = 4.0;
+
+    private PcmNormalizer() {
+    }
+
+    /**
+     * Boosts 16-bit little-endian PCM so its peak reaches 90% of full scale, by at most 4x.
+     */
+    public static byte[] normalize(byte[] pcmData) {
+        byte[] normalized = pcmData.clone();
+        normalize(normalized, 0, normalized.length / 2);
+        return normalized;
+    }
+
+    /**
+     * Like {@link #normalize(byte[])} in place, after removing the DC offset so it does not count
+     * towards the peak.
+     */
+    public static void normalize(byte[] pcm, int offset, int samples) {
+        PcmDsp dsp = PcmDsp.get();
+        PcmDsp.Levels levels = dsp.measure(pcm, offset, samples);
+        int dcOffset = (int) Math.round(levels.mean());
+        int peak = Math.max(levels.max() - dcOffset, dcOffset - levels.min());
+        // Silence stays as it is
+        float gain = peak <= 0 ? 1f : (float) Math.min(TARGET_PEAK / peak, MAX_GAIN);
+        dsp.adjust(pcm, offset, samples, dcOffset, gain);
+    }
+}
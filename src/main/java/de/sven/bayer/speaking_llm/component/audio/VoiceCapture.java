@@ -0,0 +1,358 @@
+package de.sven.bayer.speaking_llm.component.audio;
+
+import de.sven.bayer.speaking_llm.component.audio.capture.PcmRingBuffer;
+import de.sven.bayer.speaking_llm.component.audio.capture.WavHeader;
+import de.sven.bayer.speaking_llm.component.audio.source.AudioSource;
+import de.sven.bayer.speaking_llm.component.audio.transcription.SegmentCutter;
+import de.sven.bayer.speaking_llm.component.audio.transcription.StreamingTranscriber;
+import de.sven.bayer.speaking_llm.component.audio.vad.VoiceActivity;
+import de.sven.bayer.speaking_llm.component.audio.vad.VoiceActivityDetector;
+import de.sven.bayer.speaking_llm.component.metrics.TurnMetrics;
+import de.sven.bayer.speaking_llm.component.metrics.TurnStage;
+import de.sven.bayer.speaking_llm.component.metrics.TurnTrace;
+import de.sven.bayer.speaking_llm.config.BargeInProperties;
+import de.sven.bayer.speaking_llm.config.SpeculationProperties;
+import de.sven.bayer.speaking_llm.config.TranscriptionProperties;
+import de.sven.bayer.speaking_llm.service.SpeculativeAnswer;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+/**
+ * Turns one stream of captured PCM into utterances: detects speech, cuts it into segments that are
+ * transcribed while the user is still talking, decides whether speech during an answer is a
+ * barge-in and asks for a speculative answer when the user pauses. Audio is written straight into
+ * a ring buffer, either pulled from an {@link AudioSource} or pushed from a network buffer, and
+ * processed frame by frame.
+ * <p>
+ * One instance per audio stream; it is not thread-safe and has to be fed from one thread at a time.
+ */
+@Slf4j
+public class VoiceCapture {
+    private static final int FRAMES_PER_READ = 4;
+    private static final int PRE_ROLL_FRAMES = 10;
+    private static final int RING_BUFFER_SECONDS = 30;
+
+    /**
+     * Callbacks into whoever answers the utterances of this stream.
+     */
+    public interface Listener {
+        /**
+         * Whether an answer is being generated or played; speech then has to last the barge-in
+         * time before it counts as the user's turn.
+         */
+        boolean replyActive();
+
+        /**
+         * The user talked over the answer for the barge-in time.
+         */
+        void interruptReply();
+
+        /**
+         * The user pauses; returns the speculative answer to the transcript so far, or {@code null}.
+         */
+        SpeculativeAnswer speculate(CompletableFuture<String> transcript, TurnTrace trace);
+    }
+
+    /**
+     * A finished utterance whose last segments may still be transcribed.
+     */
+    public static final class Utterance {
+        private final StreamingTranscriber transcriber;
+        private final TurnTrace trace;
+        private final SpeculativeAnswer speculation;
+        private final TurnMetrics turnMetrics;
+        private volatile boolean interrupted;
+
+        private Utterance(StreamingTranscriber transcriber, TurnTrace trace, SpeculativeAnswer speculation, TurnMetrics turnMetrics) {
+            this.transcriber = transcriber;
+            this.trace = trace;
+            this.speculation = speculation;
+            this.turnMetrics = turnMetrics;
+        }
+
+        public TurnTrace trace() {
+            return trace;
+        }
+
+        /**
+         * The answer requested during the final pause, or {@code null}.
+         */
+        public SpeculativeAnswer speculation() {
+            return speculation;
+        }
+
+        /**
+         * Waits for the remaining segments and returns the whole transcript.
+         */
+        public String awaitTranscript() throws InterruptedException {
+            String transcript = transcriber.awaitTranscript();
+            turnMetrics.sinceStart(trace, TurnStage.TRANSCRIPT_READY);
+            return transcript;
+        }
+
+        /**
+         * Drops the utterance without answering it.
+         */
+        public void discard() {
+            if (speculation != null) {
+                speculation.discard();
+            }
+        }
+
+        /**
+         * Barge-in before the utterance became a turn: it is not answered, and a speculative answer
+         * that is already running is cancelled.
+         */
+        public void interrupt() {
+            interrupted = true;
+            discard();
+        }
+
+        public boolean isInterrupted() {
+            return interrupted;
+        }
+    }
+
+    private final AudioFormat format;
+    private final VoiceActivityDetector voiceActivityDetector;
+    private final Function<TurnTrace, StreamingTranscriber> transcribers;
+    private final BooleanSupplier asrSaturated;
+    private final TurnMetrics turnMetrics;
+    private final String origin;
+    private final Listener listener;
+    private final TranscriptionProperties transcriptionProperties;
+    private final boolean bargeInEnabled;
+    private final boolean speculationEnabled;
+    private final SegmentCutter segmentCutter;
+    private final PcmRingBuffer ringBuffer;
+    private final byte[] discardBuffer;
+    private final int frameBytes;
+    private final int chunkBytes;
+    private final int bargeInFrames;
+    private final int speculationFrames;
+
+    // Position up to which frames have run through the detector
+    private long processed;
+
+    // State of the current utterance
+    private TurnTrace trace;
+    private StreamingTranscriber transcriber;
+    private long segmentStart;
+    private long lastSpeechEnd;
+    private boolean initialSilence;
+    // While an answer plays, speech only counts as the user's turn once it lasted for the barge-in time
+    private boolean confirmed;
+    private int speechFrames;
+    private int pauseFrames;
+    private SpeculativeAnswer speculation;
+
+    VoiceCapture(AudioFormat format, VoiceActivityDetector voiceActivityDetector,
+                 Function<TurnTrace, StreamingTranscriber> transcribers, BooleanSupplier asrSaturated,
+                 TurnMetrics turnMetrics, String origin,
+                 Listener listener, TranscriptionProperties transcriptionProperties,
+                 BargeInProperties bargeInProperties, SpeculationProperties speculationProperties) {
+        this.format = format;
+        this.voiceActivityDetector = voiceActivityDetector;
+        this.transcribers = transcribers;
+        this.asrSaturated = asrSaturated;
+        this.turnMetrics = turnMetrics;
+        this.origin = origin;
+        this.listener = listener;
+        this.transcriptionProperties = transcriptionProperties;
+        this.bargeInEnabled = bargeInProperties.isEnabled();
+        this.speculationEnabled = speculationProperties.isEnabled();
+
+        this.frameBytes = voiceActivityDetector.frameBytes();
+        this.chunkBytes = frameBytes * FRAMES_PER_READ;
+        int frameMs = Math.round(frameBytes * 1000f / format.getFrameSize() / format.getSampleRate());
+        this.segmentCutter = new SegmentCutter(Math.max(1, transcriptionProperties.getCutSearchMs() / frameMs));
+        this.bargeInFrames = Math.max(1, bargeInProperties.getMinSpeechMs() / frameMs);
+        this.speculationFrames = Math.max(1, speculationProperties.getPauseMs() / frameMs);
+
+        // A multiple of the frame size, so no frame wraps around the end of the ring
+        int bytesPerSecond = Math.round(format.getSampleRate()) * format.getFrameSize();
+        int chunks = (RING_BUFFER_SECONDS * bytesPerSecond + chunkBytes - 1) / chunkBytes;
+        this.ringBuffer = new PcmRingBuffer(chunks * chunkBytes, new WavHeader(format));
+        this.discardBuffer = new byte[chunkBytes];
+    }
+
+    /**
+     * Starts listening for the next utterance with a new turn trace. Audio that is captured but not
+     * processed yet becomes part of it. Has to be called before the first {@link #process()}.
+     */
+    public void begin() {
+        trace = turnMetrics.startTurn(origin);
+        transcriber = transcribers.apply(trace);
+        segmentStart = processed;
+        lastSpeechEnd = processed;
+        initialSilence = true;
+        confirmed = true;
+        speechFrames = 0;
+        pauseFrames = 0;
+        speculation = null;
+        voiceActivityDetector.reset();
+        segmentCutter.reset();
+    }
+
+    /**
+     * Starts over at the newest audio, dropping what was captured but not processed.
+     */
+    public void skipToEnd() {
+        long position = ringBuffer.position();
+        processed = position - (position - processed) % frameBytes;
+        begin();
+    }
+
+    /**
+     * Reads one chunk from the source into the ring.
+     *
+     * @return the number of bytes read, or -1 at the end of the source
+     */
+    public int readFrom(AudioSource source) throws IOException {
+        ringBuffer.anchor(segmentStart);
+        long chunkStart = ringBuffer.position();
+        if (ringBuffer.writable(chunkBytes) < chunkBytes) {
+            // ASR is too far behind to free the ring; drop audio rather than stall the line
+            int read = source.read(discardBuffer, 0, chunkBytes);
+            if (read > 0) {
+                log.warn("Capture ring buffer full, dropped {} bytes of audio", read);
+            }
+            return read;
+        }
+        int read = source.read(ringBuffer.array(), ringBuffer.offsetOf(chunkStart), chunkBytes);
+        if (read > 0) {
+            ringBuffer.commit(read - read % frameBytes);
+        }
+        return read;
+    }
+
+    /**
+     * Copies PCM received from the network into the ring. Chunks need not be frame aligned.
+     *
+     * @return the number of bytes dropped because the ring was full
+     */
+    public int write(ByteBuffer pcm) {
+        ringBuffer.anchor(segmentStart);
+        while (pcm.hasRemaining()) {
+            int writable = ringBuffer.writable(pcm.remaining());
+            if (writable == 0) {
+                int dropped = pcm.remaining();
+                pcm.position(pcm.limit());
+                log.warn("Capture ring buffer full, dropped {} bytes of audio", dropped);
+                return dropped;
+            }
+            pcm.get(ringBuffer.array(), ringBuffer.offsetOf(ringBuffer.position()), writable);
+            ringBuffer.commit(writable);
+        }
+        return 0;
+    }
+
+    /**
+     * Runs the captured frames through the detector until an utterance ends. Call {@link #begin()}
+     * before processing further.
+     *
+     * @return the finished utterance, or {@code null} once all complete frames are processed
+     */
+    public Utterance process() {
+        byte[] ring = ringBuffer.array();
+        int segmentBytes = bytesFor(transcriptionProperties.getSegmentMs());
+        int maxMergedBytes = bytesFor(transcriptionProperties.getMaxMergedSegmentMs());
+        int overlapBytes = bytesFor(transcriptionProperties.getOverlapMs());
+        int preRollBytes = frameBytes * PRE_ROLL_FRAMES;
+
+        while (processed + frameBytes <= ringBuffer.position()) {
+            int frameOffset = ringBuffer.offsetOf(processed);
+            VoiceActivity activity = voiceActivityDetector.process(ring, frameOffset);
+            long frameEnd = processed + frameBytes;
+            processed = frameEnd;
+            segmentCutter.onFrame(ring, frameOffset, frameBytes, frameEnd);
+
+            if (initialSilence) {
+                if (activity == VoiceActivity.SPEECH_STARTED) {
+                    // First speech detected, start recording proper
+                    initialSilence = false;
+                    lastSpeechEnd = frameEnd;
+                    confirmed = !bargeInEnabled || !listener.replyActive();
+                    speechFrames = 0;
+                } else {
+                    // Drop pre-speech silence, but keep the frames the attack needed to confirm speech
+                    segmentStart = Math.max(segmentStart, frameEnd - preRollBytes);
+                }
+                continue;
+            }
+            if (activity == VoiceActivity.SPEECH) {
+                lastSpeechEnd = frameEnd;
+                pauseFrames = 0;
+                if (!confirmed && ++speechFrames >= bargeInFrames) {
+                    listener.interruptReply();
+                    confirmed = true;
+                }
+                if (speculation != null) {
+                    // The user goes on talking, the speculated transcript is incomplete
+                    speculation.discard();
+                    speculation = null;
+                }
+            }
+            if (activity == VoiceActivity.PAUSE && confirmed && speculation == null
+                    && speculationEnabled && ++pauseFrames >= speculationFrames) {
+                // Cut at the pause, so the speculated segments are exactly the final ones if the
+                // user stays silent, and ask the LLM with what has been said so far
+                if (lastSpeechEnd > segmentStart) {
+                    transcriber.submit(ringBuffer.segment(segmentStart, frameEnd));
+                    segmentStart = frameEnd;
+                }
+                speculation = listener.speculate(transcriber.transcriptOfSubmitted(), trace);
+            }
+
+            if (activity == VoiceActivity.UTTERANCE_ENDED && !confirmed) {
+                // Too short to interrupt the answer, most likely its own echo or a cough
+                initialSilence = true;
+                segmentStart = frameEnd;
+                continue;
+            }
+
+            if (activity == VoiceActivity.UTTERANCE_ENDED) {
+                trace.speechEnded();
+                if (lastSpeechEnd > segmentStart) {
+                    transcriber.submit(ringBuffer.segment(segmentStart, frameEnd));
+                }
+                segmentStart = frameEnd;
+                Utterance utterance = new Utterance(transcriber, trace, speculation, turnMetrics);
+                speculation = null;
+                return utterance;
+            }
+
+            long segmentLength = frameEnd - segmentStart;
+            if (confirmed && segmentLength >= segmentBytes
+                    && (segmentLength >= maxMergedBytes || !asrSaturated.getAsBoolean())) {
+                // Cut at the quietest recent frame and let the next segment start a little earlier,
+                // the overlapping words are removed again when the transcripts are merged
+                long cut = segmentCutter.quietestCut(segmentStart + overlapBytes);
+                if (cut < 0) cut = frameEnd;
+                transcriber.submit(ringBuffer.segment(segmentStart, cut));
+                segmentStart = cut - overlapBytes;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gives up the utterance in progress, e.g. when the stream closes.
+     */
+    public void abort() {
+        if (speculation != null) {
+            speculation.discard();
+            speculation = null;
+        }
+    }
+
+    private int bytesFor(int millis) {
+        return Math.round(format.getSampleRate() * millis / 1000f) * format.getFrameSize();
+    }
+}
@@ -0,0 +1,83 @@
+package de.sven.bayer.speaking_llm.component.audio;
+
+import de.sven.bayer.speaking_llm.component.audio.capture.AudioSegment;
+import de.sven.bayer.speaking_llm.component.audio.transcription.StreamingTranscriber;
+import de.sven.bayer.speaking_llm.component.audio.vad.VoiceActivityDetectorFactory;
+import de.sven.bayer.speaking_llm.component.journal.TurnJournal;
+import de.sven.bayer.speaking_llm.component.metrics.TurnMetrics;
+import de.sven.bayer.speaking_llm.component.metrics.TurnStage;
+import de.sven.bayer.speaking_llm.component.metrics.TurnTrace;
+import de.sven.bayer.speaking_llm.config.BargeInProperties;
+import de.sven.bayer.speaking_llm.config.SpeculationProperties;
+import de.sven.bayer.speaking_llm.config.TranscriptionProperties;
+import de.sven.bayer.speaking_llm.service.AsrService;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+
+import javax.sound.sampled.AudioFormat;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates the {@link VoiceCapture} of each audio stream, the local microphone as well as remote
+ * clients. Their ASR requests run on virtual threads; how many reach whisper at once is up to the
+ * ASR limiter, and record the segments and their transcripts in the turn journal.
+ */
+@Component
+public class VoiceCaptureFactory {
+    public static final AudioFormat AUDIO_FORMAT = new AudioFormat(
+            16000,     // 16kHz sample rate (common for ASR)
+            16,        // 16-bit samples
+            1,         // Mono channel
+            true,      // Signed PCM
+            false      // Little-endian byte order
+    );
+
+    private final AsrService asrService;
+    private final VoiceActivityDetectorFactory voiceActivityDetectorFactory;
+    private final TurnMetrics turnMetrics;
+    private final TurnJournal turnJournal;
+    private final TranscriptionProperties transcriptionProperties;
+    private final BargeInProperties bargeInProperties;
+    private final SpeculationProperties speculationProperties;
+    private final ExecutorService transcriptionPool;
+
+    public VoiceCaptureFactory(AsrService asrService, VoiceActivityDetectorFactory voiceActivityDetectorFactory,
+                               TurnMetrics turnMetrics, TurnJournal turnJournal, TranscriptionProperties transcriptionProperties,
+                               BargeInProperties bargeInProperties, SpeculationProperties speculationProperties) {
+        this.asrService = asrService;
+        this.voiceActivityDetectorFactory = voiceActivityDetectorFactory;
+        this.turnMetrics = turnMetrics;
+        this.turnJournal = turnJournal;
+        this.transcriptionProperties = transcriptionProperties;
+        this.bargeInProperties = bargeInProperties;
+        this.speculationProperties = speculationProperties;
+        this.transcriptionPool = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    /**
+     * @param origin tag of the turns of this stream, e.g. {@code voice}
+     */
+    public VoiceCapture create(String origin, VoiceCapture.Listener listener) {
+        // Names the stream in the journal, so its audio can be replayed in one piece
+        String stream = origin + "-" + UUID.randomUUID().toString().substring(0, 8);
+        return new VoiceCapture(AUDIO_FORMAT, voiceActivityDetectorFactory.create(AUDIO_FORMAT),
+                trace -> new StreamingTranscriber(segment -> transcribe(stream, trace, segment),
+                        transcriptionPool, transcriptionProperties.getMaxOverlapWords()),
+                asrService::isSaturated, turnMetrics, origin, listener, transcriptionProperties, bargeInProperties, speculationProperties);
+    }
+
+    // Runs on the transcription pool, so journaling copies the audio off the capture thread
+    private String transcribe(String stream, TurnTrace trace, AudioSegment segment) {
+        turnJournal.segment(stream, trace.turnId(), segment);
+        String text = turnMetrics.time(trace, TurnStage.ASR_REQUEST, () -> asrService.transcribeAudio(segment));
+        turnJournal.segmentTranscript(stream, trace.turnId(), segment.start(), text);
+        return text;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        transcriptionPool.shutdownNow();
+    }
+}
@@ -0,0 +1,122 @@
+package de.sven.bayer.speaking_llm.component.audio.capture;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A captured stretch of PCM that stays in the {@link PcmRingBuffer} until it is released. Exposes
+ * the audio as a WAV stream made of a 44-byte header followed by one or two slices of the ring,
+ * depending on whether the segment wraps around the end of the array.
+ */
+public final class AudioSegment {
+    private final PcmRingBuffer ring;
+    private final long start;
+    private final long end;
+    private final byte[] header;
+    private volatile boolean released;
+    private CompletableFuture<?> upload;
+
+    AudioSegment(PcmRingBuffer ring, long start, long end, byte[] header) {
+        this.ring = ring;
+        this.start = start;
+        this.end = end;
+        this.header = header;
+    }
+
+    public long start() {
+        return start;
+    }
+
+    public long end() {
+        return end;
+    }
+
+    public int length() {
+        return (int) (end - start);
+    }
+
+    public AudioFormat format() {
+        return ring.format();
+    }
+
+    public int wavLength() {
+        return WavHeader.LENGTH + length();
+    }
+
+    /**
+     * Reads the segment as a WAV file without copying the PCM.
+     */
+    public InputStream openWavStream() {
+        return new SequenceInputStream(new ByteArrayInputStream(header), openPcmStream());
+    }
+
+    /**
+     * Reads the bare PCM of the segment straight from the ring.
+     */
+    public InputStream openPcmStream() {
+        checkNotReleased();
+        byte[] array = ring.array();
+        int offset = ring.offsetOf(start);
+        int firstPart = Math.min(length(), array.length - offset);
+        return new SequenceInputStream(
+                new ByteArrayInputStream(array, offset, firstPart),
+                new ByteArrayInputStream(array, 0, length() - firstPart));
+    }
+
+    /**
+     * Copies the bare PCM of the segment out of the ring, for keeping it after the release.
+     */
+    public byte[] copyPcm() {
+        checkNotReleased();
+        byte[] array = ring.array();
+        int offset = ring.offsetOf(start);
+        int firstPart = Math.min(length(), array.length - offset);
+        byte[] pcm = new byte[length()];
+        System.arraycopy(array, offset, pcm, 0, firstPart);
+        System.arraycopy(array, 0, pcm, firstPart, length() - firstPart);
+        return pcm;
+    }
+
+    /**
+     * Keeps the bytes reserved until {@code upload} is done, even if the segment is released before,
+     * e.g. by a caller that stopped waiting for an upload still reading from the ring.
+     */
+    public synchronized void holdUntil(CompletableFuture<?> upload) {
+        this.upload = upload;
+    }
+
+    /**
+     * Hands the bytes back to the ring, or once the upload it is held for is done. The segment must
+     * not be read afterwards.
+     */
+    public void release() {
+        CompletableFuture<?> pending;
+        synchronized (this) {
+            pending = upload;
+        }
+        if (pending != null && !pending.isDone()) {
+            pending.whenComplete((result, error) -> release());
+            return;
+        }
+        if (!released) {
+            ring.release(this);
+        }
+    }
+
+    boolean isReleased() {
+        return released;
+    }
+
+    void markReleased() {
+        released = true;
+    }
+
+    private void checkNotReleased() {
+        if (released) {
+            throw new IllegalStateException("Audio segment was already released");
+        }
+    }
+}
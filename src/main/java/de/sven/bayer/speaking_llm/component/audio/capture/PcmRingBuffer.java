@@ -0,0 +1,97 @@
+package de.sven.bayer.speaking_llm.component.audio.capture;
+
+import javax.sound.sampled.AudioFormat;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Preallocated ring of captured PCM. The capture thread reads from the line straight into
+ * {@link #array()} and cuts {@link AudioSegment}s that are views on the ring, so audio is never
+ * copied on its way to the ASR upload.
+ * <p>
+ * Positions are absolute byte counts since the ring was created. Space is reclaimed once every
+ * segment covering it has been released and the capture side has moved its anchor past it. If
+ * the consumers fall that far behind, new audio is dropped rather than blocking the capture thread.
+ */
+public class PcmRingBuffer {
+    private final byte[] buffer;
+    private final WavHeader wavHeader;
+    private final Deque<AudioSegment> liveSegments = new ArrayDeque<>();
+    private long written;
+    private long anchor;
+
+    /**
+     * @param capacity ring size in bytes; a multiple of the capture chunk size keeps every chunk contiguous
+     */
+    public PcmRingBuffer(int capacity, WavHeader wavHeader) {
+        this.buffer = new byte[capacity];
+        this.wavHeader = wavHeader;
+    }
+
+    public byte[] array() {
+        return buffer;
+    }
+
+    public AudioFormat format() {
+        return wavHeader.format();
+    }
+
+    public int capacity() {
+        return buffer.length;
+    }
+
+    public synchronized long position() {
+        return written;
+    }
+
+    /**
+     * Array offset of an absolute position.
+     */
+    public int offsetOf(long position) {
+        return (int) (position % buffer.length);
+    }
+
+    /**
+     * Number of bytes that can be written contiguously at the current write offset, at most {@code max}.
+     */
+    public synchronized int writable(int max) {
+        long oldest = liveSegments.isEmpty() ? anchor : Math.min(anchor, liveSegments.peekFirst().start());
+        long free = buffer.length - (written - oldest);
+        int contiguous = buffer.length - offsetOf(written);
+        return (int) Math.max(0, Math.min(max, Math.min(free, contiguous)));
+    }
+
+    /**
+     * Marks {@code bytes} written at the current write offset as captured.
+     */
+    public synchronized void commit(int bytes) {
+        written += bytes;
+    }
+
+    /**
+     * Oldest position the capture side still needs for a segment it has not cut yet.
+     */
+    public synchronized void anchor(long position) {
+        anchor = Math.min(position, written);
+    }
+
+    /**
+     * Cuts a segment covering {@code [start, end)}. The bytes stay reserved until it is released.
+     */
+    public synchronized AudioSegment segment(long start, long end) {
+        if (start < written - buffer.length || end > written || start > end) {
+            throw new IllegalArgumentException("Segment [" + start + ", " + end + ") is not in the ring");
+        }
+        AudioSegment segment = new AudioSegment(this, start, end, wavHeader.forDataLength((int) (end - start)));
+        liveSegments.addLast(segment);
+        return segment;
+    }
+
+    synchronized void release(AudioSegment segment) {
+        segment.markReleased();
+        // Segments are cut in order of their start, so reclaiming from the head frees the oldest bytes first
+        while (!liveSegments.isEmpty() && liveSegments.peekFirst().isReleased()) {
+            liveSegments.removeFirst();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package de.sven.bayer.speaking_llm.component.audio.capture;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * Canonical 44-byte RIFF/WAVE header for PCM. The format fields are filled in once; only the two
+ * size fields differ between segments.
+ */
+public final class WavHeader {
+    public static final int LENGTH = 44;
+
+    private final AudioFormat format;
+    private final byte[] template = new byte[LENGTH];
+
+    public WavHeader(AudioFormat format) {
+        this.format = format;
+        int channels = format.getChannels();
+        int sampleRate = Math.round(format.getSampleRate());
+        int bitsPerSample = format.getSampleSizeInBits();
+        int blockAlign = channels * bitsPerSample / 8;
+
+        putAscii(0, "RIFF");
+        putAscii(8, "WAVE");
+        putAscii(12, "fmt ");
+        putInt(template, 16, 16);               // fmt chunk size
+        putShort(20, 1);                        // PCM
+        putShort(22, channels);
+        putInt(template, 24, sampleRate);
+        putInt(template, 28, sampleRate * blockAlign); // byte rate
+        putShort(32, blockAlign);
+        putShort(34, bitsPerSample);
+        putAscii(36, "data");
+    }
+
+    public AudioFormat format() {
+        return format;
+    }
+
+    /**
+     * Returns a header for {@code dataLength} bytes of PCM.
+     */
+    public byte[] forDataLength(int dataLength) {
+        byte[] header = template.clone();
+        putInt(header, 4, 36 + dataLength);
+        putInt(header, 40, dataLength);
+        return header;
+    }
+
+    private void putAscii(int offset, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            template[offset + i] = (byte) value.charAt(i);
+        }
+    }
+
+    private void putShort(int offset, int value) {
+        template[offset] = (byte) value;
+        template[offset + 1] = (byte) (value >> 8);
+    }
+
+    private static void putInt(byte[] target, int offset, int value) {
+        target[offset] = (byte) value;
+        target[offset + 1] = (byte) (value >> 8);
+        target[offset + 2] = (byte) (value >> 16);
+        target[offset + 3] = (byte) (value >> 24);
+    }
+}
@@ -0,0 +1,40 @@
+package de.sven.bayer.speaking_llm.component.audio.dsp;
+
+/**
+ * Removes the DC offset many microphones add, which would otherwise count as energy in every frame.
+ * The offset follows the mean of the blocks with a time constant of about a second, so it settles
+ * quickly but speech itself is not pulled toward zero. Not thread-safe.
+ */
+public class DcBlocker {
+    private static final double TIME_CONSTANT_SECONDS = 1.0;
+
+    private final PcmDsp dsp;
+    private final double samplesPerTimeConstant;
+    private double offset = Double.NaN;
+
+    public DcBlocker(PcmDsp dsp, float sampleRate) {
+        this.dsp = dsp;
+        this.samplesPerTimeConstant = sampleRate * TIME_CONSTANT_SECONDS;
+    }
+
+    /**
+     * Removes the offset from a block of samples in place.
+     */
+    public void process(byte[] pcm, int offset, int samples) {
+        if (samples <= 0) return;
+        double mean = dsp.measure(pcm, offset, samples).mean();
+        if (Double.isNaN(this.offset)) {
+            this.offset = mean;
+        } else {
+            this.offset += Math.min(1.0, samples / samplesPerTimeConstant) * (mean - this.offset);
+        }
+        int dcOffset = (int) Math.round(this.offset);
+        if (dcOffset != 0) {
+            dsp.adjust(pcm, offset, samples, dcOffset, 1f);
+        }
+    }
+
+    public double offset() {
+        return Double.isNaN(offset) ? 0 : offset;
+    }
+}
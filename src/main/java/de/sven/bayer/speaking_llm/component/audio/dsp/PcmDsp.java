@@ -0,0 +1,70 @@
+package de.sven.bayer.speaking_llm.component.audio.dsp;
+
+/**
+ * Sample-level operations on 16-bit little-endian PCM, as it sits in the capture buffers. Offsets
+ * are in bytes, lengths in samples. Operations that change the audio work in place and saturate at
+ * full scale.
+ * <p>
+ * {@link #get()} returns the implementation on {@code jdk.incubator.vector} when the JVM was started
+ * with {@code --add-modules jdk.incubator.vector}, the scalar one otherwise. Apart from
+ * {@link #dot}, both give the same results to the bit.
+ */
+public interface PcmDsp {
+
+    /**
+     * Sums, extremes and zero crossings of a block of samples.
+     *
+     * @param zeroCrossings sign changes between neighbouring samples, the first sample counting as a
+     *                      change if it is negative
+     */
+    record Levels(int samples, long sum, long sumOfSquares, int min, int max, int zeroCrossings) {
+
+        public double mean() {
+            return samples == 0 ? 0 : (double) sum / samples;
+        }
+
+        public double energy() {
+            return samples == 0 ? 0 : (double) sumOfSquares / samples;
+        }
+
+        public double rms() {
+            return Math.sqrt(energy());
+        }
+
+        public int peak() {
+            return Math.max(Math.abs(min), Math.abs(max));
+        }
+
+        public double zeroCrossingRate() {
+            return samples == 0 ? 0 : (double) zeroCrossings / samples;
+        }
+    }
+
+    Levels measure(byte[] pcm, int offset, int samples);
+
+    /**
+     * Replaces every sample {@code x} by {@code (x - dcOffset) * gain}, rounded toward zero.
+     */
+    void adjust(byte[] pcm, int offset, int samples, int dcOffset, float gain);
+
+    /**
+     * Converts samples to floats at their 16-bit scale.
+     */
+    void decode(byte[] pcm, int offset, float[] target, int targetOffset, int samples);
+
+    /**
+     * Converts floats at 16-bit scale back to samples, rounded toward zero.
+     */
+    void encode(float[] source, int sourceOffset, byte[] pcm, int offset, int samples);
+
+    /**
+     * Dot product of two float ranges, the inner loop of the resampler's filter. Unlike the other
+     * operations the vector implementation sums in a different order, so results can differ from the
+     * scalar one in the last bits.
+     */
+    float dot(float[] a, int aOffset, float[] b, int bOffset, int length);
+
+    static PcmDsp get() {
+        return PcmDspSelector.INSTANCE;
+    }
+}
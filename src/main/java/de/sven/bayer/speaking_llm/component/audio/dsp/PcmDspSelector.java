@@ -0,0 +1,28 @@
+package de.sven.bayer.speaking_llm.component.audio.dsp;
+
+import lombok.extern.slf4j.Slf4j;
+
+// Only touches the vector implementation once the incubator module is known to be there, so the
+// class referring to it is never loaded without it
+@Slf4j
+final class PcmDspSelector {
+    static final PcmDsp INSTANCE = select();
+
+    private PcmDspSelector() {
+    }
+
+    private static PcmDsp select() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            log.info("jdk.incubator.vector not available, audio DSP runs scalar");
+            return new ScalarPcmDsp();
+        }
+        try {
+            VectorPcmDsp dsp = new VectorPcmDsp();
+            log.info("Audio DSP runs on the Vector API with {}", dsp.describe());
+            return dsp;
+        } catch (LinkageError | RuntimeException e) {
+            log.warn("Vector API unusable, audio DSP runs scalar: {}", e.toString());
+            return new ScalarPcmDsp();
+        }
+    }
+}
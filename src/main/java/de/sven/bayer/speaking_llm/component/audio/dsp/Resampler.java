@@ -0,0 +1,158 @@
+package de.sven.bayer.speaking_llm.component.audio.dsp;
+
+import java.util.Arrays;
+
+/**
+ * Converts a stream of 16-bit mono PCM between sample rates with a polyphase windowed-sinc filter,
+ * e.g. from the 48 kHz a sound card offers down to the 16 kHz of the capture format. The filter has
+ * one set of taps per fractional position between input samples, so every output sample is a single
+ * dot product, which is where {@link PcmDsp#dot} does the work.
+ * <p>
+ * Input is kept across calls, the output lags it by half the filter length. Not thread-safe.
+ */
+public class Resampler {
+    // Filter length in output samples, long enough for a transition band of about 2 kHz at 16 kHz
+    private static final int FILTER_OUTPUT_SAMPLES = 40;
+    // Cutoff relative to the lower Nyquist frequency, so most of the transition band stays below it
+    private static final double PASSBAND = 0.9;
+    private static final double KAISER_BETA = 8.0;
+
+    private final PcmDsp dsp;
+    private final int inputRate;
+    private final int outputRate;
+    // Output advances the input position by step/phases samples
+    private final int phases;
+    private final int step;
+    private final int taps;
+    private final float[] filter;
+
+    private float[] history;
+    private int buffered;
+    private int position;
+    private int phase;
+    private float[] output = new float[0];
+
+    public Resampler(PcmDsp dsp, int inputRate, int outputRate) {
+        if (inputRate <= 0 || outputRate <= 0) {
+            throw new IllegalArgumentException("Invalid sample rates " + inputRate + " -> " + outputRate);
+        }
+        this.dsp = dsp;
+        this.inputRate = inputRate;
+        this.outputRate = outputRate;
+        int gcd = gcd(inputRate, outputRate);
+        this.phases = outputRate / gcd;
+        this.step = inputRate / gcd;
+        // Downsampling has to cut below the output's Nyquist frequency, so the filter spans more input samples
+        double ratio = Math.max(1.0, (double) inputRate / outputRate);
+        this.taps = (int) Math.ceil(FILTER_OUTPUT_SAMPLES * ratio / 8) * 8;
+        this.filter = design(phases, taps, PASSBAND / ratio);
+        this.history = new float[taps * 4];
+        reset();
+    }
+
+    public int inputRate() {
+        return inputRate;
+    }
+
+    public int outputRate() {
+        return outputRate;
+    }
+
+    /**
+     * Input samples it takes to produce the given number of output samples, at least one.
+     */
+    public int inputFor(int outputSamples) {
+        if (outputSamples <= 0) {
+            return 1;
+        }
+        long lastPosition = position + (phase + (long) (outputSamples - 1) * step) / phases;
+        return (int) Math.max(1, lastPosition + taps - buffered);
+    }
+
+    /**
+     * Takes all of the input and writes at most {@code maxOutputSamples} output samples; input that
+     * is not needed for those yet is kept for the next call.
+     *
+     * @return the number of samples written
+     */
+    public int process(byte[] input, int inputOffset, int inputSamples, byte[] target, int targetOffset, int maxOutputSamples) {
+        if (buffered + inputSamples > history.length) {
+            compact();
+            if (buffered + inputSamples > history.length) {
+                history = Arrays.copyOf(history, Math.max(history.length * 2, buffered + inputSamples));
+            }
+        }
+        dsp.decode(input, inputOffset, history, buffered, inputSamples);
+        buffered += inputSamples;
+
+        if (output.length < maxOutputSamples) {
+            output = new float[maxOutputSamples];
+        }
+        int produced = 0;
+        while (produced < maxOutputSamples && position + taps <= buffered) {
+            output[produced++] = dsp.dot(history, position, filter, phase * taps, taps);
+            phase += step;
+            position += phase / phases;
+            phase %= phases;
+        }
+        dsp.encode(output, 0, target, targetOffset, produced);
+        return produced;
+    }
+
+    /**
+     * Forgets the buffered input, e.g. when the line was flushed.
+     */
+    public void reset() {
+        // Start with half a filter of silence, so the first output is centred on the first input sample
+        Arrays.fill(history, 0f);
+        buffered = taps / 2 - 1;
+        position = 0;
+        phase = 0;
+    }
+
+    private void compact() {
+        System.arraycopy(history, position, history, 0, buffered - position);
+        buffered -= position;
+        position = 0;
+    }
+
+    // Phase p of the filter yields the output lying p/phases of a sample after tap (taps/2 - 1)
+    private static float[] design(int phases, int taps, double cutoff) {
+        float[] filter = new float[phases * taps];
+        double center = taps / 2.0 - 1;
+        double halfLength = taps / 2.0;
+        double besselBeta = bessel0(KAISER_BETA);
+        for (int p = 0; p < phases; p++) {
+            double offset = (double) p / phases;
+            double sum = 0;
+            for (int k = 0; k < taps; k++) {
+                double t = k - center - offset;
+                double x = Math.PI * cutoff * t;
+                double sinc = x == 0 ? 1 : Math.sin(x) / x;
+                double w = t / halfLength;
+                double window = Math.abs(w) >= 1 ? 0 : bessel0(KAISER_BETA * Math.sqrt(1 - w * w)) / besselBeta;
+                filter[p * taps + k] = (float) (sinc * window);
+                sum += sinc * window;
+            }
+            // Unity gain at DC for every phase
+            for (int k = 0; k < taps; k++) {
+                filter[p * taps + k] /= (float) sum;
+            }
+        }
+        return filter;
+    }
+
+    private static double bessel0(double x) {
+        double sum = 1;
+        double term = 1;
+        for (int k = 1; k < 30; k++) {
+            term *= (x / (2 * k)) * (x / (2 * k));
+            sum += term;
+        }
+        return sum;
+    }
+
+    private static int gcd(int a, int b) {
+        return b == 0 ? a : gcd(b, a % b);
+    }
+}
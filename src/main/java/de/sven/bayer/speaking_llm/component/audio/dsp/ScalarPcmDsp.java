@@ -0,0 +1,74 @@
+package de.sven.bayer.speaking_llm.component.audio.dsp;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * One sample at a time, for JVMs without the Vector API. Also the reference the vector
+ * implementation is tested against.
+ */
+public class ScalarPcmDsp implements PcmDsp {
+    // One 16-bit load per sample instead of assembling it from two bytes
+    private static final VarHandle SAMPLE = MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.LITTLE_ENDIAN);
+
+    @Override
+    public Levels measure(byte[] pcm, int offset, int samples) {
+        long sum = 0;
+        long sumOfSquares = 0;
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        int crossings = 0;
+        int previous = 0;
+        for (int i = offset, end = offset + samples * 2; i < end; i += 2) {
+            int sample = sample(pcm, i);
+            sum += sample;
+            sumOfSquares += (long) sample * sample;
+            min = Math.min(min, sample);
+            max = Math.max(max, sample);
+            crossings += (sample ^ previous) >>> 31;
+            previous = sample;
+        }
+        return new Levels(samples, sum, sumOfSquares, samples == 0 ? 0 : min, samples == 0 ? 0 : max, crossings);
+    }
+
+    @Override
+    public void adjust(byte[] pcm, int offset, int samples, int dcOffset, float gain) {
+        for (int i = offset, end = offset + samples * 2; i < end; i += 2) {
+            store(pcm, i, (sample(pcm, i) - dcOffset) * gain);
+        }
+    }
+
+    @Override
+    public void decode(byte[] pcm, int offset, float[] target, int targetOffset, int samples) {
+        for (int i = 0; i < samples; i++) {
+            target[targetOffset + i] = sample(pcm, offset + 2 * i);
+        }
+    }
+
+    @Override
+    public void encode(float[] source, int sourceOffset, byte[] pcm, int offset, int samples) {
+        for (int i = 0; i < samples; i++) {
+            store(pcm, offset + 2 * i, source[sourceOffset + i]);
+        }
+    }
+
+    @Override
+    public float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        float sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    static int sample(byte[] pcm, int i) {
+        return (short) SAMPLE.get(pcm, i);
+    }
+
+    // Truncating before clamping gives the same as the other way round, the bounds being whole numbers, and
+    // avoids Math.min/max on floats, which are much slower than on ints
+    static void store(byte[] pcm, int i, float value) {
+        SAMPLE.set(pcm, i, (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, (int) value)));
+    }
+}
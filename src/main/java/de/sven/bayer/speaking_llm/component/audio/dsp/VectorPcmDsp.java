@@ -0,0 +1,151 @@
+package de.sven.bayer.speaking_llm.component.audio.dsp;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Works on as many samples at once as the CPU has float lanes, e.g. 16 with AVX-512. Samples are
+ * loaded straight from the byte buffer, reinterpreted as shorts (the Vector API lays out lanes in
+ * little-endian order on every platform) and widened lane by lane to ints or floats. What does not
+ * fill a whole vector at the end is left to the scalar code.
+ * <p>
+ * Only load this class through {@link PcmDsp#get()}, it needs {@code jdk.incubator.vector}.
+ */
+public class VectorPcmDsp implements PcmDsp {
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INTS = VectorSpecies.of(int.class, FLOATS.vectorShape());
+    private static final VectorSpecies<Long> LONGS = VectorSpecies.of(long.class, FLOATS.vectorShape());
+    private static final int LANES = FLOATS.length();
+    // Half as wide as the float vectors, so one short vector widens into exactly one float or int vector
+    private static final VectorSpecies<Short> SHORTS = VectorSpecies.of(short.class, VectorShape.forBitSize(LANES * Short.SIZE));
+    private static final VectorSpecies<Byte> BYTES = VectorSpecies.of(byte.class, SHORTS.vectorShape());
+    // Each lane of the int sum grows by at most 2^15 per vector; flush to the long sum well before it overflows
+    private static final int SUM_FLUSH_VECTORS = 1 << 15;
+
+    String describe() {
+        return LANES + " lanes of " + FLOATS.vectorBitSize() + "-bit vectors";
+    }
+
+    @Override
+    public Levels measure(byte[] pcm, int offset, int samples) {
+        int vectorSamples = samples - samples % LANES;
+        ShortVector zero = ShortVector.zero(SHORTS);
+        ShortVector previous = zero;
+        ShortVector min = ShortVector.broadcast(SHORTS, Short.MAX_VALUE);
+        ShortVector max = ShortVector.broadcast(SHORTS, Short.MIN_VALUE);
+        IntVector sumLanes = IntVector.zero(INTS);
+        LongVector squaresLow = LongVector.zero(LONGS);
+        LongVector squaresHigh = LongVector.zero(LONGS);
+        long sum = 0;
+        int crossings = 0;
+        int pending = 0;
+        for (int i = 0; i < vectorSamples; i += LANES) {
+            ShortVector x = load(pcm, offset + 2 * i);
+            min = min.min(x);
+            max = max.max(x);
+            // Each lane next to the sample before it, the last lane of the previous vector moving in
+            ShortVector before = previous.slice(LANES - 1, x);
+            crossings += x.lanewise(VectorOperators.XOR, before).compare(VectorOperators.LT, zero).trueCount();
+            previous = x;
+
+            IntVector wide = (IntVector) x.castShape(INTS, 0);
+            sumLanes = sumLanes.add(wide);
+            // A square of a 16-bit sample fits an int, the sum of squares needs longs
+            IntVector squares = wide.mul(wide);
+            squaresLow = squaresLow.add(squares.convertShape(VectorOperators.I2L, LONGS, 0));
+            squaresHigh = squaresHigh.add(squares.convertShape(VectorOperators.I2L, LONGS, 1));
+            if (++pending == SUM_FLUSH_VECTORS) {
+                sum += sumOf(sumLanes);
+                sumLanes = IntVector.zero(INTS);
+                pending = 0;
+            }
+        }
+        sum += sumOf(sumLanes);
+        long sumOfSquares = squaresLow.reduceLanes(VectorOperators.ADD) + squaresHigh.reduceLanes(VectorOperators.ADD);
+        int minSample = vectorSamples > 0 ? min.reduceLanes(VectorOperators.MIN) : Integer.MAX_VALUE;
+        int maxSample = vectorSamples > 0 ? max.reduceLanes(VectorOperators.MAX) : Integer.MIN_VALUE;
+
+        int last = vectorSamples > 0 ? previous.lane(LANES - 1) : 0;
+        for (int i = offset + vectorSamples * 2, end = offset + samples * 2; i < end; i += 2) {
+            int sample = ScalarPcmDsp.sample(pcm, i);
+            sum += sample;
+            sumOfSquares += (long) sample * sample;
+            minSample = Math.min(minSample, sample);
+            maxSample = Math.max(maxSample, sample);
+            crossings += (sample ^ last) >>> 31;
+            last = sample;
+        }
+        return new Levels(samples, sum, sumOfSquares, samples == 0 ? 0 : minSample, samples == 0 ? 0 : maxSample, crossings);
+    }
+
+    @Override
+    public void adjust(byte[] pcm, int offset, int samples, int dcOffset, float gain) {
+        int vectorSamples = samples - samples % LANES;
+        for (int i = offset, end = offset + vectorSamples * 2; i < end; i += 2 * LANES) {
+            FloatVector x = (FloatVector) load(pcm, i).castShape(FLOATS, 0);
+            store(x.sub(dcOffset).mul(gain), pcm, i);
+        }
+        for (int i = offset + vectorSamples * 2, end = offset + samples * 2; i < end; i += 2) {
+            ScalarPcmDsp.store(pcm, i, (ScalarPcmDsp.sample(pcm, i) - dcOffset) * gain);
+        }
+    }
+
+    @Override
+    public void decode(byte[] pcm, int offset, float[] target, int targetOffset, int samples) {
+        int vectorSamples = samples - samples % LANES;
+        for (int i = 0; i < vectorSamples; i += LANES) {
+            FloatVector x = (FloatVector) load(pcm, offset + 2 * i).castShape(FLOATS, 0);
+            x.intoArray(target, targetOffset + i);
+        }
+        for (int i = vectorSamples; i < samples; i++) {
+            target[targetOffset + i] = ScalarPcmDsp.sample(pcm, offset + 2 * i);
+        }
+    }
+
+    @Override
+    public void encode(float[] source, int sourceOffset, byte[] pcm, int offset, int samples) {
+        int vectorSamples = samples - samples % LANES;
+        for (int i = 0; i < vectorSamples; i += LANES) {
+            store(FloatVector.fromArray(FLOATS, source, sourceOffset + i), pcm, offset + 2 * i);
+        }
+        for (int i = vectorSamples; i < samples; i++) {
+            ScalarPcmDsp.store(pcm, offset + 2 * i, source[sourceOffset + i]);
+        }
+    }
+
+    @Override
+    public float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        int vectorLength = length - length % LANES;
+        FloatVector sum = FloatVector.zero(FLOATS);
+        for (int i = 0; i < vectorLength; i += LANES) {
+            sum = FloatVector.fromArray(FLOATS, a, aOffset + i).fma(FloatVector.fromArray(FLOATS, b, bOffset + i), sum);
+        }
+        float result = sum.reduceLanes(VectorOperators.ADD);
+        for (int i = vectorLength; i < length; i++) {
+            result += a[aOffset + i] * b[bOffset + i];
+        }
+        return result;
+    }
+
+    private static ShortVector load(byte[] pcm, int offset) {
+        return ByteVector.fromArray(BYTES, pcm, offset).reinterpretAsShorts();
+    }
+
+    // Saturates and rounds toward zero like the scalar store
+    private static void store(FloatVector values, byte[] pcm, int offset) {
+        FloatVector clamped = values.max(Short.MIN_VALUE).min(Short.MAX_VALUE);
+        clamped.castShape(SHORTS, 0).reinterpretAsBytes().intoArray(pcm, offset);
+    }
+
+    private static long sumOf(IntVector lanes) {
+        LongVector low = (LongVector) lanes.convertShape(VectorOperators.I2L, LONGS, 0);
+        LongVector high = (LongVector) lanes.convertShape(VectorOperators.I2L, LONGS, 1);
+        return low.reduceLanes(VectorOperators.ADD) + high.reduceLanes(VectorOperators.ADD);
+    }
+}
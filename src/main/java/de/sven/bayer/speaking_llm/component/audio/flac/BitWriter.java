@@ -0,0 +1,80 @@
+package de.sven.bayer.speaking_llm.component.audio.flac;
+
+import java.util.Arrays;
+
+/**
+ * Big-endian bit packing into a growable byte array, MSB first as FLAC stores everything.
+ */
+final class BitWriter {
+    private byte[] bytes;
+    private int length;
+    private long pending;
+    private int pendingBits;
+
+    BitWriter(int initialCapacity) {
+        this.bytes = new byte[initialCapacity];
+    }
+
+    /**
+     * Writes the low {@code count} bits of {@code value}, at most 32.
+     */
+    void write(int value, int count) {
+        pending = (pending << count) | (value & ((1L << count) - 1));
+        pendingBits += count;
+        while (pendingBits >= 8) {
+            pendingBits -= 8;
+            put((byte) (pending >>> pendingBits));
+        }
+    }
+
+    /**
+     * Writes {@code zeros} zero bits terminated by a one, followed by the low {@code count} bits
+     * of {@code value}: one Rice-coded residual.
+     */
+    void writeRice(int zeros, int value, int count) {
+        if (zeros + 1 + count <= 32) {
+            // The leading zeros come for free with the wider write
+            write((1 << count) | (value & ((1 << count) - 1)), zeros + 1 + count);
+            return;
+        }
+        while (zeros >= 32) {
+            write(0, 32);
+            zeros -= 32;
+        }
+        write(1, zeros + 1);
+        write(value, count);
+    }
+
+    /**
+     * Pads with zero bits up to the next byte.
+     */
+    void alignToByte() {
+        if (pendingBits > 0) {
+            write(0, 8 - pendingBits);
+        }
+    }
+
+    /**
+     * Bytes written so far; only complete once the writer is byte aligned.
+     */
+    byte[] array() {
+        return bytes;
+    }
+
+    int length() {
+        return length;
+    }
+
+    void reset() {
+        length = 0;
+        pending = 0;
+        pendingBits = 0;
+    }
+
+    private void put(byte value) {
+        if (length == bytes.length) {
+            bytes = Arrays.copyOf(bytes, bytes.length * 2);
+        }
+        bytes[length++] = value;
+    }
+}
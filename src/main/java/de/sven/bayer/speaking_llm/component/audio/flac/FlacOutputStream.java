@@ -0,0 +1,392 @@
+package de.sven.bayer.speaking_llm.component.audio.flac;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Encodes 16-bit little-endian PCM written to it as a FLAC stream, lossless and in pure Java. PCM
+ * may be written in chunks of any size; every full block of samples is encoded and passed on as
+ * one frame right away, closing the stream encodes the last, shorter block.
+ * <p>
+ * Each channel is coded with the best of FLAC's fixed polynomial predictors and a partitioned
+ * Rice code for the residual, or stored verbatim if that is shorter; silence becomes a constant
+ * subframe of a few bytes. Speech comes out at about half the size of the PCM. There is no LPC
+ * analysis, it would save a few percent more at several times the encoding time.
+ */
+public class FlacOutputStream extends FilterOutputStream {
+    public static final String CONTENT_TYPE = "audio/flac";
+
+    private static final int BLOCK_SIZE = 4096;
+    private static final int BLOCK_SIZE_CODE = 0b1100;
+    private static final int BITS_PER_SAMPLE = 16;
+    private static final int MAX_FIXED_ORDER = 4;
+    private static final int MAX_PARTITION_ORDER = 6;
+    private static final int MAX_RICE_PARAMETER = 14;
+    private static final int[] CRC8 = crcTable(0x07, 8);
+    private static final int[] CRC16 = crcTable(0x8005, 16);
+
+    private final int channels;
+    private final int frameBytes;
+    private final int sampleRateCode;
+    private final int[][] samples;
+    private final byte[] partialFrame;
+    private final BitWriter frame = new BitWriter(BLOCK_SIZE * 2 + 64);
+    private final int[] residual = new int[BLOCK_SIZE];
+    private final long[] partitionSums = new long[1 << MAX_PARTITION_ORDER];
+    private final int[] riceParameters = new int[1 << MAX_PARTITION_ORDER];
+    private final int[] bestRiceParameters = new int[1 << MAX_PARTITION_ORDER];
+    private int partialBytes;
+    private int buffered;
+    private long frameNumber;
+    private boolean finished;
+
+    /**
+     * Writes the stream header right away.
+     *
+     * @param totalSamples samples per channel that will be written, or 0 if not known up front
+     */
+    public FlacOutputStream(OutputStream out, AudioFormat format, long totalSamples) throws IOException {
+        super(out);
+        if (!AudioFormat.Encoding.PCM_SIGNED.equals(format.getEncoding()) || format.getSampleSizeInBits() != BITS_PER_SAMPLE
+                || format.isBigEndian() || format.getChannels() < 1 || format.getChannels() > 8) {
+            throw new IllegalArgumentException("FLAC encoding needs 16-bit little-endian PCM with 1 to 8 channels, not " + format);
+        }
+        this.channels = format.getChannels();
+        this.frameBytes = channels * BITS_PER_SAMPLE / 8;
+        this.sampleRateCode = sampleRateCode(Math.round(format.getSampleRate()));
+        this.samples = new int[channels][BLOCK_SIZE];
+        this.partialFrame = new byte[frameBytes];
+        writeStreamHeader(Math.round(format.getSampleRate()), totalSamples);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] pcm, int offset, int length) throws IOException {
+        if (finished) {
+            throw new IOException("FLAC stream already finished");
+        }
+        int end = offset + length;
+        while (offset < end) {
+            if (partialBytes > 0 || end - offset < frameBytes) {
+                // A sample frame split across two writes
+                int copied = Math.min(frameBytes - partialBytes, end - offset);
+                System.arraycopy(pcm, offset, partialFrame, partialBytes, copied);
+                partialBytes += copied;
+                offset += copied;
+                if (partialBytes == frameBytes) {
+                    readFrame(partialFrame, 0);
+                    partialBytes = 0;
+                }
+                continue;
+            }
+            for (int frames = (end - offset) / frameBytes; frames > 0; frames--, offset += frameBytes) {
+                readFrame(pcm, offset);
+            }
+        }
+    }
+
+    /**
+     * Encodes what is still buffered as the last frame. The underlying stream stays open.
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        if (partialBytes > 0) {
+            throw new IOException("PCM ends in the middle of a sample frame");
+        }
+        if (buffered > 0) {
+            encodeBlock();
+        }
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            out.close();
+        }
+    }
+
+    private void readFrame(byte[] pcm, int offset) throws IOException {
+        for (int channel = 0; channel < channels; channel++, offset += 2) {
+            samples[channel][buffered] = (short) ((pcm[offset + 1] << 8) | (pcm[offset] & 0xFF));
+        }
+        if (++buffered == BLOCK_SIZE) {
+            encodeBlock();
+        }
+    }
+
+    private void writeStreamHeader(int sampleRate, long totalSamples) throws IOException {
+        BitWriter header = new BitWriter(42);
+        header.write('f', 8);
+        header.write('L', 8);
+        header.write('a', 8);
+        header.write('C', 8);
+        // Last metadata block, STREAMINFO, 34 bytes
+        header.write(1, 1);
+        header.write(0, 7);
+        header.write(34, 24);
+        header.write(BLOCK_SIZE, 16);
+        header.write(BLOCK_SIZE, 16);
+        // Frame sizes and MD5 unknown, encoding is single pass
+        header.write(0, 24);
+        header.write(0, 24);
+        header.write(sampleRate, 20);
+        header.write(channels - 1, 3);
+        header.write(BITS_PER_SAMPLE - 1, 5);
+        header.write((int) (totalSamples >>> 32), 4);
+        header.write((int) totalSamples, 32);
+        for (int i = 0; i < 4; i++) {
+            header.write(0, 32);
+        }
+        out.write(header.array(), 0, header.length());
+    }
+
+    private void encodeBlock() throws IOException {
+        int blockSize = buffered;
+        buffered = 0;
+        frame.reset();
+        frame.write(0xFFF8, 16);
+        frame.write(blockSize == BLOCK_SIZE ? BLOCK_SIZE_CODE : 0b0111, 4);
+        frame.write(sampleRateCode, 4);
+        frame.write(channels - 1, 4);
+        frame.write(0b100, 3);
+        frame.write(0, 1);
+        writeFrameNumber(frameNumber++);
+        if (blockSize != BLOCK_SIZE) {
+            frame.write(blockSize - 1, 16);
+        }
+        frame.write(crc(CRC8, 8, frame.array(), frame.length()), 8);
+
+        for (int channel = 0; channel < channels; channel++) {
+            encodeSubframe(samples[channel], blockSize);
+        }
+        frame.alignToByte();
+        frame.write(crc(CRC16, 16, frame.array(), frame.length()), 16);
+        out.write(frame.array(), 0, frame.length());
+    }
+
+    private void encodeSubframe(int[] x, int n) {
+        if (isConstant(x, n)) {
+            frame.write(0, 8);
+            frame.write(x[0], BITS_PER_SAMPLE);
+            return;
+        }
+        int order = bestFixedOrder(x, n);
+        computeResidual(x, n, order);
+        int partitionOrder = choosePartitions(n, order);
+        long fixedBits = 8 + (long) order * BITS_PER_SAMPLE + 6 + residualBits(n, order, partitionOrder);
+        if (fixedBits >= 8 + (long) n * BITS_PER_SAMPLE) {
+            frame.write(0b000001 << 1, 8);
+            for (int i = 0; i < n; i++) {
+                frame.write(x[i], BITS_PER_SAMPLE);
+            }
+            return;
+        }
+        frame.write((0b001000 | order) << 1, 8);
+        for (int i = 0; i < order; i++) {
+            frame.write(x[i], BITS_PER_SAMPLE);
+        }
+        // Rice coding with 4-bit parameters
+        frame.write(0, 2);
+        frame.write(partitionOrder, 4);
+        int partitionSize = n >> partitionOrder;
+        for (int partition = 0, i = order; partition < 1 << partitionOrder; partition++) {
+            int k = bestRiceParameters[partition];
+            frame.write(k, 4);
+            for (int end = (partition + 1) * partitionSize; i < end; i++) {
+                int u = residual[i];
+                frame.writeRice(u >>> k, u, k);
+            }
+        }
+    }
+
+    private static boolean isConstant(int[] x, int n) {
+        for (int i = 1; i < n; i++) {
+            if (x[i] != x[0]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // The order whose residual has the smallest magnitude, all orders judged on the same samples
+    private static int bestFixedOrder(int[] x, int n) {
+        if (n <= MAX_FIXED_ORDER) {
+            return 0;
+        }
+        long e0 = 0, e1 = 0, e2 = 0, e3 = 0, e4 = 0;
+        for (int i = MAX_FIXED_ORDER; i < n; i++) {
+            int r0 = x[i];
+            int r1 = r0 - x[i - 1];
+            int r2 = r1 - (x[i - 1] - x[i - 2]);
+            int r3 = r2 - (x[i - 1] - 2 * x[i - 2] + x[i - 3]);
+            int r4 = r3 - (x[i - 1] - 3 * x[i - 2] + 3 * x[i - 3] - x[i - 4]);
+            e0 += Math.abs(r0);
+            e1 += Math.abs(r1);
+            e2 += Math.abs(r2);
+            e3 += Math.abs(r3);
+            e4 += Math.abs(r4);
+        }
+        long[] errors = {e0, e1, e2, e3, e4};
+        int best = 0;
+        for (int order = 1; order <= MAX_FIXED_ORDER; order++) {
+            if (errors[order] < errors[best]) {
+                best = order;
+            }
+        }
+        return best;
+    }
+
+    // Zigzag-folded residual, ready for Rice coding
+    private void computeResidual(int[] x, int n, int order) {
+        for (int i = order; i < n; i++) {
+            int r = switch (order) {
+                case 0 -> x[i];
+                case 1 -> x[i] - x[i - 1];
+                case 2 -> x[i] - 2 * x[i - 1] + x[i - 2];
+                case 3 -> x[i] - 3 * x[i - 1] + 3 * x[i - 2] - x[i - 3];
+                default -> x[i] - 4 * x[i - 1] + 6 * x[i - 2] - 4 * x[i - 3] + x[i - 4];
+            };
+            residual[i] = (r << 1) ^ (r >> 31);
+        }
+    }
+
+    /**
+     * Picks the partition order with the fewest estimated bits, leaving the Rice parameter of each
+     * partition in {@link #bestRiceParameters}.
+     */
+    private int choosePartitions(int n, int order) {
+        int maxOrder = 0;
+        while (maxOrder < MAX_PARTITION_ORDER && (n & ((2 << maxOrder) - 1)) == 0 && (n >> (maxOrder + 1)) > order) {
+            maxOrder++;
+        }
+        int partitionSize = n >> maxOrder;
+        for (int partition = 0, i = order; partition < 1 << maxOrder; partition++) {
+            long sum = 0;
+            for (int end = (partition + 1) * partitionSize; i < end; i++) {
+                sum += residual[i];
+            }
+            partitionSums[partition] = sum;
+        }
+        int bestOrder = maxOrder;
+        long bestBits = Long.MAX_VALUE;
+        for (int partitionOrder = maxOrder; partitionOrder >= 0; partitionOrder--) {
+            int partitions = 1 << partitionOrder;
+            long bits = 0;
+            for (int partition = 0; partition < partitions; partition++) {
+                int count = (n >> partitionOrder) - (partition == 0 ? order : 0);
+                riceParameters[partition] = riceParameter(partitionSums[partition], count);
+                bits += 4 + riceBits(partitionSums[partition], count, riceParameters[partition]);
+            }
+            if (bits < bestBits) {
+                bestBits = bits;
+                bestOrder = partitionOrder;
+                System.arraycopy(riceParameters, 0, bestRiceParameters, 0, partitions);
+            }
+            // Merge neighbours for the next coarser order
+            for (int partition = 0; partition < partitions / 2; partition++) {
+                partitionSums[partition] = partitionSums[2 * partition] + partitionSums[2 * partition + 1];
+            }
+        }
+        return bestOrder;
+    }
+
+    private long residualBits(int n, int order, int partitionOrder) {
+        long bits = 0;
+        int partitionSize = n >> partitionOrder;
+        for (int partition = 0, i = order; partition < 1 << partitionOrder; partition++) {
+            int k = bestRiceParameters[partition];
+            bits += 4;
+            for (int end = (partition + 1) * partitionSize; i < end; i++) {
+                bits += (residual[i] >>> k) + 1 + k;
+            }
+        }
+        return bits;
+    }
+
+    private static int riceParameter(long sum, int count) {
+        int best = 0;
+        long bestBits = Long.MAX_VALUE;
+        for (int k = 0; k <= MAX_RICE_PARAMETER; k++) {
+            long bits = riceBits(sum, count, k);
+            if (bits < bestBits) {
+                bestBits = bits;
+                best = k;
+            }
+        }
+        return best;
+    }
+
+    // Estimate from the partition sum, exact up to the rounding of each quotient
+    private static long riceBits(long sum, int count, int k) {
+        return (long) count * (k + 1) + (sum >>> k);
+    }
+
+    // UTF-8 style coding of the frame number, up to 36 bits
+    private void writeFrameNumber(long number) {
+        if (number < 0x80) {
+            frame.write((int) number, 8);
+            return;
+        }
+        int continuationBytes = 1;
+        while (continuationBytes < 6 && number >= 1L << (5 * continuationBytes + 6)) {
+            continuationBytes++;
+        }
+        int leadingOnes = continuationBytes + 1;
+        int firstByteBits = 7 - leadingOnes;
+        int prefix = (0xFF << (8 - leadingOnes)) & 0xFF;
+        frame.write(prefix | (int) (number >>> (6 * continuationBytes)) & ((1 << firstByteBits) - 1), 8);
+        for (int i = continuationBytes - 1; i >= 0; i--) {
+            frame.write(0x80 | (int) (number >>> (6 * i)) & 0x3F, 8);
+        }
+    }
+
+    private static int sampleRateCode(int sampleRate) {
+        return switch (sampleRate) {
+            case 8000 -> 0b0100;
+            case 16000 -> 0b0101;
+            case 22050 -> 0b0110;
+            case 24000 -> 0b0111;
+            case 32000 -> 0b1000;
+            case 44100 -> 0b1001;
+            case 48000 -> 0b1010;
+            case 96000 -> 0b1011;
+            // Taken from the stream header
+            default -> 0b0000;
+        };
+    }
+
+    private static int crc(int[] table, int width, byte[] data, int length) {
+        int crc = 0;
+        int mask = (1 << width) - 1;
+        for (int i = 0; i < length; i++) {
+            crc = ((crc << 8) ^ table[((crc >>> (width - 8)) ^ data[i]) & 0xFF]) & mask;
+        }
+        return crc;
+    }
+
+    private static int[] crcTable(int polynomial, int width) {
+        int[] table = new int[256];
+        int topBit = 1 << (width - 1);
+        int mask = (1 << width) - 1;
+        for (int i = 0; i < 256; i++) {
+            int crc = i << (width - 8);
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & topBit) != 0 ? (crc << 1) ^ polynomial : crc << 1;
+            }
+            table[i] = crc & mask;
+        }
+        return table;
+    }
+}
@@ -0,0 +1,38 @@
+package de.sven.bayer.speaking_llm.component.audio.source;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.IOException;
+
+/**
+ * Where the recorder gets its PCM from, the microphone or a recording. Follows the life cycle of a
+ * {@link javax.sound.sampled.TargetDataLine}: opened once, started and stopped between turns.
+ * Declare a {@code @Primary} bean of this type to plug in a different source.
+ */
+public interface AudioSource extends AutoCloseable {
+
+    /**
+     * Prepares capture in the given format.
+     *
+     * @throws IOException if the source is unavailable, e.g. there is no sound card
+     */
+    void open(AudioFormat format) throws IOException;
+
+    void start();
+
+    void stop();
+
+    /**
+     * Drops audio that was captured but not read yet.
+     */
+    void flush();
+
+    /**
+     * Blocks until {@code length} bytes are read.
+     *
+     * @return the number of bytes read, or -1 once the source has no more audio
+     */
+    int read(byte[] buffer, int offset, int length) throws IOException;
+
+    @Override
+    void close();
+}
@@ -0,0 +1,117 @@
+package de.sven.bayer.speaking_llm.component.audio.source;
+
+import de.sven.bayer.speaking_llm.component.audio.dsp.DcBlocker;
+import de.sven.bayer.speaking_llm.component.audio.dsp.PcmDsp;
+import de.sven.bayer.speaking_llm.component.audio.dsp.Resampler;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.DataLine;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.TargetDataLine;
+import java.io.IOException;
+
+/**
+ * Captures from the default microphone. If the sound card does not offer the requested rate, the
+ * line is opened at one it does offer and resampled, and the DC offset of the microphone is removed,
+ * both in place on the buffer the audio is read into.
+ */
+@Slf4j
+public class MicrophoneSource implements AudioSource {
+    // Tried in turn when the line cannot be opened at the requested rate
+    private static final int[] DEVICE_RATES = {48000, 44100, 32000, 96000, 22050};
+
+    private TargetDataLine line;
+    private Resampler resampler;
+    private byte[] deviceBuffer = new byte[0];
+    private DcBlocker dcBlocker;
+
+    @Override
+    public void open(AudioFormat format) throws IOException {
+        // Picked here rather than on construction, so the Vector API is not loaded during startup
+        PcmDsp dsp = PcmDsp.get();
+        try {
+            line = openLine(format);
+        } catch (IOException e) {
+            if (format.getSampleSizeInBits() != 16 || format.getChannels() != 1 || format.isBigEndian()) {
+                throw e;
+            }
+            for (int rate : DEVICE_RATES) {
+                if (rate == Math.round(format.getSampleRate())) continue;
+                try {
+                    line = openLine(new AudioFormat(rate, 16, 1, true, false));
+                } catch (IOException unsupported) {
+                    continue;
+                }
+                resampler = new Resampler(dsp, rate, Math.round(format.getSampleRate()));
+                log.info("Microphone does not offer {} Hz, capturing at {} Hz and resampling", Math.round(format.getSampleRate()), rate);
+                break;
+            }
+            if (line == null) {
+                throw e;
+            }
+        }
+        dcBlocker = new DcBlocker(dsp, format.getSampleRate());
+    }
+
+    @Override
+    public void start() {
+        line.start();
+    }
+
+    @Override
+    public void stop() {
+        line.stop();
+    }
+
+    @Override
+    public void flush() {
+        line.flush();
+        if (resampler != null) {
+            resampler.reset();
+        }
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) {
+        int read = resampler == null ? line.read(buffer, offset, length) : readResampled(buffer, offset, length);
+        dcBlocker.process(buffer, offset, read / 2);
+        return read;
+    }
+
+    @Override
+    public void close() {
+        if (line != null && line.isOpen()) {
+            line.stop();
+            line.close();
+        }
+    }
+
+    // Reads just as much at the device rate as the requested samples take, so a read still fills the whole chunk
+    private int readResampled(byte[] buffer, int offset, int length) {
+        int samples = length / 2;
+        int produced = 0;
+        while (produced < samples) {
+            int needed = resampler.inputFor(samples - produced) * 2;
+            if (deviceBuffer.length < needed) {
+                deviceBuffer = new byte[needed];
+            }
+            int read = line.read(deviceBuffer, 0, needed);
+            if (read <= 0) break;
+            produced += resampler.process(deviceBuffer, 0, read / 2, buffer, offset + produced * 2, samples - produced);
+        }
+        return produced * 2;
+    }
+
+    private static TargetDataLine openLine(AudioFormat format) throws IOException {
+        try {
+            DataLine.Info info = new DataLine.Info(TargetDataLine.class, format);
+            TargetDataLine line = (TargetDataLine) AudioSystem.getLine(info);
+            line.open(format);
+            return line;
+        } catch (LineUnavailableException | IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package de.sven.bayer.speaking_llm.component.audio.source;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a recording as if it was spoken into the microphone, paced at real time times
+ * {@code speed}, or as fast as it is read with a speed of 0. WAV and other formats the sound API
+ * can decode are converted to the capture format, anything else is taken as raw PCM in that format.
+ * <p>
+ * After the recording, silence is fed for {@code trailingSilenceMs} so the last utterance ends, then
+ * the recording starts over or the source reports its end. Audio is not consumed while the source is
+ * stopped, so every utterance of the recording reaches the recorder.
+ */
+@Slf4j
+public class ReplayAudioSource implements AudioSource {
+
+    /**
+     * Opens the recording, once per pass.
+     */
+    @FunctionalInterface
+    public interface Recording {
+        InputStream open() throws IOException;
+    }
+
+    private final Recording recording;
+    private final double speed;
+    private final boolean loop;
+    private final int trailingSilenceMs;
+
+    private AudioFormat format;
+    private InputStream pcm;
+    private long passBytes;
+    private long trailingSilenceBytes;
+    private long silenceLeft;
+    private boolean ended;
+    private volatile boolean started;
+    private long pacingStartNanos;
+    private long pacedBytes;
+
+    public ReplayAudioSource(Recording recording, double speed, boolean loop, int trailingSilenceMs) {
+        this.recording = recording;
+        this.speed = speed;
+        this.loop = loop;
+        this.trailingSilenceMs = trailingSilenceMs;
+    }
+
+    public static ReplayAudioSource ofFile(Path file, double speed, boolean loop, int trailingSilenceMs) {
+        return new ReplayAudioSource(() -> Files.newInputStream(file), speed, loop, trailingSilenceMs);
+    }
+
+    @Override
+    public synchronized void open(AudioFormat format) throws IOException {
+        this.format = format;
+        this.trailingSilenceBytes = (long) Math.round(format.getSampleRate() * trailingSilenceMs / 1000f) * format.getFrameSize();
+        this.pcm = openPass();
+    }
+
+    @Override
+    public synchronized void start() {
+        started = true;
+        pacingStartNanos = System.nanoTime();
+        pacedBytes = 0;
+    }
+
+    @Override
+    public synchronized void stop() {
+        started = false;
+    }
+
+    @Override
+    public void flush() {
+        // Nothing is captured ahead of the reader
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        int read;
+        synchronized (this) {
+            if (ended) return -1;
+            read = fill(buffer, offset, length);
+            if (read < 0) return -1;
+            pacedBytes += read;
+        }
+        pace();
+        return read;
+    }
+
+    @Override
+    public synchronized void close() {
+        ended = true;
+        closePass();
+    }
+
+    // Fills the buffer from the recording, then with trailing silence, and starts the next pass if looping
+    private int fill(byte[] buffer, int offset, int length) throws IOException {
+        int filled = 0;
+        while (filled < length) {
+            if (pcm != null) {
+                int n = pcm.read(buffer, offset + filled, length - filled);
+                if (n > 0) {
+                    filled += n;
+                    passBytes += n;
+                    continue;
+                }
+                closePass();
+                if (loop && passBytes == 0 && trailingSilenceBytes == 0) {
+                    // Another pass would yield nothing either, looping would spin without end
+                    ended = true;
+                    throw new IOException("empty recording");
+                }
+                silenceLeft = trailingSilenceBytes;
+            }
+            if (silenceLeft > 0) {
+                int n = (int) Math.min(silenceLeft, length - filled);
+                Arrays.fill(buffer, offset + filled, offset + filled + n, (byte) 0);
+                silenceLeft -= n;
+                filled += n;
+                continue;
+            }
+            if (!loop) {
+                ended = true;
+                if (filled == 0) return -1;
+                // Complete the last chunk with silence, the recorder only takes whole chunks
+                Arrays.fill(buffer, offset + filled, offset + length, (byte) 0);
+                return length;
+            }
+            pcm = openPass();
+            passBytes = 0;
+        }
+        return filled;
+    }
+
+    // Sleeps until the bytes handed out so far would have been spoken
+    private void pace() {
+        if (speed <= 0 || !started) return;
+        double bytesPerNano = format.getSampleRate() * format.getFrameSize() * speed / TimeUnit.SECONDS.toNanos(1);
+        long due = pacingStartNanos + (long) (pacedBytes / bytesPerNano);
+        long wait = due - System.nanoTime();
+        if (wait > 0) {
+            LockSupport.parkNanos(wait);
+        }
+    }
+
+    private InputStream openPass() throws IOException {
+        InputStream in = new BufferedInputStream(recording.open());
+        try {
+            AudioInputStream decoded = AudioSystem.getAudioInputStream(in);
+            if (decoded.getFormat().matches(format)) {
+                return decoded;
+            }
+            return AudioSystem.getAudioInputStream(format, decoded);
+        } catch (UnsupportedAudioFileException | IOException e) {
+            // Not a container the sound API knows, probing may have consumed some of it, so read it again as raw PCM
+            in.close();
+            return new BufferedInputStream(recording.open());
+        } catch (IllegalArgumentException e) {
+            in.close();
+            throw new IOException("Cannot convert recording to " + format, e);
+        }
+    }
+
+    private void closePass() {
+        if (pcm == null) return;
+        try {
+            pcm.close();
+        } catch (IOException e) {
+            log.debug("Closing recording failed: {}", e.getMessage());
+        }
+        pcm = null;
+    }
+}
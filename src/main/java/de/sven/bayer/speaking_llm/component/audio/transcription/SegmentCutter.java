@@ -0,0 +1,49 @@
+package de.sven.bayer.speaking_llm.component.audio.transcription;
+
+/**
+ * Remembers the energy of the most recent frames so a running utterance can be cut where it is
+ * quietest instead of at a fixed byte count, which tends to split words.
+ */
+public class SegmentCutter {
+    private final long[] energies;
+    private final long[] frameEnds;
+    private int count;
+    private int next;
+
+    public SegmentCutter(int windowFrames) {
+        this.energies = new long[windowFrames];
+        this.frameEnds = new long[windowFrames];
+    }
+
+    public void onFrame(byte[] pcm, int offset, int frameBytes, long frameEnd) {
+        long sumOfSquares = 0;
+        for (int i = offset, end = offset + frameBytes; i < end; i += 2) {
+            int sample = (short) ((pcm[i] & 0xFF) | (pcm[i + 1] << 8));
+            sumOfSquares += (long) sample * sample;
+        }
+        energies[next] = sumOfSquares;
+        frameEnds[next] = frameEnd;
+        next = (next + 1) % energies.length;
+        count = Math.min(count + 1, energies.length);
+    }
+
+    /**
+     * End of the quietest recent frame that lies after {@code notBefore}, or -1 if there is none.
+     */
+    public long quietestCut(long notBefore) {
+        long cut = -1;
+        long lowest = Long.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            if (frameEnds[i] > notBefore && energies[i] < lowest) {
+                lowest = energies[i];
+                cut = frameEnds[i];
+            }
+        }
+        return cut;
+    }
+
+    public void reset() {
+        count = 0;
+        next = 0;
+    }
+}
@@ -0,0 +1,111 @@
+package de.sven.bayer.speaking_llm.component.audio.transcription;
+
+import de.sven.bayer.speaking_llm.component.audio.capture.AudioSegment;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Phaser;
+import java.util.function.Function;
+
+/**
+ * Transcribes the segments of one utterance in parallel and merges the results in segment order,
+ * no matter in which order the ASR calls return. Results that arrive early wait until all earlier
+ * segments are merged. One instance per turn.
+ */
+@Slf4j
+public class StreamingTranscriber {
+    private final Function<AudioSegment, String> asr;
+    private final ExecutorService pool;
+    private final TranscriptMerger merger;
+    private final Map<Integer, Result> pending = new HashMap<>();
+    private final Phaser inFlight = new Phaser(1);
+    private final List<Waiter> waiters = new ArrayList<>();
+    private int submitted;
+    private int nextToMerge;
+
+    public StreamingTranscriber(Function<AudioSegment, String> asr, ExecutorService pool, int maxOverlapWords) {
+        this.asr = asr;
+        this.pool = pool;
+        this.merger = new TranscriptMerger(maxOverlapWords);
+    }
+
+    /**
+     * Starts transcribing the next segment and releases it once the upload is done.
+     */
+    public void submit(AudioSegment segment) {
+        int sequence;
+        synchronized (this) {
+            sequence = submitted++;
+        }
+        long start = segment.start();
+        long end = segment.end();
+        inFlight.register();
+        pool.execute(() -> {
+            String transcription = null;
+            try {
+                transcription = asr.apply(segment);
+            } catch (Exception e) {
+                log.error("Transcription of segment {} failed", sequence, e);
+            } finally {
+                segment.release();
+                merge(sequence, new Result(transcription, start, end));
+                inFlight.arriveAndDeregister();
+            }
+        });
+    }
+
+    /**
+     * Transcript of all segments up to the first one that is still being transcribed.
+     */
+    public synchronized String transcriptSoFar() {
+        return merger.transcript();
+    }
+
+    /**
+     * Completes with the transcript once every segment submitted so far is merged, without waiting
+     * for segments submitted later.
+     */
+    public synchronized CompletableFuture<String> transcriptOfSubmitted() {
+        if (nextToMerge >= submitted) {
+            return CompletableFuture.completedFuture(merger.transcript());
+        }
+        Waiter waiter = new Waiter(submitted, new CompletableFuture<>());
+        waiters.add(waiter);
+        return waiter.transcript();
+    }
+
+    /**
+     * Waits for every submitted segment and returns the merged transcript.
+     */
+    public String awaitTranscript() throws InterruptedException {
+        inFlight.awaitAdvanceInterruptibly(inFlight.arrive());
+        return transcriptSoFar();
+    }
+
+    private synchronized void merge(int sequence, Result result) {
+        pending.put(sequence, result);
+        while (pending.containsKey(nextToMerge)) {
+            Result next = pending.remove(nextToMerge++);
+            merger.append(next.transcription(), next.start(), next.end());
+        }
+        for (Iterator<Waiter> it = waiters.iterator(); it.hasNext(); ) {
+            Waiter waiter = it.next();
+            if (nextToMerge >= waiter.segments()) {
+                waiter.transcript().complete(merger.transcript());
+                it.remove();
+            }
+        }
+    }
+
+    private record Result(String transcription, long start, long end) {
+    }
+
+    private record Waiter(int segments, CompletableFuture<String> transcript) {
+    }
+}
@@ -0,0 +1,92 @@
+package de.sven.bayer.speaking_llm.component.audio.transcription;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Joins the transcripts of overlapping segments. Words that were heard in the overlap show up at
+ * the end of one transcript and at the start of the next; the longest such run is dropped from the
+ * later one. Words are compared without case and punctuation.
+ * <p>
+ * Whisper gives no word timings, so the number of words that can have been spoken in the shared
+ * audio is estimated from the speaking rate of both segments. Only a run that short counts as
+ * overlap; between segments that share no audio nothing is dropped, so a word the speaker really
+ * repeated at the cut ("no, no") is kept.
+ */
+public class TranscriptMerger {
+    private final int maxOverlapWords;
+    private final List<String> words = new ArrayList<>();
+    private final List<String> normalized = new ArrayList<>();
+    private long previousEnd = -1;
+    private double previousWordsPerByte;
+
+    public TranscriptMerger(int maxOverlapWords) {
+        this.maxOverlapWords = maxOverlapWords;
+    }
+
+    /**
+     * Appends the transcript of the segment covering the given capture positions; segments have to
+     * be appended in order.
+     */
+    public void append(String transcript, long start, long end) {
+        String[] next = transcript == null || transcript.isBlank() ? new String[0] : transcript.trim().split("\\s+");
+        double wordsPerByte = end > start ? (double) next.length / (end - start) : 0;
+        int wordsInOverlap = wordsInOverlap(start, wordsPerByte);
+        previousEnd = end;
+        previousWordsPerByte = wordsPerByte;
+        if (next.length == 0) return;
+
+        String[] nextNormalized = new String[next.length];
+        for (int i = 0; i < next.length; i++) {
+            nextNormalized[i] = normalize(next[i]);
+        }
+
+        int overlap = overlap(nextNormalized, wordsInOverlap);
+        for (int i = overlap; i < next.length; i++) {
+            words.add(next[i]);
+            normalized.add(nextNormalized[i]);
+        }
+    }
+
+    public String transcript() {
+        return String.join(" ", words);
+    }
+
+    // Rounded up, a word cut in half at the segment edge shows up in both transcripts
+    private int wordsInOverlap(long start, double wordsPerByte) {
+        if (previousEnd <= start) return 0;
+        return (int) Math.ceil((previousEnd - start) * Math.max(wordsPerByte, previousWordsPerByte));
+    }
+
+    private int overlap(String[] next, int wordsInOverlap) {
+        int max = Math.min(Math.min(maxOverlapWords, wordsInOverlap), Math.min(words.size(), next.length));
+        for (int length = max; length > 0; length--) {
+            if (endsWith(next, length)) {
+                return length;
+            }
+        }
+        return 0;
+    }
+
+    private boolean endsWith(String[] next, int length) {
+        int offset = normalized.size() - length;
+        for (int i = 0; i < length; i++) {
+            if (next[i].isEmpty() || !normalized.get(offset + i).equals(next[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String normalize(String word) {
+        StringBuilder result = new StringBuilder(word.length());
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                result.append(c);
+            }
+        }
+        return result.toString().toLowerCase(Locale.ROOT);
+    }
+}
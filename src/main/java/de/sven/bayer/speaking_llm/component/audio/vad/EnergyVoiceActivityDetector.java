@@ -0,0 +1,153 @@
+package de.sven.bayer.speaking_llm.component.audio.vad;
+
+import de.sven.bayer.speaking_llm.component.audio.dsp.PcmDsp;
+import de.sven.bayer.speaking_llm.config.VadProperties;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * Voice activity detection on frame energy and zero-crossing rate against a noise floor that
+ * follows the background over time.
+ * <p>
+ * A frame is speech-like if its energy is clearly above the noise floor and either its
+ * zero-crossing rate is low (voiced sound) or it is loud enough to be a fricative rather than hiss.
+ * Speech-like frames have to persist for the attack time before an utterance starts, quiet frames
+ * keep counting as speech during the hangover, and the utterance ends once the pause reaches the
+ * end-of-utterance timeout.
+ */
+public class EnergyVoiceActivityDetector implements VoiceActivityDetector {
+    private static final double FULL_SCALE_ENERGY = 32768.0 * 32768.0;
+    private static final double MIN_NOISE_FLOOR = FULL_SCALE_ENERGY * 1e-9; // -90 dBFS
+    // Per-frame smoothing of the noise floor: fast when it gets quieter, slow when it gets louder,
+    // very slow during speech so a rising background cannot lock the detector in speech forever.
+    private static final double NOISE_FALL_RATE = 0.2;
+    private static final double NOISE_RISE_RATE = 0.03;
+    private static final double NOISE_RISE_RATE_IN_SPEECH = 0.002;
+
+    private enum State { SILENCE, ATTACK, SPEECH, QUIET }
+
+    private final PcmDsp dsp = PcmDsp.get();
+    private final int frameBytes;
+    private final int attackFrames;
+    private final int hangoverFrames;
+    private final int endOfUtteranceFrames;
+    private final double snrRatio;
+    private final double strongSpeechRatio;
+    private final double minSpeechEnergy;
+    private final double maxZeroCrossingRate;
+
+    private State state = State.SILENCE;
+    private int stateFrames;
+    private double noiseFloor = Double.NaN;
+
+    public EnergyVoiceActivityDetector(AudioFormat format, VadProperties properties) {
+        if (format.getSampleSizeInBits() != 16 || format.getChannels() != 1 || format.isBigEndian()) {
+            throw new IllegalArgumentException("Expected 16-bit mono little-endian PCM, got " + format);
+        }
+        int frameSamples = Math.round(format.getSampleRate() * properties.getFrameMs() / 1000f);
+        this.frameBytes = frameSamples * 2;
+        this.attackFrames = Math.max(1, properties.getAttackMs() / properties.getFrameMs());
+        this.hangoverFrames = properties.getHangoverMs() / properties.getFrameMs();
+        this.endOfUtteranceFrames = Math.max(1, properties.getEndOfUtteranceMs() / properties.getFrameMs());
+        this.snrRatio = fromDb(properties.getSnrThresholdDb());
+        this.strongSpeechRatio = fromDb(properties.getSnrThresholdDb() + properties.getStrongSpeechMarginDb());
+        this.minSpeechEnergy = FULL_SCALE_ENERGY * fromDb(properties.getMinSpeechLevelDbfs());
+        this.maxZeroCrossingRate = properties.getMaxZeroCrossingRate();
+    }
+
+    @Override
+    public int frameBytes() {
+        return frameBytes;
+    }
+
+    @Override
+    public VoiceActivity process(byte[] pcm, int offset) {
+        PcmDsp.Levels levels = dsp.measure(pcm, offset, frameBytes / 2);
+        double energy = levels.energy();
+        double zeroCrossingRate = levels.zeroCrossingRate();
+
+        if (Double.isNaN(noiseFloor)) {
+            noiseFloor = Math.max(energy, MIN_NOISE_FLOOR);
+        }
+        boolean speechLike = isSpeechLike(energy, zeroCrossingRate);
+        adaptNoiseFloor(energy, speechLike);
+        return advance(speechLike);
+    }
+
+    @Override
+    public void reset() {
+        state = State.SILENCE;
+        stateFrames = 0;
+    }
+
+    /**
+     * Current noise floor estimate in dBFS.
+     */
+    public double noiseFloorDbfs() {
+        return 10 * Math.log10(noiseFloor / FULL_SCALE_ENERGY);
+    }
+
+    private boolean isSpeechLike(double energy, double zeroCrossingRate) {
+        if (energy < minSpeechEnergy || energy < noiseFloor * snrRatio) {
+            return false;
+        }
+        return zeroCrossingRate <= maxZeroCrossingRate || energy >= noiseFloor * strongSpeechRatio;
+    }
+
+    private void adaptNoiseFloor(double energy, boolean speechLike) {
+        double rate;
+        if (energy < noiseFloor) {
+            rate = NOISE_FALL_RATE;
+        } else if (speechLike || state == State.SPEECH) {
+            rate = NOISE_RISE_RATE_IN_SPEECH;
+        } else {
+            rate = NOISE_RISE_RATE;
+        }
+        noiseFloor = Math.max(MIN_NOISE_FLOOR, noiseFloor + rate * (energy - noiseFloor));
+    }
+
+    private VoiceActivity advance(boolean speechLike) {
+        stateFrames++;
+        switch (state) {
+            case SILENCE, ATTACK -> {
+                if (!speechLike) {
+                    enter(State.SILENCE);
+                    return VoiceActivity.SILENCE;
+                }
+                if (state == State.SILENCE) enter(State.ATTACK);
+                if (stateFrames >= attackFrames) {
+                    enter(State.SPEECH);
+                    return VoiceActivity.SPEECH_STARTED;
+                }
+                return VoiceActivity.SILENCE;
+            }
+            case SPEECH -> {
+                if (!speechLike) {
+                    enter(State.QUIET);
+                    return hangoverFrames > 0 ? VoiceActivity.SPEECH : VoiceActivity.PAUSE;
+                }
+                return VoiceActivity.SPEECH;
+            }
+            default -> {
+                if (speechLike) {
+                    enter(State.SPEECH);
+                    return VoiceActivity.SPEECH;
+                }
+                if (stateFrames >= endOfUtteranceFrames) {
+                    enter(State.SILENCE);
+                    return VoiceActivity.UTTERANCE_ENDED;
+                }
+                return stateFrames <= hangoverFrames ? VoiceActivity.SPEECH : VoiceActivity.PAUSE;
+            }
+        }
+    }
+
+    private void enter(State next) {
+        state = next;
+        stateFrames = next == State.SPEECH ? 0 : 1;
+    }
+
+    private static double fromDb(double db) {
+        return Math.pow(10, db / 10);
+    }
+}
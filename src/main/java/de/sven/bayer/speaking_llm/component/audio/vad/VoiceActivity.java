@@ -0,0 +1,21 @@
+package de.sven.bayer.speaking_llm.component.audio.vad;
+
+/**
+ * Result of one analysed frame.
+ */
+public enum VoiceActivity {
+    /** No utterance in progress. */
+    SILENCE,
+    /** Speech was confirmed on this frame after the attack time. */
+    SPEECH_STARTED,
+    /** Speech, including the hangover frames right after it. */
+    SPEECH,
+    /** The utterance is still open, but the user is quiet. */
+    PAUSE,
+    /** The pause reached the end-of-utterance timeout on this frame. */
+    UTTERANCE_ENDED;
+
+    public boolean inUtterance() {
+        return this == SPEECH_STARTED || this == SPEECH || this == PAUSE;
+    }
+}
@@ -0,0 +1,20 @@
+package de.sven.bayer.speaking_llm.component.audio.vad;
+
+/**
+ * Classifies fixed-size frames of 16-bit little-endian PCM. Implementations keep state across
+ * frames and are used by a single capture thread.
+ */
+public interface VoiceActivityDetector {
+
+    /**
+     * Number of bytes every frame passed to {@link #process} must have.
+     */
+    int frameBytes();
+
+    VoiceActivity process(byte[] pcm, int offset);
+
+    /**
+     * Forgets the current utterance, but keeps what was learned about the background noise.
+     */
+    void reset();
+}
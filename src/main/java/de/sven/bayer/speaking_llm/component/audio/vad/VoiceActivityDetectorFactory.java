@@ -0,0 +1,13 @@
+package de.sven.bayer.speaking_llm.component.audio.vad;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * Creates one detector per audio stream. Declare a {@code @Primary} bean of this type to plug in a
+ * different detector.
+ */
+@FunctionalInterface
+public interface VoiceActivityDetectorFactory {
+
+    VoiceActivityDetector create(AudioFormat format);
+}
@@ -0,0 +1,128 @@
+package de.sven.bayer.speaking_llm.component.batch;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Collects items submitted from any number of threads into batches and hands each batch to one
+ * handler call. A batch is sent when it holds the maximum number of items, when the next item
+ * would push it over the maximum weight, or when the window has passed since its first item,
+ * whichever comes first. The handler runs on a virtual thread of its own and returns one result
+ * per item, in order; every submitter gets its own result, or the failure of the whole batch.
+ */
+public class MicroBatcher<T, R> {
+
+    @FunctionalInterface
+    public interface Handler<T, R> {
+        List<R> handle(List<T> items) throws Exception;
+    }
+
+    public record Stats(long batches, long items) {
+    }
+
+    private final String name;
+    private final Handler<T, R> handler;
+    private final int maxItems;
+    private final long maxWeight;
+    private final Executor timer;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder items = new LongAdder();
+    private Batch<T, R> open;
+
+    private static final class Batch<T, R> {
+        private final List<T> items = new ArrayList<>();
+        private final List<CompletableFuture<R>> results = new ArrayList<>();
+        private long weight;
+    }
+
+    public MicroBatcher(String name, Duration window, int maxItems, long maxWeight, Handler<T, R> handler) {
+        if (maxItems < 1) {
+            throw new IllegalArgumentException("A batch needs room for at least one item");
+        }
+        this.name = name;
+        this.handler = handler;
+        this.maxItems = maxItems;
+        this.maxWeight = maxWeight;
+        this.timer = CompletableFuture.delayedExecutor(window.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Adds an item to the open batch. An item heavier than the maximum weight is sent on its own.
+     */
+    public CompletableFuture<R> submit(T item, long weight) {
+        CompletableFuture<R> result = new CompletableFuture<>();
+        Batch<T, R> overflowing = null;
+        Batch<T, R> full = null;
+        Batch<T, R> started = null;
+        lock.lock();
+        try {
+            if (open != null && open.weight + weight > maxWeight) {
+                overflowing = open;
+                open = null;
+            }
+            if (open == null) {
+                open = new Batch<>();
+                started = open;
+            }
+            open.items.add(item);
+            open.results.add(result);
+            open.weight += weight;
+            if (open.items.size() >= maxItems || open.weight >= maxWeight) {
+                full = open;
+                open = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (overflowing != null) dispatch(overflowing);
+        if (full != null) dispatch(full);
+        if (started != null && started != full) {
+            Batch<T, R> batch = started;
+            timer.execute(() -> flush(batch));
+        }
+        return result;
+    }
+
+    public Stats stats() {
+        return new Stats(batches.sum(), items.sum());
+    }
+
+    // Sends the batch the timer was started for, unless it was sent for its size already
+    private void flush(Batch<T, R> batch) {
+        lock.lock();
+        try {
+            if (open != batch) return;
+            open = null;
+        } finally {
+            lock.unlock();
+        }
+        dispatch(batch);
+    }
+
+    private void dispatch(Batch<T, R> batch) {
+        batches.increment();
+        items.add(batch.items.size());
+        Thread.ofVirtual().name(name + "-batch").start(() -> run(batch));
+    }
+
+    private void run(Batch<T, R> batch) {
+        try {
+            List<R> results = handler.handle(List.copyOf(batch.items));
+            if (results.size() != batch.items.size()) {
+                throw new IllegalStateException(name + " returned " + results.size() + " results for " + batch.items.size() + " items");
+            }
+            for (int i = 0; i < results.size(); i++) {
+                batch.results.get(i).complete(results.get(i));
+            }
+        } catch (Throwable e) {
+            batch.results.forEach(result -> result.completeExceptionally(e));
+        }
+    }
+}
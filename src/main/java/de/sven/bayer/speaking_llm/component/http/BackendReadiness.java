@@ -0,0 +1,96 @@
+package de.sven.bayer.speaking_llm.component.http;
+
+import de.sven.bayer.speaking_llm.config.HttpProperties;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Waits for whisper, the chatbot and Zonos in the background instead of holding up startup. Once
+ * the application is ready, every backend is probed until it answers, with growing pauses; the
+ * service accepts turns meanwhile and the first ones may fail while a model is still loading.
+ * The health endpoint shows the backends as unknown until all of them answered.
+ */
+@Slf4j
+@Component
+public class BackendReadiness implements HealthIndicator {
+    private static final Duration PROBE_TIMEOUT = Duration.ofSeconds(2);
+    private static final long FIRST_PAUSE_MS = 500;
+    private static final long MAX_PAUSE_MS = 10_000;
+
+    private final List<HttpBackend> backends;
+    private final Duration timeout;
+    private final Map<String, Long> readyAfterMs = new ConcurrentHashMap<>();
+    private volatile Thread prober;
+
+    public BackendReadiness(HttpTransport httpTransport, HttpProperties httpProperties) {
+        this.backends = List.of(httpTransport.asr(), httpTransport.llm(), httpTransport.tts());
+        this.timeout = httpProperties.getReadinessTimeout();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startProbing() {
+        prober = Thread.ofVirtual().name("backend-readiness").start(this::probe);
+    }
+
+    public boolean allReady() {
+        return readyAfterMs.size() == backends.size();
+    }
+
+    @Override
+    public Health health() {
+        Health.Builder health = allReady() ? Health.up() : Health.unknown();
+        for (HttpBackend backend : backends) {
+            Long readyAfter = readyAfterMs.get(backend.name());
+            health.withDetail(backend.name(), readyAfter != null ? "ready after " + readyAfter + " ms" : "waiting");
+        }
+        return health.build();
+    }
+
+    @PreDestroy
+    public void stop() {
+        Thread current = prober;
+        if (current != null) {
+            current.interrupt();
+        }
+    }
+
+    private void probe() {
+        long start = System.nanoTime();
+        long deadline = start + timeout.toNanos();
+        long pause = FIRST_PAUSE_MS;
+        try {
+            while (true) {
+                for (HttpBackend backend : backends) {
+                    if (!readyAfterMs.containsKey(backend.name()) && backend.probe(PROBE_TIMEOUT)) {
+                        long readyAfter = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                        readyAfterMs.put(backend.name(), readyAfter);
+                        log.info("{} backend answers, {} ms after startup", backend.name(), readyAfter);
+                    }
+                }
+                if (allReady()) {
+                    return;
+                }
+                if (System.nanoTime() - deadline > 0) {
+                    log.warn("Backends still not answering after {}: {}", timeout, backends.stream()
+                            .map(HttpBackend::name).filter(name -> !readyAfterMs.containsKey(name)).toList());
+                    return;
+                }
+                Thread.sleep(pause);
+                pause = Math.min(pause * 2, MAX_PAUSE_MS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package de.sven.bayer.speaking_llm.component.http;
+
+/**
+ * A backend answered with a status outside the 2xx range.
+ */
+public class BackendResponseException extends RuntimeException {
+    private final String backend;
+    private final int statusCode;
+
+    public BackendResponseException(String backend, int statusCode) {
+        super(backend + " responded with HTTP " + statusCode);
+        this.backend = backend;
+        this.statusCode = statusCode;
+    }
+
+    public String backend() {
+        return backend;
+    }
+
+    public int statusCode() {
+        return statusCode;
+    }
+}
@@ -0,0 +1,315 @@
+package de.sven.bayer.speaking_llm.component.http;
+
+import de.sven.bayer.speaking_llm.config.HttpProperties;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One downstream service with its own {@link HttpClient}, so every backend has its own pool of
+ * keep-alive connections and its own timeouts. The client, with its selector thread, is created
+ * by the first request rather than at startup.
+ * <p>
+ * The service may run as several replicas. Each request goes to the replica with the fewest
+ * requests in flight, replicas that keep failing are skipped for a while, and with hedging enabled
+ * a request that is slower than usual is sent to a second replica as well.
+ */
+@Slf4j
+public class HttpBackend implements AutoCloseable {
+    private static final int LATENCY_WINDOW = 256;
+
+    private final String name;
+    private final ReplicaSet replicas;
+    private final Duration connectTimeout;
+    private final Duration readTimeout;
+    private final HttpProperties.Hedge hedge;
+    private final LatencyWindow latencies = new LatencyWindow(LATENCY_WINDOW);
+    private final HttpClient.Builder clientBuilder;
+    private volatile HttpClient client;
+    private boolean closed;
+
+    HttpBackend(String name, HttpProperties.Backend properties, Executor executor) {
+        this.name = name;
+        this.replicas = new ReplicaSet(name, properties.replicaUrls().stream().map(URI::create).toList(),
+                properties.getMaxFailures(), properties.getEjectFor());
+        this.connectTimeout = properties.getConnectTimeout();
+        this.readTimeout = properties.getReadTimeout();
+        this.hedge = properties.getHedge();
+        this.clientBuilder = HttpClient.newBuilder()
+                .version(properties.isHttp2() ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .connectTimeout(properties.getConnectTimeout())
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .executor(executor);
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Longest time an {@link #exchange} can take until its response headers have arrived, a hedged
+     * second attempt included; {@code null} without a read timeout.
+     */
+    public Duration exchangeTimeout() {
+        if (readTimeout == null) {
+            return null;
+        }
+        Duration attempt = connectTimeout.plus(readTimeout);
+        if (!hedge.isEnabled() || replicas.size() < 2) {
+            return attempt;
+        }
+        // The hedge delay is an observed latency, so no longer than one attempt unless the minimum is
+        Duration delay = attempt.compareTo(hedge.getMinDelay()) >= 0 ? attempt : hedge.getMinDelay();
+        return delay.plus(attempt);
+    }
+
+    /**
+     * Starts a request to a path of this backend with the read timeout already set. The replica is
+     * picked when the request is sent.
+     */
+    public HttpRequest.Builder request(String path) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(replicas.primary().baseUri().resolve(path));
+        return readTimeout != null ? builder.timeout(readTimeout) : builder;
+    }
+
+    /**
+     * Sends the request and returns the response whatever its status. Use
+     * {@link HttpResponse.BodyHandlers#ofInputStream()} to read a streamed body as it arrives; the
+     * replica counts the request as done once the headers are in.
+     */
+    public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) throws IOException {
+        Replica replica = replicas.select();
+        replica.begin();
+        long start = System.nanoTime();
+        try {
+            HttpResponse<T> response = client().send(replica.route(request), bodyHandler);
+            record(replica, response, System.nanoTime() - start);
+            return response;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while calling " + name);
+        } catch (IOException e) {
+            replicas.failed(replica);
+            throw e;
+        } finally {
+            replica.end();
+        }
+    }
+
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) {
+        return attempt(replicas.select(), request, bodyHandler).response();
+    }
+
+    /**
+     * Sends the request and returns the body of a successful response. With hedging enabled, a
+     * request still unanswered after the hedge delay is sent to a second replica as well; the first
+     * successful answer is returned and the other request cancelled.
+     *
+     * @throws BackendResponseException if the status is not 2xx
+     * @throws UncheckedIOException     if the backend cannot be reached
+     */
+    public <T> T exchange(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) {
+        try {
+            if (hedge.isEnabled() && replicas.size() > 1) {
+                return requireSuccess(sendHedged(request, bodyHandler)).body();
+            }
+            return requireSuccess(send(request, bodyHandler)).body();
+        } catch (IOException e) {
+            throw new UncheckedIOException(name + " request failed", e);
+        }
+    }
+
+    public <T> CompletableFuture<T> exchangeAsync(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) {
+        return sendAsync(request, bodyHandler).thenApply(response -> requireSuccess(response).body());
+    }
+
+    private <T> HttpResponse<T> sendHedged(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) throws IOException {
+        Attempt<T> first = attempt(replicas.select(), request, bodyHandler);
+        Attempt<T> second = null;
+        HttpResponse<T> won = null;
+        try {
+            long delay = hedgeDelayNanos();
+            if (delay >= 0) {
+                try {
+                    won = first.response().get(delay, TimeUnit.NANOSECONDS);
+                    return won;
+                } catch (TimeoutException e) {
+                    Replica other = replicas.select(first.replica());
+                    if (other != null) {
+                        log.debug("{} replica {} slower than {} ms, hedging to {}", name, first.replica(), delay / 1_000_000, other);
+                        second = attempt(other, request, bodyHandler);
+                    }
+                }
+            }
+            won = second == null ? first.response().get() : firstSuccessful(first, second).get();
+            return won;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while calling " + name);
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        } finally {
+            first.discardUnless(won);
+            if (second != null) {
+                second.discardUnless(won);
+            }
+        }
+    }
+
+    // A request slower than the given share of recent ones, or never while there is no history yet
+    private long hedgeDelayNanos() {
+        long percentile = latencies.percentile(hedge.getPercentile());
+        return percentile < 0 ? -1 : Math.max(percentile, hedge.getMinDelay().toNanos());
+    }
+
+    private <T> Attempt<T> attempt(Replica replica, HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) {
+        replica.begin();
+        long start = System.nanoTime();
+        CompletableFuture<HttpResponse<T>> response = client().sendAsync(replica.route(request), bodyHandler);
+        response.whenComplete((result, error) -> {
+            replica.end();
+            if (result != null) {
+                record(replica, result, System.nanoTime() - start);
+            } else if (error instanceof CancellationException) {
+                // Lost the race; it was at least this slow, which keeps the tail in the window
+                latencies.record(System.nanoTime() - start);
+            } else {
+                replicas.failed(replica);
+            }
+        });
+        return new Attempt<>(replica, response);
+    }
+
+    private void record(Replica replica, HttpResponse<?> response, long latencyNanos) {
+        if (response.statusCode() / 100 == 5) {
+            replicas.failed(replica);
+        } else {
+            replicas.succeeded(replica);
+            latencies.record(latencyNanos);
+        }
+    }
+
+    // The first 2xx response; a failed or error response only counts once the other has failed too
+    private static <T> CompletableFuture<HttpResponse<T>> firstSuccessful(Attempt<T> first, Attempt<T> second) {
+        CompletableFuture<HttpResponse<T>> winner = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(2);
+        for (Attempt<T> attempt : List.of(first, second)) {
+            attempt.response().whenComplete((response, error) -> {
+                if (response != null && response.statusCode() / 100 == 2) {
+                    winner.complete(response);
+                } else if (pending.decrementAndGet() == 0) {
+                    if (response != null) {
+                        winner.complete(response);
+                    } else {
+                        winner.completeExceptionally(error);
+                    }
+                }
+            });
+        }
+        return winner;
+    }
+
+    private IOException unwrap(Throwable cause) {
+        if (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof IOException io) {
+            return io;
+        }
+        if (cause instanceof RuntimeException runtime) {
+            throw runtime;
+        }
+        return new IOException(name + " request failed", cause);
+    }
+
+    public <T> HttpResponse<T> requireSuccess(HttpResponse<T> response) {
+        if (response.statusCode() / 100 != 2) {
+            closeBody(response);
+            throw new BackendResponseException(name, response.statusCode());
+        }
+        return response;
+    }
+
+    private static void closeBody(HttpResponse<?> response) {
+        if (response.body() instanceof AutoCloseable body) {
+            try {
+                body.close();
+            } catch (Exception ignored) {
+                // Only releasing the connection
+            }
+        }
+    }
+
+    /**
+     * Whether any replica answers at all, whatever the status. Does not count towards the
+     * replicas' health.
+     */
+    public boolean probe(Duration timeout) throws InterruptedException {
+        for (Replica replica : replicas.all()) {
+            HttpRequest request = HttpRequest.newBuilder(replica.baseUri()).timeout(timeout).GET().build();
+            try {
+                client().send(request, HttpResponse.BodyHandlers.discarding());
+                return true;
+            } catch (IOException e) {
+                log.debug("{} replica {} not reachable yet: {}", name, replica, e.getMessage());
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (client != null) {
+            client.close();
+        }
+    }
+
+    private HttpClient client() {
+        HttpClient current = client;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException(name + " backend is closed");
+            }
+            if (client == null) {
+                client = clientBuilder.build();
+            }
+            return client;
+        }
+    }
+
+    private record Attempt<T>(Replica replica, CompletableFuture<HttpResponse<T>> response) {
+        /**
+         * Cancels the request if it is still running, or releases its body if it answered but is
+         * not the response handed to the caller.
+         */
+        void discardUnless(HttpResponse<T> won) {
+            if (!response.cancel(true)) {
+                response.thenAccept(result -> {
+                    if (result != won) {
+                        closeBody(result);
+                    }
+                });
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package de.sven.bayer.speaking_llm.component.http;
+
+import de.sven.bayer.speaking_llm.config.HttpProperties;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Outbound HTTP to whisper, the chatbot and Zonos. Connections are pooled and kept alive per
+ * backend, so a turn does not pay for TCP setup; responses are handled on virtual threads.
+ * <p>
+ * How long the JDK client keeps an idle connection is a JVM-wide setting without a builder
+ * option; set {@code -Djdk.httpclient.keepalive.timeout} on the command line to change it.
+ */
+@Slf4j
+@Component
+public class HttpTransport {
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final HttpBackend asr;
+    private final HttpBackend llm;
+    private final HttpBackend tts;
+
+    public HttpTransport(HttpProperties httpProperties) {
+        this.asr = new HttpBackend("asr", httpProperties.getAsr(), executor);
+        this.llm = new HttpBackend("llm", httpProperties.getLlm(), executor);
+        this.tts = new HttpBackend("tts", httpProperties.getTts(), executor);
+    }
+
+    public HttpBackend asr() {
+        return asr;
+    }
+
+    public HttpBackend llm() {
+        return llm;
+    }
+
+    public HttpBackend tts() {
+        return tts;
+    }
+
+    @PreDestroy
+    public void close() {
+        asr.close();
+        llm.close();
+        tts.close();
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,41 @@
+package de.sven.bayer.speaking_llm.component.http;
+
+import java.util.Arrays;
+
+/**
+ * The latencies of the most recent requests to a backend, for percentiles over a sliding window.
+ */
+final class LatencyWindow {
+    private static final int MIN_SAMPLES = 20;
+
+    private final long[] samples;
+    private int count;
+    private int next;
+
+    LatencyWindow(int size) {
+        this.samples = new long[size];
+    }
+
+    synchronized void record(long latencyNanos) {
+        samples[next] = latencyNanos;
+        next = (next + 1) % samples.length;
+        count = Math.min(count + 1, samples.length);
+    }
+
+    /**
+     * The latency below which the given fraction of recent requests finished, or -1 while there
+     * are too few samples to tell.
+     */
+    long percentile(double fraction) {
+        long[] sorted;
+        synchronized (this) {
+            if (count < MIN_SAMPLES) {
+                return -1;
+            }
+            sorted = Arrays.copyOf(samples, count);
+        }
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.clamp(index, 0, sorted.length - 1)];
+    }
+}
@@ -0,0 +1,79 @@
+package de.sven.bayer.speaking_llm.component.http;
+
+import java.io.InputStream;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * A {@code multipart/form-data} body with fixed text fields and one or more files in the same
+ * field. Everything except the file content is encoded once up front, so a request only streams
+ * the files between precomputed byte arrays.
+ */
+public class MultipartForm {
+    private final String boundary = "----speaking-llm-" + UUID.randomUUID();
+    private final byte[] prefix;
+    private final byte[] nextFile;
+    private final byte[] suffix;
+
+    public MultipartForm(Map<String, String> fields, String fileField, String fileName, String fileContentType) {
+        StringBuilder head = new StringBuilder();
+        fields.forEach((name, value) -> head
+                .append("--").append(boundary).append("\r\n")
+                .append("Content-Disposition: form-data; name=\"").append(name).append("\"\r\n\r\n")
+                .append(value).append("\r\n"));
+        String fileHead = "--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"" + fileField + "\"; filename=\"" + fileName + "\"\r\n"
+                + "Content-Type: " + fileContentType + "\r\n\r\n";
+        this.prefix = head.append(fileHead).toString().getBytes(StandardCharsets.UTF_8);
+        this.nextFile = ("\r\n" + fileHead).getBytes(StandardCharsets.UTF_8);
+        this.suffix = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * File content read from a fresh stream for every send; the length is needed for the
+     * Content-Length header.
+     */
+    public static HttpRequest.BodyPublisher file(long length, Supplier<InputStream> content) {
+        return HttpRequest.BodyPublishers.fromPublisher(HttpRequest.BodyPublishers.ofInputStream(content), length);
+    }
+
+    public String contentType() {
+        return "multipart/form-data; boundary=" + boundary;
+    }
+
+    public HttpRequest.BodyPublisher body(long fileLength, Supplier<InputStream> file) {
+        return body(file(fileLength, file));
+    }
+
+    public HttpRequest.BodyPublisher body(byte[] file) {
+        return body(HttpRequest.BodyPublishers.ofByteArray(file));
+    }
+
+    public HttpRequest.BodyPublisher body(HttpRequest.BodyPublisher file) {
+        return body(List.of(file));
+    }
+
+    /**
+     * Body with several files, each as its own part of the file field, in the given order.
+     */
+    public HttpRequest.BodyPublisher body(List<HttpRequest.BodyPublisher> files) {
+        if (files.isEmpty()) {
+            throw new IllegalArgumentException("A form needs at least one file");
+        }
+        List<HttpRequest.BodyPublisher> parts = new ArrayList<>(files.size() * 2 + 1);
+        parts.add(HttpRequest.BodyPublishers.ofByteArray(prefix));
+        for (int i = 0; i < files.size(); i++) {
+            if (i > 0) {
+                parts.add(HttpRequest.BodyPublishers.ofByteArray(nextFile));
+            }
+            parts.add(files.get(i));
+        }
+        parts.add(HttpRequest.BodyPublishers.ofByteArray(suffix));
+        return HttpRequest.BodyPublishers.concat(parts.toArray(HttpRequest.BodyPublisher[]::new));
+    }
+}
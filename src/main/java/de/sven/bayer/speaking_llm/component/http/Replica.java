@@ -0,0 +1,55 @@
+package de.sven.bayer.speaking_llm.component.http;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One instance of a backend with the requests it currently serves and its recent failures.
+ */
+final class Replica {
+    private final URI baseUri;
+    private final AtomicInteger outstanding = new AtomicInteger();
+    // Guarded by the replica set
+    int consecutiveFailures;
+    long ejectedUntilNanos;
+    boolean ejected;
+
+    Replica(URI baseUri) {
+        this.baseUri = baseUri;
+    }
+
+    URI baseUri() {
+        return baseUri;
+    }
+
+    int outstanding() {
+        return outstanding.get();
+    }
+
+    void begin() {
+        outstanding.incrementAndGet();
+    }
+
+    void end() {
+        outstanding.decrementAndGet();
+    }
+
+    /**
+     * The request sent to this replica instead; headers, timeout and body are kept.
+     */
+    HttpRequest route(HttpRequest request) {
+        URI uri = request.uri();
+        if (uri.getScheme().equals(baseUri.getScheme()) && uri.getRawAuthority().equals(baseUri.getRawAuthority())) {
+            return request;
+        }
+        String query = uri.getRawQuery();
+        URI target = baseUri.resolve(uri.getRawPath() + (query != null ? "?" + query : ""));
+        return HttpRequest.newBuilder(request, (name, value) -> true).uri(target).build();
+    }
+
+    @Override
+    public String toString() {
+        return baseUri.toString();
+    }
+}
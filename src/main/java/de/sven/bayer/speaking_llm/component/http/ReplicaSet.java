@@ -0,0 +1,110 @@
+package de.sven.bayer.speaking_llm.component.http;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The replicas of one backend. Requests go to the replica with the fewest outstanding requests,
+ * so a slow instance gets fewer of them. Health is checked passively: a replica that fails several
+ * requests in a row is taken out of rotation for a while and then gets a single request again.
+ */
+@Slf4j
+final class ReplicaSet {
+    private final String name;
+    private final List<Replica> replicas;
+    private final int maxFailures;
+    private final long ejectForNanos;
+    // Rotates the start of the scan, so ties do not always go to the first replica
+    private final AtomicInteger next = new AtomicInteger();
+
+    ReplicaSet(String name, List<URI> baseUris, int maxFailures, Duration ejectFor) {
+        if (baseUris.isEmpty()) {
+            throw new IllegalArgumentException("No replica configured for " + name);
+        }
+        this.name = name;
+        this.replicas = baseUris.stream().map(Replica::new).toList();
+        this.maxFailures = Math.max(1, maxFailures);
+        this.ejectForNanos = ejectFor.toNanos();
+    }
+
+    int size() {
+        return replicas.size();
+    }
+
+    List<Replica> all() {
+        return replicas;
+    }
+
+    Replica primary() {
+        return replicas.getFirst();
+    }
+
+    /**
+     * The healthy replica with the fewest outstanding requests. If every replica is out of
+     * rotation, the one that has been out the longest is tried rather than failing the request.
+     */
+    Replica select() {
+        Replica selected = select(null);
+        return selected != null ? selected : soonestBack();
+    }
+
+    /**
+     * The healthy replica with the fewest outstanding requests other than the given one, or null
+     * if there is none.
+     */
+    synchronized Replica select(Replica exclude) {
+        long now = System.nanoTime();
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        Replica best = null;
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (replica == exclude || (replica.ejected && now - replica.ejectedUntilNanos < 0)) {
+                continue;
+            }
+            if (best == null || replica.outstanding() < best.outstanding()) {
+                best = replica;
+            }
+        }
+        if (best != null && best.ejected) {
+            // Probation: one request until it answers, the others keep avoiding the replica
+            best.ejectedUntilNanos = now + ejectForNanos;
+        }
+        return best;
+    }
+
+    synchronized void succeeded(Replica replica) {
+        replica.consecutiveFailures = 0;
+        if (replica.ejected) {
+            replica.ejected = false;
+            log.info("{} replica {} is back in rotation", name, replica);
+        }
+    }
+
+    synchronized void failed(Replica replica) {
+        replica.consecutiveFailures++;
+        // A replica on probation goes straight back out
+        if (replica.ejected || replica.consecutiveFailures >= maxFailures) {
+            if (!replica.ejected) {
+                log.warn("{} replica {} failed {} requests in a row, taking it out of rotation for {} ms",
+                        name, replica, replica.consecutiveFailures, ejectForNanos / 1_000_000);
+            }
+            replica.ejected = true;
+            replica.ejectedUntilNanos = System.nanoTime() + ejectForNanos;
+        }
+    }
+
+    private synchronized Replica soonestBack() {
+        Replica soonest = replicas.getFirst();
+        for (Replica replica : replicas) {
+            if (replica.ejectedUntilNanos - soonest.ejectedUntilNanos < 0) {
+                soonest = replica;
+            }
+        }
+        return soonest;
+    }
+}
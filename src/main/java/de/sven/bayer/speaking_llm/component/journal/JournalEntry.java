@@ -0,0 +1,43 @@
+package de.sven.bayer.speaking_llm.component.journal;
+
+/**
+ * One record of the {@link TurnJournal}.
+ *
+ * @param timestamp epoch milliseconds at which the entry was recorded
+ * @param stream    audio stream the entry belongs to, {@code null} for entries recorded per turn
+ * @param position  byte position of the segment in its stream, -1 if the entry has no audio position
+ * @param text      transcript or answer, {@code null} for audio
+ * @param pcm       16 kHz mono 16-bit little-endian PCM of a segment, {@code null} for text
+ */
+public record JournalEntry(Type type, long timestamp, String stream, String turnId, long position, String text, byte[] pcm) {
+
+    public enum Type {
+        /**
+         * Audio of a segment sent to ASR; segments of an utterance overlap a little.
+         */
+        SEGMENT,
+        /**
+         * ASR result of one segment.
+         */
+        SEGMENT_TRANSCRIPT,
+        /**
+         * Merged transcript the turn was answered with.
+         */
+        TRANSCRIPT,
+        /**
+         * The LLM's answer to the turn.
+         */
+        ANSWER
+    }
+
+    /**
+     * Bytes the entry takes up in the writer's queue.
+     */
+    int size() {
+        return sizeOf(pcm == null ? 0 : pcm.length, text);
+    }
+
+    static int sizeOf(int pcmBytes, String text) {
+        return pcmBytes + (text == null ? 0 : text.length() * 2) + 64;
+    }
+}
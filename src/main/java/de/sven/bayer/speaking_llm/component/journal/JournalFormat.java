@@ -0,0 +1,164 @@
+package de.sven.bayer.speaking_llm.component.journal;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiPredicate;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Layout of the journal files. Entry payload: {@code [type, timestamp, position, stream, turn id,
+ * text, pcm]}, the last four as a length followed by the bytes, -1 for {@code null}.
+ */
+@Slf4j
+final class JournalFormat {
+    static final int SEGMENT_MAGIC = 0x544a524e; // "TJRN"
+    static final int ENTRY_MAGIC = 0x54555252;   // "TURR"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 16;
+    static final int ENTRY_HEADER_BYTES = 12;
+
+    private static final String PREFIX = "journal-";
+    private static final String SUFFIX = ".seg";
+    private static final JournalEntry.Type[] TYPES = JournalEntry.Type.values();
+
+    private JournalFormat() {
+    }
+
+    static String fileName(long sequence) {
+        return PREFIX + "%012d".formatted(sequence) + SUFFIX;
+    }
+
+    static long sequenceOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    /**
+     * Journal files in the directory, oldest first.
+     */
+    static List<Path> files(Path directory) {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().matches(PREFIX + "\\d{12}" + SUFFIX))
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            log.warn("Could not list journal directory {}: {}", directory, e.getMessage());
+            return List.of();
+        }
+    }
+
+    static int payloadBytes(byte[] stream, byte[] turnId, byte[] text, byte[] pcm) {
+        return 1 + 8 + 8 + field(stream) + field(turnId) + field(text) + field(pcm);
+    }
+
+    static void writePayload(ByteBuffer target, int offset, JournalEntry entry, byte[] stream, byte[] turnId, byte[] text) {
+        target.put(offset, (byte) entry.type().ordinal());
+        target.putLong(offset + 1, entry.timestamp());
+        target.putLong(offset + 9, entry.position());
+        offset += 17;
+        offset = writeField(target, offset, stream);
+        offset = writeField(target, offset, turnId);
+        offset = writeField(target, offset, text);
+        writeField(target, offset, entry.pcm());
+    }
+
+    /**
+     * Reads the entries of one file up to the first incomplete or damaged one.
+     */
+    static void read(Path file, Consumer<JournalEntry> consumer) throws IOException {
+        read(file, (type, stream) -> true, consumer);
+    }
+
+    /**
+     * Like {@link #read(Path, Consumer)}, but only decodes the entries the filter takes by their type
+     * and stream; the others are checked and skipped without copying their text or audio.
+     */
+    static void read(Path file, BiPredicate<JournalEntry.Type, String> filter, Consumer<JournalEntry> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES) return;
+            MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, Integer.MAX_VALUE));
+            if (segment.getInt(0) != SEGMENT_MAGIC || segment.getInt(4) != VERSION) {
+                log.warn("Skipping {}, it is not a journal file", file);
+                return;
+            }
+            CRC32 crc = new CRC32();
+            int offset = HEADER_BYTES;
+            while (offset + ENTRY_HEADER_BYTES <= segment.capacity() && segment.getInt(offset) == ENTRY_MAGIC) {
+                int length = segment.getInt(offset + 4);
+                if (length < 17 || length > segment.capacity() - offset - ENTRY_HEADER_BYTES) {
+                    break;
+                }
+                crc.reset();
+                crc.update(segment.slice(offset + ENTRY_HEADER_BYTES, length));
+                if ((int) crc.getValue() != segment.getInt(offset + 8)) {
+                    log.warn("Journal file {} is damaged at offset {}, skipping the rest of it", file, offset);
+                    break;
+                }
+                int payload = offset + ENTRY_HEADER_BYTES;
+                if (filter.test(TYPES[segment.get(payload)], string(readField(segment, payload + 17)))) {
+                    consumer.accept(readPayload(segment, payload));
+                }
+                offset += ENTRY_HEADER_BYTES + length;
+            }
+        }
+    }
+
+    private static JournalEntry readPayload(ByteBuffer source, int offset) {
+        JournalEntry.Type type = TYPES[source.get(offset)];
+        long timestamp = source.getLong(offset + 1);
+        long position = source.getLong(offset + 9);
+        List<byte[]> fields = new ArrayList<>(4);
+        offset += 17;
+        for (int i = 0; i < 4; i++) {
+            byte[] bytes = readField(source, offset);
+            fields.add(bytes);
+            offset += field(bytes);
+        }
+        return new JournalEntry(type, timestamp, string(fields.get(0)), string(fields.get(1)), position,
+                string(fields.get(2)), fields.get(3));
+    }
+
+    private static byte[] readField(ByteBuffer source, int offset) {
+        int length = source.getInt(offset);
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        source.get(offset + 4, bytes);
+        return bytes;
+    }
+
+    private static int field(byte[] bytes) {
+        return 4 + (bytes == null ? 0 : bytes.length);
+    }
+
+    private static int writeField(ByteBuffer target, int offset, byte[] bytes) {
+        if (bytes == null) {
+            target.putInt(offset, -1);
+            return offset + 4;
+        }
+        target.putInt(offset, bytes.length);
+        target.put(offset + 4, bytes);
+        return offset + 4 + bytes.length;
+    }
+
+    private static String string(byte[] bytes) {
+        return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,123 @@
+package de.sven.bayer.speaking_llm.component.journal;
+
+import de.sven.bayer.speaking_llm.component.audio.VoiceCaptureFactory;
+import de.sven.bayer.speaking_llm.component.audio.source.ReplayAudioSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.BiPredicate;
+
+/**
+ * Reads a {@link TurnJournal} directory back: the recorded turns for inspecting what was heard and
+ * answered, and the audio of a stream for replaying it through the pipeline with a
+ * {@link ReplayAudioSource} at any speed. Files that are still being written can be read, entries
+ * after the last complete one are left out.
+ */
+public class JournalReader {
+    /**
+     * Silence between two utterances is shortened to this on replay, enough for the end of an
+     * utterance to be detected.
+     */
+    public static final int MAX_GAP_MS = 2000;
+    // The journal records the audio as it was captured
+    private static final int MAX_GAP_BYTES = Math.round(VoiceCaptureFactory.AUDIO_FORMAT.getSampleRate() * MAX_GAP_MS / 1000f)
+            * VoiceCaptureFactory.AUDIO_FORMAT.getFrameSize();
+
+    private final List<JournalEntry> entries;
+
+    public JournalReader(Path directory) throws IOException {
+        this(directory, (type, stream) -> true);
+    }
+
+    private JournalReader(Path directory, BiPredicate<JournalEntry.Type, String> filter) throws IOException {
+        List<JournalEntry> read = new ArrayList<>();
+        for (Path file : JournalFormat.files(directory)) {
+            JournalFormat.read(file, filter, read::add);
+        }
+        this.entries = Collections.unmodifiableList(read);
+    }
+
+    /**
+     * Reads only the entries of one audio stream, its segments and their transcripts, e.g. to replay
+     * it. The rest of the journal is skipped while scanning and never held in memory.
+     */
+    public static JournalReader ofStream(Path directory, String stream) throws IOException {
+        return new JournalReader(directory, (type, entryStream) -> stream.equals(entryStream));
+    }
+
+    /**
+     * All entries read, in the order they were written.
+     */
+    public List<JournalEntry> entries() {
+        return entries;
+    }
+
+    /**
+     * Audio streams with recorded segments, in the order they started.
+     */
+    public List<String> streams() {
+        return List.copyOf(entries.stream()
+                .filter(entry -> entry.type() == JournalEntry.Type.SEGMENT)
+                .map(JournalEntry::stream)
+                .collect(LinkedHashSet::new, LinkedHashSet::add, LinkedHashSet::addAll));
+    }
+
+    /**
+     * Everything recorded for one turn: its segments, their transcripts, the transcript and the answer.
+     */
+    public List<JournalEntry> turn(String turnId) {
+        return entries.stream().filter(entry -> turnId.equals(entry.turnId())).toList();
+    }
+
+    /**
+     * The captured audio of a stream as one PCM stream: segments at their positions, the overlap
+     * between them once, and the silence between utterances shortened to {@link #MAX_GAP_MS}.
+     */
+    public InputStream openAudio(String stream) {
+        return assemble(segments(stream));
+    }
+
+    /**
+     * A stream's audio for {@link ReplayAudioSource}. Only holds on to the segments of that stream.
+     */
+    public ReplayAudioSource.Recording recording(String stream) {
+        List<JournalEntry> segments = segments(stream);
+        if (segments.isEmpty()) {
+            throw new IllegalArgumentException("No audio of stream " + stream + " in the journal");
+        }
+        return () -> assemble(segments);
+    }
+
+    private List<JournalEntry> segments(String stream) {
+        return entries.stream()
+                .filter(entry -> entry.type() == JournalEntry.Type.SEGMENT && Objects.equals(stream, entry.stream()))
+                .sorted(Comparator.comparingLong(JournalEntry::position))
+                .toList();
+    }
+
+    private static InputStream assemble(List<JournalEntry> segments) {
+        List<InputStream> parts = new ArrayList<>();
+        long covered = segments.isEmpty() ? 0 : segments.getFirst().position();
+        for (JournalEntry segment : segments) {
+            long end = segment.position() + segment.pcm().length;
+            if (end <= covered) continue;
+            long gap = segment.position() - covered;
+            if (gap > 0) {
+                parts.add(new ByteArrayInputStream(new byte[(int) Math.min(gap, MAX_GAP_BYTES)]));
+            }
+            int skip = (int) Math.max(0, covered - segment.position());
+            parts.add(new ByteArrayInputStream(segment.pcm(), skip, segment.pcm().length - skip));
+            covered = end;
+        }
+        return new SequenceInputStream(Collections.enumeration(parts));
+    }
+}
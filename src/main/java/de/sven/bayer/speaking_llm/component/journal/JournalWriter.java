@@ -0,0 +1,142 @@
+package de.sven.bayer.speaking_llm.component.journal;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Appends entries to memory-mapped journal files. Every run starts a new file, and so does every
+ * entry that does not fit into the current one; files beyond the count or age limit are deleted,
+ * oldest first. Entries are in the page cache as soon as they are written, so a crash of the
+ * process loses nothing that was appended. Only used from the journal's writer thread.
+ * <p>
+ * File layout: header {@code [magic, version, created]} followed by entries
+ * {@code [magic, length, crc32, payload]}, the chain ending at a zero. See {@link JournalFormat}
+ * for the payload.
+ */
+@Slf4j
+class JournalWriter implements AutoCloseable {
+    private final Path directory;
+    private final int segmentBytes;
+    private final int maxSegments;
+    private final Duration retention;
+    private final CRC32 crc = new CRC32();
+
+    private long sequence;
+    private Path currentFile;
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private int writeOffset;
+
+    JournalWriter(Path directory, int segmentBytes, int maxSegments, Duration retention) throws IOException {
+        if (segmentBytes <= JournalFormat.HEADER_BYTES + JournalFormat.ENTRY_HEADER_BYTES + 4) {
+            throw new IllegalArgumentException("Journal segments of " + segmentBytes + " bytes are too small");
+        }
+        Files.createDirectories(directory);
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.maxSegments = Math.max(1, maxSegments);
+        this.retention = retention;
+        List<Path> files = JournalFormat.files(directory);
+        this.sequence = files.isEmpty() ? 0 : JournalFormat.sequenceOf(files.getLast());
+        startSegment();
+    }
+
+    /**
+     * Writes an entry, starting a new file if the current one is full.
+     *
+     * @return {@code false} if the entry is larger than a whole file and was not written
+     */
+    boolean append(JournalEntry entry) throws IOException {
+        byte[] stream = utf8(entry.stream());
+        byte[] turnId = utf8(entry.turnId());
+        byte[] text = utf8(entry.text());
+        int payloadBytes = JournalFormat.payloadBytes(stream, turnId, text, entry.pcm());
+        int entryBytes = JournalFormat.ENTRY_HEADER_BYTES + payloadBytes;
+        if (JournalFormat.HEADER_BYTES + entryBytes + 4 > segmentBytes) {
+            return false;
+        }
+        if (writeOffset + entryBytes + 4 > segmentBytes) {
+            closeSegment();
+            startSegment();
+        }
+
+        int payloadOffset = writeOffset + JournalFormat.ENTRY_HEADER_BYTES;
+        JournalFormat.writePayload(segment, payloadOffset, entry, stream, turnId, text);
+        crc.reset();
+        crc.update(segment.slice(payloadOffset, payloadBytes));
+        segment.putInt(writeOffset + 4, payloadBytes);
+        segment.putInt(writeOffset + 8, (int) crc.getValue());
+        // Terminate the chain before the entry becomes visible, so a reader never runs past it
+        segment.putInt(writeOffset + entryBytes, 0);
+        segment.putInt(writeOffset, JournalFormat.ENTRY_MAGIC);
+        writeOffset += entryBytes;
+        return true;
+    }
+
+    Path currentFile() {
+        return currentFile;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closeSegment();
+    }
+
+    private void startSegment() throws IOException {
+        currentFile = directory.resolve(JournalFormat.fileName(++sequence));
+        // The file is sparse, pages that are never written take no disk space
+        channel = FileChannel.open(currentFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        segment.putInt(JournalFormat.HEADER_BYTES, 0);
+        segment.putInt(4, JournalFormat.VERSION);
+        segment.putLong(8, System.currentTimeMillis());
+        segment.putInt(0, JournalFormat.SEGMENT_MAGIC);
+        writeOffset = JournalFormat.HEADER_BYTES;
+        applyRetention();
+    }
+
+    private void closeSegment() throws IOException {
+        if (channel == null) return;
+        segment.force();
+        channel.close();
+        channel = null;
+        segment = null;
+    }
+
+    /**
+     * Deletes the oldest files beyond the count limit and any older than the retention, never the
+     * current one. Runs whenever a file is started; a journal that rarely fills a file needs it
+     * called in between.
+     */
+    void applyRetention() {
+        List<Path> files = JournalFormat.files(directory);
+        long cutoff = System.currentTimeMillis() - retention.toMillis();
+        int excess = files.size() - maxSegments;
+        for (Path file : files) {
+            if (file.equals(currentFile)) continue;
+            try {
+                if (excess > 0 || Files.getLastModifiedTime(file).toMillis() < cutoff) {
+                    Files.deleteIfExists(file);
+                    excess--;
+                    log.debug("Deleted journal file {}", file);
+                }
+            } catch (IOException e) {
+                log.warn("Could not delete journal file {}: {}", file, e.getMessage());
+            }
+        }
+    }
+
+    private static byte[] utf8(String text) {
+        return text == null ? null : text.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,172 @@
+package de.sven.bayer.speaking_llm.component.journal;
+
+import de.sven.bayer.speaking_llm.component.audio.capture.AudioSegment;
+import de.sven.bayer.speaking_llm.config.JournalProperties;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Append-only record of spoken turns: the audio segments sent to ASR, their transcripts, the
+ * merged transcript and the answer, for debugging bad transcriptions and replaying real traffic
+ * with a {@link JournalReader}.
+ * <p>
+ * Recording never waits for the disk. Entries are handed to a writer thread through a lock-free
+ * queue and written to memory-mapped files there; when the writer falls behind by more than the
+ * queue limit, new entries are dropped and counted. Audio is copied out of the capture ring on the
+ * ASR thread, the capture thread does not take part at all.
+ */
+@Slf4j
+@Component
+public class TurnJournal {
+    private static final long JOIN_TIMEOUT_MS = 5000;
+    // Files age out even while the current one takes long to fill
+    private static final long RETENTION_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final JournalProperties properties;
+    private final Queue<JournalEntry> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicLong queuedBytes = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final JournalWriter writer;
+    private final Thread writerThread;
+    private volatile boolean stopping;
+
+    public record Stats(long written, long dropped, long queuedBytes) {
+    }
+
+    public TurnJournal(JournalProperties properties) {
+        this.properties = properties;
+        this.writer = properties.isEnabled() ? openWriter() : null;
+        if (writer == null) {
+            writerThread = null;
+            return;
+        }
+        writerThread = new Thread(this::drain, "Turn-Journal-Writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    public boolean isEnabled() {
+        return writer != null;
+    }
+
+    /**
+     * Records the audio of a segment; has to be called before the segment is released.
+     */
+    public void segment(String stream, String turnId, AudioSegment segment) {
+        if (writer == null || !reserve(JournalEntry.sizeOf(segment.length(), null))) return;
+        offer(new JournalEntry(JournalEntry.Type.SEGMENT, System.currentTimeMillis(), stream, turnId,
+                segment.start(), null, segment.copyPcm()));
+    }
+
+    /**
+     * Records the ASR result of the segment at the given position.
+     */
+    public void segmentTranscript(String stream, String turnId, long position, String text) {
+        record(new JournalEntry(JournalEntry.Type.SEGMENT_TRANSCRIPT, System.currentTimeMillis(), stream, turnId,
+                position, text, null));
+    }
+
+    public void transcript(String turnId, String text) {
+        record(new JournalEntry(JournalEntry.Type.TRANSCRIPT, System.currentTimeMillis(), null, turnId, -1, text, null));
+    }
+
+    public void answer(String turnId, String text) {
+        record(new JournalEntry(JournalEntry.Type.ANSWER, System.currentTimeMillis(), null, turnId, -1, text, null));
+    }
+
+    public Stats stats() {
+        return new Stats(written.get(), dropped.get(), queuedBytes.get());
+    }
+
+    /**
+     * Writes what is still queued and closes the journal.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (writerThread == null) return;
+        stopping = true;
+        LockSupport.unpark(writerThread);
+        writerThread.join(JOIN_TIMEOUT_MS);
+        log.info("Turn journal closed, {} entries written, {} dropped", written.get(), dropped.get());
+    }
+
+    private void record(JournalEntry entry) {
+        if (writer != null && reserve(entry.size())) {
+            offer(entry);
+        }
+    }
+
+    // Claims room in the queue before anything is copied, so a full queue costs the caller nothing
+    private boolean reserve(long bytes) {
+        if (queuedBytes.addAndGet(bytes) <= properties.getMaxQueuedBytes()) {
+            return true;
+        }
+        queuedBytes.addAndGet(-bytes);
+        if (dropped.getAndIncrement() % 100 == 0) {
+            log.warn("Turn journal writer is behind, {} entries dropped so far", dropped.get());
+        }
+        return false;
+    }
+
+    private void offer(JournalEntry entry) {
+        queue.offer(entry);
+        LockSupport.unpark(writerThread);
+    }
+
+    private void drain() {
+        long nextRetention = System.nanoTime() + RETENTION_INTERVAL_NANOS;
+        while (true) {
+            if (System.nanoTime() - nextRetention >= 0) {
+                writer.applyRetention();
+                nextRetention = System.nanoTime() + RETENTION_INTERVAL_NANOS;
+            }
+            JournalEntry entry = queue.poll();
+            if (entry == null) {
+                if (stopping) break;
+                // An entry offered after the poll unparks the thread first, so the park returns at once
+                LockSupport.parkNanos(this, nextRetention - System.nanoTime());
+                continue;
+            }
+            queuedBytes.addAndGet(-entry.size());
+            try {
+                if (writer.append(entry)) {
+                    written.incrementAndGet();
+                } else {
+                    dropped.incrementAndGet();
+                    log.warn("Journal entry of turn {} does not fit into a journal file", entry.turnId());
+                }
+            } catch (IOException | RuntimeException e) {
+                dropped.incrementAndGet();
+                log.warn("Writing journal entry of turn {} failed: {}", entry.turnId(), e.getMessage());
+            }
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            log.warn("Closing turn journal failed: {}", e.getMessage());
+        }
+    }
+
+    private JournalWriter openWriter() {
+        Path directory = Path.of(properties.getDirectory());
+        try {
+            JournalWriter journalWriter = new JournalWriter(directory, properties.getSegmentBytes(),
+                    properties.getMaxSegments(), properties.getRetention());
+            log.info("Recording turns to {}", journalWriter.currentFile());
+            return journalWriter;
+        } catch (IOException | IllegalArgumentException e) {
+            log.warn("Turn journal disabled, cannot write to {}: {}", directory, e.getMessage());
+            return null;
+        }
+    }
+}
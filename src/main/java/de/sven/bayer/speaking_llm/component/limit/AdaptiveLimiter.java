@@ -0,0 +1,184 @@
+package de.sven.bayer.speaking_llm.component.limit;
+
+import de.sven.bayer.speaking_llm.config.LimitProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Bounds the requests in flight to one backend with a limit that follows its latency (AIMD). While
+ * responses come back about as fast as the fastest recent one, the limit grows by one per round of
+ * requests; a slow response or an error shrinks it by the backoff ratio, at most once per round
+ * trip so a burst of slow responses counts as one congestion signal.
+ * <p>
+ * Requests beyond the limit wait in a bounded queue. A request that finds the queue full or waits
+ * longer than the maximum wait fails with a {@link BackendOverloadedException} instead of piling up.
+ */
+@Slf4j
+public class AdaptiveLimiter {
+    // The baseline drifts towards slower responses, so a backend that got slower for good is not
+    // seen as congested forever
+    private static final double BASELINE_DRIFT = 0.01;
+
+    private final String name;
+    private final LimitProperties.Limit properties;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition slotFreed = lock.newCondition();
+    private final Counter rejected;
+
+    private double limit;
+    private int inFlight;
+    private int queued;
+    private double baselineNanos = Double.NaN;
+    private long lastDecreaseNanos;
+    // nanoTime has no fixed origin, so there is no start value that is surely a round trip ago
+    private boolean decreased;
+
+    public AdaptiveLimiter(String name, LimitProperties.Limit properties, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.properties = properties;
+        this.limit = Math.clamp(properties.getInitialLimit(), properties.getMinLimit(), properties.getMaxLimit());
+        Gauge.builder("speaking.backend.limit", this, AdaptiveLimiter::limit).tag("backend", name).register(meterRegistry);
+        Gauge.builder("speaking.backend.inflight", this, AdaptiveLimiter::inFlight).tag("backend", name).register(meterRegistry);
+        Gauge.builder("speaking.backend.queued", this, AdaptiveLimiter::queued).tag("backend", name).register(meterRegistry);
+        this.rejected = Counter.builder("speaking.backend.rejected").tag("backend", name).register(meterRegistry);
+    }
+
+    /**
+     * Runs the request once a slot is free and feeds its latency back into the limit.
+     *
+     * @throws BackendOverloadedException if the request was not sent
+     */
+    public <T> T call(Supplier<T> request) {
+        acquire();
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            T result = request.get();
+            failed = false;
+            return result;
+        } finally {
+            release(System.nanoTime() - start, failed);
+        }
+    }
+
+    /**
+     * True while requests are waiting for a slot, callers can then send fewer, larger requests.
+     */
+    public boolean isSaturated() {
+        lock.lock();
+        try {
+            return queued > 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Longest time a request waits for a slot before it is rejected.
+     */
+    public Duration maxWait() {
+        return properties.getMaxWait();
+    }
+
+    public int limit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int inFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int queued() {
+        lock.lock();
+        try {
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void acquire() {
+        lock.lock();
+        try {
+            if (inFlight < (int) limit) {
+                inFlight++;
+                return;
+            }
+            if (queued >= properties.getMaxQueue()) {
+                throw reject("queue full");
+            }
+            queued++;
+            try {
+                long remaining = properties.getMaxWait().toNanos();
+                while (inFlight >= (int) limit) {
+                    if (remaining <= 0) {
+                        throw reject("waited " + properties.getMaxWait().toMillis() + " ms");
+                    }
+                    remaining = slotFreed.awaitNanos(remaining);
+                }
+                inFlight++;
+            } finally {
+                queued--;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw reject("interrupted while waiting");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void release(long latencyNanos, boolean failed) {
+        lock.lock();
+        try {
+            inFlight--;
+            long now = System.nanoTime();
+            if (failed || isCongested(latencyNanos)) {
+                // One decrease per round trip, the responses of the same burst carry no new information
+                if (!decreased || now - lastDecreaseNanos >= latencyNanos) {
+                    limit = Math.max(properties.getMinLimit(), limit * properties.getBackoffRatio());
+                    lastDecreaseNanos = now;
+                    decreased = true;
+                }
+            } else if (inFlight + 1 >= (int) limit / 2) {
+                // Only grow while the limit is actually used
+                limit = Math.min(properties.getMaxLimit(), limit + 1 / limit);
+            }
+            slotFreed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean isCongested(long latencyNanos) {
+        if (Double.isNaN(baselineNanos) || latencyNanos < baselineNanos) {
+            baselineNanos = latencyNanos;
+            return false;
+        }
+        baselineNanos += (latencyNanos - baselineNanos) * BASELINE_DRIFT;
+        return latencyNanos > baselineNanos * properties.getLatencyTolerance();
+    }
+
+    private BackendOverloadedException reject(String reason) {
+        rejected.increment();
+        log.debug("Rejected {} request, {} in flight at limit {}: {}", name, inFlight, (int) limit, reason);
+        return new BackendOverloadedException(name, reason);
+    }
+}
@@ -0,0 +1,28 @@
+package de.sven.bayer.speaking_llm.component.limit;
+
+import de.sven.bayer.speaking_llm.config.LimitProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+/**
+ * The adaptive limiters in front of whisper and Zonos. The chatbot is not limited, its streamed
+ * answers take as long as the answer is and say nothing about congestion.
+ */
+@Component
+public class BackendLimiters {
+    private final AdaptiveLimiter asr;
+    private final AdaptiveLimiter tts;
+
+    public BackendLimiters(LimitProperties limitProperties, MeterRegistry meterRegistry) {
+        this.asr = new AdaptiveLimiter("asr", limitProperties.getAsr(), meterRegistry);
+        this.tts = new AdaptiveLimiter("tts", limitProperties.getTts(), meterRegistry);
+    }
+
+    public AdaptiveLimiter asr() {
+        return asr;
+    }
+
+    public AdaptiveLimiter tts() {
+        return tts;
+    }
+}
@@ -0,0 +1,18 @@
+package de.sven.bayer.speaking_llm.component.limit;
+
+/**
+ * A request was not sent because the backend already has as many requests queued as allowed, or
+ * because it waited too long for a free slot.
+ */
+public class BackendOverloadedException extends RuntimeException {
+    private final String backend;
+
+    public BackendOverloadedException(String backend, String reason) {
+        super(backend + " overloaded: " + reason);
+        this.backend = backend;
+    }
+
+    public String backend() {
+        return backend;
+    }
+}
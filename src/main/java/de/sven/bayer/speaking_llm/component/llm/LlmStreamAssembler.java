@@ -0,0 +1,88 @@
+package de.sven.bayer.speaking_llm.component.llm;
+
+import de.sven.bayer.speaking_llm.component.SentenceStream;
+import de.sven.bayer.speaking_llm.model.conversation.LlmAnswerWithThink;
+
+/**
+ * Builds an {@link LlmAnswerWithThink} from a streamed LLM response while forwarding the spoken
+ * part sentence by sentence. Accepts SSE events as well as chunked JSON deltas.
+ * One instance per stream, not thread-safe.
+ */
+public class LlmStreamAssembler {
+    public static final String DONE_MARKER = "[DONE]";
+
+    private final ThinkTagFilter thinkTagFilter = new ThinkTagFilter();
+    private final StringBuilder answer = new StringBuilder();
+    private final StringBuilder separateThink = new StringBuilder();
+    private final SentenceStream sentenceStream;
+    private String conversationId;
+    private boolean done;
+
+    public LlmStreamAssembler(SentenceStream sentenceStream, String conversationId) {
+        this.sentenceStream = sentenceStream;
+        this.conversationId = conversationId;
+    }
+
+    /**
+     * Handles one SSE event. Unnamed, {@code token} and {@code message} events carry answer text,
+     * {@code think} events carry reasoning and {@code conversation} events the conversation id.
+     */
+    public void onEvent(String event, String data) {
+        if (event == null || event.equals("message") || event.equals("token")) {
+            if (DONE_MARKER.equals(data)) {
+                done = true;
+            } else {
+                onAnswerChunk(data);
+            }
+            return;
+        }
+        switch (event) {
+            case "think" -> separateThink.append(data);
+            case "conversation", "conversationId" -> onConversationId(data);
+            case "done" -> done = true;
+            default -> { /* unknown events are ignored, as the SSE spec demands */ }
+        }
+    }
+
+    /**
+     * Handles one chunked JSON delta, which has the same shape as the blocking answer.
+     */
+    public void onDelta(LlmAnswerWithThink delta) {
+        if (delta.think() != null) separateThink.append(delta.think());
+        if (delta.answer() != null) onAnswerChunk(delta.answer());
+        onConversationId(delta.conversationId());
+    }
+
+    public void onConversationId(String conversationId) {
+        if (conversationId != null && !conversationId.isBlank()) {
+            this.conversationId = conversationId.trim();
+        }
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+
+    public boolean hasSpoken() {
+        return sentenceStream.hasEmitted();
+    }
+
+    /**
+     * Flushes the last sentence and returns the complete answer.
+     */
+    public LlmAnswerWithThink finish() {
+        String rest = thinkTagFilter.flush();
+        answer.append(rest);
+        sentenceStream.append(rest);
+        sentenceStream.flush();
+
+        String think = !separateThink.isEmpty() ? separateThink.toString().trim() : thinkTagFilter.think();
+        return new LlmAnswerWithThink(answer.toString().trim(), think, conversationId);
+    }
+
+    private void onAnswerChunk(String chunk) {
+        String spoken = thinkTagFilter.accept(chunk);
+        answer.append(spoken);
+        sentenceStream.append(spoken);
+    }
+}
@@ -0,0 +1,81 @@
+package de.sven.bayer.speaking_llm.component.llm;
+
+/**
+ * Separates the {@code <think>...</think>} part of a streamed LLM answer from the spoken answer.
+ * Tags may be split across chunks, so a possible partial tag at the end of a chunk is held back
+ * until the next chunk arrives. One instance per stream, not thread-safe.
+ */
+public class ThinkTagFilter {
+    private static final String OPEN_TAG = "<think>";
+    private static final String CLOSE_TAG = "</think>";
+
+    private final StringBuilder think = new StringBuilder();
+    private final StringBuilder pending = new StringBuilder();
+    private boolean inThink;
+
+    /**
+     * Feeds the next chunk and returns the part of it that belongs to the answer.
+     */
+    public String accept(String chunk) {
+        pending.append(chunk);
+        StringBuilder answer = new StringBuilder();
+        while (!pending.isEmpty()) {
+            String tag = inThink ? CLOSE_TAG : OPEN_TAG;
+            int tagStart = pending.indexOf(tag);
+            if (tagStart >= 0) {
+                emit(answer, pending.substring(0, tagStart));
+                pending.delete(0, tagStart + tag.length());
+                inThink = !inThink;
+                continue;
+            }
+            int keep = partialTagLength(tag);
+            emit(answer, pending.substring(0, pending.length() - keep));
+            pending.delete(0, pending.length() - keep);
+            break;
+        }
+        return answer.toString();
+    }
+
+    /**
+     * Releases whatever was held back as a possible partial tag.
+     */
+    public String flush() {
+        StringBuilder answer = new StringBuilder();
+        emit(answer, pending.toString());
+        pending.setLength(0);
+        return answer.toString();
+    }
+
+    public String think() {
+        return think.toString().trim();
+    }
+
+    private void emit(StringBuilder answer, String text) {
+        if (inThink) {
+            think.append(text);
+        } else {
+            answer.append(text);
+        }
+    }
+
+    // Length of the longest suffix of the pending text that is a prefix of the tag
+    private int partialTagLength(String tag) {
+        int max = Math.min(tag.length() - 1, pending.length());
+        for (int length = max; length > 0; length--) {
+            if (endsWithPrefix(tag, length)) {
+                return length;
+            }
+        }
+        return 0;
+    }
+
+    private boolean endsWithPrefix(String tag, int length) {
+        int offset = pending.length() - length;
+        for (int i = 0; i < length; i++) {
+            if (pending.charAt(offset + i) != tag.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,124 @@
+package de.sven.bayer.speaking_llm.component.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Records the stages of a turn into Micrometer timers and into the turn's {@link TurnTrace}, and
+ * keeps the traces of the most recent turns for the {@code turns} actuator endpoint. All methods
+ * accept a {@code null} trace for work that does not belong to a turn; it is then only counted in
+ * the timers.
+ */
+@Component
+public class TurnMetrics {
+    private static final int RECENT_TURNS = 100;
+
+    private final MeterRegistry meterRegistry;
+    private final Map<TurnStage, Timer> timers = new EnumMap<>(TurnStage.class);
+    private final Deque<TurnTrace> recentTurns = new ArrayDeque<>();
+
+    public TurnMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        for (TurnStage stage : TurnStage.values()) {
+            Timer.Builder builder = Timer.builder(stage.meterName())
+                    .publishPercentiles(0.5, 0.9, 0.99);
+            if (stage == TurnStage.TIME_TO_FIRST_AUDIO || stage == TurnStage.TURN) {
+                builder.publishPercentileHistogram();
+            }
+            timers.put(stage, builder.register(meterRegistry));
+        }
+    }
+
+    /**
+     * Starts the trace of a new turn.
+     *
+     * @param origin where the turn came from, e.g. {@code voice} or {@code api}
+     */
+    public TurnTrace startTurn(String origin) {
+        TurnTrace trace = new TurnTrace(UUID.randomUUID().toString(), origin);
+        synchronized (recentTurns) {
+            recentTurns.addFirst(trace);
+            if (recentTurns.size() > RECENT_TURNS) {
+                recentTurns.removeLast();
+            }
+        }
+        return trace;
+    }
+
+    public <T> T time(TurnTrace trace, TurnStage stage, Supplier<T> work) {
+        long start = System.nanoTime();
+        try {
+            return work.get();
+        } finally {
+            record(trace, stage, start, System.nanoTime() - start);
+        }
+    }
+
+    public void record(TurnTrace trace, TurnStage stage, long startNanos, long durationNanos) {
+        timers.get(stage).record(durationNanos, TimeUnit.NANOSECONDS);
+        if (trace != null) {
+            trace.add(stage, startNanos, durationNanos);
+        }
+    }
+
+    /**
+     * Records a stage that began at the start of the turn and ends now.
+     */
+    public void sinceStart(TurnTrace trace, TurnStage stage) {
+        record(trace, stage, trace.startNanos(), System.nanoTime() - trace.startNanos());
+    }
+
+    /**
+     * Records time-to-first-audio the first time answer audio of the turn starts playing.
+     */
+    public void audioStarted(TurnTrace trace) {
+        long now = System.nanoTime();
+        if (trace != null && trace.markFirstAudio(now)) {
+            record(trace, TurnStage.TIME_TO_FIRST_AUDIO, trace.startNanos(), now - trace.startNanos());
+        }
+    }
+
+    public void finishTurn(TurnTrace trace) {
+        trace.markEnd(System.nanoTime());
+        sinceStart(trace, TurnStage.TURN);
+    }
+
+    /**
+     * Counts speculative LLM requests by outcome: {@code started}, {@code hit} or {@code wasted}.
+     */
+    public void speculation(String outcome) {
+        meterRegistry.counter("speaking.speculation", "outcome", outcome).increment();
+    }
+
+    /**
+     * Starts a new trace for the same utterance, keeping its start, e.g. after a speculation missed.
+     */
+    public TurnTrace restartTurn(TurnTrace previous) {
+        TurnTrace trace = startTurn(previous.origin());
+        trace.startAt(previous.startNanos());
+        return trace;
+    }
+
+    public List<TurnTrace.Timings> recentTurns() {
+        synchronized (recentTurns) {
+            return recentTurns.stream().map(TurnTrace::timings).toList();
+        }
+    }
+
+    public Optional<TurnTrace.Timings> turn(String turnId) {
+        synchronized (recentTurns) {
+            return recentTurns.stream().filter(trace -> trace.turnId().equals(turnId)).findFirst().map(TurnTrace::timings);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package de.sven.bayer.speaking_llm.component.metrics;
+
+/**
+ * Timed stages of a turn with the name of their Micrometer timer.
+ */
+public enum TurnStage {
+    /** From the end of the user's speech until the transcript of all segments is merged. */
+    TRANSCRIPT_READY("speaking.turn.transcript-ready"),
+    /** One upload to whisper. */
+    ASR_REQUEST("speaking.asr.request"),
+    /** The whole answer from the chatbot, streamed or blocking. */
+    LLM_REQUEST("speaking.llm.request"),
+    /** From sending the message until the first complete sentence arrived. */
+    LLM_FIRST_SENTENCE("speaking.llm.first-sentence"),
+    /** One synthesis request to Zonos; cache hits are not counted. */
+    TTS_REQUEST("speaking.tts.request"),
+    /** From handing a clip to the audio sink until it starts playing. */
+    PLAYER_QUEUE_WAIT("speaking.player.queue-wait"),
+    /** From the end of the user's speech, or the message arriving, until the first answer audio plays. */
+    TIME_TO_FIRST_AUDIO("speaking.turn.time-to-first-audio"),
+    /** From the start of the turn until the last clip of the answer was handed to the audio sink. */
+    TURN("speaking.turn.duration");
+
+    private final String meterName;
+
+    TurnStage(String meterName) {
+        this.meterName = meterName;
+    }
+
+    public String meterName() {
+        return meterName;
+    }
+}
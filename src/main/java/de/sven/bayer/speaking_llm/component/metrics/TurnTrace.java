@@ -0,0 +1,96 @@
+package de.sven.bayer.speaking_llm.component.metrics;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stage timings of one turn, recorded from whichever thread runs the stage. Offsets are relative
+ * to the start of the turn, which for spoken turns is the end of the user's speech.
+ */
+public class TurnTrace {
+    private static final long NOT_SET = -1;
+
+    public record StageTiming(TurnStage stage, long offsetMs, long durationMs) {
+    }
+
+    private record Stage(TurnStage stage, long startNanos, long durationNanos) {
+    }
+
+    public record Timings(String turnId, String origin, Instant startedAt, Long timeToFirstAudioMs,
+                          Long durationMs, List<StageTiming> stages) {
+    }
+
+    private final String turnId;
+    private final String origin;
+    private final Instant createdAt = Instant.now();
+    private final long createdNanos = System.nanoTime();
+    private final Queue<Stage> stages = new ConcurrentLinkedQueue<>();
+    private volatile long startNanos;
+    private final AtomicLong firstAudioNanos = new AtomicLong(NOT_SET);
+    private volatile long endNanos = NOT_SET;
+
+    TurnTrace(String turnId, String origin) {
+        this.turnId = turnId;
+        this.origin = origin;
+        this.startNanos = createdNanos;
+    }
+
+    public String turnId() {
+        return turnId;
+    }
+
+    String origin() {
+        return origin;
+    }
+
+    void startAt(long nanos) {
+        startNanos = nanos;
+    }
+
+    /**
+     * Moves the start of the turn to now; called when the end of the user's speech is detected.
+     */
+    public void speechEnded() {
+        startNanos = System.nanoTime();
+    }
+
+    long startNanos() {
+        return startNanos;
+    }
+
+    void add(TurnStage stage, long stageStartNanos, long durationNanos) {
+        stages.add(new Stage(stage, stageStartNanos, durationNanos));
+    }
+
+    /**
+     * Returns true for the first call only.
+     */
+    boolean markFirstAudio(long nanos) {
+        return firstAudioNanos.compareAndSet(NOT_SET, nanos);
+    }
+
+    void markEnd(long nanos) {
+        endNanos = nanos;
+    }
+
+    // Offsets are taken here, a stage recorded before the speech ended stays before the start
+    public Timings timings() {
+        long start = startNanos;
+        long firstAudio = firstAudioNanos.get();
+        long end = endNanos;
+        return new Timings(turnId, origin, createdAt.plusNanos(start - createdNanos),
+                firstAudio == NOT_SET ? null : toMillis(firstAudio - start),
+                end == NOT_SET ? null : toMillis(end - start),
+                stages.stream()
+                        .map(stage -> new StageTiming(stage.stage(), toMillis(stage.startNanos() - start), toMillis(stage.durationNanos())))
+                        .toList());
+    }
+
+    private static long toMillis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+}
@@ -0,0 +1,31 @@
+package de.sven.bayer.speaking_llm.component.metrics;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * {@code /actuator/turns}: stage-by-stage timings of the recent turns, newest first.
+ */
+@Component
+@Endpoint(id = "turns")
+public class TurnsEndpoint {
+    private final TurnMetrics turnMetrics;
+
+    public TurnsEndpoint(TurnMetrics turnMetrics) {
+        this.turnMetrics = turnMetrics;
+    }
+
+    @ReadOperation
+    public List<TurnTrace.Timings> recentTurns() {
+        return turnMetrics.recentTurns();
+    }
+
+    @ReadOperation
+    public TurnTrace.Timings turn(@Selector String turnId) {
+        return turnMetrics.turn(turnId).orElse(null);
+    }
+}
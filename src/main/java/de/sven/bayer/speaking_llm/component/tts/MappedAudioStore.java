@@ -0,0 +1,185 @@
+package de.sven.bayer.speaking_llm.component.tts;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only clip store on a fixed number of memory-mapped segment files. New clips go into the
+ * current segment; when it is full the oldest segment is wiped and reused, which evicts all of its
+ * clips at once. Every entry carries a CRC, so a store that was cut off mid-write is read back up
+ * to the last complete entry.
+ * <p>
+ * Segment layout: header {@code [magic, version, generation]} followed by entries
+ * {@code [magic, key (64 hex chars), length, crc32, data]}.
+ */
+@Slf4j
+class MappedAudioStore implements AutoCloseable {
+    private static final int SEGMENT_MAGIC = 0x54545343; // "TTSC"
+    private static final int ENTRY_MAGIC = 0x434c4950;   // "CLIP"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    private static final int KEY_BYTES = 64;
+    private static final int ENTRY_HEADER_BYTES = 4 + KEY_BYTES + 4 + 4;
+
+    private record Location(int segment, int offset, int length) {
+    }
+
+    private final FileChannel[] channels;
+    private final MappedByteBuffer[] segments;
+    private final long[] generations;
+    private final List<List<String>> keysBySegment = new ArrayList<>();
+    private final Map<String, Location> index = new HashMap<>();
+    private int current;
+    private int writeOffset;
+
+    MappedAudioStore(Path directory, int segmentBytes, int segmentCount) throws IOException {
+        Files.createDirectories(directory);
+        channels = new FileChannel[segmentCount];
+        segments = new MappedByteBuffer[segmentCount];
+        generations = new long[segmentCount];
+        int[] ends = new int[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            channels[i] = FileChannel.open(directory.resolve("tts-cache-" + i + ".seg"),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            segments[i] = channels[i].map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+            keysBySegment.add(new ArrayList<>());
+            ends[i] = load(i);
+            if (generations[i] > generations[current]) {
+                current = i;
+            }
+        }
+        if (generations[current] == 0) {
+            reset(current, 1);
+        }
+        writeOffset = ends[current] > 0 ? ends[current] : HEADER_BYTES;
+        log.info("Opened TTS disk cache in {} with {} clips", directory, index.size());
+    }
+
+    synchronized byte[] get(String key) {
+        Location location = index.get(key);
+        if (location == null) {
+            return null;
+        }
+        byte[] audio = new byte[location.length()];
+        segments[location.segment()].get(location.offset(), audio);
+        return audio;
+    }
+
+    /**
+     * Stores a clip and returns the number of clips evicted to make room for it.
+     */
+    synchronized int put(String key, byte[] audio) {
+        int entryBytes = ENTRY_HEADER_BYTES + audio.length;
+        if (index.containsKey(key) || HEADER_BYTES + entryBytes + 4 > segments[current].capacity()) {
+            return 0;
+        }
+        int evicted = 0;
+        if (writeOffset + entryBytes + 4 > segments[current].capacity()) {
+            int oldest = oldestSegment();
+            evicted = keysBySegment.get(oldest).size();
+            reset(oldest, generations[current] + 1);
+            current = oldest;
+            writeOffset = HEADER_BYTES;
+        }
+
+        MappedByteBuffer segment = segments[current];
+        CRC32 crc = new CRC32();
+        crc.update(audio);
+        segment.put(writeOffset + ENTRY_HEADER_BYTES, audio);
+        segment.putInt(writeOffset + 4 + KEY_BYTES, audio.length);
+        segment.putInt(writeOffset + 4 + KEY_BYTES + 4, (int) crc.getValue());
+        segment.put(writeOffset + 4, key.getBytes(StandardCharsets.US_ASCII));
+        segment.putInt(writeOffset, ENTRY_MAGIC);
+        // Terminate the chain so stale entries of an earlier generation are not read back after a restart
+        segment.putInt(writeOffset + entryBytes, 0);
+
+        index.put(key, new Location(current, writeOffset + ENTRY_HEADER_BYTES, audio.length));
+        keysBySegment.get(current).add(key);
+        writeOffset += entryBytes;
+        return evicted;
+    }
+
+    synchronized int size() {
+        return index.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        for (int i = 0; i < segments.length; i++) {
+            segments[i].force();
+            channels[i].close();
+        }
+    }
+
+    // Scans a segment and returns the offset after its last valid entry, or 0 if it is not initialised
+    private int load(int segmentIndex) {
+        MappedByteBuffer segment = segments[segmentIndex];
+        if (segment.getInt(0) != SEGMENT_MAGIC || segment.getInt(4) != VERSION) {
+            return 0;
+        }
+        generations[segmentIndex] = segment.getLong(8);
+        int offset = HEADER_BYTES;
+        byte[] keyBytes = new byte[KEY_BYTES];
+        while (offset + ENTRY_HEADER_BYTES <= segment.capacity() && segment.getInt(offset) == ENTRY_MAGIC) {
+            int length = segment.getInt(offset + 4 + KEY_BYTES);
+            if (length < 0 || offset + ENTRY_HEADER_BYTES + length > segment.capacity()
+                    || !crcMatches(segment, offset + ENTRY_HEADER_BYTES, length, segment.getInt(offset + 4 + KEY_BYTES + 4))) {
+                break;
+            }
+            segment.get(offset + 4, keyBytes);
+            String key = new String(keyBytes, StandardCharsets.US_ASCII);
+            Location previous = index.get(key);
+            if (previous == null || generations[previous.segment()] < generations[segmentIndex]) {
+                index.put(key, new Location(segmentIndex, offset + ENTRY_HEADER_BYTES, length));
+            }
+            keysBySegment.get(segmentIndex).add(key);
+            offset += ENTRY_HEADER_BYTES + length;
+        }
+        return offset;
+    }
+
+    private static boolean crcMatches(MappedByteBuffer segment, int offset, int length, int expected) {
+        CRC32 crc = new CRC32();
+        crc.update(segment.slice(offset, length));
+        return (int) crc.getValue() == expected;
+    }
+
+    private void reset(int segmentIndex, long generation) {
+        for (String key : keysBySegment.get(segmentIndex)) {
+            Location location = index.get(key);
+            if (location != null && location.segment() == segmentIndex) {
+                index.remove(key);
+            }
+        }
+        keysBySegment.get(segmentIndex).clear();
+
+        MappedByteBuffer segment = segments[segmentIndex];
+        segment.putInt(HEADER_BYTES, 0);
+        segment.putInt(0, SEGMENT_MAGIC);
+        segment.putInt(4, VERSION);
+        segment.putLong(8, generation);
+        generations[segmentIndex] = generation;
+    }
+
+    private int oldestSegment() {
+        int oldest = 0;
+        for (int i = 1; i < generations.length; i++) {
+            if (generations[i] < generations[oldest]) {
+                oldest = i;
+            }
+        }
+        return oldest;
+    }
+}
@@ -0,0 +1,122 @@
+package de.sven.bayer.speaking_llm.component.tts;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The synthesized WAV of one sentence, either complete in memory or still downloading from the
+ * TTS service. A downloading clip is read once, as its bytes arrive; closing it aborts the download.
+ */
+public final class SpeechClip implements AutoCloseable {
+    private final byte[] wav;
+    private final InputStream download;
+    private boolean opened;
+
+    private SpeechClip(byte[] wav, InputStream download) {
+        this.wav = wav;
+        this.download = download;
+    }
+
+    public static SpeechClip of(byte[] wav) {
+        return new SpeechClip(wav, null);
+    }
+
+    public static SpeechClip downloading(InputStream wav) {
+        return new SpeechClip(null, wav);
+    }
+
+    public boolean isDownloading() {
+        return download != null;
+    }
+
+    /**
+     * The same clip, running {@code done} once its download has been read to the end or closed. A
+     * clip in memory runs it right away.
+     */
+    public SpeechClip whenDone(Runnable done) {
+        if (download == null) {
+            done.run();
+            return this;
+        }
+        return new SpeechClip(null, new DoneInputStream(download, done));
+    }
+
+    /**
+     * Reads the clip from the start. A downloading clip can only be opened once.
+     */
+    public synchronized InputStream open() {
+        if (wav != null) {
+            return new ByteArrayInputStream(wav);
+        }
+        if (opened) {
+            throw new IllegalStateException("Downloading clip was already opened");
+        }
+        opened = true;
+        return download;
+    }
+
+    /**
+     * The whole clip, waiting for the rest of the download if needed.
+     */
+    public byte[] readAllBytes() throws IOException {
+        if (wav != null) {
+            return wav;
+        }
+        try (InputStream in = open()) {
+            return in.readAllBytes();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (download != null) {
+            try {
+                download.close();
+            } catch (IOException ignored) {
+                // Only releasing the connection
+            }
+        }
+    }
+
+    private static final class DoneInputStream extends FilterInputStream {
+        private final Runnable done;
+        private final AtomicBoolean ran = new AtomicBoolean();
+
+        DoneInputStream(InputStream in, Runnable done) {
+            super(in);
+            this.done = done;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b < 0) done();
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n < 0) done();
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                done();
+            }
+        }
+
+        private void done() {
+            if (ran.compareAndSet(false, true)) {
+                done.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package de.sven.bayer.speaking_llm.component.tts;
+
+import de.sven.bayer.speaking_llm.config.TtsProperties;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Cache for synthesized sentences in front of the TTS service. A size-bounded LRU on the heap is
+ * backed by a {@link MappedAudioStore} on disk that survives restarts. Clips are keyed by the
+ * normalized sentence and the voice profile.
+ * <p>
+ * The disk store is opened in the background, so startup does not wait for the segment files to
+ * be mapped and scanned; the first lookup waits for it if it is not open yet.
+ */
+@Slf4j
+@Component
+public class TtsAudioCache {
+    private final TtsProperties.Cache properties;
+    private final String voiceProfile;
+    private final CompletableFuture<MappedAudioStore> diskStore;
+    private final LinkedHashMap<String, byte[]> memory = new LinkedHashMap<>(64, 0.75f, true);
+    private long memoryBytes;
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong memoryEvictions = new AtomicLong();
+    private final AtomicLong diskEvictions = new AtomicLong();
+
+    /**
+     * Evictions are counted per tier: a clip dropped from memory may still be on disk, one dropped
+     * from disk is gone.
+     */
+    public record Stats(long memoryHits, long diskHits, long misses, long memoryEvictions, long diskEvictions,
+                        int memoryEntries, long memoryBytes) {
+    }
+
+    public TtsAudioCache(TtsProperties ttsProperties, MeterRegistry meterRegistry) {
+        this.properties = ttsProperties.getCache();
+        this.voiceProfile = ttsProperties.getVoiceProfile();
+        FunctionCounter.builder("speaking.tts.cache.evictions", memoryEvictions, AtomicLong::get)
+                .tag("tier", "memory").register(meterRegistry);
+        FunctionCounter.builder("speaking.tts.cache.evictions", diskEvictions, AtomicLong::get)
+                .tag("tier", "disk").register(meterRegistry);
+        this.diskStore = properties.isEnabled()
+                ? CompletableFuture.supplyAsync(this::openDiskStore, task -> Thread.ofVirtual().name("tts-cache-open").start(task))
+                : CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Returns the cached clip for the sentence or synthesizes and caches it.
+     */
+    public byte[] get(String sentence, Function<String, byte[]> synthesizer) {
+        if (!properties.isEnabled()) {
+            return synthesizer.apply(sentence);
+        }
+        String key = key(sentence);
+        byte[] audio = lookup(key);
+        if (audio != null) {
+            return audio;
+        }
+        misses.incrementAndGet();
+        audio = synthesizer.apply(sentence);
+        store(key, audio);
+        return audio;
+    }
+
+    /**
+     * Like {@link #get(String, Function)} for clips that may still be downloading. Such a clip is
+     * cached once it has been read to the end, one cut off by cancelled playback is not.
+     */
+    public SpeechClip getClip(String sentence, Function<String, SpeechClip> synthesizer) {
+        if (!properties.isEnabled()) {
+            return synthesizer.apply(sentence);
+        }
+        String key = key(sentence);
+        byte[] audio = lookup(key);
+        if (audio != null) {
+            return SpeechClip.of(audio);
+        }
+        misses.incrementAndGet();
+        SpeechClip clip = synthesizer.apply(sentence);
+        if (clip == null || !clip.isDownloading()) {
+            return clip;
+        }
+        return SpeechClip.downloading(new CopyingInputStream(clip.open(), complete -> store(key, complete)));
+    }
+
+    public Stats stats() {
+        synchronized (memory) {
+            return new Stats(memoryHits.get(), diskHits.get(), misses.get(), memoryEvictions.get(), diskEvictions.get(),
+                    memory.size(), memoryBytes);
+        }
+    }
+
+    String key(String sentence) {
+        String normalized = Normalizer.normalize(sentence, Normalizer.Form.NFC).strip().replaceAll("\\s+", " ");
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(voiceProfile.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            return HexFormat.of().formatHex(digest.digest(normalized.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private byte[] lookup(String key) {
+        byte[] audio = fromMemory(key);
+        if (audio != null) {
+            memoryHits.incrementAndGet();
+            return audio;
+        }
+        MappedAudioStore disk = diskStore.join();
+        audio = disk != null ? disk.get(key) : null;
+        if (audio != null) {
+            diskHits.incrementAndGet();
+            toMemory(key, audio);
+        }
+        return audio;
+    }
+
+    private void store(String key, byte[] audio) {
+        if (audio != null && audio.length > 0) {
+            toMemory(key, audio);
+            MappedAudioStore disk = diskStore.join();
+            if (disk != null) {
+                diskEvictions.addAndGet(disk.put(key, audio));
+            }
+        }
+    }
+
+    private byte[] fromMemory(String key) {
+        synchronized (memory) {
+            return memory.get(key);
+        }
+    }
+
+    private void toMemory(String key, byte[] audio) {
+        if (audio.length > properties.getMemoryMaxBytes()) return;
+        synchronized (memory) {
+            byte[] previous = memory.put(key, audio);
+            memoryBytes += audio.length - (previous != null ? previous.length : 0);
+            Iterator<Map.Entry<String, byte[]>> eldest = memory.entrySet().iterator();
+            while (memoryBytes > properties.getMemoryMaxBytes() && eldest.hasNext()) {
+                memoryBytes -= eldest.next().getValue().length;
+                eldest.remove();
+                memoryEvictions.incrementAndGet();
+            }
+        }
+    }
+
+    private MappedAudioStore openDiskStore() {
+        if (properties.getDirectory() == null || properties.getDirectory().isBlank()) {
+            return null;
+        }
+        try {
+            return new MappedAudioStore(Path.of(properties.getDirectory()), properties.getSegmentBytes(), properties.getSegments());
+        } catch (IOException | RuntimeException e) {
+            log.warn("TTS disk cache unavailable, caching in memory only: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        MappedAudioStore disk = diskStore.join();
+        if (disk != null) {
+            disk.close();
+        }
+    }
+
+    // Keeps a copy of everything read and hands it on once the stream has been read to its end
+    private static final class CopyingInputStream extends FilterInputStream {
+        private final ByteArrayOutputStream copy = new ByteArrayOutputStream();
+        private final Consumer<byte[]> onComplete;
+        private boolean complete;
+
+        CopyingInputStream(InputStream in, Consumer<byte[]> onComplete) {
+            super(in);
+            this.onComplete = onComplete;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                copy.write(b);
+            } else {
+                complete();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                copy.write(buffer, offset, read);
+            } else if (read < 0) {
+                complete();
+            }
+            return read;
+        }
+
+        // Skipped bytes still belong in the copy
+        @Override
+        public long skip(long n) throws IOException {
+            if (n <= 0) {
+                return 0;
+            }
+            return Math.max(0, read(new byte[(int) Math.min(n, 8192)]));
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private void complete() {
+            if (!complete) {
+                complete = true;
+                onComplete.accept(copy.toByteArray());
+            }
+        }
+    }
+}
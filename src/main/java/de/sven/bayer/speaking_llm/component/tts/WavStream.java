@@ -0,0 +1,95 @@
+package de.sven.bayer.speaking_llm.component.tts;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads the RIFF header of a WAV stream in one pass and leaves the stream at the first sample, so
+ * the audio can be played while the rest is still arriving. Unlike
+ * {@link AudioSystem#getAudioInputStream(InputStream)} it needs no mark support and does not probe
+ * every installed file reader. A data size of 0 or 0xFFFFFFFF, as streaming servers write it, means
+ * the samples run to the end of the stream.
+ */
+public final class WavStream {
+    private static final int PCM = 1;
+    private static final int IEEE_FLOAT = 3;
+    private static final int EXTENSIBLE = 0xFFFE;
+
+    private WavStream() {
+    }
+
+    public static AudioInputStream open(InputStream wav) throws IOException, UnsupportedAudioFileException {
+        DataInputStream in = new DataInputStream(wav);
+        if (readTag(in) != tag("RIFF")) {
+            throw new UnsupportedAudioFileException("Not a RIFF file");
+        }
+        readIntLe(in);
+        if (readTag(in) != tag("WAVE")) {
+            throw new UnsupportedAudioFileException("Not a WAVE file");
+        }
+        AudioFormat format = null;
+        while (true) {
+            int chunk = readTag(in);
+            long size = readIntLe(in) & 0xFFFFFFFFL;
+            if (chunk == tag("fmt ")) {
+                format = readFormat(in, size);
+            } else if (chunk == tag("data")) {
+                if (format == null) {
+                    throw new UnsupportedAudioFileException("WAV data before its format");
+                }
+                long frames = size == 0 || size == 0xFFFFFFFFL ? AudioSystem.NOT_SPECIFIED : size / format.getFrameSize();
+                return new AudioInputStream(in, format, frames);
+            } else {
+                // Chunks are padded to an even size
+                in.skipNBytes(size + (size & 1));
+            }
+        }
+    }
+
+    private static AudioFormat readFormat(DataInputStream in, long size) throws IOException, UnsupportedAudioFileException {
+        int formatTag = readShortLe(in);
+        int channels = readShortLe(in);
+        int sampleRate = readIntLe(in);
+        readIntLe(in);
+        int blockAlign = readShortLe(in);
+        int bitsPerSample = readShortLe(in);
+        long read = 16;
+        if (formatTag == EXTENSIBLE && size >= 40) {
+            readShortLe(in);
+            readShortLe(in);
+            readIntLe(in);
+            // The first two bytes of the sub-format GUID are the actual format tag
+            formatTag = readShortLe(in);
+            read += 10;
+        }
+        in.skipNBytes(size - read + (size & 1));
+
+        AudioFormat.Encoding encoding = switch (formatTag) {
+            case PCM -> bitsPerSample == 8 ? AudioFormat.Encoding.PCM_UNSIGNED : AudioFormat.Encoding.PCM_SIGNED;
+            case IEEE_FLOAT -> AudioFormat.Encoding.PCM_FLOAT;
+            default -> throw new UnsupportedAudioFileException("Unsupported WAV format tag " + formatTag);
+        };
+        return new AudioFormat(encoding, sampleRate, bitsPerSample, channels, blockAlign, sampleRate, false);
+    }
+
+    private static int readTag(DataInputStream in) throws IOException {
+        return in.readInt();
+    }
+
+    private static int tag(String name) {
+        return name.charAt(0) << 24 | name.charAt(1) << 16 | name.charAt(2) << 8 | name.charAt(3);
+    }
+
+    private static int readShortLe(DataInputStream in) throws IOException {
+        return Short.reverseBytes(in.readShort()) & 0xFFFF;
+    }
+
+    private static int readIntLe(DataInputStream in) throws IOException {
+        return Integer.reverseBytes(in.readInt());
+    }
+}
@@ -0,0 +1,32 @@
+package de.sven.bayer.speaking_llm.config;
+
+import de.sven.bayer.speaking_llm.component.audio.source.AudioSource;
+import de.sven.bayer.speaking_llm.component.audio.source.MicrophoneSource;
+import de.sven.bayer.speaking_llm.component.audio.source.ReplayAudioSource;
+import de.sven.bayer.speaking_llm.component.journal.JournalReader;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+@Configuration
+public class AudioSourceConfiguration {
+
+    @Bean
+    public AudioSource audioSource(AudioSourceProperties properties) throws IOException {
+        if (properties.getType() == AudioSourceProperties.Type.MICROPHONE) {
+            return new MicrophoneSource();
+        }
+        AudioSourceProperties.Replay replay = properties.getReplay();
+        if (replay.getFile() == null || replay.getFile().isBlank()) {
+            throw new IllegalStateException("speaking-llm.audio-source.replay.file is required for the replay source");
+        }
+        if (replay.getJournalStream() != null && !replay.getJournalStream().isBlank()) {
+            JournalReader journal = JournalReader.ofStream(Path.of(replay.getFile()), replay.getJournalStream());
+            return new ReplayAudioSource(journal.recording(replay.getJournalStream()), replay.getSpeed(), replay.isLoop(),
+                    replay.getTrailingSilenceMs());
+        }
+        return ReplayAudioSource.ofFile(Path.of(replay.getFile()), replay.getSpeed(), replay.isLoop(), replay.getTrailingSilenceMs());
+    }
+}
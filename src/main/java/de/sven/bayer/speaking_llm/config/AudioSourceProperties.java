@@ -0,0 +1,38 @@
+package de.sven.bayer.speaking_llm.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "speaking-llm.audio-source")
+public class AudioSourceProperties {
+
+    public enum Type { MICROPHONE, REPLAY }
+
+    private Type type = Type.MICROPHONE;
+    private Replay replay = new Replay();
+
+    @Data
+    public static class Replay {
+        /**
+         * Recording to replay, a WAV file or raw 16 kHz mono 16-bit little-endian PCM.
+         */
+        private String file;
+        /**
+         * Audio stream of the turn journal to replay; {@code file} is then the journal directory.
+         */
+        private String journalStream;
+        /**
+         * Multiple of real time the recording is fed at, 0 feeds it as fast as it is read.
+         */
+        private double speed = 1.0;
+        /**
+         * Start over at the end of the recording instead of stopping the recorder.
+         */
+        private boolean loop = false;
+        /**
+         * Silence fed after the recording so its last utterance ends.
+         */
+        private int trailingSilenceMs = 1500;
+    }
+}
@@ -0,0 +1,32 @@
+package de.sven.bayer.speaking_llm.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "speaking-llm.audio-stream")
+public class AudioStreamProperties {
+    /**
+     * Path of the WebSocket remote clients stream their microphone to.
+     */
+    private String path = "/audio";
+    /**
+     * Origins allowed to open the WebSocket from a browser; clients that send no origin are always allowed.
+     */
+    private String[] allowedOrigins = {};
+    /**
+     * Largest audio message a client may send, a larger one closes the connection with 1009 (message
+     * too big). The container holds a buffer of this size for every connection.
+     */
+    private int maxMessageBytes = 64 * 1024;
+    /**
+     * A send to a slow client that takes longer than this closes its connection.
+     */
+    private Duration sendTimeLimit = Duration.ofSeconds(10);
+    /**
+     * Audio and events buffered for a slow client before its connection is closed.
+     */
+    private int sendBufferBytes = 8 * 1024 * 1024;
+}
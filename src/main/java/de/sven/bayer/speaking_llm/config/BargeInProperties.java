@@ -0,0 +1,19 @@
+package de.sven.bayer.speaking_llm.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "speaking-llm.barge-in")
+public class BargeInProperties {
+    /**
+     * Keep the microphone open while the answer plays and let the user interrupt it. Without echo
+     * cancellation this needs a headset, otherwise the answer interrupts itself.
+     */
+    private boolean enabled = false;
+    /**
+     * Speech during playback has to last this long before it cancels the answer, so coughs and
+     * short backchannel sounds do not.
+     */
+    private int minSpeechMs = 300;
+}
@@ -0,0 +1,83 @@
+package de.sven.bayer.speaking_llm.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@ConfigurationProperties(prefix = "speaking-llm.http")
+public class HttpProperties {
+    /**
+     * How long the backends are probed after startup until they answer. Requests are accepted
+     * meanwhile; the health endpoint reports the backends as unknown until then.
+     */
+    private Duration readinessTimeout = Duration.ofMinutes(10);
+    private Backend asr = new Backend("http://localhost:9000", Duration.ofSeconds(60));
+    private Backend llm = new Backend("http://localhost:8080", Duration.ofSeconds(120));
+    private Backend tts = new Backend("http://localhost:8081", Duration.ofSeconds(30));
+
+    @Data
+    public static class Backend {
+        private String baseUrl;
+        /**
+         * Base URLs of several instances of the backend, used instead of the base URL. Requests go to
+         * the instance with the fewest requests in flight.
+         */
+        private List<String> replicas = new ArrayList<>();
+        /**
+         * Failed requests in a row (connection errors and 5xx responses) after which a replica is
+         * taken out of rotation.
+         */
+        private int maxFailures = 3;
+        /**
+         * How long a failing replica stays out of rotation before it is tried with one request again.
+         */
+        private Duration ejectFor = Duration.ofSeconds(10);
+        private Hedge hedge = new Hedge();
+        private Duration connectTimeout = Duration.ofSeconds(2);
+        /**
+         * Time until the response headers have arrived. Streamed bodies may take longer.
+         */
+        private Duration readTimeout;
+        /**
+         * Negotiate HTTP/2 with the backend, falling back to HTTP/1.1 if it does not support it.
+         */
+        private boolean http2;
+
+        public Backend() {
+        }
+
+        Backend(String baseUrl, Duration readTimeout) {
+            this.baseUrl = baseUrl;
+            this.readTimeout = readTimeout;
+        }
+
+        /**
+         * The base URLs requests are spread over.
+         */
+        public List<String> replicaUrls() {
+            return replicas.isEmpty() ? List.of(baseUrl) : replicas;
+        }
+    }
+
+    /**
+     * Hedged requests: when a replica takes longer than most recent requests did, the same request
+     * is sent to a second replica and the first answer wins. Streamed responses are never hedged.
+     */
+    @Data
+    public static class Hedge {
+        private boolean enabled;
+        /**
+         * Share of recent requests that finished before a duplicate is sent, e.g. 0.95 hedges the
+         * slowest 5%.
+         */
+        private double percentile = 0.95;
+        /**
+         * Never hedge earlier than this, so a fast backend is not loaded with duplicates over jitter.
+         */
+        private Duration minDelay = Duration.ofMillis(50);
+    }
+}
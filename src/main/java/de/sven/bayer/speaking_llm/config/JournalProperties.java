@@ -0,0 +1,33 @@
+package de.sven.bayer.speaking_llm.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "speaking-llm.journal")
+public class JournalProperties {
+    /**
+     * Records the audio segments, transcripts and answers of every spoken turn.
+     */
+    private boolean enabled = false;
+    private String directory = System.getProperty("user.home") + "/.llm-speaking/journal";
+    /**
+     * Size of one journal file; a new file is started when the current one is full.
+     */
+    private int segmentBytes = 64 * 1024 * 1024;
+    /**
+     * Number of journal files kept, the oldest are deleted beyond it.
+     */
+    private int maxSegments = 32;
+    /**
+     * Journal files older than this are deleted, checked whenever a file is started and once a minute.
+     */
+    private Duration retention = Duration.ofDays(7);
+    /**
+     * Upper bound for recorded bytes waiting for the writer; entries beyond it are dropped rather
+     * than holding up the caller.
+     */
+    private long maxQueuedBytes = 16L * 1024 * 1024;
+}
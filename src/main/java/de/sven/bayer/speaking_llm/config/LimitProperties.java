@@ -0,0 +1,49 @@
+package de.sven.bayer.speaking_llm.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "speaking-llm.limits")
+public class LimitProperties {
+    private Limit asr = new Limit(4, 16, 64, Duration.ofSeconds(10));
+    private Limit tts = new Limit(4, 32, 128, Duration.ofSeconds(5));
+
+    @Data
+    public static class Limit {
+        /**
+         * Requests in flight before the first latency has been observed.
+         */
+        private int initialLimit;
+        private int minLimit = 1;
+        private int maxLimit;
+        /**
+         * Requests that may wait for a free slot; further requests are rejected right away.
+         */
+        private int maxQueue;
+        /**
+         * A request that waited this long for a slot is rejected.
+         */
+        private Duration maxWait;
+        /**
+         * A response slower than this multiple of the fastest recent one signals congestion.
+         */
+        private double latencyTolerance = 2.0;
+        /**
+         * Factor the limit is multiplied with on congestion or an error.
+         */
+        private double backoffRatio = 0.9;
+
+        public Limit() {
+        }
+
+        Limit(int initialLimit, int maxLimit, int maxQueue, Duration maxWait) {
+            this.initialLimit = initialLimit;
+            this.maxLimit = maxLimit;
+            this.maxQueue = maxQueue;
+            this.maxWait = maxWait;
+        }
+    }
+}
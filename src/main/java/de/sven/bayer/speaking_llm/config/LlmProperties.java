@@ -0,0 +1,17 @@
+package de.sven.bayer.speaking_llm.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "speaking-llm.llm")
+public class LlmProperties {
+    /**
+     * Stream the answer and speak each sentence as soon as it is complete.
+     */
+    private boolean streaming = true;
+    /**
+     * Endpoint of the chatbot that answers with SSE or chunked JSON.
+     */
+    private String streamPath = "/talktoLLM/stream";
+}
@@ -0,0 +1,23 @@
+package de.sven.bayer.speaking_llm.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "speaking-llm.sessions")
+public class SessionProperties {
+    /**
+     * Sessions without a turn for this long are removed.
+     */
+    private Duration idleTimeout = Duration.ofMinutes(30);
+    /**
+     * Number of finished turns kept per session for polling.
+     */
+    private int retainedTurns = 20;
+    /**
+     * Upper bound for concurrently open sessions.
+     */
+    private int maxSessions = 1000;
+}
@@ -0,0 +1,20 @@
+package de.sven.bayer.speaking_llm.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "speaking-llm.speculation")
+public class SpeculationProperties {
+    /**
+     * Ask the LLM with the transcript so far as soon as the user pauses, instead of waiting for
+     * the end of the utterance. The answer is only spoken if the final transcript is the same.
+     * Discarded requests still reach the chatbot.
+     */
+    private boolean enabled = false;
+    /**
+     * How long the pause has to be before the speculative request is sent. Shorter saves more
+     * latency but wastes more requests on pauses in the middle of a sentence.
+     */
+    private int pauseMs = 200;
+}
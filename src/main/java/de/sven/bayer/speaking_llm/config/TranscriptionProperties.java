@@ -0,0 +1,63 @@
+package de.sven.bayer.speaking_llm.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "speaking-llm.transcription")
+public class TranscriptionProperties {
+
+    public enum UploadFormat { WAV, FLAC }
+
+    /**
+     * Encoding of the segments uploaded to whisper. FLAC is lossless and about half the size of WAV;
+     * whisper decodes it with ffmpeg.
+     */
+    private UploadFormat uploadFormat = UploadFormat.WAV;
+    /**
+     * Length after which a running utterance is cut into a segment.
+     */
+    private int segmentMs = 2000;
+    /**
+     * While ASR requests queue up, segments are not cut by length but grow up to this, so an
+     * overloaded whisper gets fewer, longer requests.
+     */
+    private int maxMergedSegmentMs = 8000;
+    /**
+     * Window before the target length in which the quietest frame is chosen as cut point.
+     */
+    private int cutSearchMs = 600;
+    /**
+     * Audio that is sent with both neighbouring segments, so words at the cut are not lost.
+     */
+    private int overlapMs = 300;
+    /**
+     * Longest run of words that is dropped as duplicate where two segment transcripts meet.
+     */
+    private int maxOverlapWords = 8;
+    private Batch batch = new Batch();
+
+    /**
+     * Segments of all sessions that arrive within a short window are sent to whisper as one request.
+     */
+    @Data
+    public static class Batch {
+        private boolean enabled = false;
+        /**
+         * Endpoint taking several {@code audio_file} parts and answering with a JSON array of
+         * transcripts in the same order. If the backend does not know it, segments go one by one.
+         */
+        private String path = "/asr/batch";
+        /**
+         * How long the first segment of a batch waits for others.
+         */
+        private Duration window = Duration.ofMillis(20);
+        private int maxSegments = 8;
+        /**
+         * Upload size at which a batch is sent without waiting for the window.
+         */
+        private long maxBytes = 2L * 1024 * 1024;
+    }
+}
@@ -0,0 +1,95 @@
+package de.sven.bayer.speaking_llm.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties(prefix = "speaking-llm.tts")
+public class TtsProperties {
+    /**
+     * Maximum number of sentences of one answer that are synthesized or waiting for playback at once.
+     */
+    private int maxInFlight = 3;
+    /**
+     * Play each sentence on the local speaker while its audio is still downloading, instead of
+     * waiting for the whole clip. Remote clients always get complete clips.
+     */
+    private boolean streaming = false;
+    /**
+     * Name of the voice and emotion settings the TTS service currently uses. Part of the cache key,
+     * so changing it stops cached clips of the old voice from being played.
+     */
+    private String voiceProfile = "default";
+    private Cache cache = new Cache();
+    private Chunking chunking = new Chunking();
+
+    @Data
+    public static class Cache {
+        private boolean enabled = true;
+        /**
+         * Upper bound for the clips kept on the heap.
+         */
+        private long memoryMaxBytes = 32L * 1024 * 1024;
+        /**
+         * Directory of the memory-mapped store that survives restarts. Empty disables the disk tier;
+         * the application sets it to ~/.llm-speaking/tts-cache.
+         */
+        private String directory = "";
+        /**
+         * Size of one store file. Eviction drops the oldest file's clips at once.
+         */
+        private int segmentBytes = 16 * 1024 * 1024;
+        private int segments = 8;
+    }
+
+    @Data
+    public static class Chunking {
+        /**
+         * Cut answers into chunks that start short and grow, instead of sentence by sentence, so the
+         * first audio comes early and later chunks take fewer requests.
+         */
+        private boolean enabled = true;
+        /**
+         * Language of the answers, for the sentence boundaries and the chunk sizes.
+         */
+        private String locale = "en-US";
+        private Sizes sizes = new Sizes();
+        /**
+         * Sizes for other languages by language tag or language, e.g. {@code de}.
+         */
+        private Map<String, Sizes> locales = new HashMap<>();
+
+        public Locale resolveLocale() {
+            return Locale.forLanguageTag(locale);
+        }
+
+        public Sizes sizesFor(Locale locale) {
+            Sizes forTag = locales.get(locale.toLanguageTag());
+            return forTag != null ? forTag : locales.getOrDefault(locale.getLanguage(), sizes);
+        }
+
+        @Data
+        public static class Sizes {
+            /**
+             * Longest first chunk before it is cut at a comma or clause boundary.
+             */
+            private int firstMaxChars = 80;
+            /**
+             * Shortest piece a cut inside a sentence may leave.
+             */
+            private int minChars = 20;
+            /**
+             * Factor by which the target size grows from one chunk to the next.
+             */
+            private double growth = 2.0;
+            /**
+             * Largest chunk. Longer sentences are cut at clause boundaries or, failing that, between words.
+             */
+            private int maxChars = 300;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package de.sven.bayer.speaking_llm.config;
+
+import de.sven.bayer.speaking_llm.component.audio.vad.EnergyVoiceActivityDetector;
+import de.sven.bayer.speaking_llm.component.audio.vad.VoiceActivityDetectorFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class VadConfiguration {
+
+    @Bean
+    public VoiceActivityDetectorFactory voiceActivityDetectorFactory(VadProperties vadProperties) {
+        return format -> new EnergyVoiceActivityDetector(format, vadProperties);
+    }
+}
@@ -0,0 +1,41 @@
+package de.sven.bayer.speaking_llm.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "speaking-llm.vad")
+public class VadProperties {
+    /**
+     * Length of one analysed frame.
+     */
+    private int frameMs = 20;
+    /**
+     * How long a frame has to stay speech-like before an utterance starts. Rejects clicks and knocks.
+     */
+    private int attackMs = 60;
+    /**
+     * Quiet time after speech that still counts as speech, so word endings are not cut off.
+     */
+    private int hangoverMs = 120;
+    /**
+     * Quiet time after which the user is considered done talking.
+     */
+    private int endOfUtteranceMs = 600;
+    /**
+     * How far above the estimated noise floor a frame has to be to count as speech.
+     */
+    private double snrThresholdDb = 9.0;
+    /**
+     * Frames this far above the speech threshold count as speech regardless of their zero-crossing rate.
+     */
+    private double strongSpeechMarginDb = 9.0;
+    /**
+     * Absolute level below which nothing counts as speech.
+     */
+    private double minSpeechLevelDbfs = -55.0;
+    /**
+     * Zero crossings per sample above which a quiet frame is treated as noise, not voice.
+     */
+    private double maxZeroCrossingRate = 0.35;
+}
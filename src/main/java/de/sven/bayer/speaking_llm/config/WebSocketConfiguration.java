@@ -0,0 +1,35 @@
+package de.sven.bayer.speaking_llm.config;
+
+import de.sven.bayer.speaking_llm.controller.AudioStreamHandler;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.server.standard.ServletServerContainerFactoryBean;
+
+@Configuration
+@EnableWebSocket
+public class WebSocketConfiguration implements WebSocketConfigurer {
+    private final AudioStreamHandler audioStreamHandler;
+    private final AudioStreamProperties audioStreamProperties;
+
+    public WebSocketConfiguration(AudioStreamHandler audioStreamHandler, AudioStreamProperties audioStreamProperties) {
+        this.audioStreamHandler = audioStreamHandler;
+        this.audioStreamProperties = audioStreamProperties;
+    }
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(audioStreamHandler, audioStreamProperties.getPath())
+                .setAllowedOrigins(audioStreamProperties.getAllowedOrigins());
+    }
+
+    // The container's default of 8 KB is a quarter second of audio, clients send larger chunks
+    @Bean
+    public ServletServerContainerFactoryBean webSocketContainer() {
+        ServletServerContainerFactoryBean container = new ServletServerContainerFactoryBean();
+        container.setMaxBinaryMessageBufferSize(audioStreamProperties.getMaxMessageBytes());
+        return container;
+    }
+}
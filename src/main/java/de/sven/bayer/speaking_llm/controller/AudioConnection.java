@@ -0,0 +1,185 @@
+package de.sven.bayer.speaking_llm.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.sven.bayer.speaking_llm.component.audio.VoiceCapture;
+import de.sven.bayer.speaking_llm.component.audio.VoiceCaptureFactory;
+import de.sven.bayer.speaking_llm.component.metrics.TurnTrace;
+import de.sven.bayer.speaking_llm.component.tts.SpeechClip;
+import de.sven.bayer.speaking_llm.model.conversation.AudioStreamEvent;
+import de.sven.bayer.speaking_llm.model.conversation.TurnView;
+import de.sven.bayer.speaking_llm.service.ConversationEngine;
+import de.sven.bayer.speaking_llm.service.SpeculativeAnswer;
+import de.sven.bayer.speaking_llm.service.session.ConversationSession;
+import de.sven.bayer.speaking_llm.service.session.ConversationTurn;
+import de.sven.bayer.speaking_llm.service.session.SessionRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * One remote client on the audio WebSocket: its session, its voice capture and the turns spoken
+ * on it. Audio arrives on the container's thread for the connection, one message at a time.
+ */
+@Slf4j
+class AudioConnection implements VoiceCapture.Listener {
+    private final WebSocketSession out;
+    private final ConversationEngine conversationEngine;
+    private final SessionRegistry sessionRegistry;
+    private final ObjectMapper objectMapper;
+    private final ConversationSession session;
+    private final VoiceCapture capture;
+    // Finishes the transcripts in the order they were spoken while the client keeps streaming
+    private final ExecutorService turnHandoff = Executors.newSingleThreadExecutor(Thread.ofVirtual().factory());
+    private volatile ConversationTurn currentTurn;
+    // An utterance that ended but has no turn yet, its answer counts as under way
+    private final AtomicReference<VoiceCapture.Utterance> pendingUtterance = new AtomicReference<>();
+    private volatile boolean closed;
+
+    AudioConnection(WebSocketSession out, ConversationEngine conversationEngine, SessionRegistry sessionRegistry,
+                    VoiceCaptureFactory voiceCaptureFactory, ObjectMapper objectMapper) {
+        this.out = out;
+        this.conversationEngine = conversationEngine;
+        this.sessionRegistry = sessionRegistry;
+        this.objectMapper = objectMapper;
+        this.session = sessionRegistry.create(this::sendClip);
+        this.capture = voiceCaptureFactory.create("websocket", this);
+        capture.begin();
+        send(new AudioStreamEvent("session", session.sessionId(), null, null));
+    }
+
+    String sessionId() {
+        return session.sessionId();
+    }
+
+    // Synchronized with close(), the capture is not thread-safe and the container closes on a thread of its own
+    synchronized void onAudio(ByteBuffer pcm) {
+        if (closed) return;
+        capture.write(pcm);
+        VoiceCapture.Utterance utterance;
+        while ((utterance = capture.process()) != null) {
+            capture.begin();
+            VoiceCapture.Utterance spoken = utterance;
+            pendingUtterance.set(spoken);
+            turnHandoff.execute(() -> finishTurn(spoken));
+        }
+    }
+
+    void close() {
+        synchronized (this) {
+            closed = true;
+            capture.abort();
+        }
+        turnHandoff.shutdownNow();
+        ConversationTurn turn = currentTurn;
+        if (turn != null) {
+            // Nobody is listening any more
+            turn.cancel();
+        }
+        sessionRegistry.remove(session.sessionId());
+    }
+
+    private void finishTurn(VoiceCapture.Utterance utterance) {
+        String transcript;
+        try {
+            transcript = utterance.awaitTranscript();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            utterance.discard();
+            pendingUtterance.compareAndSet(utterance, null);
+            return;
+        }
+        if (closed || utterance.isInterrupted()) {
+            utterance.discard();
+            pendingUtterance.compareAndSet(utterance, null);
+            return;
+        }
+        ConversationTurn turn = conversationEngine.submit(session, utterance, transcript);
+        currentTurn = turn;
+        pendingUtterance.compareAndSet(utterance, null);
+        if (utterance.isInterrupted()) {
+            // The user barged in while the turn was being submitted
+            turn.cancel();
+        }
+        send(new AudioStreamEvent("transcript", null, turn.turnId(), transcript));
+        turn.subscribe(new ConversationTurn.Listener() {
+            @Override
+            public void onSentence(String sentence) {
+                send(new AudioStreamEvent("sentence", null, turn.turnId(), sentence));
+            }
+
+            @Override
+            public void onFinished(TurnView view) {
+                send(new AudioStreamEvent(view.status().name().toLowerCase(Locale.ROOT), null, turn.turnId(), view.error()));
+            }
+        });
+    }
+
+    @Override
+    public boolean replyActive() {
+        ConversationTurn turn = currentTurn;
+        return pendingUtterance.get() != null || (turn != null && !turn.isFinished());
+    }
+
+    // The client plays the audio, so it is told to drop what it still has queued
+    @Override
+    public void interruptReply() {
+        VoiceCapture.Utterance pending = pendingUtterance.get();
+        if (pending != null) {
+            pending.interrupt();
+        }
+        ConversationTurn turn = currentTurn;
+        if (turn != null) {
+            turn.cancel();
+        }
+        send(new AudioStreamEvent("interrupt", null, turn != null ? turn.turnId() : null, null));
+    }
+
+    @Override
+    public SpeculativeAnswer speculate(CompletableFuture<String> transcript, TurnTrace trace) {
+        return conversationEngine.speculate(session, transcript, trace);
+    }
+
+    // The clip is wrapped, not copied; it counts as started once it is handed to the connection
+    private void sendClip(SpeechClip clip, Runnable onStart) {
+        byte[] wav;
+        try {
+            wav = clip.readAllBytes();
+        } catch (IOException e) {
+            log.debug("Could not read clip for audio stream {}: {}", session.sessionId(), e.getMessage());
+            return;
+        }
+        if (onStart != null) {
+            onStart.run();
+        }
+        send(new BinaryMessage(wav));
+    }
+
+    private void send(AudioStreamEvent event) {
+        try {
+            send(new TextMessage(objectMapper.writeValueAsString(event)));
+        } catch (JsonProcessingException e) {
+            log.error("Could not serialize {}", event, e);
+        }
+    }
+
+    private void send(WebSocketMessage<?> message) {
+        if (closed || !out.isOpen()) return;
+        try {
+            out.sendMessage(message);
+        } catch (IOException | RuntimeException e) {
+            // The client went away or is too slow; the close callback cleans up
+            log.debug("Could not send to audio stream {}: {}", session.sessionId(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package de.sven.bayer.speaking_llm.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.sven.bayer.speaking_llm.component.audio.VoiceCaptureFactory;
+import de.sven.bayer.speaking_llm.config.AudioStreamProperties;
+import de.sven.bayer.speaking_llm.service.ConversationEngine;
+import de.sven.bayer.speaking_llm.service.session.SessionRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.BinaryWebSocketHandler;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+
+/**
+ * Voice conversations with remote clients over a WebSocket. The client streams its microphone as
+ * binary messages of 16 kHz mono 16-bit little-endian PCM, in any chunk size. Each connection gets
+ * its own session and runs VAD, streaming ASR, the LLM and TTS just like the local microphone. The
+ * synthesized clips come back as binary WAV messages, transcripts, sentences and turn results as
+ * JSON text messages ({@link de.sven.bayer.speaking_llm.model.conversation.AudioStreamEvent}).
+ */
+@Slf4j
+@Component
+public class AudioStreamHandler extends BinaryWebSocketHandler {
+    private static final String CONNECTION = AudioConnection.class.getName();
+
+    private final ConversationEngine conversationEngine;
+    private final SessionRegistry sessionRegistry;
+    private final VoiceCaptureFactory voiceCaptureFactory;
+    private final AudioStreamProperties properties;
+    private final ObjectMapper objectMapper;
+
+    public AudioStreamHandler(ConversationEngine conversationEngine, SessionRegistry sessionRegistry,
+                              VoiceCaptureFactory voiceCaptureFactory, AudioStreamProperties properties,
+                              ObjectMapper objectMapper) {
+        this.conversationEngine = conversationEngine;
+        this.sessionRegistry = sessionRegistry;
+        this.voiceCaptureFactory = voiceCaptureFactory;
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession webSocketSession) throws Exception {
+        // Clips, events and pings are sent from different threads
+        WebSocketSession out = new ConcurrentWebSocketSessionDecorator(webSocketSession,
+                (int) properties.getSendTimeLimit().toMillis(), properties.getSendBufferBytes());
+        AudioConnection connection;
+        try {
+            connection = new AudioConnection(out, conversationEngine, sessionRegistry, voiceCaptureFactory, objectMapper);
+        } catch (IllegalStateException e) {
+            log.warn("Rejected audio stream from {}: {}", webSocketSession.getRemoteAddress(), e.getMessage());
+            webSocketSession.close(CloseStatus.SERVICE_OVERLOAD.withReason(e.getMessage()));
+            return;
+        }
+        webSocketSession.getAttributes().put(CONNECTION, connection);
+        log.info("Audio stream {} opened from {}", connection.sessionId(), webSocketSession.getRemoteAddress());
+    }
+
+    @Override
+    protected void handleBinaryMessage(WebSocketSession webSocketSession, BinaryMessage message) {
+        AudioConnection connection = connection(webSocketSession);
+        if (connection != null) {
+            // The container reuses the payload buffer, the connection copies it into its ring right away
+            connection.onAudio(message.getPayload());
+        }
+    }
+
+    @Override
+    public void handleTransportError(WebSocketSession webSocketSession, Throwable exception) {
+        log.debug("Audio stream transport error: {}", exception.getMessage());
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession webSocketSession, CloseStatus status) {
+        AudioConnection connection = (AudioConnection) webSocketSession.getAttributes().remove(CONNECTION);
+        if (connection != null) {
+            connection.close();
+            log.info("Audio stream {} closed: {}", connection.sessionId(), status);
+        }
+    }
+
+    private static AudioConnection connection(WebSocketSession webSocketSession) {
+        return (AudioConnection) webSocketSession.getAttributes().get(CONNECTION);
+    }
+}
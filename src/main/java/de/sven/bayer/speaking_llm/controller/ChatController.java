@@ -1,10 +1,13 @@
 package de.sven.bayer.speaking_llm.controller;
 
-import de.sven.bayer.speaking_llm.model.conversation.LlmAnswerWithThink;
 import de.sven.bayer.speaking_llm.model.conversation.MessageFromUser;
+import de.sven.bayer.speaking_llm.model.conversation.TurnReceipt;
 import de.sven.bayer.speaking_llm.service.AsrService;
-import de.sven.bayer.speaking_llm.service.LlmChatService;
-import de.sven.bayer.speaking_llm.service.TtsService;
+import de.sven.bayer.speaking_llm.service.ConversationEngine;
+import de.sven.bayer.speaking_llm.service.session.ConversationSession;
+import de.sven.bayer.speaking_llm.service.session.ConversationTurn;
+import de.sven.bayer.speaking_llm.service.session.SessionRegistry;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
@@ -13,23 +16,25 @@ import org.springframework.web.bind.annotation.RestController;
 @RestController
 public class ChatController {
 
-    private final LlmChatService llmChatService;
-    private final TtsService ttsService;
+    private final ConversationEngine conversationEngine;
+    private final SessionRegistry sessionRegistry;
     private final AsrService asrService;
-    private String conversationId;
 
-    public ChatController(LlmChatService llmChatService, TtsService ttsService, AsrService asrService) {
-        this.llmChatService = llmChatService;
-        this.ttsService = ttsService;
+    public ChatController(ConversationEngine conversationEngine, SessionRegistry sessionRegistry, AsrService asrService) {
+        this.conversationEngine = conversationEngine;
+        this.sessionRegistry = sessionRegistry;
         this.asrService = asrService;
     }
 
+    /**
+     * Speaks the answer on the local speaker as part of the default session. The turn runs in the
+     * background; its result can be polled under the returned location. A refused turn answers 503.
+     */
     @PostMapping("/talktoLLM")
-    public void talkToLLM(@RequestBody MessageFromUser messageFromUser) {
-        messageFromUser.setConversationId(this.conversationId);
-        LlmAnswerWithThink llmAnswerWithThink = llmChatService.responseForMessage(messageFromUser);
-        this.conversationId = llmAnswerWithThink.conversationId();
-        ttsService.playLlmAnswer(llmAnswerWithThink);
+    public ResponseEntity<TurnReceipt> talkToLLM(@RequestBody MessageFromUser messageFromUser) {
+        ConversationSession session = sessionRegistry.defaultSession();
+        ConversationTurn turn = conversationEngine.submit(session, messageFromUser.getMessage());
+        return SessionController.receipt(session.sessionId(), turn);
     }
 
     @GetMapping("/asr")
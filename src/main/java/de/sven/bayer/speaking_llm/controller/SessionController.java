@@ -0,0 +1,161 @@
+package de.sven.bayer.speaking_llm.controller;
+
+import de.sven.bayer.speaking_llm.model.conversation.MessageFromUser;
+import de.sven.bayer.speaking_llm.model.conversation.SessionView;
+import de.sven.bayer.speaking_llm.model.conversation.TurnReceipt;
+import de.sven.bayer.speaking_llm.model.conversation.TurnStatus;
+import de.sven.bayer.speaking_llm.model.conversation.TurnView;
+import de.sven.bayer.speaking_llm.service.ConversationEngine;
+import de.sven.bayer.speaking_llm.service.session.ConversationSession;
+import de.sven.bayer.speaking_llm.service.session.ConversationTurn;
+import de.sven.bayer.speaking_llm.service.session.SessionRegistry;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Conversations with their own state. A turn is accepted right away and runs in the background;
+ * its result can be polled or followed as server-sent events.
+ */
+@RestController
+@RequestMapping("/sessions")
+public class SessionController {
+    private static final long EVENT_STREAM_TIMEOUT_MS = 5 * 60 * 1000L;
+
+    private final ConversationEngine conversationEngine;
+    private final SessionRegistry sessionRegistry;
+
+    public SessionController(ConversationEngine conversationEngine, SessionRegistry sessionRegistry) {
+        this.conversationEngine = conversationEngine;
+        this.sessionRegistry = sessionRegistry;
+    }
+
+    /**
+     * Opens a session. Without {@code playAudio} the answers are only returned as text.
+     */
+    @PostMapping
+    public ResponseEntity<SessionView> createSession(@RequestParam(defaultValue = "false") boolean playAudio) {
+        ConversationSession session;
+        try {
+            session = sessionRegistry.create(playAudio);
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+        }
+        return ResponseEntity.created(URI.create("/sessions/" + session.sessionId())).body(session.view());
+    }
+
+    @GetMapping("/{sessionId}")
+    public SessionView getSession(@PathVariable String sessionId) {
+        return session(sessionId).view();
+    }
+
+    @DeleteMapping("/{sessionId}")
+    public ResponseEntity<Void> closeSession(@PathVariable String sessionId) {
+        return sessionRegistry.remove(sessionId) ? ResponseEntity.noContent().build() : ResponseEntity.notFound().build();
+    }
+
+    @PostMapping("/{sessionId}/turns")
+    public ResponseEntity<TurnReceipt> submitTurn(@PathVariable String sessionId, @RequestBody MessageFromUser messageFromUser) {
+        ConversationTurn turn = conversationEngine.submit(session(sessionId), messageFromUser.getMessage());
+        return receipt(sessionId, turn);
+    }
+
+    /**
+     * 202 with the turn's location, or 503 if the session or the engine refused the turn.
+     */
+    static ResponseEntity<TurnReceipt> receipt(String sessionId, ConversationTurn turn) {
+        TurnStatus status = turn.view().status();
+        // A turn the engine refused fails before it is returned
+        HttpStatus httpStatus = status == TurnStatus.FAILED ? HttpStatus.SERVICE_UNAVAILABLE : HttpStatus.ACCEPTED;
+        return ResponseEntity.status(httpStatus)
+                .location(URI.create("/sessions/" + sessionId + "/turns/" + turn.turnId()))
+                .body(new TurnReceipt(sessionId, turn.turnId(), status));
+    }
+
+    @GetMapping("/{sessionId}/turns/{turnId}")
+    public TurnView getTurn(@PathVariable String sessionId, @PathVariable String turnId) {
+        return turn(sessionId, turnId).view();
+    }
+
+    /**
+     * Cancels a turn: stops its LLM stream and synthesis, or skips it if it has not started yet.
+     */
+    @DeleteMapping("/{sessionId}/turns/{turnId}")
+    public ResponseEntity<TurnView> cancelTurn(@PathVariable String sessionId, @PathVariable String turnId) {
+        ConversationTurn turn = turn(sessionId, turnId);
+        return turn.cancel()
+                ? ResponseEntity.accepted().body(turn.view())
+                : ResponseEntity.status(HttpStatus.CONFLICT).body(turn.view());
+    }
+
+    /**
+     * Streams the sentences of the answer as {@code sentence} events, followed by a final
+     * {@code completed}, {@code failed} or {@code cancelled} event carrying the whole turn.
+     */
+    @GetMapping("/{sessionId}/turns/{turnId}/events")
+    public SseEmitter streamTurn(@PathVariable String sessionId, @PathVariable String turnId) {
+        ConversationTurn turn = turn(sessionId, turnId);
+        SseEmitter emitter = new SseEmitter(EVENT_STREAM_TIMEOUT_MS);
+        // Events are sent in order from a thread of the stream's own, a slow client never holds up the turn
+        ExecutorService sender = Executors.newSingleThreadExecutor(Thread.ofVirtual().factory());
+        ConversationTurn.Listener listener = new ConversationTurn.Listener() {
+            @Override
+            public void onSentence(String sentence) {
+                enqueue(sender, () -> send(emitter, "sentence", sentence));
+            }
+
+            @Override
+            public void onFinished(TurnView view) {
+                enqueue(sender, () -> {
+                    send(emitter, view.status().name().toLowerCase(Locale.ROOT), view);
+                    emitter.complete();
+                });
+                sender.shutdown();
+            }
+        };
+        Runnable closed = () -> {
+            turn.unsubscribe(listener);
+            sender.shutdownNow();
+        };
+        emitter.onCompletion(closed);
+        emitter.onTimeout(closed);
+        turn.subscribe(listener);
+        return emitter;
+    }
+
+    private static void enqueue(ExecutorService sender, Runnable event) {
+        try {
+            sender.execute(event);
+        } catch (RejectedExecutionException e) {
+            // The stream is closed already
+        }
+    }
+
+    private static void send(SseEmitter emitter, String event, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(event).data(data));
+        } catch (IOException | IllegalStateException e) {
+            // The client went away, the turn itself keeps running
+            emitter.completeWithError(e);
+        }
+    }
+
+    private ConversationSession session(String sessionId) {
+        return sessionRegistry.get(sessionId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown session " + sessionId));
+    }
+
+    private ConversationTurn turn(String sessionId, String turnId) {
+        return session(sessionId).turn(turnId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown turn " + turnId));
+    }
+}
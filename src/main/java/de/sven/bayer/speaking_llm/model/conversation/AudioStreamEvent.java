@@ -0,0 +1,12 @@
+package de.sven.bayer.speaking_llm.model.conversation;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Text message on the audio WebSocket, next to the binary audio. {@code type} is one of
+ * {@code session}, {@code transcript}, {@code sentence}, {@code interrupt} or the final status of
+ * a turn in lower case.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record AudioStreamEvent(String type, String sessionId, String turnId, String text) {
+}
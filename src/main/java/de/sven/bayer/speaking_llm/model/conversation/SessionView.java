@@ -0,0 +1,4 @@
+package de.sven.bayer.speaking_llm.model.conversation;
+
+public record SessionView(String sessionId, String conversationId, boolean playAudio, int turns) {
+}
@@ -0,0 +1,4 @@
+package de.sven.bayer.speaking_llm.model.conversation;
+
+public record TurnReceipt(String sessionId, String turnId, TurnStatus status) {
+}
@@ -0,0 +1,9 @@
+package de.sven.bayer.speaking_llm.model.conversation;
+
+public enum TurnStatus {
+    ACCEPTED,
+    RUNNING,
+    COMPLETED,
+    FAILED,
+    CANCELLED
+}
@@ -0,0 +1,7 @@
+package de.sven.bayer.speaking_llm.model.conversation;
+
+import java.util.List;
+
+public record TurnView(String sessionId, String turnId, TurnStatus status, String message,
+                       List<String> spokenSentences, LlmAnswerWithThink answer, String error) {
+}
@@ -1,51 +1,200 @@
-// AsrService.java
 package de.sven.bayer.speaking_llm.service;
 
-import lombok.RequiredArgsConstructor;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.sven.bayer.speaking_llm.component.audio.capture.AudioSegment;
+import de.sven.bayer.speaking_llm.component.audio.flac.FlacOutputStream;
+import de.sven.bayer.speaking_llm.component.batch.MicroBatcher;
+import de.sven.bayer.speaking_llm.component.http.BackendResponseException;
+import de.sven.bayer.speaking_llm.component.http.HttpBackend;
+import de.sven.bayer.speaking_llm.component.http.HttpTransport;
+import de.sven.bayer.speaking_llm.component.http.MultipartForm;
+import de.sven.bayer.speaking_llm.component.limit.AdaptiveLimiter;
+import de.sven.bayer.speaking_llm.component.limit.BackendLimiters;
+import de.sven.bayer.speaking_llm.component.limit.BackendOverloadedException;
+import de.sven.bayer.speaking_llm.config.TranscriptionProperties;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.io.ByteArrayResource;
-import org.springframework.http.*;
 import org.springframework.stereotype.Service;
-import org.springframework.util.LinkedMultiValueMap;
-import org.springframework.util.MultiValueMap;
-import org.springframework.web.client.RestTemplate;
 
-import java.util.Objects;
+import javax.sound.sampled.AudioFormat;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 
 @Service
 @Slf4j
-@RequiredArgsConstructor
 public class AsrService {
-    private final RestTemplate restTemplate = new RestTemplate();
-    private static final String ASR_URL = "http://localhost:9000/asr";
+    private static final String ASR_PATH = "/asr";
     public static final int SILENCE_THRESHOLD = 500;
+    private static final TypeReference<List<String>> TRANSCRIPTS = new TypeReference<>() {
+    };
+    // Answers of a whisper that has no batch endpoint
+    private static final Set<Integer> BATCH_UNSUPPORTED = Set.of(404, 405, 501);
+
+    private final HttpBackend asr;
+    private final AdaptiveLimiter limiter;
+    private final ObjectMapper objectMapper;
+    private final MultipartForm wavForm;
+    private final MultipartForm flacForm;
+    private final boolean uploadFlac;
+    private final String batchPath;
+    private final MicroBatcher<HttpRequest.BodyPublisher, String> batcher;
+    // How long a segment waits for its batch, null without a read timeout to bound it
+    private final Duration batchTimeout;
+    private volatile boolean batchSupported = true;
+
+    // The batch endpoint itself is missing; only this failure is retried with a single request
+    private static final class BatchUnsupportedException extends RuntimeException {
+        BatchUnsupportedException(BackendResponseException cause) {
+            super(cause.getMessage(), cause);
+        }
+    }
+
+    public AsrService(HttpTransport httpTransport, BackendLimiters backendLimiters,
+                      TranscriptionProperties transcriptionProperties, ObjectMapper objectMapper) {
+        this.asr = httpTransport.asr();
+        this.limiter = backendLimiters.asr();
+        this.objectMapper = objectMapper;
+        this.wavForm = form(false, "recording.wav", "audio/wav");
+        // Only raw PCM can skip ffmpeg on the whisper side
+        this.flacForm = form(true, "recording.flac", FlacOutputStream.CONTENT_TYPE);
+        this.uploadFlac = transcriptionProperties.getUploadFormat() == TranscriptionProperties.UploadFormat.FLAC;
+        TranscriptionProperties.Batch batch = transcriptionProperties.getBatch();
+        this.batchPath = batch.getPath();
+        this.batcher = batch.isEnabled()
+                ? new MicroBatcher<>("asr", batch.getWindow(), batch.getMaxSegments(), batch.getMaxBytes(), this::transcribeBatch)
+                : null;
+        // The window, the wait for a slot and the request itself, connecting and hedging included
+        this.batchTimeout = asr.exchangeTimeout() != null
+                ? batch.getWindow().plus(limiter.maxWait()).plus(asr.exchangeTimeout())
+                : null;
+    }
 
     public String transcribeAudio(byte[] audioBytes) {
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
-
-        MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
-        body.add("audio_file", new ByteArrayResource(audioBytes) {
-            @Override
-            public String getFilename() {
-                return "recording.wav";
+        return transcribe(wavForm, wavForm.body(audioBytes));
+    }
+
+    /**
+     * Uploads a captured segment straight from the capture ring buffer, or encodes it to FLAC from
+     * there first when that is the configured upload format. With batching enabled the segment
+     * joins the segments of other sessions arriving at the same time; the call returns once the
+     * batch was answered, or fails once it took longer than the window, a slot and the request can
+     * take. The segment stays reserved until its batch is done even if it is released before.
+     */
+    public String transcribeAudio(AudioSegment segment) {
+        MultipartForm form = uploadFlac ? flacForm : wavForm;
+        HttpRequest.BodyPublisher file = uploadFlac
+                ? HttpRequest.BodyPublishers.ofByteArray(encodeFlac(segment))
+                : MultipartForm.file(segment.wavLength(), segment::openWavStream);
+        if (batcher == null || !batchSupported) {
+            return transcribe(form, form.body(file));
+        }
+        CompletableFuture<String> batched = batcher.submit(file, file.contentLength());
+        if (!uploadFlac) {
+            // The batch reads the WAV straight from the ring; giving up on it must not hand the bytes back
+            segment.holdUntil(batched);
+        }
+        CompletableFuture<String> transcript = batchTimeout != null
+                ? batched.copy().orTimeout(batchTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                : batched;
+        try {
+            return transcript.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof BatchUnsupportedException) {
+                return transcribe(form, form.body(file));
+            }
+            if (e.getCause() instanceof BackendOverloadedException overloaded) {
+                throw overloaded;
             }
-        });
-        body.add("model", "large");
-        body.add("language", "en");
-        body.add("task", "transcribe");
-        body.add("encode", "false");
+            log.error("ASR batch request failed", e.getCause());
+            throw new RuntimeException("ASR processing error", e.getCause());
+        }
+    }
+
+    public MicroBatcher.Stats batchStats() {
+        return batcher != null ? batcher.stats() : new MicroBatcher.Stats(0, 0);
+    }
 
+    /**
+     * True while uploads queue up behind the concurrency limit.
+     */
+    public boolean isSaturated() {
+        return limiter.isSaturated();
+    }
+
+    // Encoded before the request waits for a slot; the length has to be known for the upload anyway
+    private static byte[] encodeFlac(AudioSegment segment) {
+        AudioFormat format = segment.format();
+        ByteArrayOutputStream flac = new ByteArrayOutputStream(segment.length() / 2 + 1024);
+        try (InputStream pcm = segment.openPcmStream();
+             FlacOutputStream encoder = new FlacOutputStream(flac, format, segment.length() / format.getFrameSize())) {
+            pcm.transferTo(encoder);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not encode audio segment as FLAC", e);
+        }
+        return flac.toByteArray();
+    }
+
+    private String transcribe(MultipartForm form, HttpRequest.BodyPublisher body) {
         try {
-            return restTemplate.exchange(
-                    ASR_URL,
-                    HttpMethod.POST,
-                    new HttpEntity<>(body, headers),
-                    String.class
-            ).getBody();
+            return limiter.call(() -> asr.exchange(request(ASR_PATH, form, body), HttpResponse.BodyHandlers.ofString()));
+        } catch (BackendOverloadedException e) {
+            throw e;
         } catch (Exception e) {
             log.error("ASR request failed", e);
             throw new RuntimeException("ASR processing error", e);
         }
     }
-}
\ No newline at end of file
+
+    // A lone segment goes to the single endpoint, several take one slot of the limiter together
+    private List<String> transcribeBatch(List<HttpRequest.BodyPublisher> files) throws JsonProcessingException {
+        MultipartForm form = uploadFlac ? flacForm : wavForm;
+        if (files.size() == 1) {
+            return List.of(limiter.call(() -> asr.exchange(request(ASR_PATH, form, form.body(files.getFirst())),
+                    HttpResponse.BodyHandlers.ofString())));
+        }
+        String transcripts;
+        try {
+            transcripts = limiter.call(() -> asr.exchange(request(batchPath, form, form.body(files)),
+                    HttpResponse.BodyHandlers.ofString()));
+        } catch (BackendResponseException e) {
+            if (!BATCH_UNSUPPORTED.contains(e.statusCode())) {
+                throw e;
+            }
+            if (batchSupported) {
+                batchSupported = false;
+                log.warn("ASR backend has no batch endpoint {} (HTTP {}), sending segments one by one", batchPath, e.statusCode());
+            }
+            throw new BatchUnsupportedException(e);
+        }
+        return objectMapper.readValue(transcripts, TRANSCRIPTS);
+    }
+
+    private HttpRequest request(String path, MultipartForm form, HttpRequest.BodyPublisher body) {
+        return asr.request(path)
+                .header("Content-Type", form.contentType())
+                .POST(body)
+                .build();
+    }
+
+    private static MultipartForm form(boolean encode, String fileName, String contentType) {
+        Map<String, String> fields = new LinkedHashMap<>();
+        fields.put("model", "large");
+        fields.put("language", "en");
+        fields.put("task", "transcribe");
+        fields.put("encode", String.valueOf(encode));
+        return new MultipartForm(fields, "audio_file", fileName, contentType);
+    }
+}
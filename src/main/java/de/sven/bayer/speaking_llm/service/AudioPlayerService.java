@@ -1,81 +1,259 @@
 package de.sven.bayer.speaking_llm.service;
 
+import de.sven.bayer.speaking_llm.component.tts.SpeechClip;
+import de.sven.bayer.speaking_llm.component.tts.WavStream;
+
 import javax.sound.sampled.*;
-import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.atomic.AtomicBoolean;
 
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+/**
+ * Plays queued clips back to back on one long-lived {@link SourceDataLine}. Clips are decoded to
+ * PCM and written to the line as soon as the previous clip has been written, so there is no gap
+ * between sentences. Completion is signalled through futures instead of polling.
+ * <p>
+ * A clip that is still downloading is played as its bytes arrive: the WAV header is parsed once
+ * and the samples go through one fixed write buffer, so playback of a long sentence starts before
+ * the download ends and no clip is held in memory as a whole.
+ * <p>
+ * The player thread is started with the first clip, and the line is opened by it, so an instance
+ * that never plays anything, e.g. a server with remote clients only, has neither.
+ */
+@Slf4j
 @Service
-public class AudioPlayerService {
-    private final BlockingQueue<byte[]> audioQueue = new LinkedBlockingQueue<>();
-    private final Thread playerThread;
-    private final AtomicBoolean running = new AtomicBoolean(false);
+public class AudioPlayerService implements AudioSink {
+    private static final int WRITE_BUFFER_SIZE = 8192;
+
+    private final BlockingQueue<QueuedClip> audioQueue = new LinkedBlockingQueue<>();
+    private Thread playerThread;
+    private final Object stateLock = new Object();
+    private int pendingClips;
+    private CompletableFuture<Void> drained = CompletableFuture.completedFuture(null);
+    private volatile SourceDataLine line;
+    private volatile QueuedClip playing;
+    private volatile int generation;
 
-    public AudioPlayerService() {
-        playerThread = new Thread(this::processAudioQueue, "Audio-Player-Thread");
-        playerThread.setDaemon(true);
-        playerThread.start();
+    /**
+     * Queues a clip for playback. The returned future completes once the clip has been handed to the
+     * sound card, at the latest when the line has drained.
+     */
+    public CompletableFuture<Void> queueAudio(byte[] audioData) {
+        return queueAudio(SpeechClip.of(audioData), null);
     }
 
-    public void queueAudio(byte[] audioData) {
-        try {
-            audioQueue.put(audioData);
-            System.out.println("Added audio to queue. Queue size: " + audioQueue.size());
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new RuntimeException("Interrupted while queuing audio", e);
+    /**
+     * Queues a clip and runs {@code onStart} on the player thread right before its first sample is
+     * written to the line. The clip is closed once it has been played or dropped.
+     */
+    public CompletableFuture<Void> queueAudio(SpeechClip speechClip, Runnable onStart) {
+        QueuedClip clip = new QueuedClip(speechClip, onStart, generation, new CompletableFuture<>());
+        synchronized (stateLock) {
+            if (pendingClips++ == 0) {
+                drained = new CompletableFuture<>();
+            }
+        }
+        startPlayer();
+        audioQueue.add(clip);
+        log.debug("Added audio to queue. Queue size: {}", audioQueue.size());
+        return clip.played();
+    }
+
+    @Override
+    public void accept(SpeechClip clip, Runnable onStart) {
+        queueAudio(clip, onStart);
+    }
+
+    @Override
+    public boolean acceptsDownloads() {
+        return true;
+    }
+
+    /**
+     * Completes when every queued clip has been played and the line is silent.
+     */
+    public CompletableFuture<Void> drained() {
+        synchronized (stateLock) {
+            return drained.copy();
         }
     }
 
-    public boolean isAudioFinished() {
+    /**
+     * Blocks until playback has drained.
+     */
+    public void awaitDrained() throws InterruptedException {
         try {
-            Thread.sleep(5000);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new RuntimeException(e);
+            drained().get();
+        } catch (ExecutionException e) {
+            log.warn("Playback ended with an error", e.getCause());
+        }
+    }
+
+    /**
+     * Stops the clip that is playing and drops every queued clip, e.g. when the user interrupts
+     * the answer. Their futures complete exceptionally with a {@link CancellationException}.
+     */
+    public void cancelPlayback() {
+        synchronized (stateLock) {
+            generation++;
+        }
+        List<QueuedClip> dropped = new ArrayList<>();
+        audioQueue.drainTo(dropped);
+        QueuedClip current = playing;
+        if (current != null && current.generation() != generation) {
+            // Releases a read blocked on a download that is still running
+            current.clip().close();
+        }
+        SourceDataLine currentLine = line;
+        if (currentLine != null) {
+            // Discards what the line still buffers and releases a write blocked on it
+            currentLine.flush();
+        }
+        for (QueuedClip clip : dropped) {
+            clip.clip().close();
+            clip.played().completeExceptionally(new CancellationException("Playback cancelled"));
+            clipDone();
+        }
+        log.debug("Cancelled playback, dropped {} queued clips", dropped.size());
+    }
+
+    public boolean isIdle() {
+        synchronized (stateLock) {
+            return pendingClips == 0;
         }
-        return audioQueue.isEmpty() && !running.get();
     }
 
     private void processAudioQueue() {
+        byte[] buffer = new byte[WRITE_BUFFER_SIZE];
         while (!Thread.currentThread().isInterrupted()) {
             try {
-                byte[] audioData = audioQueue.take();
-                playAudio(audioData);
-                while (running.get()) {
-                    Thread.sleep(5000);
+                QueuedClip clip = audioQueue.take();
+                playing = clip;
+                try {
+                    playAudio(clip, buffer);
+                    if (audioQueue.isEmpty() && line != null) {
+                        // Nothing to follow, wait until the last sample has left the speaker
+                        line.drain();
+                    }
+                    clip.played().complete(null);
+                } catch (Exception e) {
+                    if (clip.generation() == generation) {
+                        log.error("Error playing audio", e);
+                    }
+                    clip.played().completeExceptionally(e);
+                } finally {
+                    playing = null;
+                    clip.clip().close();
+                    clipDone();
                 }
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
                 break;
             }
         }
+        if (line != null) {
+            line.close();
+        }
     }
 
-    private void playAudio(byte[] audioData) {
-        running.set(true);
-        try {
-            ByteArrayInputStream bais = new ByteArrayInputStream(audioData);
-            Clip clip = AudioSystem.getClip();
-            clip.open(AudioSystem.getAudioInputStream(bais));
-
-            clip.addLineListener(event -> {
-                if (event.getType() == LineEvent.Type.STOP) {
-                    clip.close();
-                    running.set(false);
+    private void playAudio(QueuedClip clip, byte[] buffer) throws IOException, UnsupportedAudioFileException, LineUnavailableException {
+        if (clip.generation() != generation) {
+            return;
+        }
+        try (AudioInputStream source = WavStream.open(clip.clip().open());
+             AudioInputStream pcm = toPcm(source)) {
+            SourceDataLine target = lineFor(pcm.getFormat());
+            if (clip.generation() != generation) {
+                return;
+            }
+            if (clip.onStart() != null) {
+                clip.onStart().run();
+            }
+            int frameSize = pcm.getFormat().getFrameSize();
+            int chunk = buffer.length - buffer.length % frameSize;
+            int read;
+            while ((read = pcm.read(buffer, 0, chunk)) > 0) {
+                if (clip.generation() != generation) {
+                    // Cancelled while playing, drop the rest of the clip
+                    target.flush();
+                    return;
                 }
-            });
+                target.write(buffer, 0, read);
+            }
+        }
+    }
+
+    private AudioInputStream toPcm(AudioInputStream source) {
+        AudioFormat format = source.getFormat();
+        if (format.getEncoding() == AudioFormat.Encoding.PCM_SIGNED) {
+            return source;
+        }
+        AudioFormat pcmFormat = new AudioFormat(format.getSampleRate(), 16, format.getChannels(), true, false);
+        return AudioSystem.getAudioInputStream(pcmFormat, source);
+    }
+
+    // The line stays open across clips; it is only reopened if the TTS output format changes
+    private SourceDataLine lineFor(AudioFormat format) throws LineUnavailableException {
+        if (line != null && line.getFormat().matches(format)) {
+            return line;
+        }
+        closeLine();
+        SourceDataLine newLine = AudioSystem.getSourceDataLine(format);
+        newLine.open(format);
+        newLine.start();
+        line = newLine;
+        log.info("Opened audio output line: {}", format);
+        return line;
+    }
+
+    private void closeLine() {
+        if (line != null) {
+            line.drain();
+            line.close();
+            line = null;
+        }
+    }
+
+    private void clipDone() {
+        CompletableFuture<Void> toComplete = null;
+        synchronized (stateLock) {
+            if (--pendingClips == 0) {
+                toComplete = drained;
+            }
+        }
+        if (toComplete != null) {
+            toComplete.complete(null);
+        }
+    }
 
-            clip.start();
-            System.out.println("Playing audio clip");
+    @PreDestroy
+    public void shutdown() {
+        synchronized (stateLock) {
+            if (playerThread != null) {
+                playerThread.interrupt();
+            }
+        }
+    }
 
-        } catch (Exception e) {
-            System.err.println("Error playing audio:" + e);
-            running.set(false);
+    private void startPlayer() {
+        synchronized (stateLock) {
+            if (playerThread == null) {
+                playerThread = new Thread(this::processAudioQueue, "Audio-Player-Thread");
+                playerThread.setDaemon(true);
+                playerThread.start();
+            }
         }
     }
-}
\ No newline at end of file
+
+    private record QueuedClip(SpeechClip clip, Runnable onStart, int generation, CompletableFuture<Void> played) {
+    }
+}
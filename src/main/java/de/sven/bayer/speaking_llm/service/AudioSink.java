@@ -0,0 +1,24 @@
+package de.sven.bayer.speaking_llm.service;
+
+import de.sven.bayer.speaking_llm.component.tts.SpeechClip;
+
+/**
+ * Destination for the synthesized clips of an answer, e.g. the local speaker.
+ */
+@FunctionalInterface
+public interface AudioSink {
+
+    /**
+     * Queues a clip behind the previous ones. The sink reads or closes the clip.
+     *
+     * @param onStart runs once the clip starts playing, or is sent if the sink does not play itself
+     */
+    void accept(SpeechClip clip, Runnable onStart);
+
+    /**
+     * True if the sink can take clips that are still downloading, false to get complete clips.
+     */
+    default boolean acceptsDownloads() {
+        return false;
+    }
+}
@@ -0,0 +1,201 @@
+package de.sven.bayer.speaking_llm.service;
+
+import de.sven.bayer.speaking_llm.component.audio.VoiceCapture;
+import de.sven.bayer.speaking_llm.component.journal.TurnJournal;
+import de.sven.bayer.speaking_llm.component.metrics.TurnMetrics;
+import de.sven.bayer.speaking_llm.component.metrics.TurnStage;
+import de.sven.bayer.speaking_llm.component.metrics.TurnTrace;
+import de.sven.bayer.speaking_llm.component.tts.SpeechClip;
+import de.sven.bayer.speaking_llm.model.conversation.LlmAnswerWithThink;
+import de.sven.bayer.speaking_llm.model.conversation.MessageFromUser;
+import de.sven.bayer.speaking_llm.service.session.ConversationSession;
+import de.sven.bayer.speaking_llm.service.session.ConversationTurn;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Runs conversation turns on virtual threads: streams the LLM answer, records the spoken sentences
+ * on the turn and synthesizes them into the session's audio sink.
+ */
+@Slf4j
+@Service
+public class ConversationEngine {
+    private static final long SPECULATION_DECISION_TIMEOUT_MS = 30_000;
+
+    private final LlmChatService llmChatService;
+    private final TtsService ttsService;
+    private final TurnMetrics turnMetrics;
+    private final TurnJournal turnJournal;
+    private final ExecutorService turnExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public ConversationEngine(LlmChatService llmChatService, TtsService ttsService, TurnMetrics turnMetrics,
+                              TurnJournal turnJournal) {
+        this.llmChatService = llmChatService;
+        this.ttsService = ttsService;
+        this.turnMetrics = turnMetrics;
+        this.turnJournal = turnJournal;
+    }
+
+    /**
+     * Accepts a message and returns immediately; the turn runs after the session's earlier turns.
+     */
+    public ConversationTurn submit(ConversationSession session, String message) {
+        return submit(session, message, turnMetrics.startTurn("api"));
+    }
+
+    /**
+     * Runs a turn whose trace was started earlier, e.g. when the user started speaking. The turn
+     * gets the id of the trace.
+     */
+    public ConversationTurn submit(ConversationSession session, String message, TurnTrace trace) {
+        return session.submit(trace.turnId(), message, turnExecutor, (s, turn) -> answer(s, turn, trace, null));
+    }
+
+    /**
+     * Answers a spoken utterance with its final transcript: releases the speculative answer if it
+     * was asked with the same words, otherwise runs a new turn. Transcript and answer go into the
+     * turn journal under the id the utterance's audio was recorded with.
+     */
+    public ConversationTurn submit(ConversationSession session, VoiceCapture.Utterance utterance, String transcript) {
+        ConversationTurn turn = answerUtterance(session, utterance, transcript);
+        if (turnJournal.isEnabled()) {
+            String turnId = utterance.trace().turnId();
+            turnJournal.transcript(turnId, transcript);
+            turn.completion().thenAccept(view -> {
+                if (view.answer() != null) {
+                    turnJournal.answer(turnId, view.answer().answer());
+                }
+            });
+        }
+        return turn;
+    }
+
+    private ConversationTurn answerUtterance(ConversationSession session, VoiceCapture.Utterance utterance, String transcript) {
+        TurnTrace trace = utterance.trace();
+        SpeculativeAnswer speculation = utterance.speculation();
+        if (speculation == null) {
+            return submit(session, transcript, trace);
+        }
+        ConversationTurn turn = speculation.confirm(transcript);
+        if (turn != null) {
+            // The answer has been on its way since the pause began
+            return turn;
+        }
+        speculation.discard();
+        // The speculative turn already took the id of the trace
+        return submit(session, transcript, turnMetrics.restartTurn(trace));
+    }
+
+    /**
+     * Asks for the answer to a transcript that may still change. The answer is streamed as soon as
+     * the transcript is ready but only spoken once it is confirmed.
+     */
+    public SpeculativeAnswer speculate(ConversationSession session, CompletableFuture<String> transcript, TurnTrace trace) {
+        return new SpeculativeAnswer(trace, turnMetrics, transcript, (message, decision) -> {
+            turnMetrics.speculation("started");
+            return session.submit(trace.turnId(), message, turnExecutor, (s, turn) -> answer(s, turn, trace, decision));
+        });
+    }
+
+    /**
+     * @param release if set, sentences are held back until it completes with {@code true}; {@code false} cancels the turn
+     */
+    private LlmAnswerWithThink answer(ConversationSession session, ConversationTurn turn, TurnTrace trace,
+                                      CompletableFuture<Boolean> release) throws Exception {
+        MessageFromUser messageFromUser = new MessageFromUser();
+        messageFromUser.setMessage(turn.message());
+        messageFromUser.setConversationId(session.conversationId());
+
+        long llmStart = System.nanoTime();
+        AtomicBoolean firstSentence = new AtomicBoolean(true);
+        try {
+            AudioSink audioSink = session.audioSink();
+            try (SynthesisPipeline pipeline = session.playsAudio()
+                    ? ttsService.startAnswer(clip -> queueClip(audioSink, clip, trace), trace, audioSink.acceptsDownloads()) : null) {
+                if (pipeline != null) {
+                    turn.onCancel(pipeline::cancel);
+                }
+                // Interrupting the turn's thread aborts the LLM stream it is reading, and only that
+                StreamInterrupt streamInterrupt = new StreamInterrupt(Thread.currentThread());
+                turn.onCancel(streamInterrupt);
+                Consumer<String> speak = sentence -> {
+                    turn.spoken(sentence);
+                    if (pipeline != null) {
+                        pipeline.submit(sentence);
+                    }
+                };
+                HeldSentences held = release != null ? new HeldSentences(speak, release) : null;
+                Consumer<String> sentences = held != null ? held : speak;
+                LlmAnswerWithThink answer;
+                try {
+                    answer = turnMetrics.time(trace, TurnStage.LLM_REQUEST, () -> llmChatService.streamResponseForMessage(messageFromUser, sentence -> {
+                        if (turn.isCancelRequested()) {
+                            throw new CancellationException("Turn " + turn.turnId() + " was cancelled");
+                        }
+                        if (firstSentence.getAndSet(false)) {
+                            turnMetrics.record(trace, TurnStage.LLM_FIRST_SENTENCE, llmStart, System.nanoTime() - llmStart);
+                        }
+                        sentences.accept(sentence);
+                    }));
+                } finally {
+                    streamInterrupt.streamEnded();
+                }
+                if (held != null && !held.awaitDecision(SPECULATION_DECISION_TIMEOUT_MS)) {
+                    if (turn.cancel()) {
+                        // Still talking after all this time; the final transcript gets a turn of its own
+                        turnMetrics.speculation("expired");
+                    }
+                    throw new CancellationException("Speculative turn " + turn.turnId() + " was discarded");
+                }
+                return answer;
+            }
+        } finally {
+            if (!turn.isCancelRequested()) {
+                turnMetrics.finishTurn(trace);
+            }
+        }
+    }
+
+    private void queueClip(AudioSink audioSink, SpeechClip clip, TurnTrace trace) {
+        long queued = System.nanoTime();
+        audioSink.accept(clip, () -> {
+            turnMetrics.record(trace, TurnStage.PLAYER_QUEUE_WAIT, queued, System.nanoTime() - queued);
+            turnMetrics.audioStarted(trace);
+        });
+    }
+
+    // A cancel hook that interrupts the turn's thread while it reads the LLM stream; a barge-in after
+    // that must not hit the thread during synthesis or once it runs another task
+    private static final class StreamInterrupt implements Runnable {
+        private final Thread thread;
+        private boolean streaming = true;
+
+        StreamInterrupt(Thread thread) {
+            this.thread = thread;
+        }
+
+        @Override
+        public synchronized void run() {
+            if (streaming) {
+                thread.interrupt();
+            }
+        }
+
+        synchronized void streamEnded() {
+            streaming = false;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        turnExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,64 @@
+package de.sven.bayer.speaking_llm.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * The sentences of a speculative answer, held back until the speculation is decided. Only the
+ * turn's own thread hands them on, with the next sentence after the confirmation or in
+ * {@link #awaitDecision}; the thread that confirms just completes the decision and never waits
+ * for the synthesis.
+ */
+final class HeldSentences implements Consumer<String> {
+    private final Consumer<String> target;
+    private final CompletableFuture<Boolean> decision;
+    private final List<String> held = new ArrayList<>();
+    private boolean released;
+
+    HeldSentences(Consumer<String> target, CompletableFuture<Boolean> decision) {
+        this.target = target;
+        this.decision = decision;
+    }
+
+    @Override
+    public void accept(String sentence) {
+        held.add(sentence);
+        if (released || Boolean.TRUE.equals(decision.getNow(null))) {
+            release();
+        }
+    }
+
+    /**
+     * Waits until the speculation is decided and hands on the held sentences if it was confirmed.
+     * Without a decision in time the speculation is given up, so a later confirmation misses and
+     * the utterance gets a turn of its own.
+     *
+     * @return true if the answer was confirmed
+     */
+    boolean awaitDecision(long timeoutMs) throws InterruptedException {
+        boolean confirmed;
+        try {
+            confirmed = decision.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // Unless the decision came in just now
+            confirmed = !decision.complete(false) && decision.getNow(false);
+        } catch (ExecutionException e) {
+            confirmed = false;
+        }
+        if (confirmed) {
+            release();
+        }
+        return confirmed;
+    }
+
+    private void release() {
+        released = true;
+        held.forEach(target);
+        held.clear();
+    }
+}
@@ -1,41 +1,169 @@
 package de.sven.bayer.speaking_llm.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.sven.bayer.speaking_llm.component.TextSplitter;
+import de.sven.bayer.speaking_llm.component.http.BackendResponseException;
+import de.sven.bayer.speaking_llm.component.http.HttpBackend;
+import de.sven.bayer.speaking_llm.component.http.HttpTransport;
+import de.sven.bayer.speaking_llm.component.llm.LlmStreamAssembler;
+import de.sven.bayer.speaking_llm.config.LlmProperties;
 import de.sven.bayer.speaking_llm.model.conversation.LlmAnswerWithThink;
 import de.sven.bayer.speaking_llm.model.conversation.MessageFromUser;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.http.*;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestClientException;
-import org.springframework.web.client.RestTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
 
 @Service
 @Slf4j
 public class LlmChatService {
-    private static final String LLM_BASE_URL = "http://localhost:8080";
-    private final RestTemplate restTemplate = new RestTemplate();
+    private static final String TALK_PATH = "/talktoLLM";
+    private static final String CONVERSATION_ID_HEADER = "X-Conversation-Id";
+    private static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    private static final String STREAM_ACCEPT = MediaType.TEXT_EVENT_STREAM_VALUE + ", " + APPLICATION_NDJSON;
+    private final HttpBackend llm;
+    private final TextSplitter textSplitter;
+    private final ObjectMapper objectMapper;
+    private final LlmProperties llmProperties;
+    private volatile boolean streamingSupported = true;
+
+    public LlmChatService(TextSplitter textSplitter, ObjectMapper objectMapper, LlmProperties llmProperties,
+                          HttpTransport httpTransport) {
+        this.llm = httpTransport.llm();
+        this.textSplitter = textSplitter;
+        this.objectMapper = objectMapper;
+        this.llmProperties = llmProperties;
+    }
 
     public LlmAnswerWithThink responseForMessage(MessageFromUser messageFromUser) {
         try {
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            HttpEntity<MessageFromUser> request = new HttpEntity<>(messageFromUser, headers);
-
-            ResponseEntity<LlmAnswerWithThink> response = restTemplate.exchange(
-                    LLM_BASE_URL + "/talktoLLM",
-                    HttpMethod.POST,
-                    request,
-                    LlmAnswerWithThink.class
-            );
-
-            return response.getBody();
-        } catch (RestClientException e) {
+            HttpRequest request = jsonRequest(TALK_PATH, messageFromUser)
+                    .header("Accept", MediaType.APPLICATION_JSON_VALUE)
+                    .build();
+            return objectMapper.readValue(llm.exchange(request, HttpResponse.BodyHandlers.ofByteArray()), LlmAnswerWithThink.class);
+        } catch (IOException | UncheckedIOException | BackendResponseException e) {
             log.error("Error calling LLM service", e);
-            return new LlmAnswerWithThink(
-                    "Sorry, I couldn't process your message at the moment.",
-                    "Error: " + e.getMessage(),
-                    messageFromUser.getConversationId()
-            );
+            return fallbackAnswer(messageFromUser, e);
+        }
+    }
+
+    /**
+     * Streams the answer and passes every finished sentence to the consumer while the LLM is still
+     * generating the rest. Falls back to {@link #responseForMessage} if streaming is switched off or
+     * the chatbot has no streaming endpoint.
+     */
+    public LlmAnswerWithThink streamResponseForMessage(MessageFromUser messageFromUser, Consumer<String> sentenceConsumer) {
+        if (!llmProperties.isStreaming() || !streamingSupported) {
+            return speakBlocking(responseForMessage(messageFromUser), sentenceConsumer);
+        }
+
+        LlmStreamAssembler assembler = new LlmStreamAssembler(
+                textSplitter.sentenceStream(sentenceConsumer), messageFromUser.getConversationId());
+        try {
+            HttpRequest request = jsonRequest(llmProperties.getStreamPath(), messageFromUser)
+                    .header("Accept", STREAM_ACCEPT)
+                    .build();
+            HttpResponse<InputStream> response = llm.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            if (response.statusCode() == 404 || response.statusCode() == 405) {
+                response.body().close();
+                log.warn("LLM service has no streaming endpoint, falling back to blocking answers");
+                streamingSupported = false;
+                return speakBlocking(responseForMessage(messageFromUser), sentenceConsumer);
+            }
+            readStream(llm.requireSuccess(response), assembler);
+            return assembler.finish();
+        } catch (IOException | BackendResponseException e) {
+            log.error("Error streaming from LLM service", e);
+            if (assembler.hasSpoken()) {
+                // Part of the answer is already playing, keep what we have
+                return assembler.finish();
+            }
+            return speakBlocking(fallbackAnswer(messageFromUser, e), sentenceConsumer);
+        }
+    }
+
+    private HttpRequest.Builder jsonRequest(String path, MessageFromUser messageFromUser) throws IOException {
+        return llm.request(path)
+                .header("Content-Type", MediaType.APPLICATION_JSON_VALUE)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(messageFromUser)));
+    }
+
+    private void readStream(HttpResponse<InputStream> response, LlmStreamAssembler assembler) throws IOException {
+        assembler.onConversationId(response.headers().firstValue(CONVERSATION_ID_HEADER).orElse(null));
+        MediaType contentType = response.headers().firstValue("Content-Type").map(MediaType::parseMediaType).orElse(null);
+        boolean json = contentType != null
+                && (APPLICATION_NDJSON.isCompatibleWith(contentType) || MediaType.APPLICATION_JSON.isCompatibleWith(contentType));
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(response.body(), StandardCharsets.UTF_8))) {
+            if (json) {
+                readJsonLines(reader, assembler);
+            } else {
+                readServerSentEvents(reader, assembler);
+            }
         }
     }
-}
\ No newline at end of file
+
+    private void readJsonLines(BufferedReader reader, LlmStreamAssembler assembler) throws IOException {
+        String line;
+        while (!assembler.isDone() && (line = reader.readLine()) != null) {
+            if (!line.isBlank()) {
+                assembler.onDelta(objectMapper.readValue(line, LlmAnswerWithThink.class));
+            }
+        }
+    }
+
+    private void readServerSentEvents(BufferedReader reader, LlmStreamAssembler assembler) throws IOException {
+        String event = null;
+        StringBuilder data = null;
+        String line;
+        while (!assembler.isDone() && (line = reader.readLine()) != null) {
+            if (line.isEmpty()) {
+                if (data != null) {
+                    assembler.onEvent(event, data.toString());
+                }
+                event = null;
+                data = null;
+                continue;
+            }
+            if (line.startsWith(":")) continue; // comment / keep-alive
+
+            int colon = line.indexOf(':');
+            String field = colon < 0 ? line : line.substring(0, colon);
+            String value = colon < 0 ? "" : line.substring(colon + 1);
+            if (value.startsWith(" ")) value = value.substring(1);
+
+            if (field.equals("event")) {
+                event = value;
+            } else if (field.equals("data")) {
+                data = data == null ? new StringBuilder(value) : data.append('\n').append(value);
+            }
+        }
+        if (data != null) {
+            assembler.onEvent(event, data.toString());
+        }
+    }
+
+    private LlmAnswerWithThink speakBlocking(LlmAnswerWithThink answer, Consumer<String> sentenceConsumer) {
+        if (answer != null && answer.answer() != null) {
+            textSplitter.splitIntoSentences(answer.answer()).forEach(sentenceConsumer);
+        }
+        return answer;
+    }
+
+    private LlmAnswerWithThink fallbackAnswer(MessageFromUser messageFromUser, Exception e) {
+        return new LlmAnswerWithThink(
+                "Sorry, I couldn't process your message at the moment.",
+                "Error: " + e.getMessage(),
+                messageFromUser.getConversationId()
+        );
+    }
+}
@@ -0,0 +1,97 @@
+package de.sven.bayer.speaking_llm.service;
+
+import de.sven.bayer.speaking_llm.component.metrics.TurnMetrics;
+import de.sven.bayer.speaking_llm.component.metrics.TurnTrace;
+import de.sven.bayer.speaking_llm.service.session.ConversationTurn;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiFunction;
+
+/**
+ * An answer requested on the transcript so far while the user pauses. The turn streams its answer
+ * right away but holds back the sentences until {@link #confirm} sees the same final transcript;
+ * {@link #discard} cancels it.
+ */
+@Slf4j
+public class SpeculativeAnswer {
+    private static final long START_TIMEOUT_MS = 2000;
+
+    private final TurnTrace trace;
+    private final TurnMetrics turnMetrics;
+    private final CompletableFuture<Boolean> decision = new CompletableFuture<>();
+    private final CompletableFuture<ConversationTurn> started;
+    private volatile String transcript;
+
+    SpeculativeAnswer(TurnTrace trace, TurnMetrics turnMetrics, CompletableFuture<String> transcript,
+                      BiFunction<String, CompletableFuture<Boolean>, ConversationTurn> submit) {
+        this.trace = trace;
+        this.turnMetrics = turnMetrics;
+        this.started = transcript.thenApply(text -> start(text, submit));
+    }
+
+    public TurnTrace trace() {
+        return trace;
+    }
+
+    /**
+     * Releases the held answer if the final transcript matches the speculated one.
+     *
+     * @return the turn that now answers the utterance, or {@code null} if the speculation missed
+     */
+    public ConversationTurn confirm(String finalTranscript) {
+        ConversationTurn turn = awaitStart();
+        if (turn == null || !sameUtterance(transcript, finalTranscript) || !decision.complete(true)) {
+            return null;
+        }
+        turnMetrics.speculation("hit");
+        return turn;
+    }
+
+    /**
+     * Throws the answer away, e.g. because the user went on talking.
+     */
+    public void discard() {
+        if (!decision.complete(false)) {
+            return;
+        }
+        ConversationTurn turn = started.getNow(null);
+        if (turn != null) {
+            turn.cancel();
+            turnMetrics.speculation("wasted");
+        }
+    }
+
+    private synchronized ConversationTurn start(String text, BiFunction<String, CompletableFuture<Boolean>, ConversationTurn> submit) {
+        if (decision.isDone() || text.isBlank()) {
+            return null;
+        }
+        transcript = text;
+        return submit.apply(text, decision);
+    }
+
+    // The speculated segments are part of the final transcript, so this never waits long
+    private ConversationTurn awaitStart() {
+        try {
+            return started.get(START_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException | TimeoutException e) {
+            log.warn("Speculative request did not start: {}", e.toString());
+            return null;
+        }
+    }
+
+    private static boolean sameUtterance(String speculated, String finalTranscript) {
+        return normalize(speculated).equals(normalize(finalTranscript));
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.strip().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+}
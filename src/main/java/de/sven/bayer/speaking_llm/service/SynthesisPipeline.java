@@ -0,0 +1,137 @@
+package de.sven.bayer.speaking_llm.service;
+
+import de.sven.bayer.speaking_llm.component.limit.BackendOverloadedException;
+import de.sven.bayer.speaking_llm.component.tts.SpeechClip;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Synthesizes the sentences of one answer with a bounded number of TTS requests in flight and
+ * hands the clips to the player strictly in sentence order. Finished clips that overtook an
+ * earlier sentence wait in a reorder buffer keyed by sentence index. A permit is only returned
+ * once its clip has left the reorder buffer, so in-flight requests and buffered clips together
+ * never exceed the limit. A clip that is still downloading is handed on as soon as its response
+ * has started, the player reads the rest; it keeps its permit until it has been read or closed, so
+ * the response bodies open at once are bounded by the same limit.
+ */
+@Slf4j
+public class SynthesisPipeline implements AutoCloseable {
+    private final Function<String, SpeechClip> synthesizer;
+    private final Consumer<SpeechClip> clipConsumer;
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final int maxInFlight;
+
+    private final Map<Integer, SpeechClip> reorderBuffer = new HashMap<>();
+    private final Set<Thread> workers = ConcurrentHashMap.newKeySet();
+    private final Object lock = new Object();
+    private int submitted;
+    private int nextToPlay;
+    private volatile boolean cancelled;
+
+    SynthesisPipeline(Function<String, SpeechClip> synthesizer, Consumer<SpeechClip> clipConsumer, ExecutorService executor, int maxInFlight) {
+        this.synthesizer = synthesizer;
+        this.clipConsumer = clipConsumer;
+        this.executor = executor;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.permits = new Semaphore(this.maxInFlight);
+    }
+
+    /**
+     * Queues the next sentence, blocking while the pipeline is full.
+     */
+    public void submit(String sentence) {
+        if (cancelled || sentence == null || sentence.isBlank()) return;
+        permits.acquireUninterruptibly();
+        int index;
+        synchronized (lock) {
+            index = submitted++;
+        }
+        executor.execute(() -> complete(index, synthesize(sentence)));
+    }
+
+    /**
+     * Drops the rest of the answer: interrupts the TTS requests in flight, which aborts their HTTP
+     * exchanges, and hands no further clip to the consumer once this returns.
+     */
+    public void cancel() {
+        synchronized (lock) {
+            cancelled = true;
+            // Every buffered clip still holds the permit of its sentence
+            permits.release(reorderBuffer.size());
+            reorderBuffer.values().forEach(SynthesisPipeline::discard);
+            reorderBuffer.clear();
+        }
+        workers.forEach(Thread::interrupt);
+    }
+
+    /**
+     * Waits until every submitted sentence has been handed to the player and every download handed
+     * on has been read or closed.
+     */
+    @Override
+    public void close() {
+        permits.acquireUninterruptibly(maxInFlight);
+        permits.release(maxInFlight);
+    }
+
+    private SpeechClip synthesize(String sentence) {
+        if (cancelled) return null;
+        workers.add(Thread.currentThread());
+        try {
+            return synthesizer.apply(sentence);
+        } catch (BackendOverloadedException e) {
+            // Under overload the sentence is not spoken; it is still part of the turn's text
+            log.warn("Skipped sentence, {}", e.getMessage());
+            return null;
+        } catch (Exception e) {
+            if (!cancelled) {
+                log.error("TTS request failed for sentence: {}", sentence, e);
+            }
+            return null;
+        } finally {
+            workers.remove(Thread.currentThread());
+        }
+    }
+
+    private void complete(int index, SpeechClip clip) {
+        synchronized (lock) {
+            if (cancelled) {
+                discard(clip);
+                permits.release();
+                return;
+            }
+            reorderBuffer.put(index, clip);
+            // Draining under the lock keeps the hand-off to the player in sentence order
+            while (reorderBuffer.containsKey(nextToPlay)) {
+                SpeechClip next = reorderBuffer.remove(nextToPlay++);
+                if (next == null) {
+                    permits.release();
+                    continue;
+                }
+                SpeechClip handedOn = next.whenDone(permits::release);
+                try {
+                    clipConsumer.accept(handedOn);
+                } catch (RuntimeException e) {
+                    handedOn.close();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    // Aborts the download of a clip that will not be played
+    private static void discard(SpeechClip clip) {
+        if (clip != null) {
+            clip.close();
+        }
+    }
+}
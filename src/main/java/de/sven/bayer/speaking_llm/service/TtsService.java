@@ -1,43 +1,120 @@
 package de.sven.bayer.speaking_llm.service;
 
 import de.sven.bayer.speaking_llm.component.TextSplitter;
+import de.sven.bayer.speaking_llm.component.http.HttpBackend;
+import de.sven.bayer.speaking_llm.component.http.HttpTransport;
+import de.sven.bayer.speaking_llm.component.limit.AdaptiveLimiter;
+import de.sven.bayer.speaking_llm.component.limit.BackendLimiters;
+import de.sven.bayer.speaking_llm.component.metrics.TurnMetrics;
+import de.sven.bayer.speaking_llm.component.metrics.TurnStage;
+import de.sven.bayer.speaking_llm.component.metrics.TurnTrace;
+import de.sven.bayer.speaking_llm.component.tts.SpeechClip;
+import de.sven.bayer.speaking_llm.component.tts.TtsAudioCache;
+import de.sven.bayer.speaking_llm.config.TtsProperties;
 import de.sven.bayer.speaking_llm.model.conversation.LlmAnswerWithThink;
-import org.springframework.http.*;
+import jakarta.annotation.PreDestroy;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 @Service
 public class TtsService {
-    public static final String BASE_URL = "http://localhost:8081";
+    private static final String TTS_PATH = "/tts";
     private final AudioPlayerService audioPlayerService;
     private final TextSplitter textSplitter;
-    private final RestTemplate restTemplate = new RestTemplate();
+    private final TtsProperties ttsProperties;
+    private final TtsAudioCache ttsAudioCache;
+    private final HttpBackend tts;
+    private final AdaptiveLimiter limiter;
+    private final TurnMetrics turnMetrics;
+    private final ExecutorService synthesisExecutor = Executors.newVirtualThreadPerTaskExecutor();
 
-    public TtsService(AudioPlayerService audioPlayerService, TextSplitter textSplitter) {
+    public TtsService(AudioPlayerService audioPlayerService, TextSplitter textSplitter, TtsProperties ttsProperties,
+                      TtsAudioCache ttsAudioCache, HttpTransport httpTransport, BackendLimiters backendLimiters,
+                      TurnMetrics turnMetrics) {
         this.audioPlayerService = audioPlayerService;
         this.textSplitter = textSplitter;
+        this.ttsProperties = ttsProperties;
+        this.ttsAudioCache = ttsAudioCache;
+        this.tts = httpTransport.tts();
+        this.limiter = backendLimiters.tts();
+        this.turnMetrics = turnMetrics;
     }
 
     public void playLlmAnswer(LlmAnswerWithThink llmAnswerWithThink) {
         String text = llmAnswerWithThink.answer();
         List<String> sentences = textSplitter.splitIntoSentences(text);
-        for (String sentence : sentences) {
-            if (sentence != null && !sentence.trim().isEmpty()) {
-                HttpHeaders headers = new HttpHeaders();
-                headers.setContentType(MediaType.TEXT_PLAIN);
-                HttpEntity<String> entity = new HttpEntity<>(sentence, headers);
-
-                ResponseEntity<byte[]> response = restTemplate.exchange(
-                        BASE_URL + "/tts",
-                        HttpMethod.POST,
-                        entity,
-                        byte[].class
-                );
-                byte[] audioAsBytes = response.getBody();
-                audioPlayerService.queueAudio(audioAsBytes);
-            }
+        try (SynthesisPipeline pipeline = startAnswer()) {
+            sentences.forEach(pipeline::submit);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Opens a pipeline for one answer. Sentences submitted to it are synthesized in parallel and
+     * played in order; closing it waits until the last clip has been queued for playback, and read if
+     * it was still downloading.
+     */
+    public SynthesisPipeline startAnswer() {
+        return startAnswer(clip -> audioPlayerService.queueAudio(clip, null), null, true);
+    }
+
+    /**
+     * Opens a pipeline that hands the complete clips to the given consumer instead of the local player.
+     */
+    public SynthesisPipeline startAnswer(Consumer<SpeechClip> clipConsumer) {
+        return startAnswer(clipConsumer, null, false);
+    }
+
+    /**
+     * Opens a pipeline whose TTS requests are recorded on the given turn.
+     *
+     * @param streaming hand clips on while they are still downloading, if streaming is enabled;
+     *                  the consumer then has to read or close every clip, or the pipeline runs dry
+     */
+    public SynthesisPipeline startAnswer(Consumer<SpeechClip> clipConsumer, TurnTrace trace, boolean streaming) {
+        Function<String, SpeechClip> synthesizer = streaming && ttsProperties.isStreaming()
+                ? uncached -> turnMetrics.time(trace, TurnStage.TTS_REQUEST, () -> download(uncached))
+                : uncached -> SpeechClip.of(turnMetrics.time(trace, TurnStage.TTS_REQUEST, () -> synthesize(uncached)));
+        return new SynthesisPipeline(sentence -> ttsAudioCache.getClip(sentence, synthesizer),
+                clipConsumer, synthesisExecutor, ttsProperties.getMaxInFlight());
+    }
+
+    // Cached sentences never wait for a slot, only the requests that actually reach Zonos do
+    private byte[] synthesize(String sentence) {
+        return limiter.call(() -> tts.exchange(request(sentence), HttpResponse.BodyHandlers.ofByteArray()));
+    }
+
+    // Returns once the response has started; the slot is held until then, the pipeline's permit bounds the open bodies
+    private SpeechClip download(String sentence) {
+        return limiter.call(() -> {
+            try {
+                HttpResponse<InputStream> response = tts.requireSuccess(
+                        tts.send(request(sentence), HttpResponse.BodyHandlers.ofInputStream()));
+                return SpeechClip.downloading(response.body());
+            } catch (IOException e) {
+                throw new UncheckedIOException(tts.name() + " request failed", e);
+            }
+        });
+    }
+
+    private HttpRequest request(String sentence) {
+        return tts.request(TTS_PATH)
+                .header("Content-Type", "text/plain; charset=UTF-8")
+                .POST(HttpRequest.BodyPublishers.ofString(sentence))
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        synthesisExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,146 @@
+package de.sven.bayer.speaking_llm.service.session;
+
+import de.sven.bayer.speaking_llm.model.conversation.LlmAnswerWithThink;
+import de.sven.bayer.speaking_llm.model.conversation.SessionView;
+import de.sven.bayer.speaking_llm.service.AudioSink;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * State of one conversation: the chatbot's conversation id, where its audio goes and its recent
+ * turns. Turns of a session run strictly one after another, different sessions run in parallel.
+ */
+@Slf4j
+public class ConversationSession {
+
+    /**
+     * Produces the answer for a turn, reporting spoken sentences on the turn as they come.
+     */
+    @FunctionalInterface
+    public interface TurnHandler {
+        LlmAnswerWithThink answer(ConversationSession session, ConversationTurn turn) throws Exception;
+    }
+
+    private final String sessionId;
+    private final AudioSink audioSink;
+    private final int retainedTurns;
+    private final LinkedHashMap<String, ConversationTurn> turns = new LinkedHashMap<>();
+    private CompletableFuture<Void> tail = CompletableFuture.completedFuture(null);
+    private volatile String conversationId;
+    private volatile Instant lastActivity = Instant.now();
+
+    /**
+     * @param audioSink receives the synthesized clips in order, or {@code null} for a text-only session
+     */
+    public ConversationSession(String sessionId, AudioSink audioSink, int retainedTurns) {
+        this.sessionId = sessionId;
+        this.audioSink = audioSink;
+        this.retainedTurns = retainedTurns;
+    }
+
+    public String sessionId() {
+        return sessionId;
+    }
+
+    public AudioSink audioSink() {
+        return audioSink;
+    }
+
+    public boolean playsAudio() {
+        return audioSink != null;
+    }
+
+    public String conversationId() {
+        return conversationId;
+    }
+
+    public Instant lastActivity() {
+        return lastActivity;
+    }
+
+    public synchronized Optional<ConversationTurn> turn(String turnId) {
+        return Optional.ofNullable(turns.get(turnId));
+    }
+
+    public synchronized boolean isBusy() {
+        return !tail.isDone();
+    }
+
+    public synchronized SessionView view() {
+        return new SessionView(sessionId, conversationId, playsAudio(), turns.size());
+    }
+
+    /**
+     * Accepts a message and returns its turn right away. The handler runs on the executor once all
+     * earlier turns of this session are finished.
+     */
+    public ConversationTurn submit(String turnId, String message, Executor executor, TurnHandler handler) {
+        ConversationTurn turn = newTurn(turnId, message);
+        enqueue(() -> run(turn, handler), executor)
+                .whenComplete((ignored, error) -> {
+                    // The turn itself catches every failure, this is the executor refusing the task
+                    if (error != null && !turn.isFinished()) {
+                        log.warn("Turn {} of session {} was rejected: {}", turn.turnId(), sessionId, error.getMessage());
+                        turn.failed(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+                    }
+                });
+        return turn;
+    }
+
+    private void run(ConversationTurn turn, TurnHandler handler) {
+        if (turn.isCancelRequested()) {
+            turn.cancelled(null);
+            return;
+        }
+        turn.started();
+        try {
+            LlmAnswerWithThink answer = handler.answer(this, turn);
+            if (answer.conversationId() != null) {
+                conversationId = answer.conversationId();
+            }
+            if (turn.isCancelRequested()) {
+                turn.cancelled(answer);
+            } else {
+                turn.completed(answer);
+            }
+        } catch (Exception e) {
+            if (turn.isCancelRequested()) {
+                log.info("Turn {} of session {} was cancelled", turn.turnId(), sessionId);
+                turn.cancelled(null);
+            } else {
+                log.error("Turn {} of session {} failed", turn.turnId(), sessionId, e);
+                turn.failed(e);
+            }
+        } finally {
+            lastActivity = Instant.now();
+        }
+    }
+
+    private synchronized ConversationTurn newTurn(String turnId, String message) {
+        lastActivity = Instant.now();
+        ConversationTurn turn = new ConversationTurn(sessionId, turnId, message);
+        turns.put(turn.turnId(), turn);
+        Iterator<ConversationTurn> oldest = turns.values().iterator();
+        while (turns.size() > retainedTurns && oldest.hasNext()) {
+            if (oldest.next().isFinished()) {
+                oldest.remove();
+            } else {
+                break;
+            }
+        }
+        return turn;
+    }
+
+    // Runs the task after all previously enqueued turns of this session, even if one of them failed
+    private synchronized CompletableFuture<Void> enqueue(Runnable task, Executor executor) {
+        tail = tail.handle((ignored, error) -> null).thenRunAsync(task, executor);
+        return tail;
+    }
+}
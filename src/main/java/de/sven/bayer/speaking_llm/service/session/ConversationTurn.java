@@ -0,0 +1,182 @@
+package de.sven.bayer.speaking_llm.service.session;
+
+import de.sven.bayer.speaking_llm.model.conversation.LlmAnswerWithThink;
+import de.sven.bayer.speaking_llm.model.conversation.TurnStatus;
+import de.sven.bayer.speaking_llm.model.conversation.TurnView;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * One user message and the answer to it. Listeners receive the spoken sentences as they are
+ * produced; a listener that subscribes late gets the sentences so far replayed first. Listeners
+ * are called outside the turn's lock, a slow one delays the next event but not readers of the state.
+ */
+public class ConversationTurn {
+
+    public interface Listener {
+        void onSentence(String sentence);
+
+        void onFinished(TurnView turn);
+    }
+
+    private final String sessionId;
+    private final String turnId;
+    private final String message;
+    private final List<String> spokenSentences = new ArrayList<>();
+    private final List<Listener> listeners = new ArrayList<>();
+    private final CompletableFuture<TurnView> completion = new CompletableFuture<>();
+    // Held while listeners are called, so each sees every sentence once and in order; always taken before
+    // the turn's lock. Not a monitor, a listener blocking on I/O must not pin a virtual thread's carrier
+    private final ReentrantLock delivery = new ReentrantLock();
+    private final List<Runnable> cancelHooks = new ArrayList<>();
+    private boolean cancelRequested;
+    private TurnStatus status = TurnStatus.ACCEPTED;
+    private LlmAnswerWithThink answer;
+    private String error;
+
+    ConversationTurn(String sessionId, String turnId, String message) {
+        this.sessionId = sessionId;
+        this.turnId = turnId;
+        this.message = message;
+    }
+
+    public String turnId() {
+        return turnId;
+    }
+
+    public String message() {
+        return message;
+    }
+
+    /**
+     * Completes with the final state once the answer has been handed to the audio sink.
+     */
+    public CompletableFuture<TurnView> completion() {
+        return completion;
+    }
+
+    public synchronized TurnView view() {
+        return new TurnView(sessionId, turnId, status, message, List.copyOf(spokenSentences), answer, error);
+    }
+
+    public synchronized boolean isFinished() {
+        return status == TurnStatus.COMPLETED || status == TurnStatus.FAILED || status == TurnStatus.CANCELLED;
+    }
+
+    public synchronized boolean isCancelRequested() {
+        return cancelRequested;
+    }
+
+    /**
+     * Asks the turn to stop: the hooks registered by the running turn abort the LLM stream and the
+     * synthesis, a turn that has not started yet is skipped. Returns false if it already finished.
+     */
+    public boolean cancel() {
+        List<Runnable> hooks;
+        synchronized (this) {
+            if (isFinished() || cancelRequested) {
+                return false;
+            }
+            cancelRequested = true;
+            hooks = List.copyOf(cancelHooks);
+            cancelHooks.clear();
+        }
+        hooks.forEach(Runnable::run);
+        return true;
+    }
+
+    /**
+     * Registers work to undo on {@link #cancel()}; runs it right away if cancelling was already requested.
+     */
+    public void onCancel(Runnable hook) {
+        synchronized (this) {
+            if (!cancelRequested) {
+                cancelHooks.add(hook);
+                return;
+            }
+        }
+        hook.run();
+    }
+
+    public void subscribe(Listener listener) {
+        delivery.lock();
+        try {
+            List<String> sentences;
+            TurnView finished;
+            synchronized (this) {
+                sentences = List.copyOf(spokenSentences);
+                finished = isFinished() ? view() : null;
+                if (finished == null) {
+                    listeners.add(listener);
+                }
+            }
+            sentences.forEach(listener::onSentence);
+            if (finished != null) {
+                listener.onFinished(finished);
+            }
+        } finally {
+            delivery.unlock();
+        }
+    }
+
+    public synchronized void unsubscribe(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    synchronized void started() {
+        status = TurnStatus.RUNNING;
+    }
+
+    /**
+     * Records a sentence of the answer and hands it to the listeners.
+     */
+    public void spoken(String sentence) {
+        delivery.lock();
+        try {
+            List<Listener> current;
+            synchronized (this) {
+                spokenSentences.add(sentence);
+                current = List.copyOf(listeners);
+            }
+            current.forEach(listener -> listener.onSentence(sentence));
+        } finally {
+            delivery.unlock();
+        }
+    }
+
+    void completed(LlmAnswerWithThink answer) {
+        finish(TurnStatus.COMPLETED, answer, null);
+    }
+
+    void failed(Throwable error) {
+        finish(TurnStatus.FAILED, null, error.getMessage());
+    }
+
+    void cancelled(LlmAnswerWithThink partialAnswer) {
+        finish(TurnStatus.CANCELLED, partialAnswer, null);
+    }
+
+    private void finish(TurnStatus status, LlmAnswerWithThink answer, String error) {
+        TurnView view;
+        delivery.lock();
+        try {
+            List<Listener> current;
+            synchronized (this) {
+                this.status = status;
+                this.answer = answer;
+                this.error = error;
+                cancelHooks.clear();
+                view = view();
+                current = List.copyOf(listeners);
+                listeners.clear();
+            }
+            current.forEach(listener -> listener.onFinished(view));
+        } finally {
+            delivery.unlock();
+        }
+        completion.complete(view);
+    }
+}
@@ -0,0 +1,88 @@
+package de.sven.bayer.speaking_llm.service.session;
+
+import de.sven.bayer.speaking_llm.config.SessionProperties;
+import de.sven.bayer.speaking_llm.service.AudioPlayerService;
+import de.sven.bayer.speaking_llm.service.AudioSink;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * All open conversations of this instance. The default session belongs to the local speaker and
+ * is never evicted; other sessions are removed after being idle for the configured time.
+ */
+@Slf4j
+@Service
+public class SessionRegistry {
+    public static final String DEFAULT_SESSION_ID = "default";
+
+    private final Map<String, ConversationSession> sessions = new ConcurrentHashMap<>();
+    // Sessions counted before they are added, so concurrent creates cannot exceed the cap
+    private final AtomicInteger openSessions = new AtomicInteger(1);
+    private final SessionProperties sessionProperties;
+    private final AudioPlayerService audioPlayerService;
+    private final ConversationSession defaultSession;
+
+    public SessionRegistry(SessionProperties sessionProperties, AudioPlayerService audioPlayerService) {
+        this.sessionProperties = sessionProperties;
+        this.audioPlayerService = audioPlayerService;
+        this.defaultSession = new ConversationSession(DEFAULT_SESSION_ID, audioPlayerService, sessionProperties.getRetainedTurns());
+        sessions.put(DEFAULT_SESSION_ID, defaultSession);
+    }
+
+    public ConversationSession defaultSession() {
+        return defaultSession;
+    }
+
+    /**
+     * Opens a new session whose answers are played on the local speaker or not spoken at all.
+     */
+    public ConversationSession create(boolean playAudio) {
+        return create(playAudio ? audioPlayerService : null);
+    }
+
+    public ConversationSession create(AudioSink audioSink) {
+        if (openSessions.incrementAndGet() > sessionProperties.getMaxSessions()) {
+            openSessions.decrementAndGet();
+            throw new IllegalStateException("Too many open sessions: " + sessions.size());
+        }
+        ConversationSession session = new ConversationSession(UUID.randomUUID().toString(), audioSink, sessionProperties.getRetainedTurns());
+        sessions.put(session.sessionId(), session);
+        return session;
+    }
+
+    public Optional<ConversationSession> get(String sessionId) {
+        return Optional.ofNullable(sessions.get(sessionId));
+    }
+
+    public Collection<ConversationSession> sessions() {
+        return sessions.values();
+    }
+
+    public boolean remove(String sessionId) {
+        if (DEFAULT_SESSION_ID.equals(sessionId) || sessions.remove(sessionId) == null) {
+            return false;
+        }
+        openSessions.decrementAndGet();
+        return true;
+    }
+
+    @Scheduled(fixedDelayString = "PT1M")
+    public void evictIdleSessions() {
+        Instant cutoff = Instant.now().minus(sessionProperties.getIdleTimeout());
+        for (ConversationSession session : sessions.values()) {
+            if (session != defaultSession && !session.isBusy() && session.lastActivity().isBefore(cutoff)
+                    && sessions.remove(session.sessionId(), session)) {
+                openSessions.decrementAndGet();
+            }
+        }
+    }
+}
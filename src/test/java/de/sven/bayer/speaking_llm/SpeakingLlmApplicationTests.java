@@ -1,13 +1,32 @@
 package de.sven.bayer.speaking_llm;
 
+import de.sven.bayer.speaking_llm.config.AudioStreamProperties;
+import jakarta.websocket.server.ServerContainer;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+import static org.assertj.core.api.Assertions.assertThat;
+
+// No disk cache in the developer's home directory
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "speaking-llm.tts.cache.directory=")
 class SpeakingLlmApplicationTests {
 
+	@Autowired
+	private ServerContainer webSocketContainer;
+
+	@Autowired
+	private AudioStreamProperties audioStreamProperties;
+
 	@Test
 	void contextLoads() {
 	}
 
+	@Test
+	void audioMessagesLargerThanTheContainerDefaultAreAccepted() {
+		assertThat(webSocketContainer.getDefaultMaxBinaryMessageBufferSize())
+				.isEqualTo(audioStreamProperties.getMaxMessageBytes())
+				.isGreaterThan(8 * 1024);
+	}
+
 }
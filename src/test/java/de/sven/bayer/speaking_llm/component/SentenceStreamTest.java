@@ -0,0 +1,93 @@
+package de.sven.bayer.speaking_llm.component;
+
+import de.sven.bayer.speaking_llm.config.TtsProperties;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SentenceStreamTest {
+
+	@Test
+	void cutsLongFirstSentenceAtClauseBeforeItEnds() {
+		List<String> chunks = new ArrayList<>();
+		SentenceStream stream = new TextSplitter(new TtsProperties()).sentenceStream(chunks::add);
+
+		String sentence = "Well, that depends on a lot of things, mostly on the weather and the time of day, "
+				+ "and of course on how far you want to walk before lunch.";
+		int firstChunkAt = -1;
+		for (int i = 0; i < sentence.length(); i += 4) {
+			stream.append(sentence.substring(i, Math.min(sentence.length(), i + 4)));
+			if (firstChunkAt < 0 && !chunks.isEmpty()) firstChunkAt = i;
+		}
+		stream.flush();
+
+		assertThat(chunks).containsExactly(
+				"Well, that depends on a lot of things,",
+				"mostly on the weather and the time of day, and of course on how far you want to walk before lunch.");
+		assertThat(firstChunkAt).isLessThan(90);
+	}
+
+	@Test
+	void joinsLaterSentencesUpToGrowingTarget() {
+		TtsProperties properties = new TtsProperties();
+		TtsProperties.Chunking.Sizes sizes = properties.getChunking().getSizes();
+		sizes.setFirstMaxChars(20);
+		sizes.setGrowth(2.0);
+		sizes.setMaxChars(100);
+
+		List<String> chunks = new TextSplitter(properties).splitIntoSentences(
+				"Sure. One two three. Four five six. Seven eight nine. Ten eleven twelve. Thirteen fourteen. Fifteen.");
+
+		// Targets of 40 and then 80 characters after the first chunk
+		assertThat(chunks).containsExactly(
+				"Sure.",
+				"One two three. Four five six.",
+				"Seven eight nine. Ten eleven twelve. Thirteen fourteen. Fifteen.");
+	}
+
+	@Test
+	void cutsSentenceWithoutClausesBetweenWords() {
+		TtsProperties properties = new TtsProperties();
+		properties.getChunking().getSizes().setMaxChars(40);
+
+		List<String> chunks = new TextSplitter(properties).splitIntoSentences(
+				"Hi. This sentence goes on and on without any comma or other pause in it at all.");
+
+		assertThat(chunks).containsExactly("Hi.", "This sentence goes on and on without any", "comma or other pause in it at all.");
+		assertThat(chunks).allSatisfy(chunk -> assertThat(chunk.length()).isLessThanOrEqualTo(40));
+	}
+
+	@Test
+	void handsOutSentenceBySentenceWhenChunkingIsOff() {
+		TtsProperties properties = new TtsProperties();
+		properties.getChunking().setEnabled(false);
+		List<String> chunks = new ArrayList<>();
+		SentenceStream stream = new TextSplitter(properties).sentenceStream(chunks::add);
+
+		for (String token : List.of("It costs 3", ".50 dollars, ", "said Sam. Re", "ally? Yes")) {
+			stream.append(token);
+		}
+		assertThat(chunks).containsExactly("It costs 3.50 dollars, said Sam.", "Really?");
+		stream.flush();
+
+		assertThat(chunks).containsExactly("It costs 3.50 dollars, said Sam.", "Really?", "Yes");
+	}
+
+	@Test
+	void usesSizesOfConfiguredLanguage() {
+		TtsProperties properties = new TtsProperties();
+		properties.getChunking().setLocale("de-DE");
+		TtsProperties.Chunking.Sizes german = new TtsProperties.Chunking.Sizes();
+		german.setFirstMaxChars(30);
+		german.setMinChars(10);
+		properties.getChunking().getLocales().put("de", german);
+
+		List<String> chunks = new TextSplitter(properties).splitIntoSentences(
+				"Also, das kommt darauf an, wie weit du laufen willst.");
+
+		assertThat(chunks).containsExactly("Also, das kommt darauf an,", "wie weit du laufen willst.");
+	}
+}
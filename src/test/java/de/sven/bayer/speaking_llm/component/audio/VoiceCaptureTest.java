@@ -0,0 +1,104 @@
+package de.sven.bayer.speaking_llm.component.audio;
+
+import de.sven.bayer.speaking_llm.component.audio.source.ReplayAudioSource;
+import de.sven.bayer.speaking_llm.component.audio.transcription.StreamingTranscriber;
+import de.sven.bayer.speaking_llm.component.audio.vad.EnergyVoiceActivityDetector;
+import de.sven.bayer.speaking_llm.component.metrics.TurnMetrics;
+import de.sven.bayer.speaking_llm.component.metrics.TurnTrace;
+import de.sven.bayer.speaking_llm.config.BargeInProperties;
+import de.sven.bayer.speaking_llm.config.SpeculationProperties;
+import de.sven.bayer.speaking_llm.config.TranscriptionProperties;
+import de.sven.bayer.speaking_llm.config.VadProperties;
+import de.sven.bayer.speaking_llm.service.SpeculativeAnswer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VoiceCaptureTest {
+	private final ExecutorService pool = Executors.newFixedThreadPool(2);
+
+	@AfterEach
+	void tearDown() {
+		pool.shutdownNow();
+	}
+
+	@Test
+	void findsTheUtterancesInPushedChunksThatAreNotFrameAligned() throws Exception {
+		byte[] pcm = load("/vad/quiet_room.pcm");
+		VoiceCapture capture = capture();
+		capture.begin();
+
+		List<String> transcripts = new ArrayList<>();
+		for (int offset = 0; offset < pcm.length; offset += 999) {
+			capture.write(ByteBuffer.wrap(pcm, offset, Math.min(999, pcm.length - offset)));
+			VoiceCapture.Utterance utterance;
+			while ((utterance = capture.process()) != null) {
+				capture.begin();
+				transcripts.add(utterance.awaitTranscript());
+			}
+		}
+
+		assertThat(transcripts).hasSize(2).allSatisfy(transcript -> assertThat(transcript).isNotBlank());
+	}
+
+	@Test
+	void pullsTheSameUtterancesFromAnAudioSource() throws Exception {
+		byte[] pcm = load("/vad/quiet_room.pcm");
+		ReplayAudioSource source = new ReplayAudioSource(() -> new ByteArrayInputStream(pcm), 0, false, 0);
+		source.open(VoiceCaptureFactory.AUDIO_FORMAT);
+		source.start();
+		VoiceCapture capture = capture();
+		capture.begin();
+
+		int utterances = 0;
+		while (capture.readFrom(source) >= 0) {
+			while (capture.process() != null) {
+				capture.begin();
+				utterances++;
+			}
+		}
+
+		assertThat(utterances).isEqualTo(2);
+	}
+
+	private VoiceCapture capture() {
+		TurnMetrics turnMetrics = new TurnMetrics(new SimpleMeterRegistry());
+		EnergyVoiceActivityDetector detector = new EnergyVoiceActivityDetector(VoiceCaptureFactory.AUDIO_FORMAT, new VadProperties());
+		// The stub ASR names the segment it was given
+		return new VoiceCapture(VoiceCaptureFactory.AUDIO_FORMAT, detector,
+				trace -> new StreamingTranscriber(segment -> "at" + segment.start(), pool, 8),
+				() -> false, turnMetrics, "test", new VoiceCapture.Listener() {
+					@Override
+					public boolean replyActive() {
+						return false;
+					}
+
+					@Override
+					public void interruptReply() {
+					}
+
+					@Override
+					public SpeculativeAnswer speculate(CompletableFuture<String> transcript, TurnTrace trace) {
+						return null;
+					}
+				}, new TranscriptionProperties(), new BargeInProperties(), new SpeculationProperties());
+	}
+
+	private static byte[] load(String name) throws IOException {
+		try (InputStream in = VoiceCaptureTest.class.getResourceAsStream(name)) {
+			return in.readAllBytes();
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package de.sven.bayer.speaking_llm.component.audio.capture;
+
+import org.junit.jupiter.api.Test;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PcmRingBufferTest {
+	private static final AudioFormat FORMAT = new AudioFormat(16000, 16, 1, true, false);
+	private static final int CHUNK = 64;
+
+	@Test
+	void framesWrappedSegmentAsWavWithoutLosingBytes() throws Exception {
+		PcmRingBuffer ring = new PcmRingBuffer(CHUNK * 4, new WavHeader(FORMAT));
+		for (int i = 0; i < 6; i++) {
+			writeChunk(ring, i);
+			if (i < 3) ring.anchor(ring.position());
+		}
+
+		// Chunks 3..5 wrap around the end of the array
+		AudioSegment segment = ring.segment(3L * CHUNK, 6L * CHUNK);
+		byte[] wav;
+		try (InputStream in = segment.openWavStream()) {
+			wav = in.readAllBytes();
+		}
+		assertThat(wav).hasSize(segment.wavLength());
+
+		try (AudioInputStream audio = AudioSystem.getAudioInputStream(new ByteArrayInputStream(wav))) {
+			assertThat(audio.getFormat().matches(FORMAT)).isTrue();
+			byte[] pcm = audio.readAllBytes();
+			assertThat(pcm).hasSize(3 * CHUNK);
+			for (int i = 0; i < pcm.length; i++) {
+				assertThat(pcm[i]).isEqualTo((byte) (3 + i / CHUNK));
+			}
+		}
+	}
+
+	@Test
+	void reclaimsSpaceOnlyAfterSegmentsAreReleased() {
+		PcmRingBuffer ring = new PcmRingBuffer(CHUNK * 2, new WavHeader(FORMAT));
+		writeChunk(ring, 0);
+		writeChunk(ring, 1);
+		AudioSegment first = ring.segment(0, CHUNK);
+		AudioSegment second = ring.segment(CHUNK, 2L * CHUNK);
+		ring.anchor(ring.position());
+
+		assertThat(ring.writable(CHUNK)).isZero();
+		second.release();
+		assertThat(ring.writable(CHUNK)).isZero();
+		first.release();
+		assertThat(ring.writable(CHUNK)).isEqualTo(CHUNK);
+
+		assertThatThrownBy(first::openWavStream).isInstanceOf(IllegalStateException.class);
+	}
+
+	private static void writeChunk(PcmRingBuffer ring, int value) {
+		assertThat(ring.writable(CHUNK)).isEqualTo(CHUNK);
+		int offset = ring.offsetOf(ring.position());
+		for (int i = 0; i < CHUNK; i++) {
+			ring.array()[offset + i] = (byte) value;
+		}
+		ring.commit(CHUNK);
+	}
+}
@@ -0,0 +1,107 @@
+package de.sven.bayer.speaking_llm.component.audio.dsp;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * The vector implementation has to match the scalar one to the bit, at any offset and length, so
+ * the detector decides the same whichever the JVM runs.
+ */
+class PcmDspTest {
+	private final PcmDsp scalar = new ScalarPcmDsp();
+	private final PcmDsp vector = new VectorPcmDsp();
+
+	@Test
+	void measuresLikeTheScalarCode() throws IOException {
+		byte[] pcm = load("/vad/quiet_room.pcm");
+
+		for (int offset : new int[]{0, 2, 6}) {
+			for (int samples : new int[]{0, 1, 7, 16, 33, 320, 4801}) {
+				assertThat(vector.measure(pcm, offset, samples)).as("%d samples at %d", samples, offset)
+						.isEqualTo(scalar.measure(pcm, offset, samples));
+			}
+		}
+		assertThat(vector.measure(pcm, 0, pcm.length / 2)).isEqualTo(scalar.measure(pcm, 0, pcm.length / 2));
+	}
+
+	@Test
+	void measuresFullScale() {
+		byte[] pcm = new byte[2 * 100];
+		for (int i = 0; i < 100; i++) {
+			int sample = i % 2 == 0 ? Short.MIN_VALUE : Short.MAX_VALUE;
+			pcm[2 * i] = (byte) sample;
+			pcm[2 * i + 1] = (byte) (sample >> 8);
+		}
+
+		PcmDsp.Levels levels = vector.measure(pcm, 0, 100);
+
+		assertThat(levels).isEqualTo(scalar.measure(pcm, 0, 100));
+		assertThat(levels.sumOfSquares()).isEqualTo(50L * 32768 * 32768 + 50L * 32767 * 32767);
+		assertThat(levels.zeroCrossings()).isEqualTo(100);
+		assertThat(levels.peak()).isEqualTo(32768);
+	}
+
+	@Test
+	void adjustsLikeTheScalarCodeAndSaturates() {
+		byte[] pcm = noise(1000);
+		for (float gain : new float[]{1f, 0.3f, 3.7f, 100f}) {
+			byte[] expected = pcm.clone();
+			byte[] actual = pcm.clone();
+
+			scalar.adjust(expected, 4, 997, -1234, gain);
+			vector.adjust(actual, 4, 997, -1234, gain);
+
+			assertThat(actual).as("gain %s", gain).isEqualTo(expected);
+			assertThat(Arrays.copyOf(actual, 4)).isEqualTo(Arrays.copyOf(pcm, 4));
+		}
+	}
+
+	@Test
+	void roundTripsThroughFloats() {
+		byte[] pcm = noise(777);
+		float[] samples = new float[777];
+		float[] expected = new float[777];
+
+		vector.decode(pcm, 0, samples, 0, 777);
+		scalar.decode(pcm, 0, expected, 0, 777);
+		byte[] encoded = new byte[pcm.length];
+		vector.encode(samples, 0, encoded, 0, 777);
+
+		assertThat(samples).isEqualTo(expected);
+		assertThat(encoded).isEqualTo(pcm);
+	}
+
+	@Test
+	void dotProductsAgreeUpToRounding() {
+		float[] a = new float[101];
+		float[] b = new float[101];
+		for (int i = 0; i < a.length; i++) {
+			a[i] = (float) Math.sin(i * 0.37);
+			b[i] = (float) Math.cos(i * 0.11);
+		}
+
+		assertThat(vector.dot(a, 1, b, 0, 100)).isCloseTo(scalar.dot(a, 1, b, 0, 100), within(1e-4f));
+	}
+
+	private static byte[] noise(int samples) {
+		byte[] pcm = new byte[samples * 2];
+		long seed = 7;
+		for (int i = 0; i < pcm.length; i++) {
+			seed = seed * 6364136223846793005L + 1442695040888963407L;
+			pcm[i] = (byte) (seed >>> 56);
+		}
+		return pcm;
+	}
+
+	private static byte[] load(String resource) throws IOException {
+		try (InputStream in = PcmDspTest.class.getResourceAsStream(resource)) {
+			return in.readAllBytes();
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package de.sven.bayer.speaking_llm.component.audio.dsp;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.withinPercentage;
+
+class ResamplerTest {
+	private final PcmDsp dsp = PcmDsp.get();
+
+	@Test
+	void keepsToneInsidePassband() {
+		byte[] output = resample(tone(48000, 1000, 48000), 48000, 16000, 4096);
+
+		assertThat(output.length).isBetween(2 * 15900, 2 * 16000);
+		// Past the filter's start-up, the tone comes out at the same level
+		PcmDsp.Levels levels = dsp.measure(output, 2 * 1000, 10000);
+		assertThat(levels.rms()).isCloseTo(10000 / Math.sqrt(2), withinPercentage(2));
+		assertThat(levels.zeroCrossings()).isBetween(1249, 1251);
+	}
+
+	@Test
+	void removesToneAboveNewNyquistFrequency() {
+		// Would alias to 4 kHz without the filter
+		byte[] output = resample(tone(48000, 12000, 48000), 48000, 16000, 4096);
+
+		assertThat(dsp.measure(output, 2 * 1000, 10000).rms()).isLessThan(10000 / Math.sqrt(2) / 1000);
+	}
+
+	@Test
+	void givesTheSameResultForAnyChunking() {
+		byte[] input = tone(44100, 440, 44100);
+
+		byte[] whole = resample(input, 44100, 16000, input.length);
+		byte[] chunked = resample(input, 44100, 16000, 882);
+
+		assertThat(chunked).isEqualTo(whole);
+	}
+
+	@Test
+	void producesExactlyTheRequestedOutput() {
+		Resampler resampler = new Resampler(dsp, 44100, 16000);
+		byte[] input = tone(44100, 440, 44100);
+		byte[] chunk = new byte[2 * 320];
+		int consumed = 0;
+		for (int i = 0; i < 40; i++) {
+			int needed = resampler.inputFor(320);
+			int produced = resampler.process(input, 2 * consumed, needed, chunk, 0, 320);
+			consumed += needed;
+			assertThat(produced).isEqualTo(320);
+		}
+		// About 40 chunks of 20 ms at the input rate, plus the filter's delay
+		assertThat(consumed).isBetween(40 * 882, 40 * 882 + 100);
+	}
+
+	private byte[] resample(byte[] input, int inputRate, int outputRate, int chunkBytes) {
+		Resampler resampler = new Resampler(dsp, inputRate, outputRate);
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		byte[] buffer = new byte[chunkBytes];
+		for (int offset = 0; offset < input.length; offset += chunkBytes) {
+			int samples = Math.min(chunkBytes, input.length - offset) / 2;
+			int produced = resampler.process(input, offset, samples, buffer, 0, buffer.length / 2);
+			output.write(buffer, 0, produced * 2);
+		}
+		return output.toByteArray();
+	}
+
+	private static byte[] tone(int sampleRate, double frequency, int samples) {
+		byte[] pcm = new byte[samples * 2];
+		for (int i = 0; i < samples; i++) {
+			int sample = (int) Math.round(10000 * Math.sin(2 * Math.PI * frequency * i / sampleRate));
+			pcm[2 * i] = (byte) sample;
+			pcm[2 * i + 1] = (byte) (sample >> 8);
+		}
+		return pcm;
+	}
+}
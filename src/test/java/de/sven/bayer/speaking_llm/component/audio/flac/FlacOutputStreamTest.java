@@ -0,0 +1,187 @@
+package de.sven.bayer.speaking_llm.component.audio.flac;
+
+import org.junit.jupiter.api.Test;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FlacOutputStreamTest {
+	private static final AudioFormat FORMAT = new AudioFormat(16000, 16, 1, true, false);
+
+	@Test
+	void roundTripsSpeechWrittenInOddChunks() throws IOException {
+		byte[] pcm = load("/vad/quiet_room.pcm");
+
+		byte[] flac = encode(pcm, 333);
+
+		assertThat(decode(flac)).isEqualTo(pcm);
+		assertThat(flac.length).isLessThan(pcm.length * 7 / 10);
+	}
+
+	@Test
+	void codesSilenceAsConstantSubframes() throws IOException {
+		byte[] pcm = new byte[16000 * 2];
+
+		byte[] flac = encode(pcm, pcm.length);
+
+		assertThat(decode(flac)).isEqualTo(pcm);
+		assertThat(flac.length).isLessThan(200);
+	}
+
+	@Test
+	void keepsNoiseLossless() throws IOException {
+		byte[] pcm = new byte[5000 * 2];
+		long seed = 42;
+		for (int i = 0; i < pcm.length; i++) {
+			seed = seed * 6364136223846793005L + 1442695040888963407L;
+			pcm[i] = (byte) (seed >>> 56);
+		}
+
+		assertThat(decode(encode(pcm, 1000))).isEqualTo(pcm);
+	}
+
+	private static byte[] encode(byte[] pcm, int chunk) throws IOException {
+		ByteArrayOutputStream flac = new ByteArrayOutputStream();
+		try (FlacOutputStream encoder = new FlacOutputStream(flac, FORMAT, pcm.length / 2)) {
+			for (int offset = 0; offset < pcm.length; offset += chunk) {
+				encoder.write(pcm, offset, Math.min(chunk, pcm.length - offset));
+			}
+		}
+		return flac.toByteArray();
+	}
+
+	// Decodes mono 16-bit streams with the subframe types the encoder writes, checking both CRCs
+	private static byte[] decode(byte[] flac) {
+		BitReader in = new BitReader(flac);
+		assertThat(in.read(32)).isEqualTo(0x664C6143);
+		assertThat(in.read(1)).isEqualTo(1);
+		in.read(7);
+		assertThat(in.read(24)).isEqualTo(34);
+		in.skipBytes(10);
+		assertThat(in.read(20)).isEqualTo(16000);
+		assertThat(in.read(3)).isZero();
+		assertThat(in.read(5)).isEqualTo(15);
+		long totalSamples = ((long) in.read(4) << 32) | (in.read(32) & 0xFFFFFFFFL);
+		in.skipBytes(16);
+
+		byte[] pcm = new byte[(int) totalSamples * 2];
+		int written = 0;
+		while (in.position() < flac.length) {
+			int frameStart = in.position();
+			assertThat(in.read(16)).isEqualTo(0xFFF8);
+			int blockSizeCode = in.read(4);
+			in.read(4);
+			assertThat(in.read(4)).isZero();
+			assertThat(in.read(3)).isEqualTo(0b100);
+			in.read(1);
+			// Frame number, skipping the continuation bytes its leading ones announce
+			int leadingOnes = Integer.numberOfLeadingZeros(~in.read(8) << 24);
+			in.skipBytes(Math.max(0, leadingOnes - 1));
+			int blockSize = blockSizeCode == 0b1100 ? 4096 : in.read(16) + 1;
+			int headerCrc = in.read(8);
+			assertThat(headerCrc).isEqualTo(crc(flac, frameStart, in.position() - 1, 0x07, 8));
+
+			int[] x = new int[blockSize];
+			int type = in.read(8) >> 1;
+			if (type == 0) {
+				Arrays.fill(x, in.readSigned(16));
+			} else if (type == 1) {
+				for (int i = 0; i < blockSize; i++) {
+					x[i] = in.readSigned(16);
+				}
+			} else {
+				int order = type & 0b111;
+				for (int i = 0; i < order; i++) {
+					x[i] = in.readSigned(16);
+				}
+				assertThat(in.read(2)).isZero();
+				int partitionOrder = in.read(4);
+				int i = order;
+				for (int partition = 0; partition < 1 << partitionOrder; partition++) {
+					int k = in.read(4);
+					for (int end = (partition + 1) * (blockSize >> partitionOrder); i < end; i++) {
+						int q = 0;
+						while (in.read(1) == 0) {
+							q++;
+						}
+						int u = (q << k) | in.read(k);
+						int r = (u >>> 1) ^ -(u & 1);
+						x[i] = r + switch (order) {
+							case 0 -> 0;
+							case 1 -> x[i - 1];
+							case 2 -> 2 * x[i - 1] - x[i - 2];
+							case 3 -> 3 * x[i - 1] - 3 * x[i - 2] + x[i - 3];
+							default -> 4 * x[i - 1] - 6 * x[i - 2] + 4 * x[i - 3] - x[i - 4];
+						};
+					}
+				}
+			}
+			in.alignToByte();
+			int frameCrc = in.read(16);
+			assertThat(frameCrc).isEqualTo(crc(flac, frameStart, in.position() - 2, 0x8005, 16));
+			for (int sample : x) {
+				pcm[written++] = (byte) sample;
+				pcm[written++] = (byte) (sample >> 8);
+			}
+		}
+		assertThat(written).isEqualTo(pcm.length);
+		return pcm;
+	}
+
+	private static int crc(byte[] data, int from, int to, int polynomial, int width) {
+		int crc = 0;
+		int topBit = 1 << (width - 1);
+		for (int i = from; i < to; i++) {
+			crc ^= (data[i] & 0xFF) << (width - 8);
+			for (int bit = 0; bit < 8; bit++) {
+				crc = (crc & topBit) != 0 ? (crc << 1) ^ polynomial : crc << 1;
+			}
+			crc &= (1 << width) - 1;
+		}
+		return crc;
+	}
+
+	private static byte[] load(String resource) throws IOException {
+		try (InputStream in = FlacOutputStreamTest.class.getResourceAsStream(resource)) {
+			return in.readAllBytes();
+		}
+	}
+
+	private static final class BitReader {
+		private final byte[] data;
+		private long bit;
+
+		BitReader(byte[] data) {
+			this.data = data;
+		}
+
+		int read(int count) {
+			int value = 0;
+			for (int i = 0; i < count; i++, bit++) {
+				value = (value << 1) | ((data[(int) (bit >> 3)] >> (7 - (bit & 7))) & 1);
+			}
+			return value;
+		}
+
+		int readSigned(int count) {
+			return read(count) << (32 - count) >> (32 - count);
+		}
+
+		void skipBytes(int bytes) {
+			bit += bytes * 8L;
+		}
+
+		void alignToByte() {
+			bit = (bit + 7) & ~7L;
+		}
+
+		int position() {
+			return (int) (bit >> 3);
+		}
+	}
+}
@@ -0,0 +1,92 @@
+package de.sven.bayer.speaking_llm.component.audio.source;
+
+import de.sven.bayer.speaking_llm.component.audio.capture.WavHeader;
+import org.junit.jupiter.api.Test;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ReplayAudioSourceTest {
+	private static final AudioFormat FORMAT = new AudioFormat(16000, 16, 1, true, false);
+
+	@Test
+	void replaysRawPcmFollowedByTrailingSilenceAndEnds() throws Exception {
+		byte[] pcm = new byte[1000];
+		Arrays.fill(pcm, (byte) 7);
+		ReplayAudioSource source = new ReplayAudioSource(() -> new ByteArrayInputStream(pcm), 0, false, 5);
+		source.open(FORMAT);
+		source.start();
+
+		ByteArrayOutputStream replayed = new ByteArrayOutputStream();
+		byte[] chunk = new byte[640];
+		int read;
+		while ((read = source.read(chunk, 0, chunk.length)) >= 0) {
+			assertThat(read).isEqualTo(chunk.length);
+			replayed.write(chunk, 0, read);
+		}
+		source.close();
+
+		byte[] all = replayed.toByteArray();
+		assertThat(all).hasSize(1280);
+		assertThat(Arrays.copyOfRange(all, 0, 1000)).isEqualTo(pcm);
+		assertThat(Arrays.copyOfRange(all, 1000, 1280)).containsOnly((byte) 0);
+	}
+
+	@Test
+	void stripsTheWavHeaderAndLoops() throws Exception {
+		byte[] pcm = new byte[320];
+		Arrays.fill(pcm, (byte) 3);
+		byte[] wav = new byte[WavHeader.LENGTH + pcm.length];
+		System.arraycopy(new WavHeader(FORMAT).forDataLength(pcm.length), 0, wav, 0, WavHeader.LENGTH);
+		System.arraycopy(pcm, 0, wav, WavHeader.LENGTH, pcm.length);
+		ReplayAudioSource source = new ReplayAudioSource(() -> new ByteArrayInputStream(wav), 0, true, 0);
+		source.open(FORMAT);
+		source.start();
+
+		byte[] chunk = new byte[1000];
+		assertThat(source.read(chunk, 0, chunk.length)).isEqualTo(chunk.length);
+		source.close();
+
+		assertThat(chunk).containsOnly((byte) 3);
+		assertThat(source.read(chunk, 0, chunk.length)).isEqualTo(-1);
+	}
+
+	@Test
+	void failsInsteadOfLoopingAnEmptyRecording() throws Exception {
+		byte[] wav = new WavHeader(FORMAT).forDataLength(0);
+		ReplayAudioSource source = new ReplayAudioSource(() -> new ByteArrayInputStream(wav), 0, true, 0);
+		source.open(FORMAT);
+		source.start();
+
+		byte[] chunk = new byte[640];
+		assertThatThrownBy(() -> source.read(chunk, 0, chunk.length))
+				.isInstanceOf(IOException.class)
+				.hasMessage("empty recording");
+		assertThat(source.read(chunk, 0, chunk.length)).isEqualTo(-1);
+		source.close();
+	}
+
+	@Test
+	void pacesAtTheRequestedSpeed() throws Exception {
+		// One second of audio at ten times real time
+		ReplayAudioSource source = new ReplayAudioSource(() -> new ByteArrayInputStream(new byte[32000]), 10, false, 0);
+		source.open(FORMAT);
+		source.start();
+
+		long start = System.nanoTime();
+		byte[] chunk = new byte[3200];
+		while (source.read(chunk, 0, chunk.length) >= 0) {
+			// drain
+		}
+		long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+		source.close();
+
+		assertThat(elapsedMs).isBetween(90L, 1000L);
+	}
+}
@@ -0,0 +1,146 @@
+package de.sven.bayer.speaking_llm.component.audio.transcription;
+
+import de.sven.bayer.speaking_llm.component.audio.capture.PcmRingBuffer;
+import de.sven.bayer.speaking_llm.component.audio.capture.WavHeader;
+import org.junit.jupiter.api.Test;
+
+import javax.sound.sampled.AudioFormat;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StreamingTranscriberTest {
+
+	@Test
+	void mergesOutOfOrderResultsInSegmentOrderWithoutOverlapDuplicates() throws Exception {
+		List<String> transcripts = List.of(
+				"Hello, could you tell me",
+				"tell me what the weather",
+				"The weather is like in Berlin today?");
+		PcmRingBuffer ring = new PcmRingBuffer(300, new WavHeader(new AudioFormat(16000, 16, 1, true, false)));
+		ring.commit(300);
+
+		String transcript;
+		try (ExecutorService pool = Executors.newFixedThreadPool(3)) {
+			StreamingTranscriber transcriber = new StreamingTranscriber(segment -> {
+				int index = (int) (segment.start() / 100);
+				sleep(30 - index * 10L); // later segments come back first
+				return transcripts.get(index) + "\n";
+			}, pool, 8);
+			// Each segment shares its first 50 bytes of audio with the previous one
+			for (int i = 0; i < 3; i++) {
+				transcriber.submit(ring.segment(i * 100L, Math.min(300, i * 100L + 150)));
+			}
+			transcript = transcriber.awaitTranscript();
+		}
+
+		assertThat(transcript).isEqualTo("Hello, could you tell me what the weather is like in Berlin today?");
+		ring.anchor(ring.position());
+		assertThat(ring.writable(300)).as("all segments released").isEqualTo(300);
+	}
+
+	@Test
+	void transcriptOfSubmittedDoesNotWaitForLaterSegments() throws Exception {
+		PcmRingBuffer ring = new PcmRingBuffer(300, new WavHeader(new AudioFormat(16000, 16, 1, true, false)));
+		ring.commit(300);
+		CountDownLatch lastSegment = new CountDownLatch(1);
+
+		try (ExecutorService pool = Executors.newFixedThreadPool(3)) {
+			StreamingTranscriber transcriber = new StreamingTranscriber(segment -> {
+				if (segment.start() == 200) {
+					await(lastSegment);
+					return "again";
+				}
+				return segment.start() == 0 ? "Hello" : "world";
+			}, pool, 8);
+			transcriber.submit(ring.segment(0, 100));
+			transcriber.submit(ring.segment(100, 200));
+			CompletableFuture<String> speculated = transcriber.transcriptOfSubmitted();
+			transcriber.submit(ring.segment(200, 300));
+
+			assertThat(speculated.get(5, TimeUnit.SECONDS)).isEqualTo("Hello world");
+			lastSegment.countDown();
+			assertThat(transcriber.awaitTranscript()).isEqualTo("Hello world again");
+		}
+	}
+
+	@Test
+	void keepsASegmentReservedWhileTheBatchItWasGivenUpOnStillUploadsIt() throws Exception {
+		PcmRingBuffer ring = new PcmRingBuffer(300, new WavHeader(new AudioFormat(16000, 16, 1, true, false)));
+		ring.commit(300);
+		ring.anchor(ring.position());
+		CompletableFuture<String> batch = new CompletableFuture<>();
+
+		try (ExecutorService pool = Executors.newFixedThreadPool(1)) {
+			StreamingTranscriber transcriber = new StreamingTranscriber(segment -> {
+				// Like a caller whose wait for a blocked batch timed out
+				segment.holdUntil(batch);
+				throw new CompletionException(new TimeoutException("batch took too long"));
+			}, pool, 8);
+			transcriber.submit(ring.segment(0, 300));
+
+			assertThat(transcriber.awaitTranscript()).isEmpty();
+			assertThat(ring.writable(300)).as("still uploading").isZero();
+
+			batch.complete("late");
+			assertThat(ring.writable(300)).as("released after the upload").isEqualTo(300);
+		}
+	}
+
+	@Test
+	void keepsRepeatedWordsThatAreNotAtTheBoundary() {
+		TranscriptMerger merger = new TranscriptMerger(8);
+		merger.append("I said no", 0, 100);
+		merger.append("and no again", 90, 190);
+
+		assertThat(merger.transcript()).isEqualTo("I said no and no again");
+	}
+
+	@Test
+	void keepsAWordRepeatedAtACutWithoutSharedAudio() {
+		TranscriptMerger merger = new TranscriptMerger(8);
+		merger.append("I said no,", 0, 100);
+		merger.append("no, not today", 100, 200);
+
+		assertThat(merger.transcript()).isEqualTo("I said no, no, not today");
+	}
+
+	@Test
+	void dropsNoMoreWordsThanFitIntoTheSharedAudio() {
+		// One word per 25 bytes, so 30 shared bytes hold two words and 20 bytes one
+		TranscriptMerger merger = new TranscriptMerger(8);
+		merger.append("we went there and back", 0, 125);
+		merger.append("and back home again", 95, 195);
+
+		assertThat(merger.transcript()).isEqualTo("we went there and back home again");
+
+		TranscriptMerger repeat = new TranscriptMerger(8);
+		repeat.append("so we went there", 0, 100);
+		repeat.append("went there again", 80, 205);
+
+		assertThat(repeat.transcript()).isEqualTo("so we went there went there again");
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
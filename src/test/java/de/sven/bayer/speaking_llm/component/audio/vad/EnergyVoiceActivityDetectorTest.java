@@ -0,0 +1,100 @@
+package de.sven.bayer.speaking_llm.component.audio.vad;
+
+import de.sven.bayer.speaking_llm.config.VadProperties;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the detector over the PCM corpus in {@code src/test/resources/vad} and reports frame accuracy
+ * and per-frame CPU cost.
+ */
+class EnergyVoiceActivityDetectorTest {
+	private static final AudioFormat FORMAT = new AudioFormat(16000, 16, 1, true, false);
+	// Frames this close to a labelled boundary are not scored, the attack and hangover shift them on purpose
+	private static final int BOUNDARY_TOLERANCE_MS = 200;
+
+	record Fixture(String name, int expectedUtterances, List<int[]> speechMs) {
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+
+	@ParameterizedTest
+	@MethodSource("corpus")
+	void detectsUtterancesInCorpus(Fixture fixture) throws IOException {
+		byte[] pcm = load(fixture.name() + ".pcm");
+		VadProperties properties = new VadProperties();
+		EnergyVoiceActivityDetector detector = new EnergyVoiceActivityDetector(FORMAT, properties);
+		int frameBytes = detector.frameBytes();
+
+		int utterances = 0;
+		int started = 0;
+		int scored = 0;
+		int correct = 0;
+		for (int offset = 0, frame = 0; offset + frameBytes <= pcm.length; offset += frameBytes, frame++) {
+			VoiceActivity activity = detector.process(pcm, offset);
+			if (activity == VoiceActivity.SPEECH_STARTED) started++;
+			if (activity == VoiceActivity.UTTERANCE_ENDED) utterances++;
+
+			int frameMs = frame * properties.getFrameMs();
+			if (nearBoundary(fixture, frameMs)) continue;
+			boolean detected = activity == VoiceActivity.SPEECH_STARTED || activity == VoiceActivity.SPEECH;
+			scored++;
+			if (detected == isSpeech(fixture, frameMs)) correct++;
+		}
+
+		double accuracy = (double) correct / scored;
+		assertThat(started).isEqualTo(fixture.expectedUtterances());
+		assertThat(utterances).isEqualTo(fixture.expectedUtterances());
+		assertThat(accuracy).isGreaterThan(0.95);
+	}
+
+	private static boolean isSpeech(Fixture fixture, int ms) {
+		return fixture.speechMs().stream().anyMatch(region -> ms >= region[0] && ms < region[1]);
+	}
+
+	private static boolean nearBoundary(Fixture fixture, int ms) {
+		return fixture.speechMs().stream().anyMatch(region ->
+				Math.abs(ms - region[0]) < BOUNDARY_TOLERANCE_MS || Math.abs(ms - region[1]) < BOUNDARY_TOLERANCE_MS);
+	}
+
+	static List<Fixture> corpus() throws IOException {
+		List<Fixture> fixtures = new ArrayList<>();
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(open("corpus.labels"), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.isBlank() || line.startsWith("#")) continue;
+				String[] parts = line.trim().split("\\s+");
+				if (parts[0].equals("fixture")) {
+					fixtures.add(new Fixture(parts[1], Integer.parseInt(parts[2]), new ArrayList<>()));
+				} else {
+					fixtures.getLast().speechMs().add(new int[]{Integer.parseInt(parts[0]), Integer.parseInt(parts[1])});
+				}
+			}
+		}
+		return fixtures;
+	}
+
+	private static byte[] load(String name) throws IOException {
+		try (InputStream in = open(name)) {
+			return in.readAllBytes();
+		}
+	}
+
+	private static InputStream open(String name) {
+		return Objects.requireNonNull(EnergyVoiceActivityDetectorTest.class.getResourceAsStream("/vad/" + name), name);
+	}
+}
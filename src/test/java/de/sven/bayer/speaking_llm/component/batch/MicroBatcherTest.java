@@ -0,0 +1,71 @@
+package de.sven.bayer.speaking_llm.component.batch;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MicroBatcherTest {
+	private final List<List<Integer>> batches = new CopyOnWriteArrayList<>();
+
+	@Test
+	void sendsFullBatchesAtOnceAndTheRestAfterTheWindow() {
+		MicroBatcher<Integer, String> batcher = new MicroBatcher<>("test", Duration.ofMillis(500), 3, Long.MAX_VALUE, this::answer);
+
+		List<CompletableFuture<String>> results = List.of(batcher.submit(1, 1), batcher.submit(2, 1), batcher.submit(3, 1),
+				batcher.submit(4, 1));
+
+		assertThat(results.get(0).join()).isEqualTo("answer 1");
+		assertThat(results.get(2).join()).isEqualTo("answer 3");
+		assertThat(results.get(3).isDone()).isFalse();
+		assertThat(results.get(3).join()).isEqualTo("answer 4");
+		assertThat(batches).containsExactly(List.of(1, 2, 3), List.of(4));
+		assertThat(batcher.stats()).isEqualTo(new MicroBatcher.Stats(2, 4));
+	}
+
+	@Test
+	void startsANewBatchBeforeTheWeightLimitWouldBeExceeded() {
+		MicroBatcher<Integer, String> batcher = new MicroBatcher<>("test", Duration.ofSeconds(10), 10, 100, this::answer);
+
+		CompletableFuture<String> first = batcher.submit(1, 60);
+		CompletableFuture<String> second = batcher.submit(2, 60);
+		CompletableFuture<String> third = batcher.submit(3, 40);
+		CompletableFuture<String> heavy = batcher.submit(4, 500);
+
+		assertThat(first.join()).isEqualTo("answer 1");
+		assertThat(third.join()).isEqualTo("answer 3");
+		assertThat(heavy.join()).isEqualTo("answer 4");
+		assertThat(second).isCompletedWithValue("answer 2");
+		assertThat(batches).containsExactlyInAnyOrder(List.of(1), List.of(2, 3), List.of(4));
+	}
+
+	@Test
+	void failsEveryItemOfAFailedBatch() {
+		MicroBatcher<Integer, String> batcher = new MicroBatcher<>("test", Duration.ofMillis(10), 2, Long.MAX_VALUE, items -> {
+			throw new IllegalStateException("backend down");
+		});
+		MicroBatcher<Integer, String> incomplete = new MicroBatcher<>("test", Duration.ofMillis(10), 2, Long.MAX_VALUE,
+				items -> List.of("only one"));
+
+		CompletableFuture<String> first = batcher.submit(1, 1);
+		CompletableFuture<String> second = batcher.submit(2, 1);
+		CompletableFuture<String> short1 = incomplete.submit(1, 1);
+		CompletableFuture<String> short2 = incomplete.submit(2, 1);
+
+		assertThatThrownBy(first::join).isInstanceOf(CompletionException.class).hasRootCauseMessage("backend down");
+		assertThatThrownBy(second::join).isInstanceOf(CompletionException.class).hasRootCauseMessage("backend down");
+		assertThatThrownBy(short1::join).hasCauseInstanceOf(IllegalStateException.class);
+		assertThatThrownBy(short2::join).hasCauseInstanceOf(IllegalStateException.class);
+	}
+
+	private List<String> answer(List<Integer> items) {
+		batches.add(items);
+		return items.stream().map(item -> "answer " + item).toList();
+	}
+}
@@ -0,0 +1,177 @@
+package de.sven.bayer.speaking_llm.component.http;
+
+import com.sun.net.httpserver.HttpServer;
+import de.sven.bayer.speaking_llm.config.HttpProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HttpBackendTest {
+	private HttpServer server;
+	private ExecutorService executor;
+	private HttpBackend backend;
+	private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+	private final List<String> contentLengths = new CopyOnWriteArrayList<>();
+	private final List<byte[]> bodies = new CopyOnWriteArrayList<>();
+
+	@BeforeEach
+	void startServer() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/echo", exchange -> {
+			clientPorts.add(exchange.getRemoteAddress().getPort());
+			contentLengths.add(exchange.getRequestHeaders().getFirst("Content-Length"));
+			byte[] body = exchange.getRequestBody().readAllBytes();
+			bodies.add(body);
+			exchange.sendResponseHeaders(200, body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		});
+		server.createContext("/down", exchange -> {
+			exchange.sendResponseHeaders(503, -1);
+			exchange.close();
+		});
+		server.start();
+
+		HttpProperties.Backend properties = new HttpProperties.Backend();
+		properties.setBaseUrl("http://localhost:" + server.getAddress().getPort());
+		executor = Executors.newVirtualThreadPerTaskExecutor();
+		backend = new HttpBackend("stub", properties, executor);
+	}
+
+	@AfterEach
+	void stopServer() {
+		backend.close();
+		executor.shutdownNow();
+		server.stop(0);
+	}
+
+	@Test
+	void probeSucceedsOnceAReplicaAnswersWhateverTheStatus() throws Exception {
+		HttpProperties.Backend properties = new HttpProperties.Backend();
+		properties.setReplicas(List.of("http://localhost:" + freePort(), "http://localhost:" + server.getAddress().getPort() + "/down"));
+		try (HttpBackend warming = new HttpBackend("warming", properties, executor)) {
+			assertThat(warming.probe(Duration.ofSeconds(1))).isTrue();
+		}
+
+		properties.setReplicas(List.of("http://localhost:" + freePort()));
+		try (HttpBackend unreachable = new HttpBackend("unreachable", properties, executor)) {
+			assertThat(unreachable.probe(Duration.ofSeconds(1))).isFalse();
+		}
+	}
+
+	@Test
+	void reusesOneConnectionForSequentialRequests() {
+		for (int i = 0; i < 5; i++) {
+			HttpRequest request = backend.request("/echo").POST(HttpRequest.BodyPublishers.ofString("hello " + i)).build();
+			assertThat(backend.exchange(request, HttpResponse.BodyHandlers.ofString())).isEqualTo("hello " + i);
+		}
+
+		assertThat(clientPorts).hasSize(1);
+	}
+
+	@Test
+	void streamsMultipartFileBetweenPrecomputedParts() {
+		Map<String, String> fields = new LinkedHashMap<>();
+		fields.put("model", "large");
+		fields.put("language", "en");
+		MultipartForm form = new MultipartForm(fields, "audio_file", "recording.wav", "audio/wav");
+		byte[] file = "RIFF....WAVEdata".getBytes(StandardCharsets.US_ASCII);
+
+		HttpRequest request = backend.request("/echo")
+				.header("Content-Type", form.contentType())
+				.POST(form.body(file.length, () -> new ByteArrayInputStream(file)))
+				.build();
+		backend.exchange(request, HttpResponse.BodyHandlers.discarding());
+
+		String boundary = form.contentType().substring(form.contentType().indexOf("boundary=") + 9);
+		String body = new String(bodies.getFirst(), StandardCharsets.US_ASCII);
+		assertThat(contentLengths.getFirst()).isEqualTo(String.valueOf(bodies.getFirst().length));
+		assertThat(body).isEqualTo(
+				"--" + boundary + "\r\nContent-Disposition: form-data; name=\"model\"\r\n\r\nlarge\r\n"
+						+ "--" + boundary + "\r\nContent-Disposition: form-data; name=\"language\"\r\n\r\nen\r\n"
+						+ "--" + boundary + "\r\nContent-Disposition: form-data; name=\"audio_file\"; filename=\"recording.wav\"\r\n"
+						+ "Content-Type: audio/wav\r\n\r\nRIFF....WAVEdata\r\n"
+						+ "--" + boundary + "--\r\n");
+	}
+
+	@Test
+	void reportsErrorStatus() {
+		HttpRequest request = backend.request("/down").GET().build();
+
+		assertThatThrownBy(() -> backend.exchange(request, HttpResponse.BodyHandlers.ofString()))
+				.isInstanceOfSatisfying(BackendResponseException.class, e -> assertThat(e.statusCode()).isEqualTo(503));
+		assertThat(backend.exchangeAsync(request, HttpResponse.BodyHandlers.ofString()))
+				.failsWithin(Duration.ofSeconds(5));
+	}
+
+	@Test
+	void hedgesSlowRequestToSecondReplica() throws IOException {
+		AtomicBoolean stalled = new AtomicBoolean();
+		HttpServer slow = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		slow.setExecutor(executor);
+		slow.createContext("/echo", exchange -> {
+			if (stalled.get()) {
+				try {
+					Thread.sleep(5000);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			byte[] body = "slow".getBytes(StandardCharsets.US_ASCII);
+			exchange.sendResponseHeaders(200, body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		});
+		slow.start();
+		HttpProperties.Backend properties = new HttpProperties.Backend();
+		properties.setReplicas(List.of("http://localhost:" + slow.getAddress().getPort(),
+				"http://localhost:" + server.getAddress().getPort()));
+		properties.getHedge().setEnabled(true);
+		properties.getHedge().setMinDelay(Duration.ofMillis(20));
+		try (HttpBackend replicated = new HttpBackend("stub", properties, executor)) {
+			HttpRequest request = backend.request("/echo").POST(HttpRequest.BodyPublishers.ofString("fast")).build();
+			for (int i = 0; i < 40; i++) {
+				replicated.exchange(request, HttpResponse.BodyHandlers.ofString());
+			}
+
+			stalled.set(true);
+			long start = System.nanoTime();
+			for (int i = 0; i < 4; i++) {
+				assertThat(replicated.exchange(request, HttpResponse.BodyHandlers.ofString())).isEqualTo("fast");
+			}
+			assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(2));
+		} finally {
+			slow.stop(0);
+		}
+	}
+
+	private static int freePort() throws IOException {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			return socket.getLocalPort();
+		}
+	}
+}
@@ -0,0 +1,61 @@
+package de.sven.bayer.speaking_llm.component.http;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReplicaSetTest {
+	private static final List<URI> URIS = List.of(URI.create("http://whisper-1:9000"), URI.create("http://whisper-2:9000"));
+
+	@Test
+	void picksReplicaWithFewestOutstandingRequests() {
+		ReplicaSet replicas = new ReplicaSet("asr", URIS, 3, Duration.ofSeconds(10));
+		Replica busy = replicas.select();
+		busy.begin();
+		busy.begin();
+
+		for (int i = 0; i < 4; i++) {
+			assertThat(replicas.select()).isNotSameAs(busy);
+		}
+		assertThat(replicas.select(replicas.select())).isSameAs(busy);
+	}
+
+	@Test
+	void ejectsReplicaAfterConsecutiveFailuresAndProbesItLater() throws InterruptedException {
+		ReplicaSet replicas = new ReplicaSet("asr", URIS, 2, Duration.ofMillis(50));
+		Replica failing = replicas.select();
+		Replica healthy = replicas.select(failing);
+
+		replicas.failed(failing);
+		replicas.succeeded(failing);
+		replicas.failed(failing);
+		assertThat(replicas.select(healthy)).isSameAs(failing);
+
+		replicas.failed(failing);
+		for (int i = 0; i < 4; i++) {
+			assertThat(replicas.select()).isSameAs(healthy);
+		}
+		assertThat(replicas.select(healthy)).isNull();
+
+		Thread.sleep(60);
+		assertThat(replicas.select(healthy)).isSameAs(failing);
+		// Only one probe at a time
+		assertThat(replicas.select(healthy)).isNull();
+		replicas.succeeded(failing);
+		assertThat(replicas.select(healthy)).isSameAs(failing);
+	}
+
+	@Test
+	void triesEjectedReplicaWhenNoneIsHealthy() {
+		ReplicaSet replicas = new ReplicaSet("asr", URIS.subList(0, 1), 1, Duration.ofSeconds(10));
+		Replica only = replicas.select();
+
+		replicas.failed(only);
+
+		assertThat(replicas.select()).isSameAs(only);
+	}
+}
@@ -0,0 +1,114 @@
+package de.sven.bayer.speaking_llm.component.journal;
+
+import de.sven.bayer.speaking_llm.component.audio.capture.PcmRingBuffer;
+import de.sven.bayer.speaking_llm.component.audio.capture.WavHeader;
+import de.sven.bayer.speaking_llm.config.JournalProperties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TurnJournalTest {
+	private static final AudioFormat FORMAT = new AudioFormat(16000, 16, 1, true, false);
+	private static final int CHUNK = 64;
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void readsTurnsBackAcrossFilesAndReplaysTheirAudio() throws Exception {
+		PcmRingBuffer ring = new PcmRingBuffer(CHUNK * 8, new WavHeader(FORMAT));
+		for (int i = 0; i < 8; i++) {
+			writeChunk(ring, i + 1);
+		}
+
+		TurnJournal journal = new TurnJournal(properties(512, 32));
+		// Two overlapping segments of one utterance, the next utterance after a pause of two chunks
+		journal.segment("voice-1", "turn-1", ring.segment(0, 3L * CHUNK));
+		journal.segment("voice-1", "turn-1", ring.segment(2L * CHUNK, 5L * CHUNK));
+		journal.segmentTranscript("voice-1", "turn-1", 0, "What is");
+		journal.segmentTranscript("voice-1", "turn-1", 2L * CHUNK, "is the time?");
+		journal.transcript("turn-1", "What is the time?");
+		journal.answer("turn-1", "It is noon.");
+		journal.segment("voice-1", "turn-2", ring.segment(7L * CHUNK, 8L * CHUNK));
+		journal.shutdown();
+
+		assertThat(journal.stats().written()).isEqualTo(7);
+		assertThat(JournalFormat.files(directory)).hasSizeGreaterThan(1);
+
+		JournalReader reader = new JournalReader(directory);
+		assertThat(reader.streams()).containsExactly("voice-1");
+		assertThat(reader.turn("turn-1")).extracting(JournalEntry::type).containsExactly(
+				JournalEntry.Type.SEGMENT, JournalEntry.Type.SEGMENT, JournalEntry.Type.SEGMENT_TRANSCRIPT,
+				JournalEntry.Type.SEGMENT_TRANSCRIPT, JournalEntry.Type.TRANSCRIPT, JournalEntry.Type.ANSWER);
+		assertThat(reader.turn("turn-1").getLast().text()).isEqualTo("It is noon.");
+
+		byte[] audio;
+		try (InputStream in = reader.recording("voice-1").open()) {
+			audio = in.readAllBytes();
+		}
+		byte[] expected = new byte[8 * CHUNK];
+		for (int i = 0; i < 8; i++) {
+			Arrays.fill(expected, i * CHUNK, (i + 1) * CHUNK, i < 5 || i == 7 ? (byte) (i + 1) : 0);
+		}
+		assertThat(audio).isEqualTo(expected);
+	}
+
+	@Test
+	void readsOnlyTheEntriesOfOneStream() throws Exception {
+		PcmRingBuffer ring = new PcmRingBuffer(CHUNK * 4, new WavHeader(FORMAT));
+		for (int i = 0; i < 4; i++) {
+			writeChunk(ring, i + 1);
+		}
+
+		TurnJournal journal = new TurnJournal(properties(4096, 32));
+		journal.segment("voice-1", "turn-1", ring.segment(0, 2L * CHUNK));
+		journal.segment("voice-2", "turn-2", ring.segment(2L * CHUNK, 4L * CHUNK));
+		journal.segmentTranscript("voice-2", "turn-2", 2L * CHUNK, "Hello");
+		journal.transcript("turn-2", "Hello");
+		journal.shutdown();
+
+		JournalReader reader = JournalReader.ofStream(directory, "voice-2");
+		assertThat(reader.entries()).extracting(JournalEntry::type)
+				.containsExactly(JournalEntry.Type.SEGMENT, JournalEntry.Type.SEGMENT_TRANSCRIPT);
+		assertThat(reader.streams()).containsExactly("voice-2");
+		try (InputStream in = reader.openAudio("voice-2")) {
+			assertThat(in.readAllBytes()).hasSize(2 * CHUNK).containsOnly((byte) 3, (byte) 4);
+		}
+	}
+
+	@Test
+	void keepsOnlyTheNewestFiles() throws Exception {
+		TurnJournal journal = new TurnJournal(properties(256, 2));
+		for (int i = 0; i < 20; i++) {
+			journal.answer("turn-" + i, "Answer number " + i + " of the test run.");
+		}
+		journal.shutdown();
+
+		assertThat(JournalFormat.files(directory)).hasSize(2);
+		JournalReader reader = new JournalReader(directory);
+		assertThat(reader.entries()).isNotEmpty();
+		assertThat(reader.entries().getLast().turnId()).isEqualTo("turn-19");
+		assertThat(reader.turn("turn-0")).isEmpty();
+	}
+
+	private JournalProperties properties(int segmentBytes, int maxSegments) {
+		JournalProperties properties = new JournalProperties();
+		properties.setEnabled(true);
+		properties.setDirectory(directory.toString());
+		properties.setSegmentBytes(segmentBytes);
+		properties.setMaxSegments(maxSegments);
+		return properties;
+	}
+
+	private static void writeChunk(PcmRingBuffer ring, int value) {
+		int offset = ring.offsetOf(ring.position());
+		Arrays.fill(ring.array(), offset, offset + CHUNK, (byte) value);
+		ring.commit(CHUNK);
+	}
+}
@@ -0,0 +1,79 @@
+package de.sven.bayer.speaking_llm.component.limit;
+
+import de.sven.bayer.speaking_llm.config.LimitProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AdaptiveLimiterTest {
+	private static final long FAST = TimeUnit.MILLISECONDS.toNanos(50);
+	private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(500);
+
+	@Test
+	void growsWhileLatencyStaysAtTheBaselineAndBacksOffWhenItRises() {
+		AdaptiveLimiter limiter = limiter(4, 1, Duration.ofSeconds(1));
+
+		for (int round = 0; round < 40; round++) {
+			fillAndRelease(limiter, FAST);
+		}
+		int grown = limiter.limit();
+		assertThat(grown).isGreaterThan(4);
+
+		fillAndRelease(limiter, SLOW);
+		assertThat(limiter.limit()).isLessThan(grown).isGreaterThanOrEqualTo((int) (grown * 0.9));
+	}
+
+	@Test
+	void rejectsWhenTheQueueIsFull() throws Exception {
+		AdaptiveLimiter limiter = limiter(1, 1, Duration.ofSeconds(5));
+		limiter.acquire();
+		CompletableFuture<Void> waiting = CompletableFuture.runAsync(limiter::acquire);
+		while (limiter.queued() == 0) {
+			Thread.sleep(1);
+		}
+
+		assertThat(limiter.isSaturated()).isTrue();
+		assertThatThrownBy(limiter::acquire).isInstanceOf(BackendOverloadedException.class);
+
+		limiter.release(FAST, false);
+		waiting.get(5, TimeUnit.SECONDS);
+		assertThat(limiter.inFlight()).isEqualTo(1);
+		assertThat(limiter.isSaturated()).isFalse();
+	}
+
+	@Test
+	void rejectsAfterWaitingTooLong() {
+		AdaptiveLimiter limiter = limiter(1, 4, Duration.ofMillis(20));
+		limiter.acquire();
+
+		assertThatThrownBy(limiter::acquire)
+				.isInstanceOf(BackendOverloadedException.class)
+				.hasMessageContaining("waited");
+		assertThat(limiter.queued()).isZero();
+	}
+
+	private static void fillAndRelease(AdaptiveLimiter limiter, long latencyNanos) {
+		int slots = limiter.limit();
+		for (int i = 0; i < slots; i++) {
+			limiter.acquire();
+		}
+		for (int i = 0; i < slots; i++) {
+			limiter.release(latencyNanos, false);
+		}
+	}
+
+	private static AdaptiveLimiter limiter(int initialLimit, int maxQueue, Duration maxWait) {
+		LimitProperties.Limit properties = new LimitProperties.Limit();
+		properties.setInitialLimit(initialLimit);
+		properties.setMaxLimit(64);
+		properties.setMaxQueue(maxQueue);
+		properties.setMaxWait(maxWait);
+		return new AdaptiveLimiter("test", properties, new SimpleMeterRegistry());
+	}
+}
@@ -0,0 +1,44 @@
+package de.sven.bayer.speaking_llm.component.llm;
+
+import de.sven.bayer.speaking_llm.component.TextSplitter;
+import de.sven.bayer.speaking_llm.config.TtsProperties;
+import de.sven.bayer.speaking_llm.model.conversation.LlmAnswerWithThink;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LlmStreamAssemblerTest {
+
+	@Test
+	void skipsThinkSplitAcrossChunksAndSpeaksSentencesEarly() {
+		List<String> spoken = new ArrayList<>();
+		LlmStreamAssembler assembler = new LlmStreamAssembler(new TextSplitter(new TtsProperties()).sentenceStream(spoken::add), null);
+
+		for (String token : List.of("<thi", "nk>Let me", " think.</th", "ink>Hello", " there. How", " are", " you?")) {
+			assembler.onEvent(null, token);
+		}
+		assertThat(spoken).containsExactly("Hello there.");
+
+		assembler.onEvent("conversation", "42");
+		LlmAnswerWithThink answer = assembler.finish();
+
+		assertThat(spoken).containsExactly("Hello there.", "How are you?");
+		assertThat(answer).isEqualTo(new LlmAnswerWithThink("Hello there. How are you?", "Let me think.", "42"));
+	}
+
+	@Test
+	void acceptsChunkedJsonDeltas() {
+		List<String> spoken = new ArrayList<>();
+		LlmStreamAssembler assembler = new LlmStreamAssembler(new TextSplitter(new TtsProperties()).sentenceStream(spoken::add), "1");
+
+		assembler.onDelta(new LlmAnswerWithThink(null, "hmm", null));
+		assembler.onDelta(new LlmAnswerWithThink("Fine. ", null, null));
+		assembler.onDelta(new LlmAnswerWithThink("Thanks.", null, "2"));
+
+		assertThat(assembler.finish()).isEqualTo(new LlmAnswerWithThink("Fine. Thanks.", "hmm", "2"));
+		assertThat(spoken).containsExactly("Fine.", "Thanks.");
+	}
+}
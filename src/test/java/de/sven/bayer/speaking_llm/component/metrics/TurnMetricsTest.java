@@ -0,0 +1,48 @@
+package de.sven.bayer.speaking_llm.component.metrics;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TurnMetricsTest {
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+	private final TurnMetrics turnMetrics = new TurnMetrics(registry);
+
+	@Test
+	void correlatesStagesUnderTheTurnIdAndCountsFirstAudioOnce() throws InterruptedException {
+		TurnTrace trace = turnMetrics.startTurn("voice");
+		turnMetrics.time(trace, TurnStage.ASR_REQUEST, () -> "hello");
+		trace.speechEnded();
+		Thread.sleep(20);
+		turnMetrics.audioStarted(trace);
+		turnMetrics.audioStarted(trace);
+		turnMetrics.time(null, TurnStage.TTS_REQUEST, () -> new byte[0]);
+		turnMetrics.finishTurn(trace);
+
+		TurnTrace.Timings timings = turnMetrics.turn(trace.turnId()).orElseThrow();
+		assertThat(timings.origin()).isEqualTo("voice");
+		assertThat(timings.timeToFirstAudioMs()).isGreaterThanOrEqualTo(20);
+		assertThat(timings.durationMs()).isGreaterThanOrEqualTo(timings.timeToFirstAudioMs());
+		assertThat(timings.stages()).extracting(TurnTrace.StageTiming::stage)
+				.containsExactly(TurnStage.ASR_REQUEST, TurnStage.TIME_TO_FIRST_AUDIO, TurnStage.TURN);
+		// The ASR request happened before the speech ended
+		assertThat(timings.stages().getFirst().offsetMs()).isLessThanOrEqualTo(0);
+
+		Timer timeToFirstAudio = registry.get(TurnStage.TIME_TO_FIRST_AUDIO.meterName()).timer();
+		assertThat(timeToFirstAudio.count()).isEqualTo(1);
+		assertThat(timeToFirstAudio.takeSnapshot().percentileValues()).hasSize(3);
+		assertThat(registry.get(TurnStage.TTS_REQUEST.meterName()).timer().count()).isEqualTo(1);
+	}
+
+	@Test
+	void listsRecentTurnsNewestFirst() {
+		TurnTrace first = turnMetrics.startTurn("api");
+		TurnTrace second = turnMetrics.startTurn("api");
+
+		assertThat(turnMetrics.recentTurns()).extracting(TurnTrace.Timings::turnId)
+				.containsExactly(second.turnId(), first.turnId());
+		assertThat(turnMetrics.turn("unknown")).isEmpty();
+	}
+}
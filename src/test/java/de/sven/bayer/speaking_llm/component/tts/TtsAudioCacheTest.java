@@ -0,0 +1,116 @@
+package de.sven.bayer.speaking_llm.component.tts;
+
+import de.sven.bayer.speaking_llm.config.TtsProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TtsAudioCacheTest {
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void servesRepeatedSentencesWithoutCallingTts() throws Exception {
+		AtomicInteger calls = new AtomicInteger();
+		Function<String, byte[]> tts = sentence -> {
+			calls.incrementAndGet();
+			return sentence.getBytes();
+		};
+
+		TtsAudioCache cache = new TtsAudioCache(properties(1024), registry);
+		cache.get("Sorry, I couldn't process your message at the moment.", tts);
+		byte[] audio = cache.get("  Sorry, I couldn't process   your message at the moment. ", tts);
+		cache.close();
+
+		assertThat(calls).hasValue(1);
+		assertThat(new String(audio)).isEqualTo("Sorry, I couldn't process your message at the moment.");
+		assertThat(cache.stats().memoryHits()).isEqualTo(1);
+		assertThat(cache.stats().misses()).isEqualTo(1);
+	}
+
+	@Test
+	void cachesDownloadedClipOnlyOnceItWasReadToTheEnd() throws Exception {
+		AtomicInteger calls = new AtomicInteger();
+		Function<String, SpeechClip> tts = sentence -> {
+			calls.incrementAndGet();
+			return SpeechClip.downloading(new ByteArrayInputStream(sentence.getBytes()));
+		};
+
+		TtsAudioCache cache = new TtsAudioCache(properties(1024), registry);
+		try (InputStream cutOff = cache.getClip("Hello there.", tts).open()) {
+			cutOff.read(new byte[5]);
+		}
+		try (InputStream played = cache.getClip("Hello there.", tts).open()) {
+			played.readAllBytes();
+		}
+		SpeechClip cached = cache.getClip("Hello there.", tts);
+		cache.close();
+
+		assertThat(calls).hasValue(2);
+		assertThat(cached.isDownloading()).isFalse();
+		assertThat(new String(cached.readAllBytes())).isEqualTo("Hello there.");
+	}
+
+	@Test
+	void diskTierSurvivesRestartAndMemoryTierEvictsLeastRecentlyUsed() throws Exception {
+		AtomicInteger calls = new AtomicInteger();
+		Function<String, byte[]> tts = sentence -> {
+			calls.incrementAndGet();
+			return new byte[100];
+		};
+
+		TtsAudioCache cache = new TtsAudioCache(properties(250), registry);
+		cache.get("Hello.", tts);
+		cache.get("Hi.", tts);
+		cache.get("Hello.", tts);
+		cache.get("Hey.", tts); // evicts "Hi." from memory
+		assertThat(cache.stats().memoryEvictions()).isEqualTo(1);
+		assertThat(cache.stats().diskEvictions()).isZero();
+		assertThat(cache.stats().memoryEntries()).isEqualTo(2);
+		cache.close();
+
+		TtsAudioCache restarted = new TtsAudioCache(properties(250), registry);
+		restarted.get("Hi.", tts);
+		restarted.get("Hello.", tts);
+		restarted.close();
+
+		assertThat(calls).hasValue(3);
+		assertThat(restarted.stats().diskHits()).isEqualTo(2);
+	}
+
+	@Test
+	void diskTierRecyclesOldestSegmentWhenFull() throws Exception {
+		TtsProperties properties = properties(0);
+		properties.getCache().setSegmentBytes(1024);
+		properties.getCache().setSegments(2);
+		TtsAudioCache cache = new TtsAudioCache(properties, registry);
+		for (int i = 0; i < 6; i++) {
+			cache.get("Sentence " + i + ".", sentence -> new byte[300]);
+		}
+		cache.close();
+
+		// Two clips fit into one segment, the third fills the second, the fifth wipes the first
+		assertThat(cache.stats().diskEvictions()).isEqualTo(2);
+		assertThat(registry.get("speaking.tts.cache.evictions").tag("tier", "disk").functionCounter().count()).isEqualTo(2);
+	}
+
+	private TtsProperties properties(long memoryMaxBytes) {
+		TtsProperties properties = new TtsProperties();
+		properties.getCache().setMemoryMaxBytes(memoryMaxBytes);
+		properties.getCache().setDirectory(directory.toString());
+		properties.getCache().setSegmentBytes(64 * 1024);
+		properties.getCache().setSegments(2);
+		return properties;
+	}
+}
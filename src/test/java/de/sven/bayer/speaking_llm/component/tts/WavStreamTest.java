@@ -0,0 +1,50 @@
+package de.sven.bayer.speaking_llm.component.tts;
+
+import org.junit.jupiter.api.Test;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WavStreamTest {
+
+	@Test
+	void skipsUnknownChunksAndReadsSamplesOfUnknownLength() throws Exception {
+		byte[] samples = {1, 2, 3, 4, 5, 6};
+		ByteArrayOutputStream wav = new ByteArrayOutputStream();
+		wav.write(ascii("RIFF"));
+		wav.write(le(0xFFFFFFFF));
+		wav.write(ascii("WAVE"));
+		wav.write(ascii("fmt "));
+		wav.write(le(16));
+		wav.write(ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN)
+				.putShort((short) 1).putShort((short) 1).putInt(24000).putInt(48000).putShort((short) 2).putShort((short) 16).array());
+		wav.write(ascii("LIST"));
+		wav.write(le(3));
+		wav.write(new byte[]{'a', 'b', 'c', 0});
+		wav.write(ascii("data"));
+		wav.write(le(0xFFFFFFFF));
+		wav.write(samples);
+
+		try (AudioInputStream pcm = WavStream.open(new ByteArrayInputStream(wav.toByteArray()))) {
+			assertThat(pcm.getFormat().matches(new AudioFormat(24000, 16, 1, true, false))).isTrue();
+			assertThat(pcm.getFrameLength()).isEqualTo(AudioSystem.NOT_SPECIFIED);
+			assertThat(pcm.readAllBytes()).isEqualTo(samples);
+		}
+	}
+
+	private static byte[] ascii(String tag) {
+		return tag.getBytes(StandardCharsets.US_ASCII);
+	}
+
+	private static byte[] le(int value) {
+		return ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(value).array();
+	}
+}
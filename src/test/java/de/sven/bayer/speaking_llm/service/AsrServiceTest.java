@@ -0,0 +1,208 @@
+package de.sven.bayer.speaking_llm.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import de.sven.bayer.speaking_llm.component.audio.capture.AudioSegment;
+import de.sven.bayer.speaking_llm.component.audio.capture.PcmRingBuffer;
+import de.sven.bayer.speaking_llm.component.audio.capture.WavHeader;
+import de.sven.bayer.speaking_llm.component.batch.MicroBatcher;
+import de.sven.bayer.speaking_llm.component.http.HttpTransport;
+import de.sven.bayer.speaking_llm.component.limit.BackendLimiters;
+import de.sven.bayer.speaking_llm.config.HttpProperties;
+import de.sven.bayer.speaking_llm.config.LimitProperties;
+import de.sven.bayer.speaking_llm.config.TranscriptionProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AsrServiceTest {
+	private static final AudioFormat FORMAT = new AudioFormat(16000, 16, 1, true, false);
+	private static final int SEGMENT_BYTES = 3200;
+	private static final int SEGMENTS = 4;
+	// The stub answers every file with its first PCM byte, which tells the segments apart
+	private static final Pattern FILE = Pattern.compile("filename=\"recording.wav\"\r\nContent-Type: audio/wav\r\n\r\n");
+
+	private HttpServer server;
+	private final List<String> paths = new CopyOnWriteArrayList<>();
+	private PcmRingBuffer ring;
+	private HttpTransport httpTransport;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+		server.createContext("/asr", exchange -> {
+			List<String> transcripts = transcripts(exchange);
+			respond(exchange, transcripts.getFirst());
+		});
+		server.start();
+
+		ring = new PcmRingBuffer(SEGMENT_BYTES * SEGMENTS, new WavHeader(FORMAT));
+		for (int i = 0; i < SEGMENTS; i++) {
+			Arrays.fill(ring.array(), i * SEGMENT_BYTES, (i + 1) * SEGMENT_BYTES, (byte) (i + 1));
+			ring.commit(SEGMENT_BYTES);
+		}
+		HttpProperties httpProperties = new HttpProperties();
+		httpProperties.getAsr().setBaseUrl("http://localhost:" + server.getAddress().getPort());
+		httpTransport = new HttpTransport(httpProperties);
+	}
+
+	@AfterEach
+	void tearDown() {
+		httpTransport.close();
+		server.stop(0);
+	}
+
+	@Test
+	void sendsSegmentsArrivingTogetherAsOneBatch() throws Exception {
+		server.createContext("/asr/batch", exchange -> {
+			List<String> transcripts = transcripts(exchange);
+			respond(exchange, new ObjectMapper().writeValueAsString(transcripts));
+		});
+		AsrService asrService = asrService();
+
+		assertThat(transcribeAll(asrService)).containsExactly("segment 1", "segment 2", "segment 3", "segment 4");
+		assertThat(paths).containsExactly("/asr/batch");
+		assertThat(asrService.batchStats()).isEqualTo(new MicroBatcher.Stats(1, SEGMENTS));
+	}
+
+	@Test
+	void fallsBackToSingleRequestsWithoutBatchEndpoint() throws Exception {
+		server.createContext("/asr/batch", exchange -> {
+			paths.add(exchange.getRequestURI().getPath());
+			exchange.getRequestBody().readAllBytes();
+			exchange.sendResponseHeaders(404, -1);
+			exchange.close();
+		});
+		AsrService asrService = asrService();
+
+		assertThat(transcribeAll(asrService)).containsExactly("segment 1", "segment 2", "segment 3", "segment 4");
+		assertThat(paths).containsExactly("/asr/batch", "/asr", "/asr", "/asr", "/asr");
+
+		paths.clear();
+		assertThat(transcribeAll(asrService)).containsExactly("segment 1", "segment 2", "segment 3", "segment 4");
+		assertThat(paths).containsOnly("/asr").hasSize(SEGMENTS);
+	}
+
+	@Test
+	void retriesOnlyTheSegmentsOfARefusedBatch() throws Exception {
+		CountDownLatch loneSent = new CountDownLatch(1);
+		CountDownLatch batchRefused = new CountDownLatch(1);
+		AtomicInteger loneRequests = new AtomicInteger();
+		server.removeContext("/asr");
+		server.createContext("/asr", exchange -> {
+			String transcript = transcripts(exchange).getFirst();
+			if (transcript.equals("segment 1")) {
+				// Fails on its own, after a concurrent batch has found the batch endpoint missing
+				loneRequests.incrementAndGet();
+				loneSent.countDown();
+				awaitQuietly(batchRefused);
+				exchange.sendResponseHeaders(404, -1);
+				exchange.close();
+				return;
+			}
+			batchRefused.countDown();
+			respond(exchange, transcript);
+		});
+		server.createContext("/asr/batch", exchange -> {
+			paths.add(exchange.getRequestURI().getPath());
+			exchange.getRequestBody().readAllBytes();
+			exchange.sendResponseHeaders(404, -1);
+			exchange.close();
+		});
+		AsrService asrService = asrService(Duration.ofMillis(20), 2);
+
+		try (ExecutorService sessions = Executors.newVirtualThreadPerTaskExecutor()) {
+			Future<String> lone = sessions.submit(() -> asrService.transcribeAudio(ring.segment(0, SEGMENT_BYTES)));
+			assertThat(loneSent.await(5, TimeUnit.SECONDS)).isTrue();
+			Future<String> second = sessions.submit(() -> asrService.transcribeAudio(ring.segment(SEGMENT_BYTES, 2L * SEGMENT_BYTES)));
+			Future<String> third = sessions.submit(() -> asrService.transcribeAudio(ring.segment(2L * SEGMENT_BYTES, 3L * SEGMENT_BYTES)));
+
+			assertThat(second.get()).isEqualTo("segment 2");
+			assertThat(third.get()).isEqualTo("segment 3");
+			assertThatThrownBy(lone::get).isInstanceOf(ExecutionException.class);
+		}
+		assertThat(loneRequests).hasValue(1);
+	}
+
+	private AsrService asrService() {
+		return asrService(Duration.ofSeconds(5), SEGMENTS);
+	}
+
+	private AsrService asrService(Duration window, int maxSegments) {
+		TranscriptionProperties properties = new TranscriptionProperties();
+		properties.getBatch().setEnabled(true);
+		properties.getBatch().setWindow(window);
+		properties.getBatch().setMaxSegments(maxSegments);
+		return new AsrService(httpTransport, new BackendLimiters(new LimitProperties(), new SimpleMeterRegistry()), properties,
+				new ObjectMapper());
+	}
+
+	// Every segment from its own thread, like concurrent sessions
+	private List<String> transcribeAll(AsrService asrService) throws Exception {
+		List<Future<String>> results = new ArrayList<>();
+		try (ExecutorService sessions = Executors.newVirtualThreadPerTaskExecutor()) {
+			for (int i = 0; i < SEGMENTS; i++) {
+				AudioSegment segment = ring.segment((long) i * SEGMENT_BYTES, (long) (i + 1) * SEGMENT_BYTES);
+				results.add(sessions.submit(() -> asrService.transcribeAudio(segment)));
+			}
+		}
+		List<String> transcripts = new ArrayList<>();
+		for (Future<String> result : results) {
+			transcripts.add(result.get());
+		}
+		return transcripts;
+	}
+
+	private List<String> transcripts(HttpExchange exchange) throws IOException {
+		paths.add(exchange.getRequestURI().getPath());
+		byte[] body = exchange.getRequestBody().readAllBytes();
+		Matcher file = FILE.matcher(new String(body, StandardCharsets.ISO_8859_1));
+		List<String> transcripts = new ArrayList<>();
+		while (file.find()) {
+			transcripts.add("segment " + body[file.end() + WavHeader.LENGTH]);
+		}
+		return transcripts;
+	}
+
+	private static void awaitQuietly(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void respond(HttpExchange exchange, String text) throws IOException {
+		byte[] body = text.getBytes(StandardCharsets.UTF_8);
+		exchange.sendResponseHeaders(200, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+}
@@ -0,0 +1,96 @@
+package de.sven.bayer.speaking_llm.service;
+
+import de.sven.bayer.speaking_llm.component.metrics.TurnMetrics;
+import de.sven.bayer.speaking_llm.component.metrics.TurnTrace;
+import de.sven.bayer.speaking_llm.model.conversation.LlmAnswerWithThink;
+import de.sven.bayer.speaking_llm.model.conversation.TurnStatus;
+import de.sven.bayer.speaking_llm.service.session.ConversationSession;
+import de.sven.bayer.speaking_llm.service.session.ConversationTurn;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SpeculativeAnswerTest {
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+	private final TurnMetrics turnMetrics = new TurnMetrics(registry);
+	private final ConversationSession session = new ConversationSession("s", null, 20);
+	private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+	private final List<String> spoken = new CopyOnWriteArrayList<>();
+	private final List<Thread> speakingThreads = new CopyOnWriteArrayList<>();
+	private final CountDownLatch streamed = new CountDownLatch(1);
+
+	@AfterEach
+	void shutdown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	void confirmationReleasesTheHeldSentencesOnTheTurnsThread() throws Exception {
+		SpeculativeAnswer speculation = speculate("What time is it?", 5000);
+		assertThat(streamed.await(5, TimeUnit.SECONDS)).isTrue();
+		assertThat(spoken).isEmpty();
+
+		ConversationTurn turn = speculation.confirm("what time  is it?");
+
+		assertThat(turn).isNotNull();
+		assertThat(turn.completion().get(5, TimeUnit.SECONDS).status()).isEqualTo(TurnStatus.COMPLETED);
+		assertThat(spoken).containsExactly("It is noon.", "Anything else?");
+		assertThat(speakingThreads).doesNotContain(Thread.currentThread());
+		assertThat(registry.counter("speaking.speculation", "outcome", "hit").count()).isEqualTo(1);
+	}
+
+	@Test
+	void differentFinalTranscriptMissesAndDiscardCancelsTheTurn() throws Exception {
+		SpeculativeAnswer speculation = speculate("What time", 5000);
+		assertThat(streamed.await(5, TimeUnit.SECONDS)).isTrue();
+
+		assertThat(speculation.confirm("What time is it in Tokyo?")).isNull();
+		speculation.discard();
+
+		ConversationTurn turn = session.turn(speculation.trace().turnId()).orElseThrow();
+		assertThat(turn.completion().get(5, TimeUnit.SECONDS).status()).isEqualTo(TurnStatus.CANCELLED);
+		assertThat(spoken).isEmpty();
+		assertThat(registry.counter("speaking.speculation", "outcome", "wasted").count()).isEqualTo(1);
+	}
+
+	@Test
+	void undecidedSpeculationExpiresAndALaterConfirmationMisses() throws Exception {
+		SpeculativeAnswer speculation = speculate("Tell me a story", 50);
+		ConversationTurn turn = session.turn(speculation.trace().turnId()).orElseThrow();
+
+		assertThat(turn.completion().get(5, TimeUnit.SECONDS).status()).isEqualTo(TurnStatus.CANCELLED);
+		assertThat(speculation.confirm("Tell me a story")).isNull();
+		assertThat(spoken).isEmpty();
+	}
+
+	// Stands in for the engine: streams two sentences into held sentences and waits for the decision
+	private SpeculativeAnswer speculate(String transcript, long decisionTimeoutMs) {
+		TurnTrace trace = turnMetrics.startTurn("voice");
+		return new SpeculativeAnswer(trace, turnMetrics, CompletableFuture.completedFuture(transcript),
+				(message, decision) -> session.submit(trace.turnId(), message, executor, (s, turn) -> {
+					HeldSentences held = new HeldSentences(sentence -> {
+						speakingThreads.add(Thread.currentThread());
+						spoken.add(sentence);
+					}, decision);
+					held.accept("It is noon.");
+					held.accept("Anything else?");
+					streamed.countDown();
+					if (!held.awaitDecision(decisionTimeoutMs)) {
+						turn.cancel();
+						throw new CancellationException("discarded");
+					}
+					return new LlmAnswerWithThink("It is noon. Anything else?", null, null);
+				}));
+	}
+}
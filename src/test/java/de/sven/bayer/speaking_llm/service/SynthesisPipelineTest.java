@@ -0,0 +1,209 @@
+package de.sven.bayer.speaking_llm.service;
+
+import de.sven.bayer.speaking_llm.component.tts.SpeechClip;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SynthesisPipelineTest {
+
+	@Test
+	void playsClipsInSentenceOrderWithBoundedRequestsInFlight() {
+		AtomicInteger inFlight = new AtomicInteger();
+		AtomicInteger maxSeen = new AtomicInteger();
+		List<String> played = new CopyOnWriteArrayList<>();
+
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			SynthesisPipeline pipeline = new SynthesisPipeline(sentence -> {
+				maxSeen.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+				try {
+					// Later sentences finish first
+					Thread.sleep(40 - Integer.parseInt(sentence) * 3L);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				inFlight.decrementAndGet();
+				return clip(sentence);
+			}, clip -> played.add(text(clip)), executor, 3);
+
+			try (pipeline) {
+				for (int i = 0; i < 10; i++) {
+					pipeline.submit(String.valueOf(i));
+				}
+			}
+		}
+
+		assertThat(played).containsExactly("0", "1", "2", "3", "4", "5", "6", "7", "8", "9");
+		assertThat(maxSeen.get()).isLessThanOrEqualTo(3);
+	}
+
+	@Test
+	void skipsFailedSentencesWithoutStallingTheRest() {
+		List<String> played = new CopyOnWriteArrayList<>();
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+			 SynthesisPipeline pipeline = new SynthesisPipeline(sentence -> {
+				 if (sentence.equals("bad")) throw new IllegalStateException("TTS down");
+				 return clip(sentence);
+			 }, clip -> played.add(text(clip)), executor, 2)) {
+			pipeline.submit("one");
+			pipeline.submit("bad");
+			pipeline.submit("two");
+		}
+
+		assertThat(played).containsExactly("one", "two");
+	}
+
+	@Test
+	void cancelInterruptsRequestsInFlightAndPlaysNothingMore() {
+		List<String> played = new CopyOnWriteArrayList<>();
+		AtomicInteger interrupted = new AtomicInteger();
+		CountDownLatch blocked = new CountDownLatch(2);
+
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			SynthesisPipeline pipeline = new SynthesisPipeline(sentence -> {
+				if (sentence.equals("fast")) return clip(sentence);
+				blocked.countDown();
+				try {
+					Thread.sleep(10_000);
+				} catch (InterruptedException e) {
+					interrupted.incrementAndGet();
+					throw new IllegalStateException("aborted");
+				}
+				return clip(sentence);
+			}, clip -> played.add(text(clip)), executor, 3);
+
+			pipeline.submit("fast");
+			pipeline.submit("slow 1");
+			pipeline.submit("slow 2");
+			assertThat(awaitQuietly(blocked)).isTrue();
+
+			long start = System.nanoTime();
+			pipeline.cancel();
+			pipeline.submit("after cancel");
+			pipeline.close();
+
+			assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(2));
+		}
+
+		assertThat(played).containsExactly("fast");
+		assertThat(interrupted).hasValue(2);
+	}
+
+	@Test
+	void cancelAbortsDownloadsWaitingForTheirTurn() {
+		CountDownLatch buffered = new CountDownLatch(1);
+		CountDownLatch aborted = new CountDownLatch(1);
+
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			SynthesisPipeline pipeline = new SynthesisPipeline(sentence -> {
+				if (sentence.equals("second")) {
+					buffered.countDown();
+					return SpeechClip.downloading(new ByteArrayInputStream(sentence.getBytes()) {
+						@Override
+						public void close() {
+							aborted.countDown();
+						}
+					});
+				}
+				try {
+					Thread.sleep(10_000);
+				} catch (InterruptedException e) {
+					throw new IllegalStateException("aborted");
+				}
+				return clip(sentence);
+			}, clip -> {
+			}, executor, 2);
+
+			pipeline.submit("first");
+			pipeline.submit("second");
+			assertThat(awaitQuietly(buffered)).isTrue();
+			pipeline.cancel();
+
+			// Whether it was still buffered or completes after the cancel, the clip is dropped
+			assertThat(awaitQuietly(aborted)).isTrue();
+		}
+	}
+
+	@Test
+	void keepsDownloadsOpenAtOnceWithinTheLimitUntilThePlayerHasReadThem() throws Exception {
+		AtomicInteger openBodies = new AtomicInteger();
+		AtomicInteger maxOpen = new AtomicInteger();
+		BlockingQueue<SpeechClip> player = new LinkedBlockingQueue<>();
+		List<String> played = new CopyOnWriteArrayList<>();
+
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			SynthesisPipeline pipeline = new SynthesisPipeline(sentence -> {
+				maxOpen.accumulateAndGet(openBodies.incrementAndGet(), Math::max);
+				return SpeechClip.downloading(new ByteArrayInputStream(sentence.getBytes()) {
+					private boolean closed;
+
+					@Override
+					public void close() {
+						if (!closed) {
+							closed = true;
+							openBodies.decrementAndGet();
+						}
+					}
+				});
+			}, player::add, executor, 2);
+
+			// The player reads one clip at a time, long after the responses have started
+			Thread reader = Thread.ofVirtual().start(() -> {
+				try {
+					for (int i = 0; i < 8; i++) {
+						SpeechClip clip = player.take();
+						Thread.sleep(5);
+						played.add(text(clip));
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			});
+			try (pipeline) {
+				for (int i = 0; i < 8; i++) {
+					pipeline.submit(String.valueOf(i));
+				}
+			}
+			reader.join(5000);
+		}
+
+		assertThat(played).containsExactly("0", "1", "2", "3", "4", "5", "6", "7");
+		assertThat(maxOpen.get()).isLessThanOrEqualTo(2);
+		assertThat(openBodies).hasValue(0);
+	}
+
+	private static SpeechClip clip(String sentence) {
+		return SpeechClip.of(sentence.getBytes());
+	}
+
+	private static String text(SpeechClip clip) {
+		try {
+			return new String(clip.readAllBytes());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static boolean awaitQuietly(CountDownLatch latch) {
+		try {
+			return latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+}
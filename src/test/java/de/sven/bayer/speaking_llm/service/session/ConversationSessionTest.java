@@ -0,0 +1,216 @@
+package de.sven.bayer.speaking_llm.service.session;
+
+import de.sven.bayer.speaking_llm.config.SessionProperties;
+import de.sven.bayer.speaking_llm.model.conversation.LlmAnswerWithThink;
+import de.sven.bayer.speaking_llm.model.conversation.TurnStatus;
+import de.sven.bayer.speaking_llm.model.conversation.TurnView;
+import de.sven.bayer.speaking_llm.service.AudioPlayerService;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConversationSessionTest {
+
+	@Test
+	void runsTurnsOfOneSessionInOrderAndCarriesTheConversationId() throws Exception {
+		ConversationSession session = new ConversationSession("s", null, 20);
+		List<String> seenConversationIds = new CopyOnWriteArrayList<>();
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger maxRunning = new AtomicInteger();
+
+		List<ConversationTurn> turns = new ArrayList<>();
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			for (int i = 0; i < 5; i++) {
+				turns.add(session.submit("t" + i, "message " + i, executor, (s, turn) -> {
+					maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+					seenConversationIds.add(String.valueOf(s.conversationId()));
+					Thread.sleep(10);
+					turn.spoken(turn.message());
+					running.decrementAndGet();
+					return new LlmAnswerWithThink(turn.message(), null, "c-" + turn.message());
+				}));
+			}
+			turns.getLast().completion().get(5, TimeUnit.SECONDS);
+		}
+
+		assertThat(maxRunning).hasValue(1);
+		assertThat(seenConversationIds).containsExactly("null", "c-message 0", "c-message 1", "c-message 2", "c-message 3");
+		assertThat(turns).allSatisfy(turn -> assertThat(turn.view().status()).isEqualTo(TurnStatus.COMPLETED));
+		assertThat(session.conversationId()).isEqualTo("c-message 4");
+	}
+
+	@Test
+	void runsDifferentSessionsConcurrently() throws Exception {
+		int sessions = 200;
+		CountDownLatch allStarted = new CountDownLatch(sessions);
+		List<ConversationTurn> turns = new ArrayList<>();
+
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			for (int i = 0; i < sessions; i++) {
+				ConversationSession session = new ConversationSession("s" + i, null, 20);
+				turns.add(session.submit("t" + i, "hello", executor, (s, turn) -> {
+					allStarted.countDown();
+					// Only returns if every session is running at the same time
+					assertThat(allStarted.await(5, TimeUnit.SECONDS)).isTrue();
+					return new LlmAnswerWithThink("hi", null, null);
+				}));
+			}
+			for (ConversationTurn turn : turns) {
+				assertThat(turn.completion().get(10, TimeUnit.SECONDS).status()).isEqualTo(TurnStatus.COMPLETED);
+			}
+		}
+	}
+
+	@Test
+	void failedTurnDoesNotBlockTheNextOneAndLateListenersGetReplay() throws Exception {
+		ConversationSession session = new ConversationSession("s", null, 20);
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			ConversationTurn failing = session.submit("t1", "first", executor, (s, turn) -> {
+				turn.spoken("Half an answer.");
+				throw new IllegalStateException("LLM down");
+			});
+			ConversationTurn next = session.submit("t2", "second", executor, (s, turn) -> new LlmAnswerWithThink("ok", null, null));
+
+			TurnView failed = failing.completion().get(5, TimeUnit.SECONDS);
+			assertThat(failed.status()).isEqualTo(TurnStatus.FAILED);
+			assertThat(failed.error()).isEqualTo("LLM down");
+			assertThat(next.completion().get(5, TimeUnit.SECONDS).status()).isEqualTo(TurnStatus.COMPLETED);
+
+			List<String> events = new ArrayList<>();
+			failing.subscribe(new ConversationTurn.Listener() {
+				@Override
+				public void onSentence(String sentence) {
+					events.add(sentence);
+				}
+
+				@Override
+				public void onFinished(TurnView turn) {
+					events.add(turn.status().name());
+				}
+			});
+			assertThat(events).containsExactly("Half an answer.", "FAILED");
+		}
+	}
+
+	@Test
+	void cancelStopsTheRunningTurnAndSkipsQueuedOnes() throws Exception {
+		ConversationSession session = new ConversationSession("s", null, 20);
+		CountDownLatch running = new CountDownLatch(1);
+		AtomicInteger secondRuns = new AtomicInteger();
+
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			ConversationTurn first = session.submit("t1", "first", executor, (s, turn) -> {
+				turn.onCancel(Thread.currentThread()::interrupt);
+				turn.spoken("Let me tell you a long story.");
+				running.countDown();
+				// Stands in for the blocked LLM stream, which the interrupt aborts
+				Thread.sleep(10_000);
+				return new LlmAnswerWithThink("never", null, null);
+			});
+			ConversationTurn second = session.submit("t2", "second", executor, (s, turn) -> {
+				secondRuns.incrementAndGet();
+				return new LlmAnswerWithThink("ok", null, null);
+			});
+			ConversationTurn third = session.submit("t3", "third", executor, (s, turn) -> new LlmAnswerWithThink("ok", null, null));
+			assertThat(running.await(5, TimeUnit.SECONDS)).isTrue();
+
+			assertThat(second.cancel()).isTrue();
+			assertThat(first.cancel()).isTrue();
+
+			assertThat(first.completion().get(5, TimeUnit.SECONDS).status()).isEqualTo(TurnStatus.CANCELLED);
+			assertThat(first.view().spokenSentences()).containsExactly("Let me tell you a long story.");
+			assertThat(second.completion().get(5, TimeUnit.SECONDS).status()).isEqualTo(TurnStatus.CANCELLED);
+			assertThat(third.completion().get(5, TimeUnit.SECONDS).status()).isEqualTo(TurnStatus.COMPLETED);
+			assertThat(secondRuns).hasValue(0);
+			assertThat(first.cancel()).isFalse();
+		}
+	}
+
+	@Test
+	void aStalledListenerDoesNotBlockReadersOfTheTurn() throws Exception {
+		ConversationTurn turn = new ConversationTurn("s", "t1", "hello");
+		CountDownLatch stalled = new CountDownLatch(1);
+		CountDownLatch resume = new CountDownLatch(1);
+		turn.subscribe(new ConversationTurn.Listener() {
+			@Override
+			public void onSentence(String sentence) {
+				stalled.countDown();
+				try {
+					resume.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+
+			@Override
+			public void onFinished(TurnView view) {
+			}
+		});
+
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			try {
+				executor.execute(() -> turn.spoken("A sentence for a slow client."));
+				assertThat(stalled.await(5, TimeUnit.SECONDS)).isTrue();
+
+				assertThat(executor.submit(turn::view).get(5, TimeUnit.SECONDS).spokenSentences())
+						.containsExactly("A sentence for a slow client.");
+				assertThat(executor.submit(turn::isCancelRequested).get(5, TimeUnit.SECONDS)).isFalse();
+			} finally {
+				resume.countDown();
+			}
+		}
+	}
+
+	@Test
+	void failsATurnTheExecutorRefuses() {
+		ConversationSession session = new ConversationSession("s", null, 20);
+		ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+		executor.shutdown();
+
+		ConversationTurn turn = session.submit("t1", "hello", executor, (s, t) -> new LlmAnswerWithThink("ok", null, null));
+
+		assertThat(turn.view().status()).isEqualTo(TurnStatus.FAILED);
+		assertThat(turn.completion()).isCompleted();
+	}
+
+	@Test
+	void concurrentCreatesDoNotExceedTheSessionCap() throws Exception {
+		SessionProperties properties = new SessionProperties();
+		properties.setMaxSessions(10);
+		SessionRegistry registry = new SessionRegistry(properties, new AudioPlayerService());
+		AtomicInteger created = new AtomicInteger();
+		CountDownLatch start = new CountDownLatch(1);
+
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			for (int i = 0; i < 100; i++) {
+				executor.submit(() -> {
+					start.await();
+					try {
+						registry.create(false);
+						created.incrementAndGet();
+					} catch (IllegalStateException e) {
+						// Over the cap
+					}
+					return null;
+				});
+			}
+			start.countDown();
+		}
+
+		// The default session counts towards the cap
+		assertThat(created).hasValue(9);
+		assertThat(registry.sessions()).hasSize(10);
+		ConversationSession any = registry.sessions().stream().filter(session -> session != registry.defaultSession()).findFirst().orElseThrow();
+		assertThat(registry.remove(any.sessionId())).isTrue();
+		assertThat(registry.create(false)).isNotNull();
+	}
+}